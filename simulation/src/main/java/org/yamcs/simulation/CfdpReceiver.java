@@ -1,5 +1,6 @@
 package org.yamcs.simulation;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -107,6 +108,7 @@ public class CfdpReceiver {
                             header);
 
                     transmitCfdp(finished);
+                    closeDataFile();
                 } else {
                     header = new CfdpHeader(
                             true, // file directive
@@ -139,6 +141,7 @@ public class CfdpReceiver {
                 log.info("Metadata CFDP packet received");
                 MetadataPacket metadata = (MetadataPacket) packet;
                 long packetLength = metadata.getPacketLength();
+                closeDataFile();
                 cfdpDataFile = new DataFile(packetLength);
                 break;
             case NAK:
@@ -162,12 +165,12 @@ public class CfdpReceiver {
                 if (Math.random() > 0.8) {
                     log.info("'loosing' a FileDataPacket");
                 } else {
-                    cfdpDataFile.addSegment(new DataFileSegment(fdp.getOffset(), fdp.getData()));
+                    addSegment(fdp);
                     log.info("file data received: " + new String(fdp.getData()).toString());
                 }
             } else {
                 // we're resending
-                cfdpDataFile.addSegment(new DataFileSegment(fdp.getOffset(), fdp.getData()));
+                addSegment(fdp);
                 missingSegments.remove(new SegmentRequest(fdp.getOffset(), fdp.getOffset() + fdp.getData().length));
                 log.info("RESENT file data received: " + new String(fdp.getData()).toString());
                 if (missingSegments.isEmpty()) {
@@ -192,11 +195,31 @@ public class CfdpReceiver {
                             header);
 
                     transmitCfdp(finished);
+                    closeDataFile();
                 }
             }
         }
     }
 
+    private void addSegment(FileDataPacket fdp) {
+        try {
+            cfdpDataFile.addSegment(new DataFileSegment(fdp.getOffset(), fdp.getData()));
+        } catch (IOException e) {
+            log.error("Cannot write the received file data", e);
+        }
+    }
+
+    // the data file keeps the received data in a temporary file
+    private void closeDataFile() {
+        if (cfdpDataFile != null) {
+            try {
+                cfdpDataFile.close();
+            } catch (IOException e) {
+                log.warn("Cannot remove the temporary file", e);
+            }
+        }
+    }
+
     protected void transmitCfdp(CfdpPacket packet) {
         CfdpHeader header = packet.getHeader();
 
@@ -10,6 +10,7 @@ import org.yamcs.StreamConfig.StreamConfigEntry;
 import org.yamcs.xtce.SequenceContainer;
 import org.yamcs.xtce.XtceDb;
 import org.yamcs.xtceproc.XtceDbFactory;
+import org.yamcs.yarch.ColumnIndexResolver;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.StreamSubscriber;
 import org.yamcs.yarch.Tuple;
@@ -115,18 +116,23 @@ public class StreamTmPacketProvider extends AbstractYamcsService implements TmPa
     class StreamReader implements StreamSubscriber {
         Stream stream;
         SequenceContainer rootContainer;
+        final ColumnIndexResolver columns;
 
         public StreamReader(Stream stream, SequenceContainer sc) {
             this.stream = stream;
             this.rootContainer = sc;
+            this.columns = new ColumnIndexResolver(stream.getDefinition(), StandardTupleDefinitions.TM_RECTIME_COLUMN,
+                    StandardTupleDefinitions.GENTIME_COLUMN, StandardTupleDefinitions.SEQNUM_COLUMN,
+                    StandardTupleDefinitions.TM_PACKET_COLUMN);
         }
 
         @Override
         public void onTuple(Stream s, Tuple tuple) {
-            long rectime = (Long) tuple.getColumn(StandardTupleDefinitions.TM_RECTIME_COLUMN);
-            long gentime = (Long) tuple.getColumn(StandardTupleDefinitions.GENTIME_COLUMN);
-            int seqCount = (Integer) tuple.getColumn(StandardTupleDefinitions.SEQNUM_COLUMN);
-            byte[] packet = (byte[]) tuple.getColumn(StandardTupleDefinitions.TM_PACKET_COLUMN);
+            int[] idx = columns.getIndices(tuple.getDefinition());
+            long rectime = (Long) tuple.getColumn(idx[0]);
+            long gentime = (Long) tuple.getColumn(idx[1]);
+            int seqCount = (Integer) tuple.getColumn(idx[2]);
+            byte[] packet = (byte[]) tuple.getColumn(idx[3]);
             TmPacket pwrt = new TmPacket(rectime, gentime, seqCount, packet);
             lastPacketTime = gentime;
             tmProcessor.processPacket(pwrt, rootContainer);
@@ -28,6 +28,7 @@ import org.yamcs.yarch.YarchDatabaseInstance;
 import org.yamcs.yarch.YarchException;
 import org.yamcs.yarch.rocksdb.AscendingRangeIterator;
 import org.yamcs.yarch.rocksdb.HistogramRebuilder;
+import org.yamcs.yarch.rocksdb.RdbConfig;
 import org.yamcs.yarch.rocksdb.RdbStorageEngine;
 import org.yamcs.yarch.rocksdb.Tablespace;
 import org.yamcs.yarch.rocksdb.YRDB;
@@ -376,7 +377,9 @@ public class CcsdsTmIndex implements TmIndex {
             if (rangeIt != null) {
                 rangeIt.close();
             }
-            rangeIt = new AscendingRangeIterator(tablespace.getRdb().newIterator(), kstart, false, kend, false);
+            rangeIt = new AscendingRangeIterator(
+                    tablespace.getRdb().newIterator(RdbConfig.getInstance().getScanReadOptions()), kstart, false, kend,
+                    false);
             return rangeIt.isValid();
         }
 
@@ -2,6 +2,7 @@ package org.yamcs.archive;
 
 import java.util.Collection;
 
+import org.yamcs.yarch.AsyncStreamSubscriber;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.StreamSubscriber;
 import org.yamcs.yarch.TableWriter;
@@ -19,9 +20,13 @@ public class Utils {
             Stream s = ydb.getStream(streamName);
             if(s!=null) {
                 for(StreamSubscriber ss:s.getSubscribers()) {
-                    if(ss instanceof TableWriter) {
+                    StreamSubscriber ss1 = ss;
+                    if (ss instanceof AsyncStreamSubscriber) {
+                        ss1 = ((AsyncStreamSubscriber) ss).getSubscriber();
+                    }
+                    if(ss1 instanceof TableWriter) {
                         s.removeSubscriber(ss);
-                        ((TableWriter)ss).close();
+                        ((TableWriter)ss1).close();
                     }
                 }
             }
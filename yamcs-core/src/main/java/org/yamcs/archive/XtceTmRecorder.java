@@ -22,6 +22,7 @@ import org.yamcs.xtce.SequenceContainer;
 import org.yamcs.xtce.XtceDb;
 import org.yamcs.xtceproc.XtceDbFactory;
 import org.yamcs.xtceproc.XtceTmExtractor;
+import org.yamcs.yarch.AsyncStreamSubscriber;
 import org.yamcs.yarch.DataType;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.StreamSubscriber;
@@ -164,6 +165,9 @@ public class XtceTmRecorder extends AbstractYamcsService {
         Collection<StreamSubscriber> subscribers = s.getSubscribers();
         s.close();
         for (StreamSubscriber ss : subscribers) {
+            if (ss instanceof AsyncStreamSubscriber) {
+                ss = ((AsyncStreamSubscriber) ss).getSubscriber();
+            }
             if (ss instanceof TableWriter) {
                 ((TableWriter) ss).close();
             }
@@ -55,6 +55,8 @@ public class YarchReplay implements StreamSubscriber {
 
     private Semaphore pausedSemaphore = new Semaphore(0);
     boolean dropTuple = false; // set to true when jumping to a different time
+    private volatile boolean waitingInPause; // a tuple is held in onTuple while paused
+    private volatile boolean seeking; // the stream is being repositioned, the tuples received are dropped
     volatile boolean ignoreClose;
     ReplayListener listener;
 
@@ -141,6 +143,10 @@ public class YarchReplay implements StreamSubscriber {
             break;
         case PAUSED:
             state = ReplayState.RUNNING;
+            SpeedLimitStream sls = getSpeedLimitStream();
+            if (sls != null) {
+                sls.resume();
+            }
             pausedSemaphore.release();
             break;
         case ERROR:
@@ -222,10 +228,20 @@ public class YarchReplay implements StreamSubscriber {
         s.start();
     }
 
+    /**
+     * Moves the replay to a new start time.
+     * <p>
+     * If the replay is running or paused, the stream is first asked to reposition its readers; this keeps the stream
+     * with its threads and compiled query. If the stream cannot be repositioned (for example because one of the
+     * merged streams has already reached its end), it is closed and the query is executed again from the new start.
+     */
     public void seek(long newReplayTime) throws YamcsException {
+        if ((state == ReplayState.RUNNING || state == ReplayState.PAUSED) && seekStream(newReplayTime)) {
+            return;
+        }
         if (state != ReplayState.INITIALIZATION) {
             if (state == ReplayState.PAUSED) {
-                dropTuple = true;
+                dropTuple = waitingInPause;
                 pausedSemaphore.release();
             }
             state = ReplayState.INITIALIZATION;
@@ -253,15 +269,61 @@ public class YarchReplay implements StreamSubscriber {
         start();
     }
 
+    private synchronized boolean seekStream(long newReplayTime) throws YamcsException {
+        if (currentRequest.hasReverse() && currentRequest.getReverse()) {
+            return false;
+        }
+        String sn = streamName;
+        Stream s = sn == null ? null : YarchDatabase.getInstance(instance).getStream(sn);
+        if (s == null) {
+            return false;
+        }
+        currentRequest = ReplayRequest.newBuilder(currentRequest).setStart(newReplayTime).build();
+        for (ReplayHandler rh : handlers.values()) {
+            rh.setRequest(currentRequest);
+        }
+        if (!s.prepareSeek(newReplayTime)) {
+            log.debug("Stream {} cannot seek, it will be re-created", sn);
+            return false;
+        }
+        // the readers may be blocked in onTuple; the tuples are dropped until the stream is repositioned
+        seeking = true;
+        if (state == ReplayState.PAUSED) {
+            pausedSemaphore.release();
+        }
+        if (!s.awaitSeek()) {
+            log.debug("Stream {} cannot seek, it will be re-created", sn);
+            seeking = false;
+            return false;
+        }
+        log.debug("Stream {} repositioned at {}", sn, TimeEncoding.toString(newReplayTime));
+        for (ReplayHandler rh : handlers.values()) {
+            rh.reset();
+        }
+        boolean wasPaused = state == ReplayState.PAUSED;
+        state = ReplayState.RUNNING;
+        pausedSemaphore.drainPermits();
+        if (wasPaused) {
+            SpeedLimitStream sls = getSpeedLimitStream();
+            if (sls != null) {
+                sls.resume();
+            }
+        }
+        seeking = false;
+        s.completeSeek();
+        return true;
+    }
+
     public void changeSpeed(ReplaySpeed newSpeed) {
         log.debug("Changing speed to {}", newSpeed);
 
-        YarchDatabaseInstance ydb = YarchDatabase.getInstance(instance);
-        Stream s = ydb.getStream(streamName);
-        if (!(s instanceof SpeedLimitStream)) {
+        SpeedLimitStream sls = getSpeedLimitStream();
+        if (sls == null) {
+            YarchDatabaseInstance ydb = YarchDatabase.getInstance(instance);
+            Stream s = ydb.getStream(streamName);
             throw new IllegalStateException("Cannot change speed on a " + s.getClass() + " stream");
         } else {
-            ((SpeedLimitStream) s).setSpeedSpec(toSpeedSpec(newSpeed));
+            sls.setSpeedSpec(toSpeedSpec(newSpeed));
         }
         ReplayRequest.Builder b = ReplayRequest.newBuilder(currentRequest);
         b.setSpeed(newSpeed);
@@ -289,6 +351,28 @@ public class YarchReplay implements StreamSubscriber {
 
     public void pause() {
         state = ReplayState.PAUSED;
+        pauseStream();
+    }
+
+    /**
+     * Pausing the speed limited stream stops the release of its queued tuples, such that no release thread is blocked
+     * in {@link #onTuple(Stream, Tuple)} while the replay is paused and the first tuple after resuming is sent straight
+     * away.
+     */
+    private void pauseStream() {
+        SpeedLimitStream sls = getSpeedLimitStream();
+        if (sls != null) {
+            sls.pause();
+        }
+    }
+
+    private SpeedLimitStream getSpeedLimitStream() {
+        String sn = streamName;
+        if (sn == null) {
+            return null;
+        }
+        Stream s = YarchDatabase.getInstance(instance).getStream(sn);
+        return (s instanceof SpeedLimitStream) ? (SpeedLimitStream) s : null;
     }
 
     public synchronized void quit() {
@@ -311,13 +395,18 @@ public class YarchReplay implements StreamSubscriber {
 
     @Override
     public void onTuple(Stream s, Tuple t) {
-        if (quitting) {
+        if (quitting || seeking) {
             return;
         }
         try {
-            while (state == ReplayState.PAUSED) {
+            while (state == ReplayState.PAUSED && !seeking) {
+                waitingInPause = true;
                 pausedSemaphore.acquire();
             }
+            waitingInPause = false;
+            if (seeking) {
+                return;
+            }
             if (dropTuple) {
                 dropTuple = false;
                 return;
@@ -333,6 +422,7 @@ public class YarchReplay implements StreamSubscriber {
                     && currentRequest.getSpeed().getType() == ReplaySpeedType.STEP_BY_STEP) {
                 // Force user to trigger next step.
                 state = ReplayState.PAUSED;
+                pauseStream();
                 signalStateChange();
             }
         } catch (Exception e) {
@@ -1,6 +1,7 @@
 package org.yamcs.cfdp;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -52,15 +53,28 @@ public class CfdpIncomingTransfer extends CfdpTransfer {
     private DataFile incomingDataFile;
     MetadataPacket metadataPacket;
     long inactivityTimeout;
+    // how long the received file is kept after the inactivity timeout if the ACK (Finished) is still expected
+    long finishedAckTimeout;
     private ScheduledFuture<?> scheduledFuture;
     String failureReason;
 
     public CfdpIncomingTransfer(String yamcsInstance, ScheduledThreadPoolExecutor executor, YConfiguration config,
             MetadataPacket packet, Stream cfdpOut,
             Bucket target, EventProducer eventProducer) {
+        this(yamcsInstance, executor, config, packet, cfdpOut, target, null, eventProducer);
+    }
+
+    /**
+     * @param tmpDir
+     *            - the directory where the received data is written until the transfer is finished; if null, the
+     *            default temporary-file directory is used
+     */
+    public CfdpIncomingTransfer(String yamcsInstance, ScheduledThreadPoolExecutor executor, YConfiguration config,
+            MetadataPacket packet, Stream cfdpOut,
+            Bucket target, Path tmpDir, EventProducer eventProducer) {
         this(yamcsInstance, executor, config, packet.getHeader().getTransactionId(), cfdpOut, target, eventProducer);
-        // create a new empty data file
-        incomingDataFile = new DataFile(packet.getPacketLength());
+        // create a new empty data file; the data is written in a temporary file in tmpDir
+        incomingDataFile = new DataFile(packet.getPacketLength(), tmpDir);
         this.acknowledged = packet.getHeader().isAcknowledged();
         this.currentState = ReceiverTransferState.START;
         SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss");
@@ -75,6 +89,9 @@ public class CfdpIncomingTransfer extends CfdpTransfer {
         super(yamcsInstance, executor, id, cfdpOut, eventProducer);
         incomingBucket = target;
         this.inactivityTimeout = config.getLong("inactivityTimeout", 5000);
+        // the same limit as the one applied by the outgoing transfers waiting for the ACK (EOF)
+        this.finishedAckTimeout = (long) config.getInt("eofAckTimeout", 10000)
+                * config.getInt("maxEofResendAttempts", 5);
         rescheduleInactivityTimer();
     }
 
@@ -117,22 +134,30 @@ public class CfdpIncomingTransfer extends CfdpTransfer {
                     }
                 } else {
                     scheduledFuture.cancel(false);
-                    if (missingSegments.isEmpty()) {
+                    if (!saveFileInBucket(missingSegments)) {
+                        changeState(TransferState.FAILED);
+                    } else if (missingSegments.isEmpty()) {
                         changeState(TransferState.COMPLETED);
                     } else {
                         failureReason = "EOF received but missing "+missingSegments.size()+" segments";
                         changeState(TransferState.FAILED);
                     }
-                    saveFileInBucket(missingSegments);
                 }
                 break;
             case ACK:
                 AckPacket ack = (AckPacket) packet;
                 if (ack.getDirectiveCode() == FileDirectiveCode.Finished) {
+                    if (this.currentState == ReceiverTransferState.FINISHED_ACK_RECEIVED) {
+                        log.debug("CFDP transaction {}, duplicate ACK (Finished) ignored", cfdpTransactionId);
+                        break;
+                    }
                     this.currentState = ReceiverTransferState.FINISHED_ACK_RECEIVED;
-                    changeState(TransferState.COMPLETED);
                     scheduledFuture.cancel(false);
-                    saveFileInBucket(Collections.emptyList());
+                    if (saveFileInBucket(Collections.emptyList())) {
+                        changeState(TransferState.COMPLETED);
+                    } else {
+                        changeState(TransferState.FAILED);
+                    }
                 } else {
                     // we're not expecting any other ACK, so log and ignore
                     log.info("received unexpected ACK, with directive code ", ack.getDirectiveCode().name());
@@ -145,7 +170,16 @@ public class CfdpIncomingTransfer extends CfdpTransfer {
             }
         } else {
             FileDataPacket fdp = (FileDataPacket) packet;
-            incomingDataFile.addSegment(new DataFileSegment(fdp.getOffset(), fdp.getData()));
+            try {
+                incomingDataFile.addSegment(new DataFileSegment(fdp.getOffset(), fdp.getData()));
+            } catch (IOException e) {
+                log.error("CFDP transaction {}, cannot write the received data", cfdpTransactionId, e);
+                scheduledFuture.cancel(false);
+                failureReason = "cannot write the received data: " + e.getMessage();
+                changeState(TransferState.FAILED);
+                closeDataFile();
+                return;
+            }
             if (this.currentState == ReceiverTransferState.RESENDING) {
                 if (this.acknowledged) {
                     if (incomingDataFile.isComplete()) {
@@ -160,18 +194,56 @@ public class CfdpIncomingTransfer extends CfdpTransfer {
     private void onInactivityTimerExpiration() {
         failureReason="inactivity timeout";
         changeState(TransferState.FAILED);
+        // the Finished packet has been sent, the file is complete and saved if the ACK (Finished) still arrives
+        // within the limit
+        if (currentState == ReceiverTransferState.FINISHED_SENT) {
+            scheduledFuture = executor.schedule(() -> onFinishedAckTimeout(), finishedAckTimeout,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            closeDataFile();
+        }
+    }
+
+    private void onFinishedAckTimeout() {
+        if (currentState != ReceiverTransferState.FINISHED_SENT) {
+            return;
+        }
+        log.info("CFDP transaction {}, ACK (Finished) not received, removing the received data", cfdpTransactionId);
+        failureReason = "ACK (Finished) not received";
+        closeDataFile();
     }
 
-    private void saveFileInBucket(List<SegmentRequest> missingSegments) {
+    private void closeDataFile() {
+        try {
+            incomingDataFile.close();
+        } catch (IOException e) {
+            log.warn("CFDP transaction {}, failed to remove the temporary file", cfdpTransactionId, e);
+        }
+    }
+
+    // returns false and sets the failure reason if the file could not be saved
+    private boolean saveFileInBucket(List<SegmentRequest> missingSegments) {
         try {
             Map<String, String> metadata = null;
             if(!missingSegments.isEmpty()) {
                 metadata = new HashMap<>();
                 metadata.put("missingSegments", missingSegments.toString());
             }
-            incomingBucket.putObject(getObjectName(), null, metadata, incomingDataFile.getData());
+            Path path = incomingDataFile.getPath();
+            if (path == null) {
+                incomingBucket.putObject(getObjectName(), null, metadata, new byte[0]);
+            } else {
+                incomingBucket.putObject(getObjectName(), null, metadata, path);
+            }
+            return true;
         } catch (IOException e) {
-            throw new RuntimeException("cannot save incoming file in bucket " + incomingBucket.getName(), e);
+            log.error("CFDP transaction {}, cannot save the incoming file in bucket {}", cfdpTransactionId,
+                    incomingBucket.getName(), e);
+            failureReason = "cannot save the incoming file in bucket " + incomingBucket.getName() + ": "
+                    + e.getMessage();
+            return false;
+        } finally {
+            closeDataFile();
         }
     }
 
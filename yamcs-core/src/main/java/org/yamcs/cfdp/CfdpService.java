@@ -1,6 +1,8 @@
 package org.yamcs.cfdp;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -23,6 +25,7 @@ import org.yamcs.cfdp.pdu.CfdpPacket;
 import org.yamcs.cfdp.pdu.FileDirectiveCode;
 import org.yamcs.cfdp.pdu.MetadataPacket;
 import org.yamcs.protobuf.TransferState;
+import org.yamcs.utils.FileUtils;
 import org.yamcs.yarch.Bucket;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.StreamSubscriber;
@@ -51,6 +54,7 @@ public class CfdpService extends AbstractYamcsService implements StreamSubscribe
     Stream cfdpIn;
     Stream cfdpOut;
     Bucket incomingBucket;
+    Path tmpDir;
     long mySourceId;
     long destinationId;
 
@@ -105,6 +109,15 @@ public class CfdpService extends AbstractYamcsService implements StreamSubscribe
         } catch (IOException e) {
             throw new InitException(e);
         }
+
+        // the incoming files are assembled here before being saved in the bucket
+        tmpDir = YamcsServer.getServer().getCacheDirectory().resolve("cfdp").resolve(yamcsInstance);
+        try {
+            Files.createDirectories(tmpDir);
+            FileUtils.deleteContents(tmpDir); // left over from a previous run
+        } catch (IOException e) {
+            throw new InitException(e);
+        }
         eventProducer = EventProducerFactory.getEventProducer(yamcsInstance, "CfdpService", 10000);
     }
 
@@ -214,7 +227,8 @@ public class CfdpService extends AbstractYamcsService implements StreamSubscribe
             eventProducer.sendInfo(ETYPE_TRANSFER_STARTED,
                     "Starting new CFDP downlink (" + mpkt.getHeader().getTransactionId() + ")"
                             + mpkt.getSourceFilename() + " -> " + mpkt.getDestinationFilename());
-            CfdpTransfer transfer = new CfdpIncomingTransfer(yamcsInstance, executor, config, mpkt, cfdpOut, incomingBucket, eventProducer);
+            CfdpTransfer transfer = new CfdpIncomingTransfer(yamcsInstance, executor, config, mpkt, cfdpOut,
+                    incomingBucket, tmpDir, eventProducer);
             transfer.setMonitor(this);
             return transfer;
         } else {
@@ -1,92 +1,227 @@
 package org.yamcs.cfdp;
 
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.SortedMap;
+import java.util.Map;
 import java.util.TreeMap;
 
 import org.yamcs.cfdp.pdu.SegmentRequest;
 
-public class DataFile {
+/**
+ * Assembles the segments of an incoming file.
+ * <p>
+ * The segments are written at their offset in a temporary file, such that the data does not have to be kept in memory;
+ * the parts not yet received are holes in the (sparse) file. The received parts are kept as a set of disjoint
+ * intervals, merged when they touch each other, such that a file received in order is represented by one interval
+ * regardless of its size.
+ * <p>
+ * The temporary file is created when the first segment is received and deleted by {@link #close()}.
+ *
+ * @author nm
+ *
+ */
+public class DataFile implements Closeable {
 
-    private SortedMap<Long, DataFileSegment> dataFileSegments = new TreeMap<Long, DataFileSegment>();
-    private long maxSize; // -1 == unbounded
+    // start offset -> end offset (exclusive) of the received parts; the intervals are disjoint and do not touch
+    private final TreeMap<Long, Long> receivedIntervals = new TreeMap<>();
+    private final long maxSize; // -1 == unbounded
+    private final Path directory; // null == default temporary-file directory
+
+    private Path path;
+    private FileChannel channel;
+    private volatile long receivedSize;
+    private boolean closed;
 
     public DataFile() {
         this(-1);
     }
 
     public DataFile(long maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     *
+     * @param maxSize
+     *            - the size of the file or -1 if unknown
+     * @param directory
+     *            - the directory where the temporary file is created; if null, the default temporary-file directory is
+     *            used
+     */
+    public DataFile(long maxSize, Path directory) {
         this.maxSize = maxSize;
+        this.directory = directory;
+    }
+
+    /**
+     * Writes the data of the segment in the file. The parts of the segment which have already been received are
+     * ignored, as well as the segments added after the file has been closed.
+     *
+     * @throws IOException
+     *             if the data cannot be written in the temporary file
+     */
+    public synchronized void addSegment(DataFileSegment segment) throws IOException {
+        long start = segment.getOffset();
+        long end = start + segment.getLength();
+        if (start == end || closed) {
+            return;
+        }
+        if (channel == null) {
+            path = directory == null ? Files.createTempFile("cfdp", ".part")
+                    : Files.createTempFile(directory, "cfdp", ".part");
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.SPARSE);
+        }
+        byte[] data = segment.getData();
+
+        // write the parts which are not covered by the intervals already received
+        long pos = start;
+        Map.Entry<Long, Long> floor = receivedIntervals.floorEntry(start);
+        if (floor != null && floor.getValue() > pos) {
+            pos = floor.getValue();
+        }
+        for (Map.Entry<Long, Long> e : receivedIntervals.subMap(start, false, end, false).entrySet()) {
+            if (pos < e.getKey()) {
+                write(data, start, pos, e.getKey());
+            }
+            pos = Math.max(pos, e.getValue());
+        }
+        if (pos < end) {
+            write(data, start, pos, end);
+        }
+        addInterval(start, end);
     }
 
-    public void addSegment(DataFileSegment segment) {
-        if (dataFileSegments.containsKey(segment.getOffset())) {
-            // we already have received a segment for this offset, ignoring this one.
-        } else {
-            dataFileSegments.put(segment.getOffset(), segment);
+    private void write(byte[] data, long dataOffset, long start, long end) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(data, (int) (start - dataOffset), (int) (end - start));
+        long pos = start;
+        while (buf.hasRemaining()) {
+            pos += channel.write(buf, pos);
         }
+        receivedSize += end - start;
     }
 
-    // returns a list of offset pairs of missing data chunks (that can represent one or more DataFileSegments)
-    public List<SegmentRequest> getMissingChunks() {
-        List<SegmentRequest> toReturn = new ArrayList<SegmentRequest>();
+    // adds the interval to the set, merging it with the intervals it overlaps or touches
+    private void addInterval(long start, long end) {
+        Map.Entry<Long, Long> floor = receivedIntervals.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+        }
+        Iterator<Map.Entry<Long, Long>> it = receivedIntervals.subMap(start, true, end, true).entrySet().iterator();
+        while (it.hasNext()) {
+            end = Math.max(end, it.next().getValue());
+            it.remove();
+        }
+        receivedIntervals.put(start, end);
+    }
+
+    /**
+     *
+     * @return the list of the offset pairs of the data chunks not yet received
+     */
+    public synchronized List<SegmentRequest> getMissingChunks() {
+        List<SegmentRequest> toReturn = new ArrayList<>();
         long startOffset = 0;
-        long endOffset = 0;
-        for (DataFileSegment segment : this.dataFileSegments.values()) {
-            if (segment.getOffset() != startOffset) {
-                endOffset = segment.getOffset();
-                toReturn.add(new SegmentRequest(startOffset, endOffset));
+        for (Map.Entry<Long, Long> e : receivedIntervals.entrySet()) {
+            if (e.getKey() != startOffset) {
+                toReturn.add(new SegmentRequest(startOffset, e.getKey()));
             }
-            startOffset = segment.getOffset() + segment.getLength();
+            startOffset = e.getValue();
         }
-        if (maxSize != -1 && startOffset != maxSize) {
+        if (maxSize != -1 && startOffset < maxSize) {
             toReturn.add(new SegmentRequest(startOffset, maxSize));
         }
         return toReturn;
     }
 
-    // returns the amount of bytes received of this Data Files.
-    // Missing intermediate chunks are not yet received and are therefore not counted
+    /**
+     *
+     * @return the number of bytes received; the missing intermediate chunks are not counted
+     */
     public long getReceivedSize() {
-        return this.dataFileSegments.values().stream().map(DataFileSegment::getLength).mapToInt(Integer::intValue)
-                .sum();
+        return receivedSize;
     }
 
     /**
-     * public long getSize() { Long last = dataFileSegments.lastKey(); return last +
-     * dataFileSegments.get(last).getLength(); }
+     * Returns the path of the temporary file containing the data; the missing chunks are filled with zeros. The file
+     * ends at the end of the last chunk received.
+     *
+     * @return the path of the file or null if no data has been received
+     * @throws IOException
+     *             if the file has been closed (and deleted)
      */
+    public synchronized Path getPath() throws IOException {
+        checkOpen();
+        if (channel != null) {
+            channel.force(false);
+        }
+        return path;
+    }
 
-    public byte[] getData() {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        dataFileSegments.entrySet().stream().forEach(e -> {
-            try {
-                baos.write((byte[]) e.getValue().getData());
-            } catch (IOException e1) {
-                throw new RuntimeException(e1);
+    /**
+     * Reads the whole data in memory; the missing chunks are filled with zeros.
+     */
+    public synchronized byte[] getData() throws IOException {
+        checkOpen();
+        if (channel == null) {
+            return new byte[0];
+        }
+        long size = receivedIntervals.lastEntry().getValue();
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("file too large to be read in memory: " + size + " bytes");
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) size);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, buf.position()) < 0) {
+                break;
             }
-        });
-        return baos.toByteArray();
+        }
+        return buf.array();
     }
 
     /**
-     * 
+     *
      * @return true if all the data has been received
      */
-    public boolean isComplete() {
-        long startOffset = 0;
-        for (DataFileSegment segment : this.dataFileSegments.values()) {
-            if (segment.getOffset() != startOffset) {
-               return false;
-            }
-            startOffset = segment.getOffset() + segment.getLength();
+    public synchronized boolean isComplete() {
+        if (receivedIntervals.isEmpty()) {
+            return maxSize <= 0;
         }
-        if (maxSize != -1 && startOffset != maxSize) {
+        if (receivedIntervals.size() > 1 || receivedIntervals.firstKey() != 0) {
             return false;
         }
-        return true;
+        return maxSize == -1 || receivedIntervals.firstEntry().getValue() >= maxSize;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("the data file has been closed");
+        }
+    }
+
+    /**
+     * Closes and deletes the temporary file; the data cannot be retrieved anymore afterwards.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (channel != null) {
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(path);
+                channel = null;
+                path = null;
+            }
+        }
     }
 }
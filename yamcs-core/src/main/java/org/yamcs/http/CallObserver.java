@@ -4,7 +4,6 @@ import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 
 import org.yamcs.NotThreadSafe;
 import org.yamcs.api.ExceptionMessage;
@@ -119,8 +118,7 @@ public class CallObserver implements Observer<Message> {
         } else {
             try (ByteBufOutputStream channelOut = new ByteBufOutputStream(body)) {
                 contentType = MediaType.JSON;
-                String str = ctx.printJson(responseMsg);
-                body.writeCharSequence(str, StandardCharsets.UTF_8);
+                ctx.printJson(responseMsg, channelOut);
             } catch (IOException e) {
                 HttpResponseStatus status = HttpResponseStatus.INTERNAL_SERVER_ERROR;
                 ctx.reportStatusCode(status.code());
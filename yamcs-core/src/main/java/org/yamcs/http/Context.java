@@ -1,5 +1,7 @@
 package org.yamcs.http;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
@@ -44,7 +46,7 @@ public abstract class Context {
     protected final Api<Context> api;
 
     private JsonFormat.Parser jsonParser;
-    private JsonFormat.Printer jsonPrinter;
+    private StreamingJsonPrinter jsonPrinter;
 
     /**
      * The request user.
@@ -71,7 +73,7 @@ public abstract class Context {
         log.setContext("c" + id);
 
         jsonParser = httpServer.getJsonParser();
-        jsonPrinter = httpServer.getJsonPrinter();
+        jsonPrinter = httpServer.getStreamingJsonPrinter();
     }
 
     boolean isDone() {
@@ -106,10 +108,17 @@ public abstract class Context {
         jsonParser.merge(json, builder);
     }
 
-    public String printJson(Message message) throws InvalidProtocolBufferException {
+    public String printJson(Message message) throws IOException {
         return jsonPrinter.print(message);
     }
 
+    /**
+     * Prints the message as JSON directly into the output stream.
+     */
+    public void printJson(Message message, OutputStream out) throws IOException {
+        jsonPrinter.print(message, out);
+    }
+
     /**
      * Get the number of bytes transferred as the result of this call. It should not include the http headers. Note that
      * the number might be increased before the data is sent so it will be wrong if there was an error sending data.
@@ -9,6 +9,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
@@ -368,7 +369,11 @@ public class HttpRequestHandler extends ChannelInboundHandlerAdapter {
         String subprotocols = "json, protobuf";
         pipeline.addLast(new WebSocketServerProtocolHandler(webSocketPath, subprotocols, false, maxFrameLength));
 
-        pipeline.addLast(new NewWebSocketFrameHandler(httpServer, req, user, maxDropped, waterMark));
+        List<String> batchedTopics = wsConfig.getList("batchedTopics");
+        long flushInterval = wsConfig.getLong("flushInterval");
+
+        pipeline.addLast(new NewWebSocketFrameHandler(httpServer, req, user, maxDropped, waterMark,
+                new HashSet<>(batchedTopics), flushInterval));
 
         // Effectively trigger websocket-handler (will attempt handshake)
         nettyContext.fireChannelRead(req);
@@ -130,6 +130,7 @@ public class HttpServer extends AbstractYamcsService {
     private ProtobufRegistry protobufRegistry = new ProtobufRegistry();
     private JsonFormat.Parser jsonParser;
     private JsonFormat.Printer jsonPrinter;
+    private StreamingJsonPrinter streamingJsonPrinter;
 
     private TokenStore tokenStore = new TokenStore();
 
@@ -158,6 +159,9 @@ public class HttpServer extends AbstractYamcsService {
         websocketSpec.addOption("writeBufferWaterMark", OptionType.MAP).withSpec(lohiSpec).withApplySpecDefaults(true);
         websocketSpec.addOption("connectionCloseNumDroppedMsg", OptionType.INTEGER).withDefault(5);
         websocketSpec.addOption("maxFrameLength", OptionType.INTEGER).withDefault(65535);
+        websocketSpec.addOption("batchedTopics", OptionType.LIST).withElementType(OptionType.STRING)
+                .withDefault(Collections.emptyList());
+        websocketSpec.addOption("flushInterval", OptionType.INTEGER).withDefault(20);
 
         Spec spec = new Spec();
         spec.addOption("port", OptionType.INTEGER);
@@ -300,6 +304,7 @@ public class HttpServer extends AbstractYamcsService {
 
         jsonParser = JsonFormat.parser().usingTypeRegistry(typeRegistry);
         jsonPrinter = JsonFormat.printer().usingTypeRegistry(typeRegistry);
+        streamingJsonPrinter = new StreamingJsonPrinter(jsonPrinter);
 
         // Sort in a way that increases chances of a good URI match
         Collections.sort(routes);
@@ -442,6 +447,15 @@ public class HttpServer extends AbstractYamcsService {
         return jsonPrinter;
     }
 
+    /**
+     *
+     * @return a printer producing the same JSON as {@link #getJsonPrinter()}, but writing directly into a stream and
+     *         faster for the messages sent at high rate.
+     */
+    public StreamingJsonPrinter getStreamingJsonPrinter() {
+        return streamingJsonPrinter;
+    }
+
     public CorsConfig getCorsConfig() {
         return corsConfig;
     }
@@ -4,9 +4,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.yamcs.api.Observer;
 import org.yamcs.logging.Log;
@@ -19,6 +22,7 @@ import org.yamcs.security.User;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
 import com.google.protobuf.Any;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -27,7 +31,9 @@ import com.google.protobuf.Message;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoop;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.WriteBufferWaterMark;
 import io.netty.handler.codec.http.HttpRequest;
@@ -52,16 +58,36 @@ public class NewWebSocketFrameHandler extends SimpleChannelInboundHandler<WebSoc
 
     private WriteBufferWaterMark writeBufferWaterMark;
 
+    // the messages of these topics are written without flush and flushed together after flushInterval
+    private Set<String> batchedTopics;
+    private long flushInterval;
+    private boolean flushScheduled; // accessed only from the event loop
+
     private List<TopicContext> contexts = new ArrayList<>();
     private Map<Integer, Observer<Message>> clientObserversByCall = new HashMap<>();
 
     public NewWebSocketFrameHandler(HttpServer httpServer, HttpRequest req, User user, int connectionCloseNumDroppedMsg,
             WriteBufferWaterMark writeBufferWaterMark) {
+        this(httpServer, req, user, connectionCloseNumDroppedMsg, writeBufferWaterMark, Collections.emptySet(), 0);
+    }
+
+    /**
+     *
+     * @param batchedTopics
+     *            - the topics whose messages are not flushed one by one but together, at most flushInterval
+     *            milliseconds after the first of them has been written
+     * @param flushInterval
+     *            - in milliseconds
+     */
+    public NewWebSocketFrameHandler(HttpServer httpServer, HttpRequest req, User user, int connectionCloseNumDroppedMsg,
+            WriteBufferWaterMark writeBufferWaterMark, Set<String> batchedTopics, long flushInterval) {
         this.httpServer = httpServer;
         this.nettyRequest = req;
         this.user = user;
         this.connectionCloseNumDroppedMsg = connectionCloseNumDroppedMsg;
         this.writeBufferWaterMark = writeBufferWaterMark;
+        this.batchedTopics = batchedTopics;
+        this.flushInterval = flushInterval;
     }
 
     @Override
@@ -246,15 +272,70 @@ public class NewWebSocketFrameHandler extends SimpleChannelInboundHandler<WebSoc
     }
 
     void writeMessage(ChannelHandlerContext nettyContext, ServerMessage serverMessage) throws IOException {
-        if (protobuf) {
-            ByteBuf buf = nettyContext.alloc().buffer();
-            try (ByteBufOutputStream bufOut = new ByteBufOutputStream(buf)) {
+        writeMessage(nettyContext, serverMessage, null);
+    }
+
+    /**
+     * Writes the server message with the data (if not null) in its data field. In JSON, the data is printed directly
+     * without being packed into an {@link Any} message.
+     */
+    void writeMessage(ChannelHandlerContext nettyContext, ServerMessage serverMessage, Message data)
+            throws IOException {
+        WebSocketFrame frame;
+        ByteBuf buf = nettyContext.alloc().buffer();
+        try (ByteBufOutputStream bufOut = new ByteBufOutputStream(buf)) {
+            if (protobuf) {
+                if (data != null) {
+                    serverMessage = serverMessage.toBuilder()
+                            .setData(Any.pack(data, HttpServer.TYPE_URL_PREFIX))
+                            .build();
+                }
                 serverMessage.writeTo(bufOut);
+                frame = new BinaryWebSocketFrame(buf);
+            } else {
+                StreamingJsonPrinter printer = httpServer.getStreamingJsonPrinter();
+                try (JsonWriter out = StreamingJsonPrinter.newWriter(bufOut)) {
+                    out.beginObject();
+                    printer.printFields(serverMessage, out);
+                    if (data != null) {
+                        out.name("data");
+                        printer.printAny(HttpServer.TYPE_URL_PREFIX, data, out);
+                    }
+                    out.endObject();
+                }
+                frame = new TextWebSocketFrame(buf);
+            }
+        } catch (IOException | RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+
+        Channel channel = nettyContext.channel();
+        if (flushInterval > 0 && batchedTopics.contains(serverMessage.getType())) {
+            EventLoop eventLoop = channel.eventLoop();
+            if (eventLoop.inEventLoop()) {
+                writeBatched(channel, frame);
+            } else {
+                eventLoop.execute(() -> writeBatched(channel, frame));
             }
-            nettyContext.channel().writeAndFlush(new BinaryWebSocketFrame(buf));
         } else {
-            String json = httpServer.getJsonPrinter().print(serverMessage);
-            nettyContext.channel().writeAndFlush(new TextWebSocketFrame(json));
+            // this flushes also the batched messages written before
+            channel.writeAndFlush(frame);
+        }
+    }
+
+    // called from the event loop
+    private void writeBatched(Channel channel, WebSocketFrame frame) {
+        channel.write(frame);
+        if (!channel.isWritable()) {
+            // the unflushed messages count for the write buffer water mark; do not wait for the tick
+            channel.flush();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            channel.eventLoop().schedule(() -> {
+                flushScheduled = false;
+                channel.flush();
+            }, flushInterval, TimeUnit.MILLISECONDS);
         }
     }
 
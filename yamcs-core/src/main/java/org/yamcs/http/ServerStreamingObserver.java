@@ -5,7 +5,6 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.channels.ClosedChannelException;
-import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeUnit;
 
 import org.yamcs.NotThreadSafe;
@@ -74,8 +73,7 @@ public class ServerStreamingObserver implements Observer<Message> {
                 if (MediaType.PROTOBUF.equals(mediaType)) {
                     message.writeDelimitedTo(bufOut);
                 } else {
-                    String json = ctx.printJson(message);
-                    bufOut.write(json.getBytes(StandardCharsets.UTF_8));
+                    ctx.printJson(message, bufOut);
                 }
             }
 
@@ -0,0 +1,713 @@
+package org.yamcs.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.yamcs.protobuf.Commanding.CommandAssignmentOrBuilder;
+import org.yamcs.protobuf.Commanding.CommandHistoryAttributeOrBuilder;
+import org.yamcs.protobuf.Commanding.CommandHistoryEntry;
+import org.yamcs.protobuf.Commanding.CommandHistoryEntryOrBuilder;
+import org.yamcs.protobuf.Commanding.CommandIdOrBuilder;
+import org.yamcs.protobuf.Mdb.AlarmRangeOrBuilder;
+import org.yamcs.protobuf.Pvalue.ParameterData;
+import org.yamcs.protobuf.Pvalue.ParameterDataOrBuilder;
+import org.yamcs.protobuf.Pvalue.ParameterValue;
+import org.yamcs.protobuf.Pvalue.ParameterValueOrBuilder;
+import org.yamcs.protobuf.Yamcs.AggregateValueOrBuilder;
+import org.yamcs.protobuf.Yamcs.Event;
+import org.yamcs.protobuf.Yamcs.EventOrBuilder;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+import org.yamcs.protobuf.Yamcs.NamedObjectIdOrBuilder;
+import org.yamcs.protobuf.Yamcs.TmPacketData;
+import org.yamcs.protobuf.Yamcs.TmPacketDataOrBuilder;
+import org.yamcs.protobuf.Yamcs.Value;
+import org.yamcs.protobuf.Yamcs.ValueOrBuilder;
+
+import com.google.gson.stream.JsonWriter;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor.Syntax;
+import com.google.protobuf.Duration;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.Durations;
+import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.util.Timestamps;
+
+/**
+ * Prints protobuf messages as JSON directly into a stream, producing the same JSON (apart from white space) as
+ * {@link JsonFormat.Printer}.
+ * <p>
+ * The messages sent at high rate ({@link ParameterValue}, {@link ParameterData}, {@link Event},
+ * {@link CommandHistoryEntry}, {@link TmPacketData} and the messages they contain) are written with their generated
+ * accessors. The other messages are written field by field using their descriptors, with the list of fields to print
+ * computed once per message type. The well-known types which have a special JSON mapping (except {@link Timestamp} and
+ * {@link Duration}) as well as the {@link com.google.protobuf.Any} fields are delegated to the {@link JsonFormat}
+ * printer given in the constructor.
+ * <p>
+ * The extension fields are printed under their JSON name, like the regular fields, as {@link JsonFormat} does.
+ * <p>
+ * The instances are thread safe.
+ *
+ * @author nm
+ *
+ */
+public class StreamingJsonPrinter {
+    static final String WKT_PACKAGE = "google.protobuf.";
+
+    private static final Map<Descriptor, FieldsWriter> HOT_WRITERS = new HashMap<>();
+    static {
+        HOT_WRITERS.put(NamedObjectId.getDescriptor(),
+                (p, m, out) -> writeNamedObjectId((NamedObjectIdOrBuilder) m, out));
+        HOT_WRITERS.put(Value.getDescriptor(), (p, m, out) -> writeValue((ValueOrBuilder) m, out));
+        HOT_WRITERS.put(ParameterValue.getDescriptor(),
+                (p, m, out) -> writeParameterValue((ParameterValueOrBuilder) m, out));
+        HOT_WRITERS.put(ParameterData.getDescriptor(),
+                (p, m, out) -> writeParameterData((ParameterDataOrBuilder) m, out));
+        HOT_WRITERS.put(Event.getDescriptor(), (p, m, out) -> {
+            writeEvent((EventOrBuilder) m, out);
+            // the plugins can extend the events
+            writeExtensions(p, m, out);
+        });
+        HOT_WRITERS.put(TmPacketData.getDescriptor(),
+                (p, m, out) -> writeTmPacketData((TmPacketDataOrBuilder) m, out));
+        HOT_WRITERS.put(CommandHistoryEntry.getDescriptor(),
+                (p, m, out) -> writeCommandHistoryEntry((CommandHistoryEntryOrBuilder) m, out));
+    }
+
+    private final JsonFormat.Printer fallback;
+    private final Map<Descriptor, FieldsWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     *
+     * @param fallback
+     *            - printer used for the {@link com.google.protobuf.Any} fields and for the well-known types with a
+     *            special JSON mapping; it has to know the types which can be contained in the Any fields.
+     */
+    public StreamingJsonPrinter(JsonFormat.Printer fallback) {
+        this.fallback = fallback;
+        writers.putAll(HOT_WRITERS);
+    }
+
+    /**
+     * Creates a JSON writer encoding in UTF-8 to the output stream. The writer has to be closed (or flushed) for the
+     * data to reach the stream.
+     */
+    public static JsonWriter newWriter(OutputStream os) {
+        Writer w = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+        return new JsonWriter(w);
+    }
+
+    /**
+     * Prints the message to the output stream.
+     */
+    public void print(MessageOrBuilder message, OutputStream os) throws IOException {
+        JsonWriter out = newWriter(os);
+        print(message, out);
+        out.flush();
+    }
+
+    public String print(MessageOrBuilder message) throws IOException {
+        StringWriter sw = new StringWriter();
+        try (JsonWriter out = new JsonWriter(sw)) {
+            print(message, out);
+        }
+        return sw.toString();
+    }
+
+    /**
+     * Prints the message as a JSON value.
+     */
+    public void print(MessageOrBuilder message, JsonWriter out) throws IOException {
+        Descriptor d = message.getDescriptorForType();
+        if (d.getFullName().startsWith(WKT_PACKAGE) && printWellKnownType(message, out)) {
+            return;
+        }
+        out.beginObject();
+        getWriter(d).write(this, message, out);
+        out.endObject();
+    }
+
+    /**
+     * Prints the fields of the message as members of the JSON object currently being written.
+     */
+    public void printFields(MessageOrBuilder message, JsonWriter out) throws IOException {
+        getWriter(message.getDescriptorForType()).write(this, message, out);
+    }
+
+    /**
+     * Prints the JSON representation of a {@link com.google.protobuf.Any} field containing the message, without
+     * having to pack and unpack it.
+     */
+    public void printAny(String typeUrlPrefix, MessageOrBuilder message, JsonWriter out) throws IOException {
+        Descriptor d = message.getDescriptorForType();
+        out.beginObject();
+        out.name("@type").value(typeUrlPrefix + "/" + d.getFullName());
+        if (d.getFullName().startsWith(WKT_PACKAGE) && isSpecialWellKnownType(d)) {
+            out.name("value");
+            print(message, out);
+        } else {
+            printFields(message, out);
+        }
+        out.endObject();
+    }
+
+    private FieldsWriter getWriter(Descriptor d) {
+        FieldsWriter w = writers.get(d);
+        if (w == null) {
+            w = writers.computeIfAbsent(d, GenericWriter::new);
+        }
+        return w;
+    }
+
+    private static boolean isSpecialWellKnownType(Descriptor d) {
+        switch (d.getFullName()) {
+        case "google.protobuf.Any":
+        case "google.protobuf.Timestamp":
+        case "google.protobuf.Duration":
+        case "google.protobuf.FieldMask":
+        case "google.protobuf.Struct":
+        case "google.protobuf.Value":
+        case "google.protobuf.ListValue":
+        case "google.protobuf.DoubleValue":
+        case "google.protobuf.FloatValue":
+        case "google.protobuf.Int64Value":
+        case "google.protobuf.UInt64Value":
+        case "google.protobuf.Int32Value":
+        case "google.protobuf.UInt32Value":
+        case "google.protobuf.BoolValue":
+        case "google.protobuf.StringValue":
+        case "google.protobuf.BytesValue":
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    // returns false if the message is not a well-known type with a special representation
+    private boolean printWellKnownType(MessageOrBuilder message, JsonWriter out) throws IOException {
+        Descriptor d = message.getDescriptorForType();
+        if (message instanceof Timestamp) {
+            out.value(Timestamps.toString((Timestamp) message));
+        } else if (message instanceof Duration) {
+            out.value(Durations.toString((Duration) message));
+        } else if (isSpecialWellKnownType(d)) {
+            out.jsonValue(fallback.print(message));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    void printField(FieldDescriptor fd, Object value, JsonWriter out) throws IOException {
+        switch (fd.getType()) {
+        case INT32:
+        case SINT32:
+        case SFIXED32:
+            out.value((long) (Integer) value);
+            break;
+        case UINT32:
+        case FIXED32:
+            out.value(Integer.toUnsignedLong((Integer) value));
+            break;
+        case INT64:
+        case SINT64:
+        case SFIXED64:
+            out.value(Long.toString((Long) value));
+            break;
+        case UINT64:
+        case FIXED64:
+            out.value(Long.toUnsignedString((Long) value));
+            break;
+        case FLOAT:
+            writeFloat((Float) value, out);
+            break;
+        case DOUBLE:
+            writeDouble((Double) value, out);
+            break;
+        case BOOL:
+            out.value((Boolean) value);
+            break;
+        case STRING:
+            out.value((String) value);
+            break;
+        case BYTES:
+            writeBytes((ByteString) value, out);
+            break;
+        case ENUM:
+            EnumValueDescriptor evd = (EnumValueDescriptor) value;
+            if ("google.protobuf.NullValue".equals(fd.getEnumType().getFullName())) {
+                out.nullValue();
+            } else if (evd.getIndex() == -1) { // unknown value of an open enum
+                out.value(evd.getNumber());
+            } else {
+                out.value(evd.getName());
+            }
+            break;
+        case MESSAGE:
+        case GROUP:
+            print((MessageOrBuilder) value, out);
+            break;
+        }
+    }
+
+    // the keys of the map are printed as strings
+    private void printMapKey(FieldDescriptor fd, Object key, JsonWriter out) throws IOException {
+        switch (fd.getType()) {
+        case UINT32:
+        case FIXED32:
+            out.name(Integer.toUnsignedString((Integer) key));
+            break;
+        case UINT64:
+        case FIXED64:
+            out.name(Long.toUnsignedString((Long) key));
+            break;
+        default:
+            out.name(key.toString());
+        }
+    }
+
+    static void writeFloat(float f, JsonWriter out) throws IOException {
+        if (Float.isNaN(f) || Float.isInfinite(f)) {
+            out.value(Float.toString(f));
+        } else {
+            // not widened to double, to print the same digits
+            out.jsonValue(Float.toString(f));
+        }
+    }
+
+    static void writeDouble(double d, JsonWriter out) throws IOException {
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+            out.value(Double.toString(d));
+        } else {
+            out.value(d);
+        }
+    }
+
+    static void writeBytes(ByteString b, JsonWriter out) throws IOException {
+        out.value(Base64.getEncoder().encodeToString(b.toByteArray()));
+    }
+
+    static void writeNamedObjectId(NamedObjectIdOrBuilder id, JsonWriter out) throws IOException {
+        if (id.hasName()) {
+            out.name("name").value(id.getName());
+        }
+        if (id.hasNamespace()) {
+            out.name("namespace").value(id.getNamespace());
+        }
+    }
+
+    static void writeValue(ValueOrBuilder v, JsonWriter out) throws IOException {
+        if (v.hasType()) {
+            out.name("type").value(v.getType().name());
+        }
+        if (v.hasFloatValue()) {
+            out.name("floatValue");
+            writeFloat(v.getFloatValue(), out);
+        }
+        if (v.hasDoubleValue()) {
+            out.name("doubleValue");
+            writeDouble(v.getDoubleValue(), out);
+        }
+        if (v.hasSint32Value()) {
+            out.name("sint32Value").value(v.getSint32Value());
+        }
+        if (v.hasUint32Value()) {
+            out.name("uint32Value").value(Integer.toUnsignedLong(v.getUint32Value()));
+        }
+        if (v.hasBinaryValue()) {
+            out.name("binaryValue");
+            writeBytes(v.getBinaryValue(), out);
+        }
+        if (v.hasStringValue()) {
+            out.name("stringValue").value(v.getStringValue());
+        }
+        if (v.hasTimestampValue()) {
+            out.name("timestampValue").value(Long.toString(v.getTimestampValue()));
+        }
+        if (v.hasUint64Value()) {
+            out.name("uint64Value").value(Long.toUnsignedString(v.getUint64Value()));
+        }
+        if (v.hasSint64Value()) {
+            out.name("sint64Value").value(Long.toString(v.getSint64Value()));
+        }
+        if (v.hasBooleanValue()) {
+            out.name("booleanValue").value(v.getBooleanValue());
+        }
+        if (v.hasAggregateValue()) {
+            AggregateValueOrBuilder av = v.getAggregateValueOrBuilder();
+            out.name("aggregateValue").beginObject();
+            if (av.getNameCount() > 0) {
+                out.name("name").beginArray();
+                for (String name : av.getNameList()) {
+                    out.value(name);
+                }
+                out.endArray();
+            }
+            if (av.getValueCount() > 0) {
+                out.name("value").beginArray();
+                for (int i = 0; i < av.getValueCount(); i++) {
+                    out.beginObject();
+                    writeValue(av.getValueOrBuilder(i), out);
+                    out.endObject();
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+        if (v.getArrayValueCount() > 0) {
+            out.name("arrayValue").beginArray();
+            for (int i = 0; i < v.getArrayValueCount(); i++) {
+                out.beginObject();
+                writeValue(v.getArrayValueOrBuilder(i), out);
+                out.endObject();
+            }
+            out.endArray();
+        }
+    }
+
+    static void writeAlarmRange(AlarmRangeOrBuilder r, JsonWriter out) throws IOException {
+        if (r.hasLevel()) {
+            out.name("level").value(r.getLevel().name());
+        }
+        if (r.hasMinInclusive()) {
+            out.name("minInclusive");
+            writeDouble(r.getMinInclusive(), out);
+        }
+        if (r.hasMaxInclusive()) {
+            out.name("maxInclusive");
+            writeDouble(r.getMaxInclusive(), out);
+        }
+        if (r.hasMinExclusive()) {
+            out.name("minExclusive");
+            writeDouble(r.getMinExclusive(), out);
+        }
+        if (r.hasMaxExclusive()) {
+            out.name("maxExclusive");
+            writeDouble(r.getMaxExclusive(), out);
+        }
+    }
+
+    static void writeParameterValue(ParameterValueOrBuilder pv, JsonWriter out) throws IOException {
+        if (pv.hasId()) {
+            out.name("id").beginObject();
+            writeNamedObjectId(pv.getIdOrBuilder(), out);
+            out.endObject();
+        }
+        if (pv.hasRawValue()) {
+            out.name("rawValue").beginObject();
+            writeValue(pv.getRawValueOrBuilder(), out);
+            out.endObject();
+        }
+        if (pv.hasEngValue()) {
+            out.name("engValue").beginObject();
+            writeValue(pv.getEngValueOrBuilder(), out);
+            out.endObject();
+        }
+        if (pv.hasAcquisitionTime()) {
+            out.name("acquisitionTime").value(Long.toString(pv.getAcquisitionTime()));
+        }
+        if (pv.hasGenerationTime()) {
+            out.name("generationTime").value(Long.toString(pv.getGenerationTime()));
+        }
+        if (pv.hasAcquisitionStatus()) {
+            out.name("acquisitionStatus").value(pv.getAcquisitionStatus().name());
+        }
+        if (pv.hasProcessingStatus()) {
+            out.name("processingStatus").value(pv.getProcessingStatus());
+        }
+        if (pv.hasMonitoringResult()) {
+            out.name("monitoringResult").value(pv.getMonitoringResult().name());
+        }
+        if (pv.hasRangeCondition()) {
+            out.name("rangeCondition").value(pv.getRangeCondition().name());
+        }
+        if (pv.hasAcquisitionTimeUTC()) {
+            out.name("acquisitionTimeUTC").value(pv.getAcquisitionTimeUTC());
+        }
+        if (pv.hasGenerationTimeUTC()) {
+            out.name("generationTimeUTC").value(pv.getGenerationTimeUTC());
+        }
+        if (pv.getAlarmRangeCount() > 0) {
+            out.name("alarmRange").beginArray();
+            for (int i = 0; i < pv.getAlarmRangeCount(); i++) {
+                out.beginObject();
+                writeAlarmRange(pv.getAlarmRangeOrBuilder(i), out);
+                out.endObject();
+            }
+            out.endArray();
+        }
+        if (pv.hasExpireMillis()) {
+            out.name("expireMillis").value(Long.toString(pv.getExpireMillis()));
+        }
+        if (pv.hasNumericId()) {
+            out.name("numericId").value(Integer.toUnsignedLong(pv.getNumericId()));
+        }
+    }
+
+    /**
+     * Writes the parameters of the parameter data as a JSON array.
+     */
+    public static void writeParameterList(ParameterDataOrBuilder pd, JsonWriter out) throws IOException {
+        out.beginArray();
+        for (int i = 0; i < pd.getParameterCount(); i++) {
+            out.beginObject();
+            writeParameterValue(pd.getParameterOrBuilder(i), out);
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    static void writeParameterData(ParameterDataOrBuilder pd, JsonWriter out) throws IOException {
+        if (pd.getParameterCount() > 0) {
+            out.name("parameter");
+            writeParameterList(pd, out);
+        }
+        if (pd.hasGroup()) {
+            out.name("group").value(pd.getGroup());
+        }
+        if (pd.hasGenerationTime()) {
+            out.name("generationTime").value(Long.toString(pd.getGenerationTime()));
+        }
+        if (pd.hasSeqNum()) {
+            out.name("seqNum").value(pd.getSeqNum());
+        }
+        if (pd.hasSubscriptionId()) {
+            out.name("subscriptionId").value(pd.getSubscriptionId());
+        }
+    }
+
+    static void writeEvent(EventOrBuilder e, JsonWriter out) throws IOException {
+        if (e.hasSource()) {
+            out.name("source").value(e.getSource());
+        }
+        if (e.hasGenerationTime()) {
+            out.name("generationTime").value(Long.toString(e.getGenerationTime()));
+        }
+        if (e.hasReceptionTime()) {
+            out.name("receptionTime").value(Long.toString(e.getReceptionTime()));
+        }
+        if (e.hasSeqNumber()) {
+            out.name("seqNumber").value(e.getSeqNumber());
+        }
+        if (e.hasType()) {
+            out.name("type").value(e.getType());
+        }
+        if (e.hasMessage()) {
+            out.name("message").value(e.getMessage());
+        }
+        if (e.hasSeverity()) {
+            out.name("severity").value(e.getSeverity().name());
+        }
+        if (e.hasGenerationTimeUTC()) {
+            out.name("generationTimeUTC").value(e.getGenerationTimeUTC());
+        }
+        if (e.hasReceptionTimeUTC()) {
+            out.name("receptionTimeUTC").value(e.getReceptionTimeUTC());
+        }
+        if (e.hasCreatedBy()) {
+            out.name("createdBy").value(e.getCreatedBy());
+        }
+    }
+
+    /**
+     * Writes the extension fields set in the message, named by their JSON name.
+     */
+    static void writeExtensions(StreamingJsonPrinter p, MessageOrBuilder m, JsonWriter out) throws IOException {
+        for (Map.Entry<FieldDescriptor, Object> e : m.getAllFields().entrySet()) {
+            FieldDescriptor fd = e.getKey();
+            if (!fd.isExtension()) {
+                continue;
+            }
+            out.name(fd.getJsonName());
+            if (fd.isRepeated()) {
+                out.beginArray();
+                for (Object o : (List<?>) e.getValue()) {
+                    p.printField(fd, o, out);
+                }
+                out.endArray();
+            } else {
+                p.printField(fd, e.getValue(), out);
+            }
+        }
+    }
+
+    static void writeTmPacketData(TmPacketDataOrBuilder tm, JsonWriter out) throws IOException {
+        if (tm.hasPacket()) {
+            out.name("packet");
+            writeBytes(tm.getPacket(), out);
+        }
+        if (tm.hasSequenceNumber()) {
+            out.name("sequenceNumber").value(tm.getSequenceNumber());
+        }
+        if (tm.hasId()) {
+            out.name("id").beginObject();
+            writeNamedObjectId(tm.getIdOrBuilder(), out);
+            out.endObject();
+        }
+        if (tm.hasReceptionTime()) {
+            out.name("receptionTime").value(Timestamps.toString(tm.getReceptionTime()));
+        }
+        if (tm.hasGenerationTime()) {
+            out.name("generationTime").value(Timestamps.toString(tm.getGenerationTime()));
+        }
+    }
+
+    static void writeCommandId(CommandIdOrBuilder id, JsonWriter out) throws IOException {
+        if (id.hasGenerationTime()) {
+            out.name("generationTime").value(Long.toString(id.getGenerationTime()));
+        }
+        if (id.hasOrigin()) {
+            out.name("origin").value(id.getOrigin());
+        }
+        if (id.hasSequenceNumber()) {
+            out.name("sequenceNumber").value(id.getSequenceNumber());
+        }
+        if (id.hasCommandName()) {
+            out.name("commandName").value(id.getCommandName());
+        }
+    }
+
+    static void writeCommandHistoryEntry(CommandHistoryEntryOrBuilder entry, JsonWriter out) throws IOException {
+        if (entry.hasCommandId()) {
+            out.name("commandId").beginObject();
+            writeCommandId(entry.getCommandIdOrBuilder(), out);
+            out.endObject();
+        }
+        if (entry.getAttrCount() > 0) {
+            out.name("attr").beginArray();
+            for (int i = 0; i < entry.getAttrCount(); i++) {
+                CommandHistoryAttributeOrBuilder attr = entry.getAttrOrBuilder(i);
+                out.beginObject();
+                if (attr.hasName()) {
+                    out.name("name").value(attr.getName());
+                }
+                if (attr.hasValue()) {
+                    out.name("value").beginObject();
+                    writeValue(attr.getValueOrBuilder(), out);
+                    out.endObject();
+                }
+                if (attr.hasTime()) {
+                    out.name("time").value(Long.toString(attr.getTime()));
+                }
+                out.endObject();
+            }
+            out.endArray();
+        }
+        if (entry.hasGenerationTimeUTC()) {
+            out.name("generationTimeUTC").value(entry.getGenerationTimeUTC());
+        }
+        if (entry.getAssignmentCount() > 0) {
+            out.name("assignment").beginArray();
+            for (int i = 0; i < entry.getAssignmentCount(); i++) {
+                CommandAssignmentOrBuilder assignment = entry.getAssignmentOrBuilder(i);
+                out.beginObject();
+                if (assignment.hasName()) {
+                    out.name("name").value(assignment.getName());
+                }
+                if (assignment.hasValue()) {
+                    out.name("value").beginObject();
+                    writeValue(assignment.getValueOrBuilder(), out);
+                    out.endObject();
+                }
+                if (assignment.hasUserInput()) {
+                    out.name("userInput").value(assignment.getUserInput());
+                }
+                out.endObject();
+            }
+            out.endArray();
+        }
+    }
+
+    @FunctionalInterface
+    interface FieldsWriter {
+        void write(StreamingJsonPrinter printer, MessageOrBuilder message, JsonWriter out) throws IOException;
+    }
+
+    /**
+     * Writes the fields of a message type using its descriptor
+     */
+    static class GenericWriter implements FieldsWriter {
+        final FieldDescriptor[] fields;
+        final String[] names;
+        // true if the field is printed only if it has been set, false if it is printed if it is not the default
+        final boolean[] presence;
+        final boolean extendable;
+
+        GenericWriter(Descriptor d) {
+            fields = d.getFields().toArray(new FieldDescriptor[0]);
+            names = new String[fields.length];
+            presence = new boolean[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                FieldDescriptor fd = fields[i];
+                names[i] = fd.getJsonName();
+                presence[i] = fd.getJavaType() == FieldDescriptor.JavaType.MESSAGE
+                        || fd.getContainingOneof() != null
+                        || fd.getFile().getSyntax() != Syntax.PROTO3;
+            }
+            extendable = d.isExtendable();
+        }
+
+        @Override
+        public void write(StreamingJsonPrinter p, MessageOrBuilder m, JsonWriter out) throws IOException {
+            for (int i = 0; i < fields.length; i++) {
+                FieldDescriptor fd = fields[i];
+                if (fd.isRepeated()) {
+                    int n = m.getRepeatedFieldCount(fd);
+                    if (n == 0) {
+                        continue;
+                    }
+                    out.name(names[i]);
+                    if (fd.isMapField()) {
+                        writeMap(p, fd, m, n, out);
+                    } else {
+                        out.beginArray();
+                        for (int j = 0; j < n; j++) {
+                            p.printField(fd, m.getRepeatedField(fd, j), out);
+                        }
+                        out.endArray();
+                    }
+                } else if (presence[i]) {
+                    if (m.hasField(fd)) {
+                        out.name(names[i]);
+                        p.printField(fd, m.getField(fd), out);
+                    }
+                } else {
+                    Object v = m.getField(fd);
+                    if (!v.equals(fd.getDefaultValue())) {
+                        out.name(names[i]);
+                        p.printField(fd, v, out);
+                    }
+                }
+            }
+            if (extendable) {
+                writeExtensions(p, m, out);
+            }
+        }
+
+        private void writeMap(StreamingJsonPrinter p, FieldDescriptor fd, MessageOrBuilder m, int n, JsonWriter out)
+                throws IOException {
+            Descriptor entryType = fd.getMessageType();
+            FieldDescriptor keyField = entryType.findFieldByName("key");
+            FieldDescriptor valueField = entryType.findFieldByName("value");
+            out.beginObject();
+            for (int j = 0; j < n; j++) {
+                MessageOrBuilder entry = (MessageOrBuilder) m.getRepeatedField(fd, j);
+                p.printMapKey(keyField, entry.getField(keyField), out);
+                p.printField(valueField, entry.getField(valueField), out);
+            }
+            out.endObject();
+        }
+    }
+}
@@ -10,7 +10,6 @@ import org.yamcs.logging.Log;
 import org.yamcs.protobuf.Reply;
 import org.yamcs.protobuf.ServerMessage;
 
-import com.google.protobuf.Any;
 import com.google.protobuf.Message;
 
 public class WebSocketObserver implements Observer<Message> {
@@ -84,14 +83,14 @@ public class WebSocketObserver implements Observer<Message> {
     }
 
     private void sendMessage(String type, Message data) {
+        // the data is packed only if the message is encoded in protobuf
         ServerMessage message = ServerMessage.newBuilder()
                 .setType(type)
                 .setCall(ctx.getId())
                 .setSeq(messageCount)
-                .setData(Any.pack(data, HttpServer.TYPE_URL_PREFIX))
                 .build();
         try {
-            frameHandler.writeMessage(ctx.nettyContext, message);
+            frameHandler.writeMessage(ctx.nettyContext, message, data);
         } catch (IOException e) {
             cancelCall(e.getMessage());
             throw new UncheckedIOException(e);
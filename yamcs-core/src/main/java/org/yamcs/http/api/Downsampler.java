@@ -10,6 +10,7 @@ import java.util.function.Consumer;
 import org.yamcs.logging.Log;
 import org.yamcs.parameter.ValueArray;
 import org.yamcs.parameterarchive.ParameterValueArray;
+import org.yamcs.parameterarchive.RollupSegment;
 import org.yamcs.protobuf.Yamcs.Value.Type;
 import org.yamcs.utils.UnsignedLong;
 
@@ -30,6 +31,7 @@ public class Downsampler implements Consumer<ParameterValueArray> {
     private long start;
     private long stop;
     private long lastSampleTime;
+    private long step;
 
     public Downsampler(long start, long stop) {
         this(start, stop, DEFAULT_SAMPLE_COUNT);
@@ -43,7 +45,7 @@ public class Downsampler implements Consumer<ParameterValueArray> {
         this.stop = stop;
 
         // Initialize intervals
-        long step = (stop - start) / sampleCount;
+        step = (stop - start) / sampleCount;
         if (step == 0) {
             step = 1;
         }
@@ -72,6 +74,49 @@ public class Downsampler implements Consumer<ParameterValueArray> {
         }
     }
 
+    /**
+     * Processes a value aggregated out of n values
+     */
+    public void process(long time, double min, double max, double avg, int n) {
+        if (time > stop || time < start) {
+            return;
+        }
+
+        Entry<Long, Sample> entry = samplesByTime.floorEntry(time);
+        if (entry == null) {
+            log.warn("No interval for value {}", avg);
+            return;
+        }
+
+        lastSampleTime = entry.getKey();
+        Sample sample = entry.getValue();
+        if (sample == null) {
+            samplesByTime.put(entry.getKey(), new Sample(entry.getKey(), min, max, avg, n));
+        } else {
+            sample.process(min, max, avg, n);
+        }
+    }
+
+    /**
+     * Processes the buckets of a rollup segment. The rollup segment is supposed to contain only values from the [start,
+     * stop] interval; the buckets starting before the start are counted in the first sample.
+     */
+    public void process(RollupSegment rs) {
+        for (int i = 0; i < rs.size(); i++) {
+            int n = rs.getCount(i);
+            long t = Math.max(start, rs.getBucketStart(i));
+            process(t, rs.getMin(i), rs.getMax(i), rs.getSum(i) / n, n);
+        }
+    }
+
+    /**
+     * 
+     * @return the duration of one sample interval
+     */
+    public long getStep() {
+        return step;
+    }
+
     public List<Sample> collect() {
         if (samplesByTime == null) {
             return Collections.emptyList();
@@ -202,6 +247,26 @@ public class Downsampler implements Consumer<ParameterValueArray> {
             n = 1;
         }
 
+        // sample aggregated out of n values
+        public Sample(long t, double min, double max, double avg, int n) {
+            this.t = t;
+            this.min = min;
+            this.max = max;
+            this.avg = avg;
+            this.n = n;
+        }
+
+        public void process(double min, double max, double avg, int n) {
+            if (min < this.min) {
+                this.min = min;
+            }
+            if (max > this.max) {
+                this.max = max;
+            }
+            this.n += n;
+            this.avg += (avg - this.avg) * n / this.n;
+        }
+
         public void process(double value) {
             if (value < min) {
                 min = value;
@@ -32,6 +32,7 @@ import org.yamcs.parameterarchive.ParameterId;
 import org.yamcs.parameterarchive.ParameterIdDb;
 import org.yamcs.parameterarchive.ParameterIdValueList;
 import org.yamcs.parameterarchive.ParameterRequest;
+import org.yamcs.parameterarchive.RollupSegment;
 import org.yamcs.protobuf.AbstractParameterArchiveApi;
 import org.yamcs.protobuf.Archive.GetParameterSamplesRequest;
 import org.yamcs.protobuf.Archive.ListParameterHistoryRequest;
@@ -189,9 +190,16 @@ public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
         }
 
         ParameterRequest pr = new ParameterRequest(start, stop, true, true, false, false);
+        pr.setParallel(parchive.isParallelRetrieval());
         SingleParameterRetriever spdr = new SingleParameterRetriever(parchive, pcache, pid, pr);
+        // use the coarsest rollups which still give at least one bucket per sample
+        int level = RollupSegment.getLevel(sampler.getStep());
         try {
-            spdr.retrieve(sampler);
+            if (level >= 0 && pid.getPath() == null) {
+                spdr.retrieveRollups(level, sampler);
+            } else {
+                spdr.retrieve(sampler);
+            }
         } catch (IOException e) {
             log.warn("Received exception during parameter retrieval", e);
             throw new InternalServerErrorException(e.getMessage());
@@ -237,6 +245,7 @@ public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
         ParameterRanger ranger = new ParameterRanger(minGap, maxGap);
 
         ParameterRequest pr = new ParameterRequest(start, stop, true, true, false, true);
+        pr.setParallel(parchive.isParallelRetrieval());
         SingleParameterRetriever spdr = new SingleParameterRetriever(parchive, pcache, pid, pr);
         try {
             spdr.retrieve(ranger);
@@ -313,6 +322,7 @@ public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
         Arrays.fill(pnames, requestedParamWithId.getQualifiedName());
         MultipleParameterValueRequest mpvr = new MultipleParameterValueRequest(start, stop, pnames, pidArray.toArray(),
                 pgidArray.toArray(), retrieveRawValues, ascending);
+        mpvr.setParallel(parchive.isParallelRetrieval());
         // do not use set limit because the data can be filtered down (e.g. noRepeat) and the limit applies the final
         // filtered data not to the input
         // one day the parameter archive will be smarter and do the filtering inside
@@ -14,6 +14,7 @@ import org.yamcs.parameter.ValueArray;
 import org.yamcs.parameterarchive.ParameterArchive;
 import org.yamcs.parameterarchive.ParameterRequest;
 import org.yamcs.parameterarchive.ParameterValueArray;
+import org.yamcs.parameterarchive.RollupRetrieval;
 import org.yamcs.parameterarchive.SingleParameterArchiveRetrieval;
 import org.yamcs.protobuf.Pvalue.ParameterStatus;
 import org.yamcs.utils.AggregateUtil;
@@ -60,6 +61,7 @@ public class SingleParameterRetriever {
             if(lastTime.getLong()!=Long.MAX_VALUE) {
                 spvr1 = new ParameterRequest(lastTime.getLong(), spvr.getStop(), spvr.isAscending(), 
                         spvr.isRetrieveEngineeringValues(), spvr.isRetrieveRawValues(), spvr.isRetrieveParameterStatus());
+                spvr1.setParallel(spvr.isParallel());
             }
         }
         
@@ -93,6 +95,34 @@ public class SingleParameterRetriever {
         }
     }
 
+    /**
+     * Retrieves the values in ascending order into the downsampler, using the rollup segments of the given level for
+     * the archived data and the values from the cache for the recent data.
+     * <p>
+     * The parameter request has to be ascending and the parameter cannot be an aggregate member.
+     */
+    public void retrieveRollups(int level, Downsampler sampler) throws IOException {
+        RollupRetrieval rr = new RollupRetrieval(parchive, pid.getQualifiedName(), spvr.getStart(), spvr.getStop(),
+                level);
+        try {
+            rr.retrieve(sampler::process);
+        } catch (RocksDBException e) {
+            throw new IOException(e);
+        }
+
+        if (cache != null) {
+            long lastTime = rr.getLastTime();
+            List<ParameterValue> pvlist = cache.getAllValues(pid.getParameter(), spvr.getStart(), spvr.getStop());
+            if (pvlist != null) {
+                for (ParameterValue pv : pvlist) {
+                    if (pv.getGenerationTime() > lastTime) {
+                        sampler.process(pv);
+                    }
+                }
+            }
+        }
+    }
+
     private List<ParameterValue> extractMembers(List<ParameterValue> pvlist, PathElement[] path) {
         List<ParameterValue> l = new ArrayList<ParameterValue>(pvlist.size());
         for(ParameterValue pv: pvlist) {
@@ -98,6 +98,23 @@ public class ConnectedWebSocketClient extends ConnectedClient implements Managem
         wsHandler.sendData(dataType, data);
     }
 
+    public boolean sendParameterData(int subscriptionId, EncodedParameterData data) {
+        return wsHandler.sendParameterData(subscriptionId, data);
+    }
+
+    /**
+     *
+     * @return true if the data sent with {@link #sendData(ProtoDataType, Message)} can be written to the channel
+     *         without being dropped
+     */
+    public boolean isWritable() {
+        return wsHandler.getChannel().isWritable();
+    }
+
+    void channelWritable() {
+        resources.forEach(WebSocketResource::channelWritable);
+    }
+
     @Override
     public void processorQuit() {
     }
@@ -0,0 +1,154 @@
+package org.yamcs.http.websocket;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.yamcs.http.StreamingJsonPrinter;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.ParameterValueWithId;
+import org.yamcs.protobuf.Pvalue.ParameterData;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+
+import com.google.gson.stream.JsonWriter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+/**
+ * The parameters of a {@link ParameterData} message encoded once and shared by all the web socket clients receiving
+ * the same values with the same ids.
+ * <p>
+ * The subscription id (and the envelope of the web socket message) differ from one client to another so they are not
+ * part of the shared encoding but are added by the {@link WebSocketEncoder} in front of it.
+ * <p>
+ * The encodings are computed the first time they are requested and kept in reference counted buffers until
+ * {@link #release()} is called; each frame written to a channel holds its own reference.
+ *
+ * @author nm
+ *
+ */
+public class EncodedParameterData {
+    private static final byte[] PARAMETER_NAME = "\"parameter\":".getBytes(StandardCharsets.UTF_8);
+
+    private final List<ParameterValueWithId> values;
+    private final Integer[] numericIds;
+
+    private ParameterData parameterData;
+    private ByteBuf protobuf;
+    private ByteBuf json;
+    private boolean released;
+
+    EncodedParameterData(List<ParameterValueWithId> values, Integer[] numericIds) {
+        this.values = values;
+        this.numericIds = numericIds;
+    }
+
+    static EncodedParameterData of(List<ParameterValueWithId> values, Map<NamedObjectId, Integer> numericIdMap) {
+        Integer[] nids = new Integer[values.size()];
+        for (int i = 0; i < nids.length; i++) {
+            nids[i] = numericIdMap.get(values.get(i).getId());
+        }
+        return new EncodedParameterData(values, nids);
+    }
+
+    List<ParameterValueWithId> getValues() {
+        return values;
+    }
+
+    Integer[] getNumericIds() {
+        return numericIds;
+    }
+
+    /**
+     *
+     * @return a message containing the parameter values but no subscription id
+     */
+    public synchronized ParameterData getParameterData() {
+        if (parameterData == null) {
+            ParameterData.Builder pd = ParameterData.newBuilder();
+            for (int i = 0; i < values.size(); i++) {
+                ParameterValueWithId pvwi = values.get(i);
+                ParameterValue pv = pvwi.getParameterValue();
+                if (numericIds[i] != null) {
+                    pd.addParameter(pv.toGpb(numericIds[i]));
+                } else {
+                    pd.addParameter(pv.toGpb(pvwi.getId()));
+                }
+            }
+            parameterData = pd.build();
+        }
+        return parameterData;
+    }
+
+    /**
+     * Returns the binary encoding of the parameter values as a sequence of <code>parameter</code> fields of the
+     * {@link ParameterData} message.
+     *
+     * @return a buffer which has to be released by the caller
+     */
+    public synchronized ByteBuf retainProtobuf() {
+        if (protobuf == null) {
+            ByteBuf buf = toBuffer(getParameterData().toByteArray());
+            if (released) {
+                return buf;
+            }
+            protobuf = buf;
+        }
+        return protobuf.retainedDuplicate();
+    }
+
+    /**
+     * Returns the JSON encoding of the {@link ParameterData} message without the opening brace, such that the
+     * subscription id can be written in front of it.
+     *
+     * @return a buffer which has to be released by the caller
+     */
+    public synchronized ByteBuf retainJson() throws IOException {
+        if (json == null) {
+            ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer();
+            try (ByteBufOutputStream bufOut = new ByteBufOutputStream(buf)) {
+                bufOut.write(PARAMETER_NAME);
+                JsonWriter out = StreamingJsonPrinter.newWriter(bufOut);
+                StreamingJsonPrinter.writeParameterList(getParameterData(), out);
+                out.flush();
+                bufOut.write('}');
+            } catch (IOException | RuntimeException e) {
+                buf.release();
+                throw e;
+            }
+            if (released) {
+                return buf;
+            }
+            json = buf;
+        }
+        return json.retainedDuplicate();
+    }
+
+    private static ByteBuf toBuffer(byte[] b) {
+        if (b.length == 0) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+        return PooledByteBufAllocator.DEFAULT.directBuffer(b.length).writeBytes(b);
+    }
+
+    /**
+     * Releases the shared buffers; the buffers retained by the frames remain valid until the frames are written.
+     * <p>
+     * The encodings requested afterwards are computed again and not kept.
+     */
+    synchronized void release() {
+        released = true;
+        if (protobuf != null) {
+            protobuf.release();
+            protobuf = null;
+        }
+        if (json != null) {
+            json.release();
+            json = null;
+        }
+    }
+}
@@ -2,17 +2,25 @@ package org.yamcs.http.websocket;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 
+import org.yamcs.http.StreamingJsonPrinter;
 import org.yamcs.protobuf.Yamcs.ProtoDataType;
 
 import com.google.gson.stream.JsonWriter;
 import com.google.protobuf.Message;
 import com.google.protobuf.util.JsonFormat;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 
 public class JsonEncoder implements WebSocketEncoder {
+    private static final StreamingJsonPrinter DATA_PRINTER = new StreamingJsonPrinter(JsonFormat.printer());
+    private static final byte[] TRAILER = "}]".getBytes(StandardCharsets.UTF_8);
 
     @Override
     public WebSocketFrame encodeReply(WebSocketReply reply) throws IOException {
@@ -63,11 +71,14 @@ public class JsonEncoder implements WebSocketEncoder {
         return new TextWebSocketFrame(sw.toString());
     }
 
+    /**
+     * Prints the data directly into the buffer of the frame, without intermediate strings.
+     */
     @Override
     public <T extends Message> WebSocketFrame encodeData(int sequenceNumber, ProtoDataType dataType, T message)
             throws IOException {
-        StringWriter sw = new StringWriter();
-        try (JsonWriter writer = new JsonWriter(sw)) {
+        ByteBuf buf = ByteBufAllocator.DEFAULT.buffer();
+        try (JsonWriter writer = StreamingJsonPrinter.newWriter(new ByteBufOutputStream(buf))) {
             writer.beginArray();
             writer.value(WSConstants.PROTOCOL_VERSION);
             writer.value(WSConstants.MESSAGE_TYPE_DATA);
@@ -79,12 +90,29 @@ public class JsonEncoder implements WebSocketEncoder {
             writer.value(dataType.name());
 
             writer.name("data");
-            String json = JsonFormat.printer().print(message);
-            writer.jsonValue(json);
+            DATA_PRINTER.print(message, writer);
 
             writer.endObject();
             writer.endArray();
+        } catch (IOException | RuntimeException e) {
+            buf.release();
+            throw e;
         }
-        return new TextWebSocketFrame(sw.toString());
+        return new TextWebSocketFrame(buf);
+    }
+
+    /**
+     * Writes the envelope of the message and the subscription id around the shared encoding of the parameter data.
+     */
+    @Override
+    public WebSocketFrame encodeParameterData(int sequenceNumber, int subscriptionId, EncodedParameterData data)
+            throws IOException {
+        String header = "[" + WSConstants.PROTOCOL_VERSION + "," + WSConstants.MESSAGE_TYPE_DATA + ","
+                + sequenceNumber + ",{\"dt\":\"" + ProtoDataType.PARAMETER.name() + "\",\"data\":{\"subscriptionId\":"
+                + subscriptionId + ",";
+        ByteBuf parameters = data.retainJson();
+        ByteBuf buf = Unpooled.wrappedBuffer(Unpooled.copiedBuffer(header, StandardCharsets.UTF_8), parameters,
+                Unpooled.wrappedBuffer(TRAILER));
+        return new TextWebSocketFrame(buf);
     }
 }
@@ -0,0 +1,103 @@
+package org.yamcs.http.websocket;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+import org.yamcs.parameter.ParameterValueWithId;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+
+/**
+ * Keeps the parameter values that could not be sent to a web socket client because its channel was not writable.
+ * <p>
+ * Only the newest value of each parameter is kept for each subscription, such that the memory used is bounded by the
+ * number of subscribed parameters and the client receives the latest state once the channel becomes writable again.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author nm
+ *
+ */
+class ParameterConflationBuffer {
+    // subscription id -> parameter id -> newest value
+    private final Map<Integer, Map<NamedObjectId, ParameterValueWithId>> pending = new LinkedHashMap<>();
+
+    private long bufferedCount; // values added to the buffer
+    private long conflatedCount; // values replaced by a newer value of the same parameter before being sent
+
+    /**
+     * Adds the values to the buffer, replacing the values of the same parameters already pending for the subscription.
+     */
+    void add(int subscriptionId, List<ParameterValueWithId> values) {
+        Map<NamedObjectId, ParameterValueWithId> m = pending.computeIfAbsent(subscriptionId,
+                k -> new LinkedHashMap<>());
+        for (ParameterValueWithId pvwi : values) {
+            if (m.put(pvwi.getId(), pvwi) != null) {
+                conflatedCount++;
+            }
+            bufferedCount++;
+        }
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Passes the pending values of each subscription to the sender and removes them from the buffer.
+     * <p>
+     * The sender returns false if it could not send the values (for example because the channel is no longer
+     * writable); in this case the draining stops and the values of that subscription and of the following ones are
+     * kept.
+     */
+    void drain(BiPredicate<Integer, List<ParameterValueWithId>> sender) {
+        Iterator<Map.Entry<Integer, Map<NamedObjectId, ParameterValueWithId>>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Map<NamedObjectId, ParameterValueWithId>> e = it.next();
+            if (!sender.test(e.getKey(), new ArrayList<>(e.getValue().values()))) {
+                return;
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * Discards the values pending for the subscription.
+     */
+    void remove(int subscriptionId) {
+        pending.remove(subscriptionId);
+    }
+
+    void clear() {
+        pending.clear();
+    }
+
+    /**
+     *
+     * @return the total number of values added to the buffer
+     */
+    long getBufferedCount() {
+        return bufferedCount;
+    }
+
+    /**
+     *
+     * @return the number of values which have been replaced by a newer value before being sent
+     */
+    long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    /**
+     *
+     * @return the ratio between the number of values added to the buffer and the number of values sent (or still
+     *         pending); 1 means that no value has been conflated
+     */
+    double getConflationRatio() {
+        long sent = bufferedCount - conflatedCount;
+        return sent == 0 ? 1 : (double) bufferedCount / sent;
+    }
+}
@@ -0,0 +1,151 @@
+package org.yamcs.http.websocket;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.yamcs.parameter.ParameterValueWithId;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+
+/**
+ * Finds the parameter data already encoded for another web socket client, such that the identical subscriptions of
+ * many clients (for example the same display open on many screens) are encoded only once.
+ * <p>
+ * The processor delivers the same {@link org.yamcs.parameter.ParameterValue} objects to all its subscribers, one after
+ * the other. Two deliveries are considered identical if they contain the same value objects (compared by reference)
+ * with the same ids in the same order.
+ * <p>
+ * The value objects are not always immutable: the parameter cache marks the values it hands out as EXPIRED in place
+ * and the same objects may be sent again when a client subscribes. The acquisition status of each value, as it was
+ * when the entry has been created, is therefore part of the key.
+ * <p>
+ * A single cache is shared by all the processors rather than one per processor; the values of different processors
+ * are different objects so their entries cannot be mixed up. It only has to be large enough to hold the distinct
+ * subscriptions of one delivery cycle. The least recently used entries are evicted.
+ *
+ * @author nm
+ *
+ */
+public class ParameterDataCache {
+    static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private final Map<Key, EncodedParameterData> entries;
+    private long hitCount;
+    private long missCount;
+
+    public ParameterDataCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    @SuppressWarnings("serial")
+    public ParameterDataCache(int maxEntries) {
+        entries = new LinkedHashMap<Key, EncodedParameterData>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, EncodedParameterData> eldest) {
+                if (size() > maxEntries) {
+                    eldest.getValue().release();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the encoded data for the values, creating it if no identical data has been encoded recently.
+     *
+     * @param values
+     * @param numericIdMap
+     *            - the numeric ids used by the client instead of the parameter ids
+     */
+    public EncodedParameterData get(List<ParameterValueWithId> values, Map<NamedObjectId, Integer> numericIdMap) {
+        EncodedParameterData data = EncodedParameterData.of(values, numericIdMap);
+        Key key = new Key(data);
+        synchronized (this) {
+            EncodedParameterData cached = entries.get(key);
+            if (cached != null) {
+                hitCount++;
+                return cached;
+            }
+            missCount++;
+            entries.put(key, data);
+        }
+        return data;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Releases all the encoded data.
+     */
+    public synchronized void clear() {
+        entries.values().forEach(EncodedParameterData::release);
+        entries.clear();
+    }
+
+    static class Key {
+        final EncodedParameterData data;
+        // the values may change status after the key is created
+        final AcquisitionStatus[] statuses;
+        final int hash;
+
+        Key(EncodedParameterData data) {
+            this.data = data;
+            List<ParameterValueWithId> values = data.getValues();
+            statuses = new AcquisitionStatus[values.size()];
+            int h = 1;
+            for (int i = 0; i < statuses.length; i++) {
+                ParameterValueWithId pvwi = values.get(i);
+                statuses[i] = pvwi.getParameterValue().getAcquisitionStatus();
+                h = 31 * h + System.identityHashCode(pvwi.getParameterValue());
+                h = 31 * h + pvwi.getId().hashCode();
+            }
+            hash = 31 * h + Arrays.hashCode(data.getNumericIds());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (hash != other.hash) {
+                return false;
+            }
+            List<ParameterValueWithId> l1 = data.getValues();
+            List<ParameterValueWithId> l2 = other.data.getValues();
+            if (l1.size() != l2.size()) {
+                return false;
+            }
+            for (int i = 0; i < l1.size(); i++) {
+                ParameterValueWithId pv1 = l1.get(i);
+                ParameterValueWithId pv2 = l2.get(i);
+                if (pv1.getParameterValue() != pv2.getParameterValue() || !pv1.getId().equals(pv2.getId())) {
+                    return false;
+                }
+            }
+            return Arrays.equals(statuses, other.statuses)
+                    && Arrays.equals(data.getNumericIds(), other.data.getNumericIds());
+        }
+    }
+}
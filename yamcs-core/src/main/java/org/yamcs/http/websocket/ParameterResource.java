@@ -17,7 +17,6 @@ import org.yamcs.NoPermissionException;
 import org.yamcs.Processor;
 import org.yamcs.ProcessorException;
 import org.yamcs.parameter.ParameterRequestManager;
-import org.yamcs.parameter.ParameterValue;
 import org.yamcs.parameter.ParameterValueWithId;
 import org.yamcs.parameter.ParameterWithIdConsumer;
 import org.yamcs.parameter.ParameterWithIdRequestHelper;
@@ -33,6 +32,13 @@ import org.yamcs.utils.StringConverter;
 
 /**
  * Provides realtime parameter subscription via web.
+ * <p>
+ * While the channel is not writable (because the client does not read fast enough), the parameter updates are not
+ * dropped but conflated: only the newest value of each parameter is kept for each subscription and the conflated set
+ * is sent as soon as the channel becomes writable again.
+ * <p>
+ * The parameter data is encoded through a {@link ParameterDataCache} shared by all the clients, such that the clients
+ * having identical subscriptions receive the same encoded buffer.
  *
  * @author nm
  *
@@ -41,6 +47,9 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
 
     private static final Logger log = LoggerFactory.getLogger(ParameterResource.class);
 
+    // shared by all the clients such that identical subscriptions are encoded only once
+    static final ParameterDataCache encodingCache = new ParameterDataCache();
+
     private ConnectedWebSocketClient client;
 
     private int firstSubscriptionId = -1;
@@ -51,6 +60,12 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
     Map<NamedObjectId, Integer> numericIdMap = new HashMap<>();
     AtomicInteger numericIdGenerator = new AtomicInteger();
 
+    // guards also the sending of the updates such that they are written in order
+    private final ParameterConflationBuffer conflationBuffer = new ParameterConflationBuffer();
+    // counters of the conflation buffer when the current period of non writability has started
+    private long bufferedCountStart;
+    private long conflatedCountStart;
+
     public ParameterResource(ConnectedWebSocketClient client) {
         this.client = client;
         Processor processor = client.getProcessor();
@@ -227,6 +242,9 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
 
         if (subscriptionId != -1) {
             pidrm.removeRequest(subscriptionId);
+            synchronized (conflationBuffer) {
+                conflationBuffer.remove(subscriptionId);
+            }
             if (subscriptionId == firstSubscriptionId) {
                 firstSubscriptionId = -1;
             }
@@ -240,18 +258,89 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
         if (paramList == null || paramList.isEmpty()) {
             return;
         }
-        ParameterData.Builder pd = ParameterData.newBuilder()
-                .setSubscriptionId(subscriptionId);
-        for (ParameterValueWithId pvwi : paramList) {
-            ParameterValue pv = pvwi.getParameterValue();
-            Integer nid = numericIdMap.get(pvwi.getId());
-            if (nid != null) {
-                pd.addParameter(pv.toGpb(nid));
-            } else {
-                pd.addParameter(pv.toGpb(pvwi.getId()));
+        synchronized (conflationBuffer) {
+            if (!conflationBuffer.isEmpty()) {
+                // send first what has been kept back, if the channel has become writable in the meanwhile
+                flushConflated();
+            }
+            if (conflationBuffer.isEmpty() && client.isWritable() && sendParameters(subscriptionId, paramList)) {
+                return;
+            }
+            // the channel may also have become unwritable after the check, in which case the values are kept as well
+            conflate(subscriptionId, paramList);
+        }
+    }
+
+    // called with the conflationBuffer lock held
+    private void conflate(int subscriptionId, List<ParameterValueWithId> paramList) {
+        if (conflationBuffer.isEmpty()) {
+            log.warn("Channel not writable for client [id={}, username={}], conflating parameter updates",
+                    client.getId(), client.getUser());
+            bufferedCountStart = conflationBuffer.getBufferedCount();
+            conflatedCountStart = conflationBuffer.getConflatedCount();
+        }
+        conflationBuffer.add(subscriptionId, paramList);
+    }
+
+    @Override
+    public void channelWritable() {
+        synchronized (conflationBuffer) {
+            if (!conflationBuffer.isEmpty()) {
+                flushConflated();
             }
         }
-        client.sendData(ProtoDataType.PARAMETER, pd.build());
+    }
+
+    // called with the conflationBuffer lock held
+    private void flushConflated() {
+        conflationBuffer.drain((subscriptionId, pvlist) -> {
+            // if the values cannot be sent, they stay in the buffer
+            return client.isWritable() && sendParameters(subscriptionId, pvlist);
+        });
+        if (conflationBuffer.isEmpty()) {
+            long buffered = conflationBuffer.getBufferedCount() - bufferedCountStart;
+            long conflated = conflationBuffer.getConflatedCount() - conflatedCountStart;
+            log.info("Sent conflated parameter updates to client [id={}, username={}]: {} values received, {} sent "
+                    + "(overall conflation ratio {})", client.getId(), client.getUser(), buffered,
+                    buffered - conflated, String.format("%.2f", conflationBuffer.getConflationRatio()));
+        }
+    }
+
+    // returns false if the values have not been written because the channel is not writable
+    private boolean sendParameters(int subscriptionId, List<ParameterValueWithId> paramList) {
+        return client.sendParameterData(subscriptionId, encodingCache.get(paramList, numericIdMap));
+    }
+
+    /**
+     *
+     * @return the number of parameter values that have been kept back because the channel was not writable
+     */
+    public long getConflationBufferedCount() {
+        synchronized (conflationBuffer) {
+            return conflationBuffer.getBufferedCount();
+        }
+    }
+
+    /**
+     *
+     * @return the number of parameter values that have not been sent because a newer value of the same parameter has
+     *         been received while the channel was not writable
+     */
+    public long getConflatedCount() {
+        synchronized (conflationBuffer) {
+            return conflationBuffer.getConflatedCount();
+        }
+    }
+
+    /**
+     *
+     * @return the ratio between the number of parameter values kept back while the channel was not writable and the
+     *         number of those sent; 1 if none has been conflated
+     */
+    public double getConflationRatio() {
+        synchronized (conflationBuffer) {
+            return conflationBuffer.getConflationRatio();
+        }
     }
 
     @Override
@@ -289,5 +378,8 @@ public class ParameterResource implements WebSocketResource, ParameterWithIdCons
         if (pidrm != null) {
             pidrm.quit();
         }
+        synchronized (conflationBuffer) {
+            conflationBuffer.clear();
+        }
     }
 }
@@ -23,7 +23,9 @@ import org.yamcs.protobuf.Yamcs.Event;
 import org.yamcs.protobuf.Yamcs.ProtoDataType;
 import org.yamcs.protobuf.Yamcs.TmPacketData;
 
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Message;
+import com.google.protobuf.WireFormat;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufOutputStream;
@@ -106,6 +108,52 @@ public class ProtobufEncoder implements WebSocketEncoder {
         return toFrame(serverMessage);
     }
 
+    /**
+     * Writes the envelope of the message and the subscription id in front of the shared encoding of the parameters.
+     * The fields of a protobuf message can be written in any order, so the subscription id does not have to follow
+     * the parameters.
+     */
+    @Override
+    public WebSocketFrame encodeParameterData(int sequenceNumber, int subscriptionId, EncodedParameterData data)
+            throws IOException {
+        ByteBuf parameters = data.retainProtobuf();
+        try {
+            int pdSize = CodedOutputStream.computeInt32Size(ParameterData.SUBSCRIPTIONID_FIELD_NUMBER, subscriptionId)
+                    + parameters.readableBytes();
+            int wsdSize = CodedOutputStream.computeUInt32Size(WebSocketSubscriptionData.SEQUENCENUMBER_FIELD_NUMBER,
+                    sequenceNumber)
+                    + CodedOutputStream.computeEnumSize(WebSocketSubscriptionData.TYPE_FIELD_NUMBER,
+                            ProtoDataType.PARAMETER_VALUE)
+                    + CodedOutputStream.computeTagSize(WebSocketSubscriptionData.PARAMETERDATA_FIELD_NUMBER)
+                    + CodedOutputStream.computeUInt32SizeNoTag(pdSize) + pdSize;
+
+            ByteBuf header = ctx.alloc().buffer(32);
+            try (ByteBufOutputStream bout = new ByteBufOutputStream(header)) {
+                CodedOutputStream cout = CodedOutputStream.newInstance(bout, 32);
+                cout.writeEnum(WebSocketServerMessage.TYPE_FIELD_NUMBER, MessageType.DATA_VALUE);
+                cout.writeTag(WebSocketServerMessage.DATA_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                cout.writeUInt32NoTag(wsdSize);
+                cout.writeUInt32(WebSocketSubscriptionData.SEQUENCENUMBER_FIELD_NUMBER, sequenceNumber);
+                cout.writeEnum(WebSocketSubscriptionData.TYPE_FIELD_NUMBER, ProtoDataType.PARAMETER_VALUE);
+                cout.writeTag(WebSocketSubscriptionData.PARAMETERDATA_FIELD_NUMBER,
+                        WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                cout.writeUInt32NoTag(pdSize);
+                cout.writeInt32(ParameterData.SUBSCRIPTIONID_FIELD_NUMBER, subscriptionId);
+                cout.flush();
+            } catch (IOException e) {
+                header.release();
+                throw e;
+            }
+            ByteBuf buf = ctx.alloc().compositeBuffer(2).addComponents(true, header, parameters);
+            parameters = null;
+            return new BinaryWebSocketFrame(buf);
+        } finally {
+            if (parameters != null) {
+                parameters.release();
+            }
+        }
+    }
+
     private BinaryWebSocketFrame toFrame(WebSocketServerMessage message) throws IOException {
         // TODO This assumes that the frame is quite small (which it should be, but)
         ByteBuf buf = ctx.alloc().buffer();
@@ -16,4 +16,11 @@ public interface WebSocketEncoder {
 
     <T extends Message> WebSocketFrame encodeData(int sequenceNumber, ProtoDataType dataType, T message)
             throws IOException;
+
+    /**
+     * Encodes parameter data whose parameters have been encoded in advance; the frame is equivalent to the one
+     * returned by {@link #encodeData(int, ProtoDataType, Message)} for the same data with the subscription id set.
+     */
+    WebSocketFrame encodeParameterData(int sequenceNumber, int subscriptionId, EncodedParameterData data)
+            throws IOException;
 }
@@ -190,6 +190,14 @@ public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocket
         }
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (wsClient != null && ctx.channel().isWritable()) {
+            wsClient.channelWritable();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     void addResource(String name, WebSocketResource resource) {
         if (resourcesByName.containsKey(name)) {
             throw new ConfigurationException("A resource named '" + name + "' is already being served");
@@ -243,11 +251,31 @@ public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocket
      * The websocket clients will know when the messages have been dropped from the sequence count.
      */
     public <T extends Message> void sendData(ProtoDataType dataType, T data) {
+        sendEncodedData(dataType, seq -> getEncoder().encodeData(seq, dataType, data));
+    }
+
+    /**
+     * Sends parameter data whose parameters have been encoded in advance, possibly for other clients as well. The
+     * same rules as for {@link #sendData(ProtoDataType, Message)} apply, except that the data is not counted as
+     * dropped if the channel is not writable; the caller is expected to keep it and send it later.
+     *
+     * @return true if the data has been written to the channel
+     */
+    public boolean sendParameterData(int subscriptionId, EncodedParameterData data) {
+        if (channel.isOpen() && !channel.isWritable()) {
+            return false;
+        }
+        return sendEncodedData(ProtoDataType.PARAMETER,
+                seq -> getEncoder().encodeParameterData(seq, subscriptionId, data));
+    }
+
+    // returns true if the data has been written to the channel
+    private boolean sendEncodedData(ProtoDataType dataType, FrameEncoding encoding) {
         dataSeqCount++;
         if (!channel.isOpen()) {
             log.info("Skipping update of type {}. Channel is already closed", dataType);
             ctx.close();
-            return;
+            return false;
         }
 
         if (!channel.isWritable()) {
@@ -260,19 +288,26 @@ public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocket
                         droppedWrites, wsClient.getId(), wsClient.getUser());
                 ctx.close();
             }
-            return;
+            return false;
         }
         droppedWrites = 0;
         try {
-            WebSocketFrame frame = getEncoder().encodeData(dataSeqCount, dataType, data);
+            WebSocketFrame frame = encoding.encode(dataSeqCount);
             channel.writeAndFlush(frame);
+            return true;
         } catch (IOException e) {
             log.warn(String.format("Closing channel due to encoding exception for data of type %s", dataType), e);
             ctx.close();
+            return false;
         }
     }
 
     public Channel getChannel() {
         return channel;
     }
+
+    @FunctionalInterface
+    private interface FrameEncoding {
+        WebSocketFrame encode(int sequenceNumber) throws IOException;
+    }
 }
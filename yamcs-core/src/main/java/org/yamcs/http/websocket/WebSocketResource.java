@@ -71,4 +71,11 @@ public interface WebSocketResource {
      * Called when the web socket is closed
      */
     void socketClosed();
+
+    /**
+     * Called when the channel becomes writable again after the outbound buffer has been full. Resources which keep
+     * data back while the channel is not writable can send it now.
+     */
+    default void channelWritable() {
+    }
 }
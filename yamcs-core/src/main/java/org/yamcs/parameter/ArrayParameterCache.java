@@ -43,7 +43,12 @@ public class ArrayParameterCache implements ParameterCache {
 
     @Override
     public void update(Collection<ParameterValue> pvs) {
-        Map<Long, SortedParameterList> m = new HashMap<>();
+        // most of the deliveries contain parameters with the same generation time; the map is only created when they
+        // don't
+        long firstTime = TimeEncoding.INVALID_INSTANT;
+        SortedParameterList firstList = null;
+        Map<Long, SortedParameterList> m = null;
+
         for (ParameterValue pv : pvs) {
             long t = pv.getGenerationTime();
             if (t < cacheStartTime) {
@@ -52,20 +57,30 @@ public class ArrayParameterCache implements ParameterCache {
             if (!(cacheConfig.cacheAll || parametersToCache.containsKey(pv.getParameter()))) {
                 continue;
             }
-            SortedParameterList l = m.get(t);
-            if (l == null) {
-                l = new SortedParameterList(pidMap);
-                m.put(t, l);
+            SortedParameterList l;
+            if (firstList == null) {
+                firstTime = t;
+                firstList = l = new SortedParameterList(pidMap);
+            } else if (t == firstTime) {
+                l = firstList;
+            } else {
+                if (m == null) {
+                    m = new HashMap<>();
+                }
+                l = m.get(t);
+                if (l == null) {
+                    l = new SortedParameterList(pidMap);
+                    m.put(t, l);
+                }
             }
             l.add(pv);
         }
-        long maxTimestamp = -1;
-        for (Map.Entry<Long, SortedParameterList> entry : m.entrySet()) {
-            long t = entry.getKey();
-            SortedParameterList pvList = entry.getValue();
-            addToCache(t, pvList);
-            if (t > maxTimestamp) {
-                maxTimestamp = t;
+        if (firstList != null) {
+            addToCache(firstTime, firstList);
+        }
+        if (m != null) {
+            for (Map.Entry<Long, SortedParameterList> entry : m.entrySet()) {
+                addToCache(entry.getKey(), entry.getValue());
             }
         }
     }
@@ -1,13 +1,21 @@
 package org.yamcs.parameter;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.yamcs.xtce.Parameter;
 
 /**
  * Cache for the last known value of each parameter.
- * 
+ * <p>
+ * The values of the parameters having an index assigned by the XtceDb (see {@link Parameter#getIndex()}) are stored
+ * in arrays addressed by that index. The arrays are allocated in chunks of fixed size as parameters with higher
+ * indices are encountered; the chunks are never copied such that a concurrent update cannot be lost. The parameters
+ * without index (not part of the XtceDb) are stored in a hash map.
  * 
  * thread safe
  * 
@@ -19,8 +27,17 @@ import org.yamcs.xtce.Parameter;
 // - we will need to allow in limited cases multiple historical values to be kept. This will correspond to the ParameterInstanceRef with instance<0
 // - 
 public class LastValueCache {
-    ConcurrentHashMap<Parameter, ParameterValue> m = new ConcurrentHashMap<>();
-    
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    @SuppressWarnings("unchecked")
+    private volatile AtomicReferenceArray<ParameterValue>[] chunks = new AtomicReferenceArray[0];
+    private final AtomicInteger indexedCount = new AtomicInteger();
+
+    // values of the parameters without index
+    final ConcurrentHashMap<Parameter, ParameterValue> m = new ConcurrentHashMap<>();
+
     /**
      * Returns the latest known value for p or null if there is none.
      * 
@@ -28,9 +45,18 @@ public class LastValueCache {
      * @return
      */
     public ParameterValue getValue(Parameter p) {
-        return m.get(p);
+        int idx = p.getIndex();
+        if (idx < 0) {
+            return m.get(p);
+        }
+        AtomicReferenceArray<ParameterValue>[] c = chunks;
+        int ci = idx >>> CHUNK_SHIFT;
+        if (ci >= c.length || c[ci] == null) {
+            return null;
+        }
+        return c[ci].get(idx & CHUNK_MASK);
     }
-    
+
     /**
      * Puts a new value in the map.
      * @param p
@@ -38,7 +64,15 @@ public class LastValueCache {
      * @return the previous value or null if there was none.
      */
     public ParameterValue put(Parameter p, ParameterValue pv) {
-        return m.put(p, pv);
+        int idx = p.getIndex();
+        if (idx < 0) {
+            return m.put(p, pv);
+        }
+        ParameterValue old = getChunk(idx >>> CHUNK_SHIFT).getAndSet(idx & CHUNK_MASK, pv);
+        if (old == null) {
+            indexedCount.incrementAndGet();
+        }
+        return old;
     }
 
     /**
@@ -51,13 +85,13 @@ public class LastValueCache {
         for(ParameterValue pv: params) {
             Parameter p = pv.getParameter();
             if(p!=null) {
-                m.put(p, pv);
+                put(p, pv);
             }
         }
     }
     
     public int size() {
-        return m.size();
+        return indexedCount.get() + m.size();
     }
 
     /**
@@ -65,6 +99,39 @@ public class LastValueCache {
      * @return
      */
     public Collection<ParameterValue> getValues() {
-        return m.values();
+        ArrayList<ParameterValue> l = new ArrayList<>(size());
+        for (AtomicReferenceArray<ParameterValue> chunk : chunks) {
+            if (chunk == null) {
+                continue;
+            }
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                ParameterValue pv = chunk.get(i);
+                if (pv != null) {
+                    l.add(pv);
+                }
+            }
+        }
+        l.addAll(m.values());
+        return l;
+    }
+
+    private AtomicReferenceArray<ParameterValue> getChunk(int ci) {
+        AtomicReferenceArray<ParameterValue>[] c = chunks;
+        if (ci < c.length && c[ci] != null) {
+            return c[ci];
+        }
+        synchronized (this) {
+            c = chunks;
+            if (ci >= c.length) {
+                c = Arrays.copyOf(c, Math.max(ci + 1, 2 * c.length));
+            } else if (c[ci] != null) {
+                return c[ci];
+            } else {
+                c = c.clone();
+            }
+            c[ci] = new AtomicReferenceArray<>(CHUNK_SIZE);
+            chunks = c;
+            return c[ci];
+        }
     }
 }
@@ -0,0 +1,420 @@
+package org.yamcs.parameter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+import org.yamcs.logging.Log;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.Parameter;
+
+/**
+ * Parameter cache storing the values of the numeric parameters in off-heap ring buffers.
+ * <p>
+ * Each parameter having numeric engineering and raw values (integer, float, boolean or timestamp) has its own ring
+ * buffer allocated with {@link ByteBuffer#allocateDirect(int)}. Each row of the buffer contains the generation time,
+ * the acquisition time and the engineering and raw values encoded as longs. Only the parameter status is kept on heap,
+ * the identical consecutive statuses sharing the same object. The {@link ParameterValue} objects are created only when
+ * the cache is read.
+ * <p>
+ * The buffers are written under an exclusive lock and read optimistically (seqlock style) using a
+ * {@link StampedLock}: a reader copies the rows it needs and validates the stamp afterwards, retrying under the read
+ * lock if a write has happened in the meanwhile. The update thread is therefore never blocked by the readers.
+ * <p>
+ * The values of the other parameters (strings, binaries, enumerations, aggregates and arrays) are passed to an
+ * {@link ArrayParameterCache}.
+ * <p>
+ * The buffers grow like the tables of the {@link ArrayParameterCache}: their capacity is doubled as long as they do
+ * not cover the configured duration, up to the configured maximum number of entries.
+ *
+ * @author nm
+ *
+ */
+public class OffHeapParameterCache implements ParameterCache {
+    static final int INITIAL_CAPACITY = 16;
+    // generation time, acquisition time, eng value, raw value
+    static final int ROW_SIZE = 32;
+
+    final Log log;
+    final ParameterCacheConfig cacheConfig;
+    final ConcurrentHashMap<Parameter, RingBuffer> buffers = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<Parameter, Boolean> parametersToCache;
+    final ArrayParameterCache heapCache;
+
+    public OffHeapParameterCache(String instance, ParameterCacheConfig cacheConfig) {
+        log = new Log(this.getClass(), instance);
+        this.cacheConfig = cacheConfig;
+        parametersToCache = cacheConfig.cacheAll ? null : new ConcurrentHashMap<>();
+        heapCache = new ArrayParameterCache(instance, cacheConfig);
+    }
+
+    @Override
+    public void update(Collection<ParameterValue> pvs) {
+        List<ParameterValue> nonNumeric = null;
+        for (ParameterValue pv : pvs) {
+            Parameter p = pv.getParameter();
+            if (!cacheConfig.cacheAll && !parametersToCache.containsKey(p)) {
+                continue;
+            }
+            Type engType = numericType(pv.getEngValue());
+            Type rawType = numericType(pv.getRawValue());
+            if (engType == null || (pv.getRawValue() != null && rawType == null)) {
+                if (nonNumeric == null) {
+                    nonNumeric = new ArrayList<>();
+                }
+                nonNumeric.add(pv);
+                continue;
+            }
+            RingBuffer rb = buffers.get(p);
+            if (rb == null || rb.engType != engType || rb.rawType != rawType) {
+                // new parameter or the type has changed; the old values are discarded
+                rb = new RingBuffer(p, engType, rawType);
+                buffers.put(p, rb);
+            }
+            rb.add(pv);
+        }
+        if (nonNumeric != null) {
+            heapCache.update(nonNumeric);
+        }
+    }
+
+    @Override
+    public List<ParameterValue> getValues(List<Parameter> plist) {
+        List<ParameterValue> result = new ArrayList<>(plist.size());
+        long now = TimeEncoding.getWallclockTime();
+        for (Parameter p : plist) {
+            ParameterValue pv = getLastValue(p);
+            if (pv == null) {
+                continue;
+            }
+            if ((pv.getAcquisitionStatus() == AcquisitionStatus.ACQUIRED) && pv.isExpired(now)) {
+                pv.setAcquisitionStatus(AcquisitionStatus.EXPIRED);
+            }
+            result.add(pv);
+        }
+        return result;
+    }
+
+    @Override
+    public ParameterValue getLastValue(Parameter p) {
+        RingBuffer rb = getRingBuffer(p);
+        ParameterValue pv = heapCache.getLastValue(p);
+        if (rb == null) {
+            return pv;
+        }
+        ParameterValue pv1 = rb.getLastValue();
+        if (pv == null || (pv1 != null && pv1.getGenerationTime() >= pv.getGenerationTime())) {
+            return pv1;
+        } else {
+            return pv;
+        }
+    }
+
+    @Override
+    public List<ParameterValue> getAllValues(Parameter p) {
+        return getAllValues(p, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public List<ParameterValue> getAllValues(Parameter p, long start, long stop) {
+        RingBuffer rb = getRingBuffer(p);
+        List<ParameterValue> heapValues = heapCache.getAllValues(p, start, stop);
+        if (rb == null) {
+            return heapValues;
+        }
+        List<ParameterValue> result = rb.getAllValues(start, stop);
+        if (heapValues != null) {
+            result.addAll(heapValues);
+            Collections.sort(result, (pv1, pv2) -> Long.compare(pv2.getGenerationTime(), pv1.getGenerationTime()));
+        }
+        return result.isEmpty() ? null : result;
+    }
+
+    @Override
+    public void clear() {
+        buffers.clear();
+        heapCache.clear();
+    }
+
+    private RingBuffer getRingBuffer(Parameter p) {
+        RingBuffer rb = buffers.get(p);
+        if (rb == null && !cacheConfig.cacheAll) {
+            parametersToCache.put(p, Boolean.TRUE);
+        }
+        return rb;
+    }
+
+    /**
+     *
+     * @return the type of the value if it can be stored in the ring buffer or null otherwise
+     */
+    static Type numericType(Value v) {
+        if (v == null) {
+            return null;
+        }
+        switch (v.getType()) {
+        case BOOLEAN:
+        case DOUBLE:
+        case FLOAT:
+        case SINT32:
+        case UINT32:
+        case SINT64:
+        case UINT64:
+        case TIMESTAMP:
+            return v.getType();
+        default:
+            return null;
+        }
+    }
+
+    static long encode(Value v) {
+        switch (v.getType()) {
+        case BOOLEAN:
+            return v.getBooleanValue() ? 1 : 0;
+        case DOUBLE:
+            return Double.doubleToRawLongBits(v.getDoubleValue());
+        case FLOAT:
+            return Float.floatToRawIntBits(v.getFloatValue());
+        case SINT32:
+            return v.getSint32Value();
+        case UINT32:
+            return v.getUint32Value();
+        case SINT64:
+            return v.getSint64Value();
+        case UINT64:
+            return v.getUint64Value();
+        case TIMESTAMP:
+            return v.getTimestampValue();
+        default:
+            throw new IllegalStateException("Unexpected type " + v.getType());
+        }
+    }
+
+    static Value decode(Type type, long x) {
+        switch (type) {
+        case BOOLEAN:
+            return ValueUtility.getBooleanValue(x != 0);
+        case DOUBLE:
+            return ValueUtility.getDoubleValue(Double.longBitsToDouble(x));
+        case FLOAT:
+            return ValueUtility.getFloatValue(Float.intBitsToFloat((int) x));
+        case SINT32:
+            return ValueUtility.getSint32Value((int) x);
+        case UINT32:
+            return ValueUtility.getUint32Value((int) x);
+        case SINT64:
+            return ValueUtility.getSint64Value(x);
+        case UINT64:
+            return ValueUtility.getUint64Value(x);
+        case TIMESTAMP:
+            return ValueUtility.getTimestampValue(x);
+        default:
+            throw new IllegalStateException("Unexpected type " + type);
+        }
+    }
+
+    /**
+     * Circular buffer holding the values of one parameter. The rows between tail (inclusive) and head (exclusive) are
+     * valid; when the buffer is full, head == tail.
+     */
+    class RingBuffer {
+        final Parameter param;
+        final Type engType;
+        final Type rawType;
+        final StampedLock lock = new StampedLock();
+
+        ByteBuffer buf;
+        ParameterStatus[] statuses;
+        int capacity;
+        int head;
+        int tail;
+        boolean full;
+
+        RingBuffer(Parameter param, Type engType, Type rawType) {
+            this.param = param;
+            this.engType = engType;
+            this.rawType = rawType;
+            this.capacity = Math.min(INITIAL_CAPACITY, Math.max(1, Integer.highestOneBit(cacheConfig.maxNumEntries)));
+            this.buf = ByteBuffer.allocateDirect(capacity * ROW_SIZE);
+            this.statuses = new ParameterStatus[capacity];
+        }
+
+        void add(ParameterValue pv) {
+            long t = pv.getGenerationTime();
+            long stamp = lock.writeLock();
+            try {
+                if (head != tail || full) {
+                    long tlast = buf.getLong(((head - 1) & (capacity - 1)) * ROW_SIZE);
+                    if (t < tlast) {
+                        // parameter older than the last one in the buffer -> ignore
+                        return;
+                    }
+                }
+                if (full) {
+                    long t0 = buf.getLong(tail * ROW_SIZE);
+                    if (t - t0 < cacheConfig.maxDuration && 2 * capacity <= cacheConfig.maxNumEntries) {
+                        doubleCapacity();
+                    } else {
+                        tail = (tail + 1) & (capacity - 1);
+                    }
+                }
+                int offset = head * ROW_SIZE;
+                buf.putLong(offset, t);
+                buf.putLong(offset + 8, pv.getAcquisitionTime());
+                buf.putLong(offset + 16, encode(pv.getEngValue()));
+                Value rv = pv.getRawValue();
+                buf.putLong(offset + 24, rv == null ? 0 : encode(rv));
+
+                ParameterStatus status = pv.getStatus();
+                ParameterStatus prevStatus = statuses[(head - 1) & (capacity - 1)];
+                if (prevStatus != null && prevStatus.equals(status)) {
+                    status = prevStatus;
+                }
+                statuses[head] = status;
+
+                head = (head + 1) & (capacity - 1);
+                full = (head == tail);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        ParameterValue getLastValue() {
+            long[] row = new long[4];
+            ParameterStatus[] status = new ParameterStatus[1];
+
+            long stamp = lock.tryOptimisticRead();
+            boolean found = readLast(row, status);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    found = readLast(row, status);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return found ? toParameterValue(row, 0, status[0]) : null;
+        }
+
+        List<ParameterValue> getAllValues(long start, long stop) {
+            long stamp = lock.tryOptimisticRead();
+            Rows rows = readAll(start, stop);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    rows = readAll(start, stop);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            List<ParameterValue> result = new ArrayList<>(rows.n);
+            for (int i = 0; i < rows.n; i++) {
+                result.add(toParameterValue(rows.data, 4 * i, rows.statuses[i]));
+            }
+            return result;
+        }
+
+        // the methods below may run concurrently with a write; they have to copy the fields locally and not fail
+        // because of an inconsistent state. Their result is discarded if the stamp does not validate.
+        private boolean readLast(long[] row, ParameterStatus[] status) {
+            ByteBuffer b = buf;
+            ParameterStatus[] st = statuses;
+            int c = st.length;
+            int h = head;
+            if (h == tail && !full) {
+                return false;
+            }
+            if (c * ROW_SIZE > b.capacity()) {
+                return false;
+            }
+            int r = (h - 1) & (c - 1);
+            int offset = r * ROW_SIZE;
+            for (int i = 0; i < 4; i++) {
+                row[i] = b.getLong(offset + 8 * i);
+            }
+            status[0] = st[r];
+            return true;
+        }
+
+        private Rows readAll(long start, long stop) {
+            ByteBuffer b = buf;
+            ParameterStatus[] st = statuses;
+            int c = st.length;
+            int h = head & (c - 1);
+            int t = tail & (c - 1);
+            int n = (h == t) ? (full ? c : 0) : (h - t) & (c - 1);
+            if (c * ROW_SIZE > b.capacity()) {
+                n = 0;
+            }
+
+            Rows rows = new Rows(n);
+            int r = h;
+            for (int i = 0; i < n; i++) {
+                r = (r - 1) & (c - 1);
+                int offset = r * ROW_SIZE;
+                long gentime = b.getLong(offset);
+                if (gentime > start && gentime <= stop) {
+                    int k = 4 * rows.n;
+                    rows.data[k] = gentime;
+                    for (int j = 1; j < 4; j++) {
+                        rows.data[k + j] = b.getLong(offset + 8 * j);
+                    }
+                    rows.statuses[rows.n++] = st[r];
+                }
+            }
+            return rows;
+        }
+
+        private ParameterValue toParameterValue(long[] data, int k, ParameterStatus status) {
+            ParameterValue pv = new ParameterValue(param);
+            pv.setGenerationTime(data[k]);
+            pv.setAcquisitionTime(data[k + 1]);
+            pv.setEngValue(decode(engType, data[k + 2]));
+            if (rawType != null) {
+                pv.setRawValue(decode(rawType, data[k + 3]));
+            }
+            pv.setStatus(status);
+            return pv;
+        }
+
+        private void doubleCapacity() {
+            int newCapacity = 2 * capacity;
+            ByteBuffer newBuf = ByteBuffer.allocateDirect(newCapacity * ROW_SIZE);
+            ParameterStatus[] newStatuses = new ParameterStatus[newCapacity];
+            // the buffer is full, copy from the tail (=head) to the end then from the beginning to the head
+            int k = 0;
+            for (int i = 0; i < capacity; i++) {
+                int r = (tail + i) & (capacity - 1);
+                for (int j = 0; j < ROW_SIZE; j += 8) {
+                    newBuf.putLong(k * ROW_SIZE + j, buf.getLong(r * ROW_SIZE + j));
+                }
+                newStatuses[k] = statuses[r];
+                k++;
+            }
+            buf = newBuf;
+            statuses = newStatuses;
+            tail = 0;
+            head = capacity;
+            capacity = newCapacity;
+            full = false;
+        }
+    }
+
+    static class Rows {
+        final long[] data;
+        final ParameterStatus[] statuses;
+        int n;
+
+        Rows(int size) {
+            data = new long[4 * size];
+            statuses = new ParameterStatus[size];
+        }
+    }
+}
@@ -13,12 +13,20 @@ public class ParameterCacheConfig {
     //maximum duration of the cache
     final long maxDuration;
     final int maxNumEntries;
-    
+    // if true, the values of the numeric parameters are stored off-heap
+    final boolean offHeap;
+
     public ParameterCacheConfig(boolean enabled, boolean cacheAll, long duration, int maxNumEntries) {
+        this(enabled, cacheAll, duration, maxNumEntries, false);
+    }
+
+    public ParameterCacheConfig(boolean enabled, boolean cacheAll, long duration, int maxNumEntries,
+            boolean offHeap) {
         this.enabled = enabled;
         this.cacheAll = cacheAll;
         this.maxDuration = duration;
         this.maxNumEntries = maxNumEntries;
+        this.offHeap = offHeap;
     }
     
     public ParameterCacheConfig() {
@@ -26,6 +34,7 @@ public class ParameterCacheConfig {
         this.cacheAll = false;
         this.maxDuration = 0;
         this.maxNumEntries = 0;
+        this.offHeap = false;
     }
 
     public ParameterCacheConfig(YConfiguration cacheConfig, Log log) {
@@ -43,11 +52,12 @@ public class ParameterCacheConfig {
         cacheAll = cacheConfig.getBoolean("cacheAll", false);
         maxDuration = 1000L * cacheConfig.getInt("duration", 300);
         maxNumEntries = cacheConfig.getInt("maxNumEntries", 512);
+        offHeap = cacheConfig.getBoolean("offHeap", false);
     }
 
     @Override
     public String toString() {
         return "ParameterCacheConfig [enabled=" + enabled + ", cacheAll=" + cacheAll + ", maxDuration=" + maxDuration
-                + ", maxNumEntries=" + maxNumEntries + "]";
+                + ", maxNumEntries=" + maxNumEntries + ", offHeap=" + offHeap + "]";
     }
 }
@@ -61,7 +61,8 @@ public class ParameterCacheImpl implements ParameterCache {
      */
     @Override
     public void update(Collection<ParameterValue> pvs) {
-        ParameterValueList pvlist = new ParameterValueList(pvs);
+        // created only if at least one of the parameters is cached
+        ParameterValueList pvlist = null;
         for (ParameterValue pv : pvs) {
             Parameter p = pv.getParameter();
             CacheEntry ce = cache.get(p);
@@ -69,12 +70,24 @@ public class ParameterCacheImpl implements ParameterCache {
                 if (cacheAll || parametersToCache.containsKey(p)) {
                     ce = new CacheEntry(p, timeToCache, maxNumEntries);
                     cache.put(p, ce);
-                    ce.add(pvlist);
+                } else {
+                    continue;
                 }
-            } else {
-                ce.add(pvlist);
             }
+            if (pvlist == null) {
+                pvlist = toParameterValueList(pvs);
+            }
+            ce.add(pvlist);
+        }
+    }
+
+    private static ParameterValueList toParameterValueList(Collection<ParameterValue> pvs) {
+        // the lists coming from the TM extraction are already ParameterValueLists and they are not modified after
+        // the delivery
+        if (pvs instanceof ParameterValueList) {
+            return (ParameterValueList) pvs;
         }
+        return new ParameterValueList(pvs);
     }
 
     /*
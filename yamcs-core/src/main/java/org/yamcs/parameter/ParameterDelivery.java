@@ -0,0 +1,149 @@
+package org.yamcs.parameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the parameter values to be delivered to each subscription during one update cycle of the
+ * {@link ParameterRequestManager}.
+ * <p>
+ * The subscription ids are mapped to their value lists with an open addressing int hash table, such that no map entry
+ * or boxed integer is created per delivery. The object is reused between the update cycles of the same thread; the
+ * only objects created in each cycle are the value lists handed over to the consumers, because the consumers are
+ * allowed to keep them.
+ * <p>
+ * The values for the subscribe all subscriptions are collected once in a list shared by all those subscriptions.
+ *
+ * @author nm
+ *
+ */
+class ParameterDelivery {
+    private int[] ids = new int[16];
+    @SuppressWarnings("unchecked")
+    private ArrayList<ParameterValue>[] values = new ArrayList[16];
+    private int size;
+
+    // hash index: contains 1 + position in the ids array or 0 if the slot is free
+    private int[] index = new int[64];
+
+    private ArrayList<ParameterValue> allValues;
+
+    // set while the delivery is used in an update cycle
+    boolean inUse;
+
+    /**
+     * add the value to the list of the given subscription
+     */
+    void add(int subscriptionId, ParameterValue pv) {
+        int mask = index.length - 1;
+        int slot = hash(subscriptionId) & mask;
+        while (true) {
+            int k = index[slot];
+            if (k == 0) {
+                break;
+            }
+            if (ids[k - 1] == subscriptionId) {
+                values[k - 1].add(pv);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, 2 * size);
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        ids[size] = subscriptionId;
+        ArrayList<ParameterValue> al = new ArrayList<>();
+        al.add(pv);
+        values[size] = al;
+        size++;
+        index[slot] = size;
+
+        if (2 * size > index.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * add the values to the list shared by all the subscribe all subscriptions
+     */
+    void addToAll(Iterable<ParameterValue> pvs) {
+        if (allValues == null) {
+            allValues = new ArrayList<>();
+        }
+        for (ParameterValue pv : pvs) {
+            allValues.add(pv);
+        }
+    }
+
+    /**
+     *
+     * @return the list of values for the subscription or null if there is no value for it
+     */
+    List<ParameterValue> get(int subscriptionId) {
+        int mask = index.length - 1;
+        int slot = hash(subscriptionId) & mask;
+        while (true) {
+            int k = index[slot];
+            if (k == 0) {
+                return null;
+            }
+            if (ids[k - 1] == subscriptionId) {
+                return values[k - 1];
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getSubscriptionId(int i) {
+        return ids[i];
+    }
+
+    List<ParameterValue> getValues(int i) {
+        return values[i];
+    }
+
+    /**
+     *
+     * @return the values for the subscribe all subscriptions or null if there is none
+     */
+    List<ParameterValue> getAllValues() {
+        return allValues == null ? null : Collections.unmodifiableList(allValues);
+    }
+
+    /**
+     * Prepares the object for the next update cycle. The lists already handed over are forgotten.
+     */
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(index, 0);
+            Arrays.fill(values, 0, size, null);
+            size = 0;
+        }
+        allValues = null;
+    }
+
+    private void rehash() {
+        int[] newIndex = new int[2 * index.length];
+        int mask = newIndex.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(ids[i]) & mask;
+            while (newIndex[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newIndex[slot] = i + 1;
+        }
+        index = newIndex;
+    }
+
+    private static int hash(int x) {
+        x *= 0x9E3779B9;
+        return x ^ (x >>> 16);
+    }
+}
@@ -69,6 +69,9 @@ public class ParameterRequestManager extends AbstractService implements Paramete
     ParameterCacheConfig cacheConfig;
     LastValueCache lastValueCache;
 
+    // reused between the update cycles of the same thread
+    private final ThreadLocal<ParameterDelivery> deliveryBuffer = ThreadLocal.withInitial(ParameterDelivery::new);
+
     /**
      * Creates a new ParameterRequestManager, configured to listen to the specified XtceTmProcessor.
      */
@@ -93,7 +96,11 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         }
 
         if (cacheConfig.enabled) {
-            parameterCache = new ArrayParameterCache(yproc.getInstance(), cacheConfig);
+            if (cacheConfig.offHeap) {
+                parameterCache = new OffHeapParameterCache(yproc.getInstance(), cacheConfig);
+            } else {
+                parameterCache = new ArrayParameterCache(yproc.getInstance(), cacheConfig);
+            }
         }
     }
 
@@ -425,9 +432,21 @@ public class ParameterRequestManager extends AbstractService implements Paramete
     public void update(Collection<ParameterValue> params) {
         log.trace("ParamRequestManager.updateItems with {} parameters", params.size());
 
+        ParameterDelivery delivery = deliveryBuffer.get();
+        if (delivery.inUse) { // re-entrant call, cannot reuse the buffer
+            delivery = new ParameterDelivery();
+        }
+        delivery.inUse = true;
+        try {
+            update(delivery, params);
+        } finally {
+            delivery.clear();
+            delivery.inUse = false;
+        }
+    }
+
+    private void update(ParameterDelivery delivery, Collection<ParameterValue> params) {
         lastValueCache.update(params);
-        // maps subscription id to a list of (value,id) to be delivered for that subscription
-        HashMap<Integer, ArrayList<ParameterValue>> delivery = new HashMap<>();
 
         // so first we add to the delivery the parameters just received
         updateDelivery(delivery, params);
@@ -435,50 +454,57 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         // then if the delivery updates some of the parameters required by the derived values
         // compute the derived values
         for (Map.Entry<Integer, DVParameterConsumer> entry : request2DVParameterConsumerMap.entrySet()) {
-            Integer subscriptionId = entry.getKey();
-            if (delivery.containsKey(subscriptionId)) {
-                List<ParameterValue> pvList = entry.getValue().updateParameters(subscriptionId,
-                        delivery.get(subscriptionId));
+            int subscriptionId = entry.getKey();
+            List<ParameterValue> dvParams = delivery.get(subscriptionId);
+            if (dvParams != null) {
+                List<ParameterValue> pvList = entry.getValue().updateParameters(subscriptionId, dvParams);
                 lastValueCache.update(pvList);
                 updateDelivery(delivery, pvList);
             }
         }
 
         // and finally deliver the delivery :)
-        for (Map.Entry<Integer, ArrayList<ParameterValue>> entry : delivery.entrySet()) {
-            Integer subscriptionId = entry.getKey();
+        for (int i = 0; i < delivery.size(); i++) {
+            int subscriptionId = delivery.getSubscriptionId(i);
             if (request2DVParameterConsumerMap.containsKey(subscriptionId)) {
                 continue;
             }
             if (alarmChecker != null && alarmChecker.getSubscriptionId() == subscriptionId) {
                 continue;
             }
+            deliver(subscriptionId, delivery.getValues(i));
+        }
 
-            ArrayList<ParameterValue> al = entry.getValue();
-            ParameterConsumer consumer = request2ParameterConsumerMap.get(subscriptionId);
-            if (consumer == null) {
-                log.warn("subscriptionId {} appears in the delivery list, but there is no consumer for it",
-                        subscriptionId);
-            } else {
-                consumer.updateItems(subscriptionId, al);
+        List<ParameterValue> allValues = delivery.getAllValues();
+        if (allValues != null) {
+            for (int subscriptionId : subscribeAll.getArray()) {
+                deliver(subscriptionId, allValues);
             }
         }
     }
 
+    private void deliver(int subscriptionId, List<ParameterValue> values) {
+        ParameterConsumer consumer = request2ParameterConsumerMap.get(subscriptionId);
+        if (consumer == null) {
+            log.warn("subscriptionId {} appears in the delivery list, but there is no consumer for it",
+                    subscriptionId);
+        } else {
+            consumer.updateItems(subscriptionId, values);
+        }
+    }
+
     /**
      * adds the passed parameters to the delivery
      * 
      * @param delivery
      * @param params
      */
-    private void updateDelivery(HashMap<Integer, ArrayList<ParameterValue>> delivery,
-            Collection<ParameterValue> params) {
+    private void updateDelivery(ParameterDelivery delivery, Collection<ParameterValue> params) {
         if (params == null) {
             return;
         }
 
-        for (Iterator<ParameterValue> it = params.iterator(); it.hasNext();) {
-            ParameterValue pv = it.next();
+        for (ParameterValue pv : params) {
             Parameter pDef = pv.getParameter();
             SubscriptionArray cowal = param2RequestMap.get(pDef);
             // now walk through the requests and add this item to their delivery list
@@ -487,27 +513,13 @@ public class ParameterRequestManager extends AbstractService implements Paramete
             }
 
             for (int s : cowal.getArray()) {
-                ArrayList<ParameterValue> al = delivery.get(s);
-                if (al == null) {
-                    al = new ArrayList<>();
-                    delivery.put(s, al);
-                }
-                al.add(pv);
+                delivery.add(s, pv);
             }
         }
 
         // update the subscribeAll subscriptions
-        for (int id : subscribeAll.getArray()) {
-            ArrayList<ParameterValue> al = delivery.get(id);
-
-            if (al == null) {
-                al = new ArrayList<>();
-                delivery.put(id, al);
-            }
-
-            for (ParameterValue pv : params) {
-                al.add(pv);
-            }
+        if (!subscribeAll.isEmpty()) {
+            delivery.addToAll(params);
         }
         if (alarmChecker != null) {
             try {
@@ -1,13 +1,13 @@
 package org.yamcs.parameterarchive;
 
 import java.io.IOException;
-import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 
 import org.rocksdb.RocksDBException;
@@ -15,6 +15,7 @@ import org.rocksdb.RocksIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameterarchive.ParallelRetrieval.Chunk;
 import org.yamcs.parameterarchive.ParameterArchive.Partition;
 import org.yamcs.protobuf.Pvalue.ParameterStatus;
 import org.yamcs.utils.DecodingException;
@@ -28,7 +29,7 @@ public class MultiParameterDataRetrieval {
 
     SegmentEncoderDecoder vsEncoder = new SegmentEncoderDecoder();
     private final Logger log = LoggerFactory.getLogger(MultiParameterDataRetrieval.class);
-    private int count;
+    private volatile int count;
 
     public MultiParameterDataRetrieval(ParameterArchive parchive, MultipleParameterValueRequest mpvr) {
         this.parchive = parchive;
@@ -37,17 +38,39 @@ public class MultiParameterDataRetrieval {
 
     public void retrieve(Consumer<ParameterIdValueList> consumer) throws RocksDBException, DecodingException, IOException {
         count = 0;
+        Consumer<ParameterIdValueList> limitingConsumer = consumer;
+        if (mpvr.limit >= 0) {
+            limitingConsumer = pidvList -> {
+                if (count < mpvr.limit) {
+                    consumer.accept(pidvList);
+                    count++;
+                }
+                if (count >= mpvr.limit) {
+                    throw new ConsumerAbortException();
+                }
+            };
+        }
         try {
             List<Partition> parts = parchive.getPartitions(getIntervalStart(mpvr.start), getIntervalEnd(mpvr.stop), mpvr.ascending);
-            for (Partition p : parts) {
-                retrieveFromPartition(p, consumer);
+            ExecutorService executor = mpvr.parallel ? parchive.getRetrievalExecutor() : null;
+            List<Chunk> chunks = null;
+            if (executor != null) {
+                chunks = ParallelRetrieval.getChunks(parts, mpvr.start, mpvr.stop, mpvr.ascending);
+            }
+            if (chunks != null) {
+                new ParallelRetrieval<ParameterIdValueList>(executor, 2 * parchive.getRetrievalThreads())
+                        .run(chunks, this::retrieveFromPartition, limitingConsumer);
+            } else {
+                for (Partition p : parts) {
+                    retrieveFromPartition(p, mpvr.start, mpvr.stop, limitingConsumer);
+                }
             }
         } catch (ConsumerAbortException e) {
             log.debug("Stoped early due to receiving ConsumerAbortException");
         }
     }
 
-    private void retrieveFromPartition(Partition p, Consumer<ParameterIdValueList> consumer)
+    private void retrieveFromPartition(Partition p, long start, long stop, Consumer<ParameterIdValueList> consumer)
             throws RocksDBException, DecodingException, IOException {
         RocksIterator[] its = new RocksIterator[mpvr.parameterIds.length];
         Map<PartitionIterator, String> partition2ParameterName = new HashMap<>();
@@ -59,7 +82,7 @@ public class MultiParameterDataRetrieval {
             its[i] = parchive.getIterator(p);
 
             PartitionIterator pi = new PartitionIterator(its[i], mpvr.parameterIds[i], mpvr.parameterGroupIds[i],
-                    mpvr.start, mpvr.stop, mpvr.ascending, retrieveEng, mpvr.retrieveRawValues.get(i),
+                    start, stop, mpvr.ascending, retrieveEng, mpvr.retrieveRawValues.get(i),
                     mpvr.retrieveParamStatus);
             if (pi.isValid()) {
                 queue.add(pi);
@@ -136,7 +159,7 @@ public class MultiParameterDataRetrieval {
                 merger.currentParameterId = pit.getParameterId();
                 merger.currentParameterName = partition2ParameterName.get(pit);
                 new SegmentIterator(timeSegment, (ValueSegment) engValueSegment, (ValueSegment) rawValueSegment,
-                        paramStatuSegment, mpvr.start, mpvr.stop, mpvr.ascending).forEachRemaining(merger);
+                        paramStatuSegment, start, stop, mpvr.ascending).forEachRemaining(merger);
                 pit.next();
                 if (pit.isValid()) {
                     queue.add(pit);
@@ -155,21 +178,9 @@ public class MultiParameterDataRetrieval {
         }
     }
 
+    // the limit is applied by the consumer
     private void sendAllData(SegmentMerger merger, Consumer<ParameterIdValueList> consumer) {
-        Collection<ParameterIdValueList> c = merger.values.values();
-        if (mpvr.limit < 0) {
-            merger.values.values().forEach(consumer);
-        } else {
-            if (count < mpvr.limit) {
-                for (ParameterIdValueList pivl : c) {
-                    consumer.accept(pivl);
-                    count++;
-                    if (count >= mpvr.limit) {
-                        break;
-                    }
-                }
-            }
-        }
+        merger.values.values().forEach(consumer);
     }
 
     /**
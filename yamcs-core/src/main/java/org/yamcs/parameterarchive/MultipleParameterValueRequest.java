@@ -17,6 +17,7 @@ public class MultipleParameterValueRequest {
     
     
     int limit = -1;
+    boolean parallel = false;
     
     public MultipleParameterValueRequest(long start, long stop, String[] parameterNames, int[] parameterIds, int[] parameterGroupIds, 
             BitSet retrieveRawValues, boolean ascending) {
@@ -90,4 +91,18 @@ public class MultipleParameterValueRequest {
     public void setLimit(int limit) {
         this.limit = limit;
     }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * retrieve the data using the parameter archive retrieval threads; the data is delivered in the same order as
+     * for the sequential retrieval but the retrieval may run ahead of the consumer
+     * 
+     * @param parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
 }
@@ -0,0 +1,171 @@
+package org.yamcs.parameterarchive;
+
+import static org.yamcs.parameterarchive.ParameterArchive.getIntervalDuration;
+import static org.yamcs.parameterarchive.ParameterArchive.getIntervalEnd;
+import static org.yamcs.parameterarchive.ParameterArchive.getIntervalStart;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import org.rocksdb.RocksDBException;
+import org.yamcs.parameterarchive.ParameterArchive.Partition;
+import org.yamcs.utils.DecodingException;
+
+/**
+ * Retrieves data from the parameter archive using multiple threads.
+ * <p>
+ * The request interval is split into chunks, one for each parameter archive interval of each partition. Since the
+ * segments never cross the interval boundaries, the chunks can be retrieved independently of each other. The results
+ * of each chunk are collected in memory and passed to the consumer in the order of the chunks, such that the consumer
+ * receives exactly the same data as with a sequential retrieval.
+ * <p>
+ * At most {@link #maxInFlight} chunks are retrieved in advance of the one being consumed, in order to limit the memory
+ * usage when the consumer is slower than the retrieval.
+ *
+ * @author nm
+ *
+ */
+class ParallelRetrieval<T> {
+    /**
+     * if the request would result in more chunks than this, the retrieval is done sequentially (it is most likely an
+     * open ended request)
+     */
+    static final int MAX_CHUNKS = 100_000;
+
+    final ExecutorService executor;
+    final int maxInFlight;
+
+    ParallelRetrieval(ExecutorService executor, int maxInFlight) {
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Splits the [start, stop] interval into chunks.
+     *
+     * @return the list of chunks in the order of the retrieval or null if there are too many chunks
+     */
+    static List<Chunk> getChunks(List<Partition> parts, long start, long stop, boolean ascending) {
+        List<Chunk> chunks = new ArrayList<>();
+        for (Partition p : parts) {
+            // a segment starting in a partition can contain data beyond the end of the partition, so the intervals
+            // are selected based on the partition start/end but the data is not limited to it
+            long pstart = getIntervalStart(start);
+            if (p.hasStart()) {
+                pstart = Math.max(pstart, p.getStart());
+            }
+            long pstop = getIntervalEnd(stop);
+            if (p.hasEnd()) {
+                pstop = Math.min(pstop, p.getEnd());
+            }
+            if (pstart > pstop) {
+                continue;
+            }
+            long first = getIntervalStart(pstart);
+            long last = getIntervalStart(pstop);
+            if ((last - first) / getIntervalDuration() + chunks.size() >= MAX_CHUNKS) {
+                return null;
+            }
+            List<Chunk> pchunks = new ArrayList<>();
+            for (long t = first; t <= last; t += getIntervalDuration()) {
+                pchunks.add(new Chunk(p, Math.max(start, t), Math.min(stop, getIntervalEnd(t))));
+            }
+            if (!ascending) {
+                for (int i = pchunks.size() - 1; i >= 0; i--) {
+                    chunks.add(pchunks.get(i));
+                }
+            } else {
+                chunks.addAll(pchunks);
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Retrieves the chunks in parallel and sends the results in order to the consumer.
+     * <p>
+     * If the consumer throws an exception, the retrieval of the remaining chunks is cancelled and the exception is
+     * propagated to the caller.
+     */
+    void run(List<Chunk> chunks, ChunkRetriever<T> retriever, Consumer<T> consumer)
+            throws RocksDBException, DecodingException, IOException {
+        ArrayDeque<Future<List<T>>> inFlight = new ArrayDeque<>();
+        Iterator<Chunk> it = chunks.iterator();
+        try {
+            while (true) {
+                while (inFlight.size() < maxInFlight && it.hasNext()) {
+                    Chunk c = it.next();
+                    inFlight.add(executor.submit(() -> {
+                        List<T> l = new ArrayList<>();
+                        retriever.retrieve(c.partition, c.start, c.stop, l::add);
+                        return l;
+                    }));
+                }
+                Future<List<T>> f = inFlight.poll();
+                if (f == null) {
+                    break;
+                }
+                for (T t : get(f)) {
+                    consumer.accept(t);
+                }
+            }
+        } finally {
+            for (Future<List<T>> f : inFlight) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    private List<T> get(Future<List<T>> f) throws RocksDBException, DecodingException, IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RocksDBException) {
+                throw (RocksDBException) cause;
+            } else if (cause instanceof DecodingException) {
+                throw (DecodingException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the data from one partition in the interval [start, stop]
+     */
+    @FunctionalInterface
+    interface ChunkRetriever<T> {
+        void retrieve(Partition p, long start, long stop, Consumer<T> consumer)
+                throws RocksDBException, DecodingException, IOException;
+    }
+
+    static class Chunk {
+        final Partition partition;
+        final long start;
+        final long stop;
+
+        Chunk(Partition partition, long start, long stop) {
+            this.partition = partition;
+            this.start = start;
+            this.stop = stop;
+        }
+    }
+}
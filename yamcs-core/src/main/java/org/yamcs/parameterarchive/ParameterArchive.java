@@ -8,6 +8,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 
 import org.rocksdb.RocksDBException;
@@ -21,6 +23,7 @@ import org.yamcs.Spec;
 import org.yamcs.Spec.OptionType;
 import org.yamcs.YConfiguration;
 import org.yamcs.YamcsServer;
+import org.yamcs.parameter.ValueArray;
 import org.yamcs.time.TimeService;
 import org.yamcs.utils.ByteArrayUtils;
 import org.yamcs.utils.DatabaseCorruptionException;
@@ -33,6 +36,7 @@ import org.yamcs.yarch.TimePartitionSchema;
 import org.yamcs.yarch.YarchDatabase;
 import org.yamcs.yarch.YarchDatabaseInstance;
 import org.yamcs.yarch.rocksdb.AscendingRangeIterator;
+import org.yamcs.yarch.rocksdb.RdbConfig;
 import org.yamcs.yarch.rocksdb.RdbStorageEngine;
 import org.yamcs.yarch.rocksdb.Tablespace;
 import org.yamcs.yarch.rocksdb.YRDB;
@@ -81,6 +85,10 @@ public class ParameterArchive extends AbstractYamcsService {
     YConfiguration backFillerConfig;
     boolean realtimeFillerEnabled;
     boolean backFillerEnabled;
+    boolean rollupsEnabled;
+    int retrievalThreads;
+    boolean parallelRetrieval;
+    private ForkJoinPool retrievalExecutor;
 
     @Override
     public Spec getSpec() {
@@ -89,6 +97,10 @@ public class ParameterArchive extends AbstractYamcsService {
         spec.addOption("realtimeFiller", OptionType.ANY);
         spec.addOption("partitioningSchema", OptionType.STRING).withDefault("YYYY")
                 .withChoices("YYYY/DOY", "YYYY/MM", "YYYY", "none");
+        spec.addOption("rollups", OptionType.BOOLEAN).withDefault(true);
+        spec.addOption("retrievalThreads", OptionType.INTEGER)
+                .withDefault(Runtime.getRuntime().availableProcessors());
+        spec.addOption("parallelRetrieval", OptionType.BOOLEAN).withDefault(false);
 
         return spec;
     }
@@ -112,6 +124,9 @@ public class ParameterArchive extends AbstractYamcsService {
             log.debug("realtimeFillerConfig: {}", realtimeFillerConfig);
         }
 
+        rollupsEnabled = config.getBoolean("rollups");
+        retrievalThreads = config.getInt("retrievalThreads");
+        parallelRetrieval = config.getBoolean("parallelRetrieval");
         String schema = config.getString("partitioningSchema");
         if (!"none".equalsIgnoreCase(schema)) {
             partitioningSchema = TimePartitionSchema.getInstance(schema);
@@ -205,7 +220,7 @@ public class ParameterArchive extends AbstractYamcsService {
         Partition p = createAndGetPartition(pgs.getSegmentStart());
         try (WriteBatch writeBatch = new WriteBatch(); WriteOptions wo = new WriteOptions()) {
             writeToBatch(writeBatch, p, pgs);
-            tablespace.getRdb(p.partitionDir, false).getDb().write(wo, writeBatch);
+            tablespace.getRdb(p.partitionDir, p.getEnd(), false).getDb().write(wo, writeBatch);
         }
     }
 
@@ -218,7 +233,7 @@ public class ParameterArchive extends AbstractYamcsService {
                 assert (segStart == pgs.getSegmentStart());
                 writeToBatch(writeBatch, p, pgs);
             }
-            tablespace.getRdb(p.partitionDir, false).getDb().write(wo, writeBatch);
+            tablespace.getRdb(p.partitionDir, p.getEnd(), false).getDb().write(wo, writeBatch);
         }
     }
 
@@ -234,6 +249,7 @@ public class ParameterArchive extends AbstractYamcsService {
         List<BaseSegment> consolidated = pgs.getConsolidatedValueSegments();
         List<BaseSegment> consolidatedRawValues = pgs.getConsolidatedRawValueSegments();
         List<ParameterStatusSegment> satusSegments = pgs.getConsolidatedParameterStatusSegments();
+        long[] timestamps = null;
 
         for (int i = 0; i < consolidated.size(); i++) {
             BaseSegment vs = consolidated.get(i);
@@ -252,6 +268,13 @@ public class ParameterArchive extends AbstractYamcsService {
             byte[] engValue = vsEncoder.encode(vs);
             writeBatch.put(engKey, engValue);
 
+            if (rollupsEnabled && vs instanceof ValueSegment) {
+                if (timestamps == null) {
+                    timestamps = timeSegment.getRange(0, timeSegment.size(), true);
+                }
+                writeRollups(writeBatch, pgs, parameterId, timestamps, (ValueSegment) vs);
+            }
+
             if (STORE_RAW_VALUES && consolidatedRawValues != null) {
                 BaseSegment rvs = consolidatedRawValues.get(i);
                 if (rvs != null) {
@@ -285,6 +308,23 @@ public class ParameterArchive extends AbstractYamcsService {
         }
     }
 
+    private void writeRollups(WriteBatch writeBatch, PGSegment pgs, int parameterId, long[] timestamps,
+            ValueSegment vs) throws RocksDBException {
+        ValueArray values = vs.getRange(0, vs.size(), true);
+        if (!RollupSegment.isNumeric(values.getType())) {
+            return;
+        }
+        for (int level = 0; level < RollupSegment.getNumLevels(); level++) {
+            RollupSegment rs = RollupSegment.build(level, timestamps, values);
+            if (rs == null) {
+                return;
+            }
+            byte[] key = new SegmentKey(parameterId, pgs.getParameterGroupId(), pgs.getSegmentStart(),
+                    (byte) (SegmentKey.TYPE_ROLLUP + level)).encode();
+            writeBatch.put(key, vsEncoder.encode(rs));
+        }
+    }
+
     /**
      * get partition for segment, creating it if it doesn't exist
      * 
@@ -341,6 +381,33 @@ public class ParameterArchive extends AbstractYamcsService {
         return r;
     }
 
+    /**
+     * Returns the pool used for the parallel retrievals, creating it the first time it is needed.
+     * 
+     * @return the executor or null if the parallel retrieval is disabled
+     */
+    synchronized ExecutorService getRetrievalExecutor() {
+        if (retrievalThreads <= 1) {
+            return null;
+        }
+        if (retrievalExecutor == null) {
+            retrievalExecutor = new ForkJoinPool(retrievalThreads);
+        }
+        return retrievalExecutor;
+    }
+
+    int getRetrievalThreads() {
+        return retrievalThreads;
+    }
+
+    /**
+     * 
+     * @return true if the retrievals requested through the API have to be performed in parallel
+     */
+    public boolean isParallelRetrieval() {
+        return parallelRetrieval;
+    }
+
     @Override
     protected void doStart() {
         if (backFillerEnabled) {
@@ -366,6 +433,11 @@ public class ParameterArchive extends AbstractYamcsService {
             realtimeFiller.stopAsync();
             realtimeFiller.awaitTerminated();
         }
+        synchronized (this) {
+            if (retrievalExecutor != null) {
+                retrievalExecutor.shutdownNow();
+            }
+        }
         notifyStopped();
     }
 
@@ -403,14 +475,15 @@ public class ParameterArchive extends AbstractYamcsService {
     }
 
     public RocksIterator getIterator(Partition p) throws RocksDBException, IOException {
-        return tablespace.getRdb(p.partitionDir, false).newIterator();
+        return tablespace.getRdb(p.partitionDir, p.getEnd(), false)
+                .newIterator(RdbConfig.getInstance().getScanReadOptions());
     }
 
     public SortedTimeSegment getTimeSegment(Partition p, long segmentStart, int parameterGroupId)
             throws RocksDBException, IOException {
         byte[] timeKey = new SegmentKey(parameterIdMap.timeParameterId, parameterGroupId, segmentStart,
                 SegmentKey.TYPE_ENG_VALUE).encode();
-        byte[] tv = tablespace.getRdb(p.partitionDir, false).get(timeKey);
+        byte[] tv = tablespace.getRdb(p.partitionDir, p.getEnd(), false).get(timeKey);
         if (tv == null) {
             return null;
         }
@@ -7,6 +7,7 @@ public class ParameterRequest {
     private boolean retrieveEngineeringValues = true;
     private boolean retrieveRawValues = false;
     private boolean retrieveParameterStatus = false;
+    private boolean parallel = false;
     
     public ParameterRequest(long start, long stop, boolean ascending,
             boolean retrieveEngineeringValues, boolean retrieveRawValues, boolean retrieveParameterStatus) {
@@ -58,4 +59,17 @@ public class ParameterRequest {
     public void setRetrieveParameterStatus(boolean retrieveParameterStatus) {
         this.retrieveParameterStatus = retrieveParameterStatus;
     }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * retrieve the data using the parameter archive retrieval threads
+     * 
+     * @see MultipleParameterValueRequest#setParallel(boolean)
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
 }
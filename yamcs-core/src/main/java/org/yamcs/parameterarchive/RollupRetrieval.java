@@ -0,0 +1,178 @@
+package org.yamcs.parameterarchive;
+
+import static org.yamcs.parameterarchive.ParameterArchive.getIntervalEnd;
+import static org.yamcs.parameterarchive.ParameterArchive.getIntervalStart;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yamcs.parameter.ValueArray;
+import org.yamcs.parameterarchive.ParameterArchive.Partition;
+import org.yamcs.utils.DatabaseCorruptionException;
+import org.yamcs.utils.DecodingException;
+
+/**
+ * Retrieves the rollup segments of one numeric parameter at a given level.
+ * <p>
+ * For the segments fully contained in the [start, stop] interval, only the rollup segment is read from the archive; the
+ * value segments stored next to it are skipped. For the segments crossing the interval limits or for which there is no
+ * rollup stored (e.g. because they have been written before the rollups have been introduced), the rollup is computed
+ * from the value segment.
+ * <p>
+ * The values of a stored rollup bucket cannot be split, so the samples built from the rollups are only accurate to
+ * the resolution of the rollup level.
+ * <p>
+ * The segments are sent to the consumer in ascending order for each parameter group but there is no ordering between
+ * the parameter groups; each bucket has to be merged with the other buckets for the same time.
+ *
+ * @author nm
+ *
+ */
+public class RollupRetrieval {
+    private final Logger log = LoggerFactory.getLogger(RollupRetrieval.class);
+    final ParameterArchive parchive;
+    final ParameterId[] pids;
+    final long start, stop;
+    final int level;
+    final SegmentEncoderDecoder segmentEncoder = new SegmentEncoderDecoder();
+    long lastTime = Long.MIN_VALUE;
+
+    public RollupRetrieval(ParameterArchive parchive, String parameterFqn, long start, long stop, int level) {
+        this.parchive = parchive;
+        this.start = start;
+        this.stop = stop;
+        this.level = level;
+        pids = parchive.getParameterIdDb().get(parameterFqn);
+        if (pids == null) {
+            log.debug("No parameter id found in the parameter archive for {}", parameterFqn);
+        }
+    }
+
+    public void retrieve(Consumer<RollupSegment> consumer) throws RocksDBException, IOException {
+        if (pids == null) {
+            return;
+        }
+        List<Partition> parts = parchive.getPartitions(getIntervalStart(start), getIntervalEnd(stop), true);
+        for (ParameterId pid : pids) {
+            if (pid.engType == null || !RollupSegment.isNumeric(pid.engType)) {
+                continue;
+            }
+            int[] pgids = parchive.getParameterGroupIdDb().getAllGroups(pid.pid);
+            for (Partition p : parts) {
+                for (int pgid : pgids) {
+                    retrieveFromPartition(p, pid.pid, pgid, consumer);
+                }
+            }
+        }
+    }
+
+    private void retrieveFromPartition(Partition p, int parameterId, int parameterGroupId,
+            Consumer<RollupSegment> consumer) throws RocksDBException, IOException {
+        byte rollupType = (byte) (SegmentKey.TYPE_ROLLUP + level);
+        long segmentStart = getIntervalStart(start);
+
+        // the rollups are stored next to the value segments of the same segmentStart; the iterator is positioned
+        // directly on the keys needed such that the values are only read when no rollup can be used
+        try (RocksIterator it = parchive.getIterator(p)) {
+            while (true) {
+                it.seek(new SegmentKey(parameterId, parameterGroupId, segmentStart, (byte) 0).encode());
+                if (!it.isValid()) {
+                    break;
+                }
+                SegmentKey key = SegmentKey.decode(it.key());
+                if (key.parameterId != parameterId || key.parameterGroupId != parameterGroupId
+                        || key.segmentStart > stop) {
+                    break;
+                }
+                segmentStart = key.segmentStart;
+                RollupSegment rs = null;
+                if (segmentStart >= start) {
+                    byte[] rollup = getValue(it, parameterId, parameterGroupId, segmentStart, rollupType);
+                    if (rollup != null) {
+                        rs = (RollupSegment) decode(rollup, segmentStart);
+                        if (rs.getLastTime() > stop) {
+                            rs = null;
+                        }
+                    }
+                }
+                if (rs == null) {
+                    byte[] engValue = getValue(it, parameterId, parameterGroupId, segmentStart,
+                            SegmentKey.TYPE_ENG_VALUE);
+                    if (engValue != null) {
+                        rs = computeRollup(p, parameterGroupId, segmentStart,
+                                (ValueSegment) decode(engValue, segmentStart));
+                    }
+                }
+                if (rs != null) {
+                    lastTime = Math.max(lastTime, rs.getLastTime());
+                    consumer.accept(rs);
+                }
+                if (segmentStart == Long.MAX_VALUE) {
+                    break;
+                }
+                segmentStart++;
+            }
+        }
+    }
+
+    // returns the value stored under the given key or null if there is no such key
+    private static byte[] getValue(RocksIterator it, int parameterId, int parameterGroupId, long segmentStart,
+            byte type) {
+        byte[] k = new SegmentKey(parameterId, parameterGroupId, segmentStart, type).encode();
+        it.seek(k);
+        if (it.isValid() && Arrays.equals(k, it.key())) {
+            return it.value();
+        }
+        return null;
+    }
+
+    // computes the rollup from the values of the segment falling in the [start, stop] interval
+    private RollupSegment computeRollup(Partition p, int parameterGroupId, long segmentStart, ValueSegment vs)
+            throws RocksDBException, IOException {
+        SortedTimeSegment timeSegment = parchive.getTimeSegment(p, segmentStart, parameterGroupId);
+        if (timeSegment == null) {
+            throw new DatabaseCorruptionException("Cannot find a time segment for parameterGroupId="
+                    + parameterGroupId + " segmentStart = " + segmentStart);
+        }
+        int posStart = 0;
+        if (start > segmentStart) {
+            posStart = timeSegment.search(start);
+            if (posStart < 0) {
+                posStart = -posStart - 1;
+            }
+        }
+        int posStop = timeSegment.size();
+        if (stop < timeSegment.getSegmentEnd()) {
+            posStop = timeSegment.search(stop);
+            posStop = posStop < 0 ? -posStop - 1 : posStop + 1;
+        }
+        if (posStart >= posStop) {
+            return null;
+        }
+        long[] timestamps = timeSegment.getRange(posStart, posStop, true);
+        ValueArray values = vs.getRange(posStart, posStop, true);
+        return RollupSegment.build(level, timestamps, values);
+    }
+
+    private BaseSegment decode(byte[] v, long segmentStart) {
+        try {
+            return segmentEncoder.decode(v, segmentStart);
+        } catch (DecodingException e) {
+            throw new DatabaseCorruptionException(e);
+        }
+    }
+
+    /**
+     *
+     * @return the timestamp of the last value retrieved or {@link Long#MIN_VALUE} if no value has been retrieved
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+}
@@ -0,0 +1,251 @@
+package org.yamcs.parameterarchive;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.yamcs.parameter.ValueArray;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.UnsignedLong;
+import org.yamcs.utils.VarIntUtil;
+
+/**
+ * Segment containing the min/max/sum/count of the numeric values of one parameter aggregated in buckets of a fixed
+ * duration (the resolution).
+ * <p>
+ * The rollup segments are computed when writing the value segments and are stored under the same key as the value
+ * segment they are computed from, with the type {@link SegmentKey#TYPE_ROLLUP} + level.
+ * <p>
+ * The buckets are aligned to multiples of the resolution; since the parameter archive segments do not have such
+ * alignment, the same bucket may be found in two consecutive segments.
+ *
+ * @author nm
+ *
+ */
+public class RollupSegment extends BaseSegment {
+    /**
+     * the resolution in milliseconds of each rollup level
+     */
+    static final long[] RESOLUTIONS = { 1000, 60_000, 3600_000 };
+
+    private final int level;
+    private final long firstBucket;
+    private long lastTime;
+
+    private int size;
+    private int[] bucketIdx;
+    private int[] count;
+    private double[] min;
+    private double[] max;
+    private double[] sum;
+
+    RollupSegment(int level, long firstBucket, int capacity) {
+        super(FORMAT_ID_RollupSegment);
+        this.level = level;
+        this.firstBucket = firstBucket;
+        bucketIdx = new int[capacity];
+        count = new int[capacity];
+        min = new double[capacity];
+        max = new double[capacity];
+        sum = new double[capacity];
+    }
+
+    /**
+     * Builds a rollup segment at the given level out of the timestamps and numeric values
+     *
+     * @param level
+     * @param timestamps
+     *            - sorted timestamps
+     * @param values
+     *            - the numeric values corresponding to the timestamps
+     * @return the segment or null if the values are not numeric or if there is no value
+     */
+    static RollupSegment build(int level, long[] timestamps, ValueArray values) {
+        int n = timestamps.length;
+        if (n == 0 || !isNumeric(values.getType())) {
+            return null;
+        }
+        long res = RESOLUTIONS[level];
+        long firstBucket = Math.floorDiv(timestamps[0], res);
+        int numBuckets = (int) (Math.floorDiv(timestamps[n - 1], res) - firstBucket + 1);
+        RollupSegment rs = new RollupSegment(level, firstBucket, Math.min(n, numBuckets));
+
+        for (int i = 0; i < n; i++) {
+            rs.add((int) (Math.floorDiv(timestamps[i], res) - firstBucket), getDouble(values, i));
+        }
+        rs.lastTime = timestamps[n - 1];
+        return rs;
+    }
+
+    private void add(int idx, double v) {
+        if (size > 0 && bucketIdx[size - 1] == idx) {
+            int k = size - 1;
+            count[k]++;
+            sum[k] += v;
+            if (v < min[k]) {
+                min[k] = v;
+            }
+            if (v > max[k]) {
+                max[k] = v;
+            }
+        } else {
+            bucketIdx[size] = idx;
+            count[size] = 1;
+            min[size] = max[size] = sum[size] = v;
+            size++;
+        }
+    }
+
+    /**
+     *
+     * @return true if the rollup segments can be computed for the given value type
+     */
+    public static boolean isNumeric(Type type) {
+        switch (type) {
+        case FLOAT:
+        case DOUBLE:
+        case SINT32:
+        case UINT32:
+        case SINT64:
+        case UINT64:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    static double getDouble(ValueArray va, int i) {
+        switch (va.getType()) {
+        case FLOAT:
+            return va.getFloatArray()[i];
+        case DOUBLE:
+            return va.getDoubleArray()[i];
+        case SINT32:
+            return va.getIntArray()[i];
+        case UINT32:
+            return va.getIntArray()[i] & 0xFFFFFFFFL;
+        case SINT64:
+            return va.getLongArray()[i];
+        case UINT64:
+            return UnsignedLong.toDouble(va.getLongArray()[i]);
+        default:
+            throw new IllegalArgumentException("Not a numeric type: " + va.getType());
+        }
+    }
+
+    /**
+     * Returns the coarsest level whose resolution is not bigger than the given step.
+     *
+     * @param step
+     *            - duration in milliseconds
+     * @return the level or -1 if all the resolutions are bigger than the step
+     */
+    public static int getLevel(long step) {
+        for (int i = RESOLUTIONS.length - 1; i >= 0; i--) {
+            if (RESOLUTIONS[i] <= step) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static int getNumLevels() {
+        return RESOLUTIONS.length;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getResolution() {
+        return RESOLUTIONS[level];
+    }
+
+    /**
+     *
+     * @return the start time of the bucket at position idx
+     */
+    public long getBucketStart(int idx) {
+        return (firstBucket + bucketIdx[idx]) * RESOLUTIONS[level];
+    }
+
+    public int getCount(int idx) {
+        return count[idx];
+    }
+
+    public double getMin(int idx) {
+        return min[idx];
+    }
+
+    public double getMax(int idx) {
+        return max[idx];
+    }
+
+    public double getSum(int idx) {
+        return sum[idx];
+    }
+
+    /**
+     *
+     * @return the timestamp of the last value contributing to this segment
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getMaxSerializedSize() {
+        return 20 + size * (10 + 3 * 8);
+    }
+
+    @Override
+    public void writeTo(ByteBuffer bb) {
+        bb.put((byte) level);
+        bb.putLong(firstBucket);
+        VarIntUtil.writeVarInt32(bb, (int) (lastTime - firstBucket * RESOLUTIONS[level]));
+        VarIntUtil.writeVarInt32(bb, size);
+        int prev = 0;
+        for (int i = 0; i < size; i++) {
+            VarIntUtil.writeVarInt32(bb, bucketIdx[i] - prev);
+            prev = bucketIdx[i];
+            VarIntUtil.writeVarInt32(bb, count[i]);
+            bb.putDouble(min[i]);
+            bb.putDouble(max[i]);
+            bb.putDouble(sum[i]);
+        }
+    }
+
+    static RollupSegment parseFrom(ByteBuffer bb) throws DecodingException {
+        int level = bb.get();
+        if (level < 0 || level >= RESOLUTIONS.length) {
+            throw new DecodingException("Invalid rollup level " + level);
+        }
+        long firstBucket = bb.getLong();
+        long lastTime = firstBucket * RESOLUTIONS[level] + VarIntUtil.readVarInt32(bb);
+        int n = VarIntUtil.readVarInt32(bb);
+        RollupSegment rs = new RollupSegment(level, firstBucket, n);
+        int idx = 0;
+        for (int i = 0; i < n; i++) {
+            idx += VarIntUtil.readVarInt32(bb);
+            rs.bucketIdx[i] = idx;
+            rs.count[i] = VarIntUtil.readVarInt32(bb);
+            rs.min[i] = bb.getDouble();
+            rs.max[i] = bb.getDouble();
+            rs.sum[i] = bb.getDouble();
+        }
+        rs.size = n;
+        rs.lastTime = lastTime;
+        return rs;
+    }
+
+    @Override
+    public String toString() {
+        return "RollupSegment [level=" + level + ", firstBucket=" + firstBucket + ", size=" + size + ", count="
+                + Arrays.toString(Arrays.copyOf(count, size)) + "]";
+    }
+}
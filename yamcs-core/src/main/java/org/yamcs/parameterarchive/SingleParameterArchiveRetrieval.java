@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 
 import org.rocksdb.RocksDBException;
@@ -12,9 +13,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.parameter.ValueArray;
 import org.yamcs.parameterarchive.MultiParameterDataRetrieval.PartitionIteratorComparator;
+import org.yamcs.parameterarchive.ParallelRetrieval.Chunk;
 import org.yamcs.parameterarchive.ParameterArchive.Partition;
 import org.yamcs.protobuf.Pvalue.ParameterStatus;
 import org.yamcs.utils.DatabaseCorruptionException;
+import org.yamcs.utils.DecodingException;
 
 import static org.yamcs.parameterarchive.ParameterArchive.getIntervalStart;
 import static org.yamcs.parameterarchive.ParameterArchive.getIntervalEnd;
@@ -85,25 +88,45 @@ public class SingleParameterArchiveRetrieval {
 
         List<Partition> parts = parchive.getPartitions(getIntervalStart(spvr.start), getIntervalEnd(spvr.stop),
                 spvr.ascending);
-        if (pgids.length == 1) {
-            for (Partition p : parts) {
-                retrieveValuesFromPartitionSingleGroup(pid, pgids[0], p, consumer);
+        ExecutorService executor = spvr.isParallel() ? parchive.getRetrievalExecutor() : null;
+        List<Chunk> chunks = null;
+        if (executor != null) {
+            chunks = ParallelRetrieval.getChunks(parts, spvr.start, spvr.stop, spvr.ascending);
+        }
+        if (chunks != null) {
+            try {
+                new ParallelRetrieval<ParameterValueArray>(executor, 2 * parchive.getRetrievalThreads())
+                        .run(chunks, (p, start, stop, c) -> retrieveValuesFromPartition(pid, pgids, p,
+                                new ParameterRequest(start, stop, spvr.ascending, spvr.isRetrieveEngineeringValues(),
+                                        spvr.isRetrieveRawValues(), spvr.isRetrieveParameterStatus()),
+                                c), consumer);
+            } catch (DecodingException e) {
+                throw new DatabaseCorruptionException(e);
             }
         } else {
             for (Partition p : parts) {
-                retrieveValuesFromPartitionMultiGroup(pid, pgids, p, consumer);
+                retrieveValuesFromPartition(pid, pgids, p, spvr, consumer);
             }
         }
     }
 
+    private void retrieveValuesFromPartition(ParameterId pid, int[] pgids, Partition p, ParameterRequest req,
+            Consumer<ParameterValueArray> consumer) throws RocksDBException, IOException {
+        if (pgids.length == 1) {
+            retrieveValuesFromPartitionSingleGroup(pid, pgids[0], p, req, consumer);
+        } else {
+            retrieveValuesFromPartitionMultiGroup(pid, pgids, p, req, consumer);
+        }
+    }
+
     // this is the easy case, one single parameter group -> no merging of segments necessary
     private void retrieveValuesFromPartitionSingleGroup(ParameterId pid, int parameterGroupId, Partition p,
-            Consumer<ParameterValueArray> consumer) throws RocksDBException, IOException {
+            ParameterRequest req, Consumer<ParameterValueArray> consumer) throws RocksDBException, IOException {
         RocksIterator it = parchive.getIterator(p);
-        boolean retrieveEng = spvr.isRetrieveRawValues() || spvr.isRetrieveEngineeringValues();
+        boolean retrieveEng = req.isRetrieveRawValues() || req.isRetrieveEngineeringValues();
         try {
-            PartitionIterator pit = new PartitionIterator(it, pid.pid, parameterGroupId, spvr.start, spvr.stop,
-                    spvr.ascending, retrieveEng, spvr.isRetrieveRawValues(), spvr.isRetrieveParameterStatus());
+            PartitionIterator pit = new PartitionIterator(it, pid.pid, parameterGroupId, req.start, req.stop,
+                    req.ascending, retrieveEng, req.isRetrieveRawValues(), req.isRetrieveParameterStatus());
 
             while (pit.isValid()) {
                 SegmentKey key = pit.key();
@@ -116,7 +139,7 @@ public class SingleParameterArchiveRetrieval {
                     throw new DatabaseCorruptionException(msg);
                 }
 
-                retriveValuesFromSegment(pid, timeSegment, pit, spvr, consumer);
+                retriveValuesFromSegment(pid, timeSegment, pit, req, consumer);
                 pit.next();
             }
         } finally {
@@ -125,27 +148,28 @@ public class SingleParameterArchiveRetrieval {
     }
 
     // multiple parameter groups -> merging of segments necessary
-    private void retrieveValuesFromPartitionMultiGroup(ParameterId pid, int parameterGroupIds[], Partition p, Consumer<ParameterValueArray> consumer)
+    private void retrieveValuesFromPartitionMultiGroup(ParameterId pid, int parameterGroupIds[], Partition p,
+            ParameterRequest req, Consumer<ParameterValueArray> consumer)
             throws RocksDBException, IOException {
         
         RocksIterator[] its = new RocksIterator[parameterGroupIds.length];
         try {
 
             PriorityQueue<PartitionIterator> queue = new PriorityQueue<PartitionIterator>(
-                    new PartitionIteratorComparator(spvr.ascending));
-            boolean retrieveEng = spvr.isRetrieveRawValues() || spvr.isRetrieveEngineeringValues();
+                    new PartitionIteratorComparator(req.ascending));
+            boolean retrieveEng = req.isRetrieveRawValues() || req.isRetrieveEngineeringValues();
 
             for (int i = 0; i < parameterGroupIds.length; i++) {
                 its[i] = parchive.getIterator(p);
                 PartitionIterator pi = new PartitionIterator(its[i], pid.pid, parameterGroupIds[i],
-                        spvr.start, spvr.stop, spvr.ascending,
-                        retrieveEng, spvr.isRetrieveRawValues(), spvr.isRetrieveParameterStatus());
+                        req.start, req.stop, req.ascending,
+                        retrieveEng, req.isRetrieveRawValues(), req.isRetrieveParameterStatus());
 
                 if (pi.isValid()) {
                     queue.add(pi);
                 }
             }
-            SegmentMerger merger = new SegmentMerger(pid, spvr, consumer);
+            SegmentMerger merger = new SegmentMerger(pid, req, consumer);
             while (!queue.isEmpty()) {
                 PartitionIterator pit = queue.poll();
                 SegmentKey key = pit.key();
@@ -157,7 +181,7 @@ public class SingleParameterArchiveRetrieval {
                     log.error(msg);
                     throw new DatabaseCorruptionException(msg);
                 }
-                retriveValuesFromSegment(pid, timeSegment, pit, spvr, merger);
+                retriveValuesFromSegment(pid, timeSegment, pit, req, merger);
                 pit.next();
                 if (pit.isValid()) {
                     queue.add(pit);
@@ -0,0 +1,289 @@
+package org.yamcs.tctm;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.yamcs.logging.Log;
+
+/**
+ * Receives UDP datagrams on a {@link DatagramChannel} and hands them over to a processing thread.
+ * <p>
+ * The reception thread drains all the datagrams waiting in the socket each time the channel becomes readable and
+ * stores them into a ring of direct buffers, allocated the first time they are needed. The processing thread takes them
+ * from the ring with {@link #take(int)} and gives them back with {@link #release(Datagram)}.
+ * <p>
+ * Each {@link #start()} begins a new generation; a processing thread only takes the datagrams of the generation it has
+ * been started for, such that a thread left over from before a close/start cycle cannot compete with the new one.
+ * <p>
+ * A slow down of the processing is absorbed first by the ring and then by the socket receive buffer: when all the
+ * buffers of the ring are in use, the reception thread stops reading from the socket until one is released.
+ *
+ * @author nm
+ *
+ */
+public class UdpDatagramReceiver {
+    public static final int DEFAULT_RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_RING_SIZE = 1024;
+
+    final int port;
+    final int receiveBufferSize;
+    final int maxLength;
+    final int ringSize;
+    final LongSupplier timeSource;
+    final Log log;
+
+    private final ArrayBlockingQueue<Datagram> free;
+    private int allocated; // number of buffers allocated, guarded by free
+
+    private DatagramChannel channel;
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running;
+    // the generation is incremented by each start and close
+    private volatile Generation current = new Generation(0, 1);
+    private volatile long datagramCount;
+
+    /**
+     *
+     * @param port
+     *            - the UDP port to listen to
+     * @param maxLength
+     *            - the size of each buffer; longer datagrams are truncated
+     * @param ringSize
+     *            - the maximum number of buffers
+     * @param receiveBufferSize
+     *            - the requested size in bytes of the socket receive buffer; the operating system may limit it
+     * @param timeSource
+     *            - used to timestamp the datagrams when they are read from the socket
+     * @param log
+     */
+    public UdpDatagramReceiver(int port, int maxLength, int ringSize, int receiveBufferSize, LongSupplier timeSource,
+            Log log) {
+        this.port = port;
+        this.receiveBufferSize = receiveBufferSize;
+        this.maxLength = maxLength;
+        this.ringSize = ringSize;
+        this.timeSource = timeSource;
+        this.log = log;
+        free = new ArrayBlockingQueue<>(ringSize);
+    }
+
+    /**
+     * Binds the socket and starts the reception thread.
+     *
+     * @return the generation to be passed to {@link #take(int)} by the processing thread
+     */
+    public synchronized int start() throws IOException {
+        if (running) {
+            throw new IllegalStateException("The receiver for port " + port + " is already started");
+        }
+        channel = DatagramChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+            int actual = channel.getOption(StandardSocketOptions.SO_RCVBUF);
+            if (actual < receiveBufferSize) {
+                log.warn("The UDP receive buffer size for port {} is {} bytes instead of the {} requested; "
+                        + "the maximum allowed by the operating system may have to be increased "
+                        + "(net.core.rmem_max on Linux)", port, actual, receiveBufferSize);
+            }
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        running = true;
+        Generation g = new Generation(current.id + 1, ringSize);
+        current = g;
+        DatagramChannel ch = channel;
+        Selector sel = selector;
+        thread = new Thread(() -> receive(ch, sel, g), "UdpDatagramReceiver-" + port);
+        thread.setDaemon(true);
+        thread.start();
+        return g.id;
+    }
+
+    /**
+     * Closes the socket and stops the reception thread. The datagrams not yet taken are discarded.
+     */
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Generation g = current;
+        current = new Generation(g.id + 1, 1);
+        discard(g);
+        try {
+            selector.close();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Error closing the UDP channel for port {}", port, e);
+        }
+        thread.interrupt();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     *
+     * @return the number of datagrams read from the socket
+     */
+    public long getDatagramCount() {
+        return datagramCount;
+    }
+
+    /**
+     * Waits for the next datagram. The datagram has to be given back with {@link #release(Datagram)} after it has
+     * been processed.
+     *
+     * @param generation
+     *            - the value returned by the {@link #start()} which the calling thread has been started for
+     * @return the next datagram or null if the receiver has been closed or restarted since that start
+     * @throws InterruptedException
+     */
+    public Datagram take(int generation) throws InterruptedException {
+        while (true) {
+            Generation g = current;
+            if (g.id != generation) {
+                return null;
+            }
+            Datagram d = g.received.poll(1, TimeUnit.SECONDS);
+            if (d != null) {
+                if (current != g) {
+                    // closed while waiting
+                    release(d);
+                    return null;
+                }
+                return d;
+            }
+        }
+    }
+
+    /**
+     * Gives back to the ring the buffer of a datagram returned by {@link #take()}.
+     */
+    public void release(Datagram d) {
+        d.data.clear();
+        free.add(d);
+    }
+
+    // gives back the buffers of the datagrams not taken
+    private void discard(Generation g) {
+        Datagram d;
+        while ((d = g.received.poll()) != null) {
+            release(d);
+        }
+    }
+
+    private Datagram nextFree() throws InterruptedException {
+        Datagram d = free.poll();
+        if (d != null) {
+            return d;
+        }
+        synchronized (free) {
+            if (allocated < ringSize) {
+                allocated++;
+                return new Datagram(ByteBuffer.allocateDirect(maxLength));
+            }
+        }
+        return free.take();
+    }
+
+    // the channel and selector are passed such that a thread of a previous run cannot use those of a new one
+    private void receive(DatagramChannel ch, Selector sel, Generation g) {
+        while (sel.isOpen()) {
+            try {
+                sel.select();
+                sel.selectedKeys().clear();
+                drain(ch, g);
+            } catch (ClosedChannelException | ClosedSelectorException e) {
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                if (ch.isOpen()) {
+                    log.warn("Exception thrown when reading from the UDP socket at port {}", port, e);
+                }
+            }
+        }
+        // the datagrams added after the close discarded the others
+        discard(g);
+        log.debug("UDP reception on port {} stopped", port);
+    }
+
+    // reads all the datagrams available without blocking
+    private void drain(DatagramChannel ch, Generation g) throws IOException, InterruptedException {
+        while (true) {
+            Datagram d = nextFree();
+            boolean filled = false;
+            try {
+                if (ch.receive(d.data) == null) {
+                    return;
+                }
+                d.receptionTime = timeSource.getAsLong();
+                d.data.flip();
+                datagramCount++;
+                g.received.add(d);
+                filled = true;
+            } finally {
+                if (!filled) {
+                    release(d);
+                }
+            }
+        }
+    }
+
+    static class Generation {
+        final int id;
+        final ArrayBlockingQueue<Datagram> received;
+
+        Generation(int id, int capacity) {
+            this.id = id;
+            this.received = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    /**
+     * Datagram received from the socket; the data buffer is only valid until the datagram is released.
+     */
+    public static class Datagram {
+        final ByteBuffer data;
+        long receptionTime;
+
+        Datagram(ByteBuffer data) {
+            this.data = data;
+        }
+
+        /**
+         *
+         * @return the buffer containing the datagram between its position and its limit
+         */
+        public ByteBuffer getData() {
+            return data;
+        }
+
+        public int getLength() {
+            return data.remaining();
+        }
+
+        public long getReceptionTime() {
+            return receptionTime;
+        }
+    }
+}
@@ -1,32 +1,31 @@
 package org.yamcs.tctm;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.SocketException;
-import java.nio.ByteBuffer;
 
 import org.yamcs.ConfigurationException;
 import org.yamcs.TmPacket;
 import org.yamcs.YConfiguration;
+import org.yamcs.tctm.UdpDatagramReceiver.Datagram;
 
 /**
  * Receives telemetry packets via UDP. One UDP datagram = one TM packet.
  * 
  * Keeps simple statistics about the number of datagram received and the number of too short datagrams
+ * <p>
+ * The datagrams are read from the socket by a separate thread (see {@link UdpDatagramReceiver}) such that they are not
+ * lost if the processing of the packets is temporarily slower than the rate at which they arrive.
  * 
  * @author nm
  *
  */
-public class UdpTmDataLink extends AbstractTmDataLink implements Runnable {
+public class UdpTmDataLink extends AbstractTmDataLink {
     private volatile int invalidDatagramCount = 0;
 
-    private DatagramSocket tmSocket;
     private int port;
 
     final static int MAX_LENGTH = 1500;
-    final DatagramPacket datagram;
     final int maxLength;
+    final UdpDatagramReceiver receiver;
 
     /**
      * Creates a new UDP TM Data Link
@@ -38,7 +37,10 @@ public class UdpTmDataLink extends AbstractTmDataLink implements Runnable {
         super(instance, name, config);
         port = config.getInt("port");
         maxLength = config.getInt("maxLength", MAX_LENGTH);
-        datagram = new DatagramPacket(new byte[maxLength], maxLength);
+        receiver = new UdpDatagramReceiver(port, maxLength,
+                config.getInt("receiveQueueSize", UdpDatagramReceiver.DEFAULT_RING_SIZE),
+                config.getInt("receiveBufferSize", UdpDatagramReceiver.DEFAULT_RECEIVE_BUFFER_SIZE),
+                timeService::getMissionTime, log);
         initPreprocessor(instance, config);
     }
 
@@ -46,9 +48,8 @@ public class UdpTmDataLink extends AbstractTmDataLink implements Runnable {
     public void doStart() {
         if (!isDisabled()) {
             try {
-                tmSocket = new DatagramSocket(port);
-                new Thread(this).start();
-            } catch (SocketException e) {
+                startReception();
+            } catch (IOException e) {
                 notifyFailed(e);
             }
         }
@@ -57,17 +58,28 @@ public class UdpTmDataLink extends AbstractTmDataLink implements Runnable {
 
     @Override
     public void doStop() {
-        tmSocket.close();
+        receiver.close();
         notifyStopped();
     }
-    
 
-   
+    private void startReception() throws IOException {
+        int generation = receiver.start();
+        new Thread(() -> run(generation)).start();
+    }
 
-    @Override
-    public void run() {
+    private void run(int generation) {
         while (isRunningAndEnabled()) {
-            TmPacket pwrt = getNextPacket();
+            Datagram datagram;
+            try {
+                datagram = receiver.take(generation);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (datagram == null) { // the shutdown or disable closes the receiver, the enable starts a new thread
+                break;
+            }
+            TmPacket pwrt = getPacket(datagram);
             if (pwrt != null) {
                 tmSink.processPacket(pwrt);
             }
@@ -76,35 +88,23 @@ public class UdpTmDataLink extends AbstractTmDataLink implements Runnable {
 
     /**
      * 
-     * Called to retrieve the next packet. It blocks in readining on the multicast socket
+     * Called to convert a datagram received on the socket into a packet; the datagram is released.
      * 
      * @return anything that looks as a valid packet, just the size is taken into account to decide if it's valid or not
      */
-    public TmPacket getNextPacket() {
-        ByteBuffer packet = null;
-
-        while (isRunning()) {
-            try {
-                tmSocket.receive(datagram);
-                updateStats(datagram.getLength());
-                packet = ByteBuffer.allocate(datagram.getLength());
-                packet.put(datagram.getData(), datagram.getOffset(), datagram.getLength());
-                break;
-            } catch (IOException e) {
-                if (!isRunning() || isDisabled()) {// the shutdown or disable will close the socket and that will generate an exception
-                                   // which we ignore here
-                    return null;
-                }
-                log.warn("exception thrown when reading from the UDP socket at port {}", port, e);
-            }
-        }
-
-        if (packet != null) {
-            return packetPreprocessor.process(new TmPacket(timeService.getMissionTime(), packet.array()));
-        } else {
-            return null;
+    TmPacket getPacket(Datagram datagram) {
+        byte[] packet;
+        long rectime;
+        try {
+            updateStats(datagram.getLength());
+            packet = new byte[datagram.getLength()];
+            datagram.getData().get(packet);
+            rectime = datagram.getReceptionTime();
+        } finally {
+            receiver.release(datagram);
         }
 
+        return packetPreprocessor.process(new TmPacket(rectime, packet));
     }
 
     /**
@@ -121,21 +121,20 @@ public class UdpTmDataLink extends AbstractTmDataLink implements Runnable {
     }
 
     /**
-     * Sets the disabled to true such that getNextPacket ignores the received datagrams
+     * Closes the receiver such that the reception thread stops
      */
     @Override
     public void doDisable() {
-        tmSocket.close();
+        receiver.close();
     }
 
     /**
-     * Sets the disabled to false such that getNextPacket does not ignore the received datagrams
-     * @throws SocketException 
+     * Restarts the receiver and a new reception thread
+     * @throws IOException 
      */
     @Override
-    public void doEnable() throws SocketException {
-        tmSocket = new DatagramSocket(port);
-        new Thread(this).start();
+    public void doEnable() throws IOException {
+        startReception();
     }
 
     @Override
@@ -1,5 +1,6 @@
 package org.yamcs.tctm.ccsds;
 
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -34,6 +35,10 @@ import org.yamcs.utils.ByteArrayUtils;
  * The two types can be both present on the same stream.
  * 
  * <p>
+ * The packets fully contained in the data passed to {@link #process(byte[], int, int)} are passed to the consumer
+ * without being copied; only the packets spanning multiple chunks are copied, in a buffer reused from one packet to
+ * the next.
+ * <p>
  * The objects of this class can processes one "stream" at a time and they are not thread safe!
  * 
  * @author nm
@@ -55,12 +60,14 @@ public class PacketDecoder {
 
     private int headerOffset;
 
-    // the packetOffset and packet will be valid when the header is completely read (i.e.
-    // headerOffset==header.length==lengthFieldEndOffset)
+    // the packetOffset and packetLength will be valid when the header is completely read (i.e.
+    // headerOffset==headerLength)
     private int packetOffset;
-    private byte[] packet;
+    private int packetLength;
+    // used to assemble the packets spanning multiple chunks; it is reused for all the packets
+    private byte[] buffer = ZERO_BYTES;
 
-    final Consumer<byte[]> consumer;
+    final PacketConsumer consumer;
 
     private boolean skipIdlePackets = true;
     private boolean stripEncapsulationHeader = false;
@@ -68,31 +75,51 @@ public class PacketDecoder {
     final static byte[] ZERO_BYTES = new byte[0];
     static Logger log = LoggerFactory.getLogger(PacketDecoder.class.getName());
 
-    public PacketDecoder(int maxPacketLength, Consumer<byte[]> consumer) {
+    /**
+     * Receives the decoded packets as a slice of a buffer which is only valid during the call: it is either the data
+     * passed to {@link PacketDecoder#process(byte[], int, int)} (if the packet is fully contained in it) or a buffer
+     * reused for assembling the next packets.
+     */
+    @FunctionalInterface
+    public interface PacketConsumer {
+        void accept(byte[] buf, int offset, int length);
+    }
+
+    /**
+     * Creates a decoder passing the packets as slices of the data or of an internal buffer; the consumer has to copy
+     * the packets it wants to keep.
+     */
+    public PacketDecoder(int maxPacketLength, PacketConsumer consumer) {
         this.maxPacketLength = maxPacketLength;
         this.consumer = consumer;
     }
 
+    /**
+     * Creates a decoder passing each packet in its own array.
+     */
+    public PacketDecoder(int maxPacketLength, Consumer<byte[]> consumer) {
+        this(maxPacketLength, (buf, offset, length) -> consumer
+                .accept(length == 0 ? ZERO_BYTES : Arrays.copyOfRange(buf, offset, offset + length)));
+    }
+
     public void process(byte[] data, int offset, int length) throws TcTmException {
         while (length > 0) {
-            if (headerOffset == 0) { // read the first byte of the header to know what kind of packet it is as well as
+            if (headerOffset == 0) {
+                int n = containedPacketLength(data, offset, length);
+                if (n > 0) { // the packet is fully contained in the data, no need to copy it
+                    sendToConsumer(data, offset, n);
+                    offset += n;
+                    length -= n;
+                    continue;
+                }
+                // the packet continues in the next chunk; the header length is at least 2 because the one byte packets
+                // are always contained
                 byte d0 = data[offset];
                 offset++;
                 length--;
                 headerLength = getHeaderLength(d0);
                 header[0] = d0;
-                if (headerLength == 1) {
-                    // special case, encapsulation packet of size 1, send the packet and reset the header
-                    if (stripEncapsulationHeader) {
-                        packet = ZERO_BYTES;
-                    } else {
-                        packet = new byte[] { d0 };
-                    }
-                    sendToConsumer();
-                    headerOffset = 0;
-                } else {
-                    headerOffset++;
-                }
+                headerOffset++;
             } else if (headerOffset < headerLength) { // reading the header
                 int n = Math.min(length, headerLength - headerOffset);
                 System.arraycopy(data, offset, header, headerOffset, n);
@@ -103,36 +130,54 @@ public class PacketDecoder {
                     allocatePacket();
                 }
             } else {// reading the packet
-                int n = Math.min(packet.length - packetOffset, length);
-                System.arraycopy(data, offset, packet, packetOffset, n);
+                int n = Math.min(packetLength - packetOffset, length);
+                System.arraycopy(data, offset, buffer, packetOffset, n);
                 offset += n;
                 packetOffset += n;
                 length -= n;
-                if (packetOffset == packet.length) {
-                    sendToConsumer();
-                    packet = null;
+                if (packetOffset == packetLength) {
+                    sendToConsumer(buffer, 0, packetLength);
                     headerOffset = 0;
                 }
             }
         }
     }
 
-    private static boolean isIdle(byte[] header) {
-        int b0 = header[0] & 0xFF;
+    /**
+     * Returns the length of the packet starting at the offset if it is fully contained in the data or -1 otherwise
+     */
+    private int containedPacketLength(byte[] data, int offset, int length) throws TcTmException {
+        int hl = getHeaderLength(data[offset]);
+        if (hl > length) {
+            return -1;
+        }
+        int pl = getPacketLength(data, offset);
+        checkPacketLength(pl, hl);
+        return pl <= length ? pl : -1;
+    }
+
+    private static boolean isIdle(byte[] header, int offset) {
+        int b0 = header[offset] & 0xFF;
         int pv = b0 >>> 5;
 
         if (pv == PACKET_VERSION_CCSDS) {
-            return ((ByteArrayUtils.decodeShort(header, 0) & 0x7FF) == 0x7FF);
+            return ((ByteArrayUtils.decodeShort(header, offset) & 0x7FF) == 0x7FF);
         } else {
             return ((b0 & 0x1C) == 0);
         }
     }
 
-    private void sendToConsumer() {
-        if (!skipIdlePackets || !isIdle(header)) {
-            consumer.accept(packet);
+    // buf[offset] is the first byte of the packet header
+    private void sendToConsumer(byte[] buf, int offset, int length) {
+        if (skipIdlePackets && isIdle(buf, offset)) {
+            log.trace("skiping idle packet of size {}", length);
+            return;
+        }
+        if (stripEncapsulationHeader && isEncapsulation(buf[offset])) {
+            int hl = ENCAPSULATION_HEADER_LENGTH[buf[offset] & 3];
+            consumer.accept(buf, offset + hl, length - hl);
         } else {
-            log.trace("skiping idle packet of size {}", packet.length);
+            consumer.accept(buf, offset, length);
         }
     }
 
@@ -148,56 +193,51 @@ public class PacketDecoder {
         }
     }
 
-    private void allocatePacket() throws TcTmException {
-        int packetLength = getPacketLength(header);
+    private void checkPacketLength(int packetLength, int headerLength) throws TcTmException {
         if (packetLength > maxPacketLength) {
             throw new PacketTooLongException(maxPacketLength, packetLength);
         } else if (packetLength < headerLength) {
             throw new TcTmException(
                     "Invalid packet length " + packetLength + " (it is smaller than the header length)");
         }
-        if (stripEncapsulationHeader && isEncapsulation(header)) {
-            if (packetLength == headerLength) {
-                packet = ZERO_BYTES;
-                sendToConsumer();
-                headerOffset = 0;
-            } else {
-                packet = new byte[packetLength - headerLength];
-                packetOffset = 0;
-            }
-        } else {
-            packet = new byte[packetLength];
-            System.arraycopy(header, 0, packet, 0, headerLength);
-            if (packetLength == headerLength) {
-                sendToConsumer();
-                headerOffset = 0;
-            } else {
-                packetOffset = headerLength;
-            }
+    }
+
+    // called when the header of a packet spanning multiple chunks has been read
+    private void allocatePacket() throws TcTmException {
+        packetLength = getPacketLength(header, 0);
+        checkPacketLength(packetLength, headerLength);
+        if (buffer.length < packetLength) {
+            buffer = new byte[Math.min(maxPacketLength, Math.max(packetLength, 2 * buffer.length))];
+        }
+        System.arraycopy(header, 0, buffer, 0, headerLength);
+        packetOffset = headerLength;
+        if (packetLength == headerLength) {
+            sendToConsumer(buffer, 0, packetLength);
+            headerOffset = 0;
         }
     }
 
-    private static boolean isEncapsulation(byte[] header) {
-        int pv = (header[0] & 0xFF) >>> 5;
+    private static boolean isEncapsulation(byte b0) {
+        int pv = (b0 & 0xFF) >>> 5;
         return (pv == PACKET_VERSION_ENCAPSULATION);
     }
 
-    // decodes the packet length from the header
-    private static int getPacketLength(byte[] header) throws UnsupportedPacketVersionException {
-        int h0 = header[0] & 0xFF;
+    // decodes the length of the packet whose header starts at the offset
+    private static int getPacketLength(byte[] header, int offset) throws UnsupportedPacketVersionException {
+        int h0 = header[offset] & 0xFF;
         int pv = h0 >>> 5;
         if (pv == PACKET_VERSION_CCSDS) {
-            return 7 + ByteArrayUtils.decodeShort(header, 4);
+            return 7 + ByteArrayUtils.decodeShort(header, offset + 4);
         } else if (pv == PACKET_VERSION_ENCAPSULATION) {
             int l = h0 & 3;
             if (l == 0) {
                 return 1;
             } else if (l == 1) {
-                return header[1] & 0xFF;
+                return header[offset + 1] & 0xFF;
             } else if (l == 2) {
-                return ByteArrayUtils.decodeShort(header, 2);
+                return ByteArrayUtils.decodeShort(header, offset + 2);
             } else {
-                return ByteArrayUtils.decodeInt(header, 4);
+                return ByteArrayUtils.decodeInt(header, offset + 4);
             }
         } else {
             throw new UnsupportedPacketVersionException(pv);
@@ -209,7 +249,6 @@ public class PacketDecoder {
      */
     public void reset() {
         headerOffset = 0;
-        packet = null;
     }
 
     /**
@@ -217,7 +256,7 @@ public class PacketDecoder {
      * @return true of the decoder is in the middle of a packet decoding
      */
     public boolean hasIncompletePacket() {
-        return (headerOffset > 0) && ((headerOffset < headerLength) || (packetOffset < packet.length));
+        return (headerOffset > 0) && ((headerOffset < headerLength) || (packetOffset < packetLength));
     }
 
     /**
@@ -1,30 +1,31 @@
 package org.yamcs.tctm.ccsds;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.SocketException;
 
 import org.yamcs.ConfigurationException;
 import org.yamcs.YConfiguration;
 import org.yamcs.tctm.TcTmException;
+import org.yamcs.tctm.UdpDatagramReceiver;
+import org.yamcs.tctm.UdpDatagramReceiver.Datagram;
 import org.yamcs.utils.StringConverter;
 import org.yamcs.utils.TimeEncoding;
 
 /**
  * Receives telemetry fames via UDP. One UDP datagram = one TM frame.
- * 
+ * <p>
+ * The datagrams are read from the socket by a separate thread (see {@link UdpDatagramReceiver}) such that they are not
+ * lost if the decoding of the frames is temporarily slower than the rate at which they arrive.
  * 
  * @author nm
  *
  */
-public class UdpTmFrameLink extends AbstractTmFrameLink implements Runnable {
+public class UdpTmFrameLink extends AbstractTmFrameLink {
     private volatile int invalidDatagramCount = 0;
 
-    private DatagramSocket tmSocket;
     private int port;
 
-    final DatagramPacket datagram;
+    final UdpDatagramReceiver receiver;
+    final byte[] frame;
     String packetPreprocessorClassName;
     Object packetPreprocessorArgs;
     Thread thread;
@@ -39,16 +40,20 @@ public class UdpTmFrameLink extends AbstractTmFrameLink implements Runnable {
         super(instance, name, config);
         port = config.getInt("port");
         int maxLength = frameHandler.getMaxFrameSize();
-        datagram = new DatagramPacket(new byte[maxLength], maxLength);
+        frame = new byte[maxLength];
+        // one more byte to detect the datagrams longer than the maximum frame size
+        receiver = new UdpDatagramReceiver(port, maxLength + 1,
+                config.getInt("receiveQueueSize", UdpDatagramReceiver.DEFAULT_RING_SIZE),
+                config.getInt("receiveBufferSize", UdpDatagramReceiver.DEFAULT_RECEIVE_BUFFER_SIZE),
+                TimeEncoding::getWallclockTime, log);
     }
 
     @Override
     public void doStart() {
         if (!isDisabled()) {
             try {
-                tmSocket = new DatagramSocket(port);
-                new Thread(this).start();
-            } catch (SocketException e) {
+                startReception();
+            } catch (IOException e) {
                 notifyFailed(e);
             }
         }
@@ -57,43 +62,55 @@ public class UdpTmFrameLink extends AbstractTmFrameLink implements Runnable {
 
     @Override
     public void doStop() {
-        tmSocket.close();
+        receiver.close();
         notifyStopped();
     }
 
-    @Override
-    public void run() {
+    private void startReception() throws IOException {
+        int generation = receiver.start();
+        new Thread(() -> run(generation)).start();
+    }
+
+    private void run(int generation) {
         while (isRunningAndEnabled()) {
+            Datagram datagram;
+            try {
+                datagram = receiver.take(generation);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (datagram == null) { // the receiver has been closed, the enable starts a new thread
+                break;
+            }
             try {
-                tmSocket.receive(datagram);
-                if (log.isTraceEnabled()) {
-                    log.trace("Received datagram of length {}: {}", datagram.getLength(), StringConverter
-                            .arrayToHexString(datagram.getData(), datagram.getOffset(), datagram.getLength(), true));
-                }
                 int length = datagram.getLength();
                 if (length < frameHandler.getMinFrameSize()) {
+                    invalidDatagramCount++;
                     eventProducer.sendWarning("Error processing frame: size " + length
                             + " shorter than minimum allowed " + frameHandler.getMinFrameSize());
                     continue;
                 }
                 if (length > frameHandler.getMaxFrameSize()) {
+                    invalidDatagramCount++;
                     eventProducer.sendWarning("Error processing frame: size " + length + " longer than maximum allowed "
                             + frameHandler.getMaxFrameSize());
                     continue;
                 }
+                datagram.getData().get(frame, 0, length);
+                if (log.isTraceEnabled()) {
+                    log.trace("Received datagram of length {}: {}", length,
+                            StringConverter.arrayToHexString(frame, 0, length, true));
+                }
                 frameCount++;
 
-                frameHandler.handleFrame(TimeEncoding.getWallclockTime(), datagram.getData(), datagram.getOffset(),
-                        length);
-            } catch (IOException e) {
-                if (isDisabled()) {
-                    break;
-                }
-                log.warn("exception {} thrown when reading from the UDP socket at port {}", port, e);
+                frameHandler.handleFrame(datagram.getReceptionTime(), frame, 0, length);
             } catch (TcTmException e) {
                 eventProducer.sendWarning("Error processing frame: " + e.toString());
             } catch (Exception e) {
                 log.error("Error processing frame", e);
+            } finally {
+                receiver.release(datagram);
             }
         }
     }
@@ -113,16 +130,12 @@ public class UdpTmFrameLink extends AbstractTmFrameLink implements Runnable {
 
     @Override
     protected void doDisable() {
-        if (tmSocket != null) {
-            tmSocket.close();
-            tmSocket = null;
-        }
+        receiver.close();
     }
 
     @Override
-    protected void doEnable() throws SocketException {
-        tmSocket = new DatagramSocket(port);
-        new Thread(this).start();
+    protected void doEnable() throws IOException {
+        startReception();
     }
 
     @Override
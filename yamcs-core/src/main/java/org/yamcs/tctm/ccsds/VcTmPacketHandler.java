@@ -1,6 +1,7 @@
 package org.yamcs.tctm.ccsds;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.yamcs.ConfigurationException;
 import org.yamcs.TmPacket;
@@ -50,7 +51,7 @@ public class VcTmPacketHandler implements TmPacketDataLink, VcDownlinkHandler {
         log = new Log(this.getClass(), yamcsInstance);
         log.setContext(name);
 
-        packetDecoder = new PacketDecoder(vmp.maxPacketLength, p -> handlePacket(p));
+        packetDecoder = new PacketDecoder(vmp.maxPacketLength, this::handlePacket);
         packetDecoder.stripEncapsulationHeader(vmp.stripEncapsulationHeader);
 
         try {
@@ -125,12 +126,15 @@ public class VcTmPacketHandler implements TmPacketDataLink, VcDownlinkHandler {
         }
     }
 
-    private void handlePacket(byte[] p) {
+    private void handlePacket(byte[] buf, int offset, int length) {
         if (log.isTraceEnabled()) {
-            log.trace("VC {}, SEQ {} decoded packet of length {}", vmp.vcId, lastFrameSeq, p.length);
+            log.trace("VC {}, SEQ {} decoded packet of length {}", vmp.vcId, lastFrameSeq, length);
         }
 
         numPackets++;
+        // the buffer belongs to the frame or to the decoder; the packet is kept by the archive and the processors so it
+        // needs its own array
+        byte[] p = Arrays.copyOfRange(buf, offset, offset + length);
         TmPacket pwt = new TmPacket(timeService.getMissionTime(), p);
         pwt.setEarthRceptionTime(ertime);
         
@@ -0,0 +1,84 @@
+package org.yamcs.xtceproc;
+
+import org.yamcs.parameter.ContainerParameterValue;
+import org.yamcs.parameter.Value;
+import org.yamcs.utils.BitBuffer;
+import org.yamcs.xtce.ParameterEntry;
+
+/**
+ * Base class for the decoders generated by {@link ContainerDecoderCompiler}.
+ * <p>
+ * A compiled decoder extracts the subscribed entries of one container from constant bit offsets; the offsets and
+ * sizes are computed once at compilation time such that the processing of a packet does not need to walk the XTCE
+ * model.
+ *
+ * @author nm
+ *
+ */
+public abstract class CompiledContainerDecoder {
+    protected final ParameterEntry[] entries;
+    protected final int[] bitOffsets;
+    protected final int[] bitSizes;
+
+    // the position of the buffer after the last entry has been extracted
+    final int lastPosition;
+    // the maximum position reached while extracting the entries; the packet has to be at least that long
+    final int maxPosition;
+
+    protected CompiledContainerDecoder(ParameterEntry[] entries, int[] bitOffsets, int[] bitSizes) {
+        this.entries = entries;
+        this.bitOffsets = bitOffsets;
+        this.bitSizes = bitSizes;
+        int max = 0;
+        for (int i = 0; i < entries.length; i++) {
+            max = Math.max(max, bitOffsets[i] + bitSizes[i]);
+        }
+        this.maxPosition = max;
+        int n = entries.length - 1;
+        this.lastPosition = bitOffsets[n] + bitSizes[n];
+    }
+
+    /**
+     *
+     * @return true if the buffer is long enough such that all entries can be extracted from their constant offsets
+     */
+    public boolean canDecode(BitBuffer buf) {
+        return buf.sizeInBits() >= maxPosition;
+    }
+
+    /**
+     * Extracts all the entries and adds the resulting parameter values to the processing result.
+     * <p>
+     * At the end the buffer is positioned after the last entry, as it would be by the
+     * {@link SequenceContainerProcessor}.
+     */
+    public void decode(ContainerProcessingContext pcontext, BitBuffer buf) {
+        extractEntries(pcontext, buf);
+        buf.setPosition(lastPosition);
+    }
+
+    public int getMaxPosition() {
+        return maxPosition;
+    }
+
+    protected abstract void extractEntries(ContainerProcessingContext pcontext, BitBuffer buf);
+
+    /**
+     * Called from the generated code for each extracted raw value.
+     */
+    protected final void addValue(ContainerProcessingContext pcontext, int idx, Value rawValue) {
+        ParameterEntry pe = entries[idx];
+        ContainerParameterValue pv = new ContainerParameterValue(pe.getParameter());
+        pv.setAbsoluteBitOffset(pcontext.containerAbsoluteByteOffset + bitOffsets[idx]);
+        pv.setRawValue(rawValue);
+        pv.setBitSize(bitSizes[idx]);
+
+        pcontext.pdata.parameterTypeProcessor.calibrate(pcontext, pv);
+
+        pv.setAcquisitionTime(pcontext.result.acquisitionTime);
+        pv.setGenerationTime(pcontext.result.generationTime);
+        pv.setExpireMillis(pcontext.result.expireMillis);
+        pv.setSequenceEntry(pe);
+        pcontext.result.params.add(pv);
+    }
+}
@@ -0,0 +1,227 @@
+package org.yamcs.xtceproc;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.janino.SimpleCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yamcs.xtce.BaseDataType;
+import org.yamcs.xtce.BooleanDataEncoding;
+import org.yamcs.xtce.DataEncoding;
+import org.yamcs.xtce.FloatDataEncoding;
+import org.yamcs.xtce.IntegerDataEncoding;
+import org.yamcs.xtce.ParameterEntry;
+import org.yamcs.xtce.ParameterType;
+import org.yamcs.xtce.SequenceContainer;
+import org.yamcs.xtce.SequenceEntry;
+
+/**
+ * Generates with Janino straight-line decoders for the containers having a fixed layout.
+ * <p>
+ * A set of entries can be compiled if:
+ * <ul>
+ * <li>all the entries are {@link ParameterEntry} without repeat and without include condition.</li>
+ * <li>the position of each entry can be determined at compile time: either it is relative to the container start or
+ * it is relative to the previous entry which itself has a known position.</li>
+ * <li>the parameters have base data types with fixed size integer (unsigned or two's complement), IEEE754 float or
+ * boolean encodings, without custom binary transform algorithms.</li>
+ * </ul>
+ *
+ * @author nm
+ *
+ */
+public class ContainerDecoderCompiler {
+    static Logger log = LoggerFactory.getLogger(ContainerDecoderCompiler.class);
+    private static AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Compiles the given entries of the container into a decoder.
+     *
+     * @param container
+     * @param entries
+     *            - the subscribed entries in the order of their index in the container
+     * @return the decoder or null if the entries cannot be compiled
+     */
+    public static CompiledContainerDecoder compile(SequenceContainer container, Collection<SequenceEntry> entries) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        int n = entries.size();
+        ParameterEntry[] pentries = new ParameterEntry[n];
+        int[] bitOffsets = new int[n];
+        int[] bitSizes = new int[n];
+        List<DataEncoding> encodings = new ArrayList<>(n);
+
+        int i = 0;
+        ParameterEntry prev = null;
+        for (SequenceEntry se : entries) {
+            if (!(se instanceof ParameterEntry) || se.getRepeatEntry() != null || se.getIncludeCondition() != null) {
+                return null;
+            }
+            ParameterEntry pe = (ParameterEntry) se;
+            DataEncoding de = getCompilableEncoding(pe);
+            if (de == null) {
+                return null;
+            }
+            int offset;
+            if (pe.getReferenceLocation() == SequenceEntry.ReferenceLocationType.containerStart) {
+                offset = pe.getLocationInContainerInBits();
+            } else {
+                // the position is known only if the previous entry of the container has been extracted just before
+                if (prev == null || pe.getIndex() == 0 || prev.getIndex() != pe.getIndex() - 1
+                        || prev.getSequenceContainer() != pe.getSequenceContainer()) {
+                    return null;
+                }
+                offset = bitOffsets[i - 1] + bitSizes[i - 1] + pe.getLocationInContainerInBits();
+            }
+            if (offset < 0) {
+                return null;
+            }
+            pentries[i] = pe;
+            bitOffsets[i] = offset;
+            bitSizes[i] = de.getSizeInBits();
+            encodings.add(de);
+            prev = pe;
+            i++;
+        }
+
+        String className = "ContainerDecoder" + counter.incrementAndGet();
+        String source = generateSource(className, bitOffsets, bitSizes, encodings);
+        try {
+            SimpleCompiler compiler = new SimpleCompiler();
+            compiler.cook(source);
+            @SuppressWarnings("unchecked")
+            Class<CompiledContainerDecoder> c = (Class<CompiledContainerDecoder>) compiler.getClassLoader()
+                    .loadClass("org.yamcs.xtceproc.compiled." + className);
+            Constructor<CompiledContainerDecoder> constr = c.getConstructor(ParameterEntry[].class, int[].class,
+                    int[].class);
+            log.debug("Compiled decoder for container {} with {} entries", container.getQualifiedName(), n);
+            return constr.newInstance(pentries, bitOffsets, bitSizes);
+        } catch (Exception e) {
+            log.warn("Failed to compile decoder for container {}; source: {}", container.getQualifiedName(), source,
+                    e);
+            return null;
+        }
+    }
+
+    private static DataEncoding getCompilableEncoding(ParameterEntry pe) {
+        ParameterType ptype = pe.getParameter().getParameterType();
+        if (!(ptype instanceof BaseDataType)) {
+            return null;
+        }
+        DataEncoding de = ((BaseDataType) ptype).getEncoding();
+        if (de == null || de.getFromBinaryTransformAlgorithm() != null) {
+            return null;
+        }
+        int size = de.getSizeInBits();
+        if (de instanceof IntegerDataEncoding) {
+            IntegerDataEncoding ide = (IntegerDataEncoding) de;
+            if (ide.getEncoding() != IntegerDataEncoding.Encoding.UNSIGNED
+                    && ide.getEncoding() != IntegerDataEncoding.Encoding.TWOS_COMPLEMENT) {
+                return null;
+            }
+            return (size > 0 && size <= 64) ? de : null;
+        } else if (de instanceof FloatDataEncoding) {
+            FloatDataEncoding fde = (FloatDataEncoding) de;
+            if (fde.getEncoding() != FloatDataEncoding.Encoding.IEEE754_1985) {
+                return null;
+            }
+            return (size == 32 || size == 64) ? de : null;
+        } else if (de instanceof BooleanDataEncoding) {
+            return de;
+        } else {
+            return null;
+        }
+    }
+
+    private static String generateSource(String className, int[] bitOffsets, int[] bitSizes,
+            List<DataEncoding> encodings) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package org.yamcs.xtceproc.compiled;\n")
+                .append("import java.nio.ByteOrder;\n")
+                .append("import org.yamcs.utils.BitBuffer;\n")
+                .append("import org.yamcs.utils.ValueUtility;\n")
+                .append("import org.yamcs.xtce.ParameterEntry;\n")
+                .append("import org.yamcs.xtceproc.ContainerProcessingContext;\n")
+                .append("public class ").append(className)
+                .append(" extends org.yamcs.xtceproc.CompiledContainerDecoder {\n")
+                .append("\tpublic ").append(className)
+                .append("(ParameterEntry[] entries, int[] bitOffsets, int[] bitSizes) {\n")
+                .append("\t\tsuper(entries, bitOffsets, bitSizes);\n")
+                .append("\t}\n")
+                .append("\tprotected void extractEntries(ContainerProcessingContext pcontext, BitBuffer buf) {\n")
+                .append("\t\tbyte[] b = buf.array();\n")
+                .append("\t\tint o = buf.offset();\n")
+                .append("\t\tlong v;\n");
+
+        ByteOrder currentOrder = null;
+        for (int i = 0; i < bitOffsets.length; i++) {
+            DataEncoding de = encodings.get(i);
+            int pos = bitOffsets[i];
+            int size = bitSizes[i];
+            ByteOrder order = de.getByteOrder();
+
+            if ((pos & 7) == 0 && (size & 7) == 0 && order == ByteOrder.BIG_ENDIAN) {
+                sb.append("\t\tv = ").append(bigEndianRead(pos >> 3, size >> 3)).append(";\n");
+            } else {
+                if (order != currentOrder) {
+                    sb.append("\t\tbuf.setByteOrder(ByteOrder.").append(order).append(");\n");
+                    currentOrder = order;
+                }
+                sb.append("\t\tbuf.setPosition(").append(pos).append(");\n")
+                        .append("\t\tv = buf.getBits(").append(size).append(");\n");
+            }
+            sb.append("\t\taddValue(pcontext, ").append(i).append(", ").append(rawValue(de, size)).append(");\n");
+        }
+        sb.append("\t}\n")
+                .append("}\n");
+        return sb.toString();
+    }
+
+    private static String bigEndianRead(int bytePos, int numBytes) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < numBytes; k++) {
+            if (k > 0) {
+                sb.append(" | ");
+            }
+            sb.append("((b[o + ").append(bytePos + k).append("] & 0xFFL)");
+            int shift = 8 * (numBytes - k - 1);
+            if (shift > 0) {
+                sb.append(" << ").append(shift);
+            }
+            sb.append(")");
+        }
+        return sb.toString();
+    }
+
+    private static String rawValue(DataEncoding de, int size) {
+        if (de instanceof IntegerDataEncoding) {
+            IntegerDataEncoding ide = (IntegerDataEncoding) de;
+            boolean unsigned = ide.getEncoding() == IntegerDataEncoding.Encoding.UNSIGNED;
+            String lv = "v";
+            if (!unsigned && size < 64) {
+                int n = 64 - size;
+                lv = "((v << " + n + ") >> " + n + ")";
+            }
+            if (size <= 32) {
+                return (unsigned ? "ValueUtility.getUint32Value((int) " : "ValueUtility.getSint32Value((int) ") + lv
+                        + ")";
+            } else {
+                return (unsigned ? "ValueUtility.getUint64Value(" : "ValueUtility.getSint64Value(") + lv + ")";
+            }
+        } else if (de instanceof FloatDataEncoding) {
+            if (size == 32) {
+                return "ValueUtility.getFloatValue(Float.intBitsToFloat((int) v))";
+            } else {
+                return "ValueUtility.getDoubleValue(Double.longBitsToDouble(v))";
+            }
+        } else {
+            return "ValueUtility.getBooleanValue(v != 0)";
+        }
+    }
+}
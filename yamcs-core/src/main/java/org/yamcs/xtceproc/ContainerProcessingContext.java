@@ -30,7 +30,7 @@ public class ContainerProcessingContext {
     // with respect to the primary container where the processing started
     int containerAbsoluteByteOffset;
 
-    Subscription subscription;
+    SubscriptionSnapshot subscription;
     ContainerProcessingResult result;
     ContainerProcessingOptions options;
 
@@ -43,7 +43,7 @@ public class ContainerProcessingContext {
     public final CriteriaEvaluator criteriaEvaluator;
 
     public ContainerProcessingContext(ProcessorData pdata, BitBuffer buffer, ContainerProcessingResult result,
-            Subscription subscription, ContainerProcessingOptions options) {
+            SubscriptionSnapshot subscription, ContainerProcessingOptions options) {
         this.pdata = pdata;
         this.buffer = buffer;
         this.subscription = subscription;
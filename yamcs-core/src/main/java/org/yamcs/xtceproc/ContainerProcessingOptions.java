@@ -5,6 +5,9 @@ import org.yamcs.YConfiguration;
 public class ContainerProcessingOptions {
     private static final String CONFIG_KEY_ignoreOutOfContainerEntries = "ignoreOutOfContainerEntries";
     private static final String CONFIG_KEY_expirationTolerance = "expirationTolerance";
+    private static final String CONFIG_KEY_compileContainers = "compileContainers";
+    private static final String CONFIG_KEY_decodingThreads = "decodingThreads";
+    private static final String CONFIG_KEY_decodingQueueSize = "decodingQueueSize";
     /**
      * If set to true, the entries that fit outside the packet definition, will not be even logged.
      * If set to false, a log message at WARNING level will be printed for the first entry that fits outside the binary
@@ -21,10 +24,37 @@ public class ContainerProcessingOptions {
      */
     double expirationTolerance = 1.9;
 
+    /**
+     * If set to true, the subscribed entries of the containers with a fixed layout are compiled into decoder classes
+     * which extract the parameters from constant offsets instead of walking the XTCE model for each packet.
+     * <p>
+     * The containers which cannot be compiled (e.g. because they contain repeated entries, include conditions or
+     * variable size entries) are processed as usual.
+     */
+    boolean compileContainers = false;
+
+    /**
+     * Number of threads used to decode the packets. If greater than 1, the packets are decoded in parallel and the
+     * results are delivered downstream in the order of the packet arrival.
+     * <p>
+     * Note that when decoding in parallel, the values used from the last value cache (e.g. in inheritance conditions
+     * or calibrator contexts) may be older than those extracted from the previous packet.
+     */
+    int decodingThreads = 1;
+
+    /**
+     * Maximum number of packets being decoded or waiting to be delivered when decoding in parallel. If the limit is
+     * reached, the thread providing the packets is blocked.
+     */
+    int decodingQueueSize = 1024;
+
     public ContainerProcessingOptions(YConfiguration config) {
         if (config != null) {
             ignoreOutOfContainerEntries = config.getBoolean(CONFIG_KEY_ignoreOutOfContainerEntries, false);
             expirationTolerance = config.getDouble(CONFIG_KEY_expirationTolerance, expirationTolerance);
+            compileContainers = config.getBoolean(CONFIG_KEY_compileContainers, compileContainers);
+            decodingThreads = config.getInt(CONFIG_KEY_decodingThreads, decodingThreads);
+            decodingQueueSize = config.getInt(CONFIG_KEY_decodingQueueSize, decodingQueueSize);
         }
     }
     /**
@@ -50,4 +80,27 @@ public class ContainerProcessingOptions {
         this.expirationTolerance = expirationTolerance;
     }
 
+    public boolean compileContainers() {
+        return compileContainers;
+    }
+
+    public void setCompileContainers(boolean compileContainers) {
+        this.compileContainers = compileContainers;
+    }
+
+    public int getDecodingThreads() {
+        return decodingThreads;
+    }
+
+    public void setDecodingThreads(int decodingThreads) {
+        this.decodingThreads = decodingThreads;
+    }
+
+    public int getDecodingQueueSize() {
+        return decodingQueueSize;
+    }
+
+    public void setDecodingQueueSize(int decodingQueueSize) {
+        this.decodingQueueSize = decodingQueueSize;
+    }
 }
@@ -3,6 +3,7 @@ package org.yamcs.xtceproc;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,8 +49,9 @@ public class ProcessorData {
      */
     final ParameterTypeProcessor parameterTypeProcessor = new ParameterTypeProcessor(this);
 
-    private Map<Calibrator, CalibratorProc> calibrators = new HashMap<>();
-    private Map<DataEncoding, DataDecoder> decoders = new HashMap<>();
+    // the caches below are accessed concurrently if the packets are decoded in parallel
+    private Map<Calibrator, CalibratorProc> calibrators = new ConcurrentHashMap<>();
+    private Map<DataEncoding, DataDecoder> decoders = new ConcurrentHashMap<>();
 
     final XtceDb xtcedb;
     static Logger log = LoggerFactory.getLogger(SequenceEntryProcessor.class.getName());
@@ -62,7 +64,7 @@ public class ProcessorData {
     /**
      * used to store parameter types which are changed dynamically (so they don't correspond anymore to MDB)
      */
-    Map<Parameter, ParameterType> typeOverrides = new HashMap<>();
+    Map<Parameter, ParameterType> typeOverrides = new ConcurrentHashMap<>();
     String yamcsInstance;
 
     private ProcessorConfig processorConfig;
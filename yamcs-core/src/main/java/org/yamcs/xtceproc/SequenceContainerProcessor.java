@@ -2,8 +2,6 @@ package org.yamcs.xtceproc;
 
 import java.nio.BufferOverflowException;
 import java.nio.BufferUnderflowException;
-import java.util.Set;
-import java.util.SortedSet;
 
 import org.yamcs.ContainerExtractionResult;
 import org.yamcs.logging.Log;
@@ -12,6 +10,7 @@ import org.yamcs.xtce.RateInStream;
 import org.yamcs.xtce.SequenceContainer;
 import org.yamcs.xtce.SequenceEntry;
 import org.yamcs.xtceproc.ContainerProcessingContext.ContainerProcessingResult;
+import org.yamcs.xtceproc.SubscriptionSnapshot.ContainerSubscription;
 
 public class SequenceContainerProcessor {
     ContainerProcessingContext pcontext;
@@ -36,8 +35,18 @@ public class SequenceContainerProcessor {
         int maxposition = buf.getPosition();
 
         // then extract the entries
-        SortedSet<SequenceEntry> entries = pcontext.subscription.getEntries(seq);
-        if (entries != null) {
+        ContainerSubscription csubscr = pcontext.subscription.get(seq);
+        SequenceEntry[] entries = csubscr == null ? ContainerSubscription.NO_ENTRIES : csubscr.entries;
+        CompiledContainerDecoder decoder = null;
+        if (entries.length > 0 && pcontext.options.compileContainers()) {
+            decoder = csubscr.getCompiledDecoder();
+        }
+        if (decoder != null && decoder.canDecode(buf)) {
+            decoder.decode(pcontext, buf);
+            if (decoder.getMaxPosition() > maxposition) {
+                maxposition = decoder.getMaxPosition();
+            }
+        } else {
             for (SequenceEntry se : entries) {
                 try {
 
@@ -85,9 +94,10 @@ public class SequenceContainerProcessor {
             }
         }
 
-        Set<SequenceContainer> inheritingContainers = pcontext.subscription.getInheritingContainers(seq);
+        SequenceContainer[] inheritingContainers = csubscr == null ? ContainerSubscription.NO_CONTAINERS
+                : csubscr.inheritingContainers;
         boolean hasDerived = false;
-        if (inheritingContainers != null) {
+        if (inheritingContainers.length > 0) {
             // And then any derived containers
             int bitp = buf.getPosition();
             for (SequenceContainer sc : inheritingContainers) {
@@ -110,7 +120,7 @@ public class SequenceContainerProcessor {
         // Finaly update the stats. We add the packet into the statistics only if it doesn't have a derived container
         if (!hasDerived && (result.stats != null)) {
             String pname = result.getPacketName();
-            result.stats.newPacket(pname, (entries == null) ? 0 : entries.size(),
+            result.stats.newPacket(pname, entries.length,
                     result.acquisitionTime, result.generationTime, buf.sizeInBits());
         }
     }
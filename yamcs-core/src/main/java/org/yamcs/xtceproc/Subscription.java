@@ -19,9 +19,13 @@ import org.yamcs.xtce.ParameterEntry;
 import org.yamcs.xtce.SequenceContainer;
 import org.yamcs.xtce.SequenceEntry;
 import org.yamcs.xtce.XtceDb;
+import org.yamcs.xtceproc.SubscriptionSnapshot.ContainerSubscription;
 
 /**
  * keeps track of the parameters and containers subscribed (because we only want to extract those)
+ * <p>
+ * This object is changed only when subscribing; the packets are decoded using immutable {@link SubscriptionSnapshot}s
+ * built from it.
  * 
  * 
  * @author nm
@@ -33,6 +37,9 @@ public class Subscription {
 
     // For each container list the derived containers which have to be processed also
     private final Map<SequenceContainer, HashSet<SequenceContainer>> container2InheritingContainerMap = new HashMap<>();
+
+    // containers changed since the last snapshot has been built
+    private final Set<SequenceContainer> changedContainers = new HashSet<>();
     Logger log = LoggerFactory.getLogger(Subscription.class);
 
     XtceDb xtcedb;
@@ -141,12 +148,16 @@ public class Subscription {
 
     private void addContainer2Entry(SequenceContainer sc, SequenceEntry se) {
         TreeSet<SequenceEntry> ts = container2EntryMap.computeIfAbsent(sc, k-> new TreeSet<SequenceEntry>());
-        ts.add(se);
+        if (ts.add(se)) {
+            changedContainers.add(sc);
+        }
     }
 
     private void addContainer2InheritingContainer(SequenceContainer container, SequenceContainer inheritedContainer) {
         HashSet<SequenceContainer> hs = container2InheritingContainerMap.computeIfAbsent(container, k -> new HashSet<>());
-        hs.add(inheritedContainer);
+        if (hs.add(inheritedContainer)) {
+            changedContainers.add(container);
+        }
     }
 
     public SortedSet<SequenceEntry> getEntries(SequenceContainer container) {
@@ -172,6 +183,43 @@ public class Subscription {
         return r;
     }
 
+    /**
+     * Builds an immutable snapshot of the current subscription.
+     * <p>
+     * The parts of the previous snapshot corresponding to the containers which have not changed in the meanwhile are
+     * reused.
+     * 
+     * @param previous
+     *            - the previous snapshot built from this subscription or null
+     * @return the new snapshot
+     */
+    SubscriptionSnapshot snapshot(SubscriptionSnapshot previous) {
+        if (previous != null && changedContainers.isEmpty()) {
+            return previous;
+        }
+        Set<SequenceContainer> containers = new HashSet<>(container2EntryMap.keySet());
+        containers.addAll(container2InheritingContainerMap.keySet());
+
+        Map<SequenceContainer, ContainerSubscription> m = new HashMap<>(containers.size() * 2);
+        for (SequenceContainer sc : containers) {
+            ContainerSubscription cs = null;
+            if (previous != null && !changedContainers.contains(sc)) {
+                cs = previous.get(sc);
+            }
+            if (cs == null) {
+                TreeSet<SequenceEntry> entries = container2EntryMap.get(sc);
+                HashSet<SequenceContainer> inheriting = container2InheritingContainerMap.get(sc);
+                cs = new ContainerSubscription(sc,
+                        entries == null ? ContainerSubscription.NO_ENTRIES : entries.toArray(new SequenceEntry[0]),
+                        inheriting == null ? ContainerSubscription.NO_CONTAINERS
+                                : inheriting.toArray(new SequenceContainer[0]));
+            }
+            m.put(sc, cs);
+        }
+        changedContainers.clear();
+        return new SubscriptionSnapshot(m);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
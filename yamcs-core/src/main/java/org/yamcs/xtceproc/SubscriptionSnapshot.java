@@ -0,0 +1,93 @@
+package org.yamcs.xtceproc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.yamcs.xtce.SequenceContainer;
+import org.yamcs.xtce.SequenceEntry;
+
+/**
+ * Immutable view of a {@link Subscription} used when decoding packets.
+ * <p>
+ * For each subscribed container it contains the entries sorted by their index and the inheriting containers as
+ * arrays. A new snapshot is built each time the subscription changes; the packets are decoded with the snapshot
+ * current at the moment they are received, without taking any lock.
+ *
+ * @author nm
+ *
+ */
+public final class SubscriptionSnapshot {
+    static final SubscriptionSnapshot EMPTY = new SubscriptionSnapshot(Collections.emptyMap());
+
+    private final Map<SequenceContainer, ContainerSubscription> containers;
+
+    SubscriptionSnapshot(Map<SequenceContainer, ContainerSubscription> containers) {
+        this.containers = containers;
+    }
+
+    /**
+     *
+     * @param container
+     * @return the subscription for the given container or null if the container is not subscribed
+     */
+    public ContainerSubscription get(SequenceContainer container) {
+        return containers.get(container);
+    }
+
+    /**
+     * Part of the snapshot corresponding to one container.
+     * <p>
+     * When the subscription changes, the objects corresponding to the unchanged containers are carried over to the new
+     * snapshot together with their compiled decoders.
+     */
+    public static final class ContainerSubscription {
+        static final SequenceEntry[] NO_ENTRIES = new SequenceEntry[0];
+        static final SequenceContainer[] NO_CONTAINERS = new SequenceContainer[0];
+
+        final SequenceContainer container;
+        final SequenceEntry[] entries;
+        final SequenceContainer[] inheritingContainers;
+
+        private volatile boolean compilationAttempted;
+        private volatile CompiledContainerDecoder decoder;
+
+        ContainerSubscription(SequenceContainer container, SequenceEntry[] entries,
+                SequenceContainer[] inheritingContainers) {
+            this.container = container;
+            this.entries = entries;
+            this.inheritingContainers = inheritingContainers;
+        }
+
+        /**
+         *
+         * @return the subscribed entries sorted by their index in the container
+         */
+        public SequenceEntry[] getEntries() {
+            return entries;
+        }
+
+        public SequenceContainer[] getInheritingContainers() {
+            return inheritingContainers;
+        }
+
+        /**
+         * Returns the compiled decoder for the subscribed entries, compiling it on the first call.
+         *
+         * @return the compiled decoder or null if the entries cannot be compiled
+         */
+        public CompiledContainerDecoder getCompiledDecoder() {
+            if (!compilationAttempted) {
+                synchronized (this) {
+                    if (!compilationAttempted) {
+                        if (entries.length > 0) {
+                            decoder = ContainerDecoderCompiler.compile(container, Arrays.asList(entries));
+                        }
+                        compilationAttempted = true;
+                    }
+                }
+            }
+            return decoder;
+        }
+    }
+}
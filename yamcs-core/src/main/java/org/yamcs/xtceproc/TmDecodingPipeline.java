@@ -0,0 +1,104 @@
+package org.yamcs.xtceproc;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import org.yamcs.logging.Log;
+import org.yamcs.xtceproc.ContainerProcessingContext.ContainerProcessingResult;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Decodes packets on a pool of worker threads and delivers the results to a consumer in the order in which the
+ * packets have been submitted.
+ * <p>
+ * The futures of the decoding tasks are queued in submission order; a single delivery thread takes them from the
+ * queue, waits for each to complete and passes the result to the consumer. The queue is bounded such that the
+ * submitting thread blocks if the decoding cannot keep up.
+ *
+ * @author nm
+ *
+ */
+class TmDecodingPipeline {
+    static final Future<ContainerProcessingResult> END = CompletableFuture.completedFuture(null);
+
+    final ExecutorService executor;
+    final BlockingQueue<Future<ContainerProcessingResult>> queue;
+    final Consumer<ContainerProcessingResult> consumer;
+    final Thread deliveryThread;
+    final Log log;
+    private volatile Runnable onFinished;
+
+    TmDecodingPipeline(Log log, String name, int numThreads, int queueSize,
+            Consumer<ContainerProcessingResult> consumer) {
+        this.log = log;
+        this.consumer = consumer;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.executor = Executors.newFixedThreadPool(numThreads,
+                new ThreadFactoryBuilder().setNameFormat("TmDecoder-" + name + "-%d").setDaemon(true).build());
+        this.deliveryThread = new Thread(this::deliver, "TmDelivery-" + name);
+        deliveryThread.setDaemon(true);
+        deliveryThread.start();
+    }
+
+    /**
+     * Submits a decoding task. Blocks if the maximum number of packets in the pipeline has been reached.
+     */
+    synchronized void submit(Callable<ContainerProcessingResult> task) throws InterruptedException {
+        queue.put(executor.submit(task));
+    }
+
+    /**
+     * Signals that no more packets will be submitted. The runnable is called on the delivery thread after all the
+     * packets already in the pipeline have been delivered.
+     */
+    synchronized void finish(Runnable onFinished) {
+        this.onFinished = onFinished;
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the delivery and the decoding threads discarding the packets still in the pipeline.
+     */
+    void shutdown() {
+        deliveryThread.interrupt();
+        executor.shutdownNow();
+    }
+
+    private void deliver() {
+        try {
+            while (true) {
+                Future<ContainerProcessingResult> f = queue.take();
+                if (f == END) {
+                    break;
+                }
+                try {
+                    consumer.accept(f.get());
+                } catch (ExecutionException e) {
+                    log.error("Error decoding packet", e.getCause());
+                } catch (RuntimeException e) {
+                    log.error("Error delivering decoded packet", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        executor.shutdown();
+        Runnable r = onFinished;
+        if (r != null) {
+            r.run();
+        }
+    }
+}
@@ -27,6 +27,8 @@ public class XtceTmExtractor {
     protected final Subscription subscription;
     private ProcessingStatistics stats = new ProcessingStatistics();
 
+    // immutable view of the subscription used for decoding; replaced each time the subscription changes
+    private volatile SubscriptionSnapshot snapshot = SubscriptionSnapshot.EMPTY;
     private ContainerProcessingResult result;
 
     public final XtceDb xtcedb;
@@ -78,6 +80,7 @@ public class XtceTmExtractor {
                 dependencies.forEach(p -> subscription.addParameter(p));
             }
             subscription.addParameter(param);
+            snapshot = subscription.snapshot(snapshot);
         }
     }
 
@@ -85,10 +88,13 @@ public class XtceTmExtractor {
      * Adds all containers and parameters to the subscription
      */
     public void provideAll() {
-        for (SequenceContainer c : xtcedb.getSequenceContainers()) {
-            if (c.getBaseContainer() == null) {
-                subscription.addAll(c);
+        synchronized (subscription) {
+            for (SequenceContainer c : xtcedb.getSequenceContainers()) {
+                if (c.getBaseContainer() == null) {
+                    subscription.addAll(c);
+                }
             }
+            snapshot = subscription.snapshot(snapshot);
         }
     }
 
@@ -121,18 +127,27 @@ public class XtceTmExtractor {
      */
     public void processPacket(BitBuffer buf, long generationTime, long acquisitionTime,
             SequenceContainer startContainer) {
-        result = new ContainerProcessingResult(acquisitionTime, generationTime, stats);
+        result = extract(buf, generationTime, acquisitionTime, startContainer);
+    }
+
+    /**
+     * Extract one packet, starting at the specified container and return the result.
+     * <p>
+     * Contrary to the processPacket methods, this method does not change the state of the extractor so it can be
+     * called concurrently from multiple threads.
+     */
+    ContainerProcessingResult extract(BitBuffer buf, long generationTime, long acquisitionTime,
+            SequenceContainer startContainer) {
+        ContainerProcessingResult cpr = new ContainerProcessingResult(acquisitionTime, generationTime, stats);
         try {
-            synchronized (subscription) {
-                ContainerProcessingContext cpc = new ContainerProcessingContext(pdata, buf, result, subscription,
-                        options);
-                cpc.sequenceContainerProcessor.extract(startContainer);
-            }
+            ContainerProcessingContext cpc = new ContainerProcessingContext(pdata, buf, cpr, snapshot, options);
+            cpc.sequenceContainerProcessor.extract(startContainer);
         } catch (Exception e) {
             // send warning as events and in the log file.
             pdata.eventProducer.sendWarning(e.toString());
             log.error("got exception in tmextractor ", e);
         }
+        return cpr;
     }
 
     public void resetStatistics() {
@@ -146,6 +161,7 @@ public class XtceTmExtractor {
     public void startProviding(SequenceContainer sequenceContainer) {
         synchronized (subscription) {
             subscription.addSequenceContainer(sequenceContainer);
+            snapshot = subscription.snapshot(snapshot);
         }
     }
 
@@ -168,6 +184,14 @@ public class XtceTmExtractor {
         return subscription;
     }
 
+    /**
+     * 
+     * @return the immutable view of the subscription used for decoding the packets
+     */
+    public SubscriptionSnapshot getSubscriptionSnapshot() {
+        return snapshot;
+    }
+
     @Override
     public String toString() {
         return subscription.toString();
@@ -15,11 +15,13 @@ import org.yamcs.parameter.ParameterListener;
 import org.yamcs.parameter.ParameterProvider;
 import org.yamcs.parameter.ParameterValueList;
 import org.yamcs.protobuf.Yamcs.NamedObjectId;
+import org.yamcs.utils.BitBuffer;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.xtce.Container;
 import org.yamcs.xtce.Parameter;
 import org.yamcs.xtce.SequenceContainer;
 import org.yamcs.xtce.XtceDb;
+import org.yamcs.xtceproc.ContainerProcessingContext.ContainerProcessingResult;
 
 import com.google.common.util.concurrent.AbstractService;
 
@@ -44,12 +46,20 @@ public class XtceTmProcessor extends AbstractService implements TmProcessor, Par
     public final XtceDb xtcedb;
     final XtceTmExtractor tmExtractor;
 
+    // if the packets are decoded in parallel
+    private TmDecodingPipeline pipeline;
+
     public XtceTmProcessor(Processor processor) {
         this.processor = processor;
         this.xtcedb = processor.getXtceDb();
         log = new Log(getClass(), processor.getInstance());
         log.setContext(processor.getName());
         tmExtractor = new XtceTmExtractor(xtcedb, processor.getProcessorData());
+        ContainerProcessingOptions opts = processor.getConfig().getContainerProcessingOptions();
+        if (opts.getDecodingThreads() > 1) {
+            pipeline = new TmDecodingPipeline(log, processor.getName(), opts.getDecodingThreads(),
+                    opts.getDecodingQueueSize(), this::deliver);
+        }
     }
 
     /**
@@ -62,6 +72,11 @@ public class XtceTmProcessor extends AbstractService implements TmProcessor, Par
         this.xtcedb = xtcedb;
         log = new Log(getClass());
         tmExtractor = new XtceTmExtractor(xtcedb, new ProcessorData(null, "XTCEPROC", xtcedb, pconfig));
+        ContainerProcessingOptions opts = pconfig.getContainerProcessingOptions();
+        if (opts.getDecodingThreads() > 1) {
+            pipeline = new TmDecodingPipeline(log, "XTCEPROC", opts.getDecodingThreads(),
+                    opts.getDecodingQueueSize(), this::deliver);
+        }
     }
 
     @Override
@@ -149,27 +164,45 @@ public class XtceTmProcessor extends AbstractService implements TmProcessor, Par
             if (rectime == TimeEncoding.INVALID_INSTANT) {
                 rectime = TimeEncoding.getWallclockTime();
             }
-            tmExtractor.processPacket(pwrt.getPacket(), pwrt.getGenerationTime(), rectime, sc);
-
-            ParameterValueList paramResult = tmExtractor.getParameterResult();
-            List<ContainerExtractionResult> containerResult = tmExtractor.getContainerResult();
-
-            if ((parameterRequestManager != null) && (paramResult.size() > 0)) {
-                parameterRequestManager.update(paramResult);
-            }
-
-            if ((containerRequestManager != null) && (containerResult.size() > 0)) {
-                containerRequestManager.update(containerResult);
+            long gentime = pwrt.getGenerationTime();
+            BitBuffer buf = new BitBuffer(pwrt.getPacket());
+            if (pipeline == null) {
+                deliver(tmExtractor.extract(buf, gentime, rectime, sc));
+            } else {
+                long rt = rectime;
+                pipeline.submit(() -> tmExtractor.extract(buf, gentime, rt, sc));
             }
-
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             log.error("got exception in tmprocessor ", e);
         }
     }
 
+    /**
+     * Passes the result of the extraction to the parameter and container request managers
+     */
+    private void deliver(ContainerProcessingResult result) {
+        ParameterValueList paramResult = result.params;
+        List<ContainerExtractionResult> containerResult = result.containers;
+
+        if ((parameterRequestManager != null) && (paramResult.size() > 0)) {
+            parameterRequestManager.update(paramResult);
+        }
+
+        if ((containerRequestManager != null) && (containerResult.size() > 0)) {
+            containerRequestManager.update(containerResult);
+        }
+    }
+
     @Override
     public void finished() {
-        stopAsync();
+        if (pipeline == null) {
+            stopAsync();
+        } else {
+            // deliver first the packets still in the pipeline
+            pipeline.finish(this::stopAsync);
+        }
     }
 
     public void resetStatistics() {
@@ -220,6 +253,9 @@ public class XtceTmProcessor extends AbstractService implements TmProcessor, Par
 
     @Override
     protected void doStop() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
         notifyStopped();
     }
 
@@ -6,6 +6,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.yamcs.yarch.streamsql.ColumnExpression;
@@ -38,6 +40,10 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
     Comparator<byte[]> bytesComparator = UnsignedBytes.lexicographicalComparator();
     private Tuple lastEmitted;
 
+    static final long SEEK_TIMEOUT = 10000;
+    private volatile SeekRequest pendingSeek;
+    private boolean started;
+
     final protected PartitionManager partitionManager;
     final protected boolean ascending;
     final protected boolean follow;
@@ -55,39 +61,32 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
     public void run() {
         log.debug("starting a table stream from table {} with rangeIndexFilter {} \n partitionFilter: {}",
                 tableDefinition.getName(), rangeIndexFilter, partitionValueFilter);
-
+        synchronized (this) {
+            started = true;
+        }
         try {
-            Iterator<List<Partition>> partitionIterator;
-
-            PartitioningSpec pspec = tableDefinition.getPartitioningSpec();
-            if (pspec.valueColumn != null) {
-                if ((ascending) && (rangeIndexFilter != null) && (rangeIndexFilter.keyStart != null)) {
-                    long start = (Long) rangeIndexFilter.keyStart;
-                    partitionIterator = partitionManager.iterator(start, partitionValueFilter);
-                } else if ((!ascending) && (rangeIndexFilter != null) && (rangeIndexFilter.keyEnd != null)) {
-                    long start = (Long) rangeIndexFilter.keyEnd;
-                    partitionIterator = partitionManager.reverseIterator(start, partitionValueFilter);
-                } else {
-                    if (ascending) {
-                        partitionIterator = partitionManager.iterator(partitionValueFilter);
-                    } else {
-                        partitionIterator = partitionManager.reverseIterator(partitionValueFilter);
+            while (true) {
+                Iterator<List<Partition>> partitionIterator = getPartitionIterator();
+                while ((!quit) && !isSeekPending() && partitionIterator.hasNext()) {
+                    List<Partition> partitions = partitionIterator.next();
+                    boolean endReached = runPartitions(partitions, rangeIndexFilter);
+                    if (endReached) {
+                        break;
                     }
                 }
-            } else {
-                if (ascending) {
-                    partitionIterator = partitionManager.iterator(partitionValueFilter);
-                } else {
-                    partitionIterator = partitionManager.reverseIterator(partitionValueFilter);
+                SeekRequest sr = pendingSeek;
+                if (quit || sr == null) {
+                    break;
                 }
-            }
-
-            while ((!quit) && partitionIterator.hasNext()) {
-                List<Partition> partitions = partitionIterator.next();
-                boolean endReached = runPartitions(partitions, rangeIndexFilter);
-                if (endReached) {
+                // all the iterators are closed; wait for the downstream to be ready and restart from the new position
+                sr.parked.countDown();
+                sr.go.await();
+                if (quit) {
                     break;
                 }
+                applySeek(sr.key);
+                pendingSeek = null;
+                log.debug("restarting table stream {} after seek with rangeIndexFilter {}", getName(), rangeIndexFilter);
             }
         } catch (Exception e) {
             log.error("got exception ", e);
@@ -96,6 +95,106 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
         }
     }
 
+    private Iterator<List<Partition>> getPartitionIterator() {
+        PartitioningSpec pspec = tableDefinition.getPartitioningSpec();
+        if (pspec.valueColumn != null) {
+            if ((ascending) && (rangeIndexFilter != null) && (rangeIndexFilter.keyStart != null)) {
+                long start = (Long) rangeIndexFilter.keyStart;
+                return partitionManager.iterator(start, partitionValueFilter);
+            } else if ((!ascending) && (rangeIndexFilter != null) && (rangeIndexFilter.keyEnd != null)) {
+                long start = (Long) rangeIndexFilter.keyEnd;
+                return partitionManager.reverseIterator(start, partitionValueFilter);
+            }
+        }
+        if (ascending) {
+            return partitionManager.iterator(partitionValueFilter);
+        } else {
+            return partitionManager.reverseIterator(partitionValueFilter);
+        }
+    }
+
+    /**
+     * Repositions the stream such that the next tuple emitted is the first one with the first key column greater or
+     * equal (smaller or equal if the stream is descending) than the key. The end of the range (start if descending) is
+     * not changed.
+     * <p>
+     * If the stream is running, the reader thread stops at the next record, closes its iterators and waits for
+     * {@link #completeSeek()} before reading from the new position.
+     */
+    @Override
+    public boolean prepareSeek(Object key) {
+        ColumnDefinition cd = tableDefinition.getKeyDefinition().getColumn(0);
+        Comparable<?> k;
+        try {
+            k = (Comparable<?>) DataType.castAs(cd.getType(), key);
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot seek to {}: {}", key, e.getMessage());
+            return false;
+        }
+        synchronized (this) {
+            if (state == QUITTING) {
+                return false;
+            }
+            if (started) {
+                pendingSeek = new SeekRequest(k);
+            } else {
+                applySeek(k);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitSeek() {
+        SeekRequest sr = pendingSeek;
+        if (sr != null) {
+            try {
+                if (!sr.parked.await(SEEK_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    log.warn("Timeout waiting for the reader of {} to stop", getName());
+                    return false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return state != QUITTING;
+    }
+
+    @Override
+    public void completeSeek() {
+        SeekRequest sr = pendingSeek;
+        if (sr != null) {
+            sr.go.countDown();
+        }
+    }
+
+    /**
+     * 
+     * @return true if a seek has been requested; the reader should stop emitting and return as soon as possible.
+     */
+    protected boolean isSeekPending() {
+        return pendingSeek != null;
+    }
+
+    private void applySeek(Comparable<?> key) {
+        IndexFilter f = new IndexFilter();
+        if (rangeIndexFilter != null) {
+            f.keyStart = rangeIndexFilter.keyStart;
+            f.strictStart = rangeIndexFilter.strictStart;
+            f.keyEnd = rangeIndexFilter.keyEnd;
+            f.strictEnd = rangeIndexFilter.strictEnd;
+        }
+        if (ascending) {
+            f.keyStart = key;
+            f.strictStart = false;
+        } else {
+            f.keyEnd = key;
+            f.strictEnd = false;
+        }
+        rangeIndexFilter = f;
+    }
+
     /**
      * Runs the partitions sending data only that conform with the start and end filters. returns true if the stop
      * condition is met
@@ -105,6 +204,14 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
     protected abstract boolean runPartitions(List<Partition> partitions, IndexFilter range) throws IOException;
 
     protected boolean emitIfNotPastStop(byte[] key, byte[] value, byte[] rangeEnd, boolean strictEnd) {
+        return emitIfNotPastStop(key, value, null, rangeEnd, strictEnd);
+    }
+
+    /**
+     * Same as {@link #emitIfNotPastStop(byte[], byte[], byte[], boolean)} but using the tuple already decoded from the
+     * key and value; if the tuple is null, it is decoded here.
+     */
+    protected boolean emitIfNotPastStop(byte[] key, byte[] value, Tuple decoded, byte[] rangeEnd, boolean strictEnd) {
         boolean emit = true;
         if (rangeEnd != null) { // check if we have reached the end
             int c = compare(key, rangeEnd);
@@ -114,7 +221,7 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
                 emit = false;
             }
         }
-        lastEmitted = dataToTuple(key, value);
+        lastEmitted = decoded == null ? dataToTuple(key, value) : decoded;
         if (emit) {
             emitTuple(lastEmitted);
         }
@@ -122,6 +229,15 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
     }
 
     protected boolean emitIfNotPastStart(byte[] key, byte[] value, byte[] rangeStart, boolean strictStart) {
+        return emitIfNotPastStart(key, value, null, rangeStart, strictStart);
+    }
+
+    /**
+     * Same as {@link #emitIfNotPastStart(byte[], byte[], byte[], boolean)} but using the tuple already decoded from
+     * the key and value; if the tuple is null, it is decoded here.
+     */
+    protected boolean emitIfNotPastStart(byte[] key, byte[] value, Tuple decoded, byte[] rangeStart,
+            boolean strictStart) {
         boolean emit = true;
         if (rangeStart != null) { // check if we have reached the start
             int c = compare(key, rangeStart);
@@ -133,7 +249,7 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
                 emit = false;
             }
         }
-        lastEmitted = dataToTuple(key, value);
+        lastEmitted = decoded == null ? dataToTuple(key, value) : decoded;
         if (emit) {
             emitTuple(lastEmitted);
         }
@@ -270,6 +386,13 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
     @Override
     public void doClose() {
         quit = true;
+        synchronized (this) {
+            SeekRequest sr = pendingSeek;
+            if (sr != null) {
+                sr.parked.countDown();
+                sr.go.countDown();
+            }
+        }
     }
 
     public TableDefinition getTableDefinition() {
@@ -288,4 +411,14 @@ public abstract class AbstractTableReaderStream extends Stream implements Runnab
         }
         return 0;
     }
+
+    static class SeekRequest {
+        final Comparable<?> key;
+        final CountDownLatch parked = new CountDownLatch(1);
+        final CountDownLatch go = new CountDownLatch(1);
+
+        SeekRequest(Comparable<?> key) {
+            this.key = key;
+        }
+    }
 }
@@ -0,0 +1,240 @@
+package org.yamcs.yarch;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.yamcs.YamcsServer;
+import org.yamcs.logging.Log;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersCollector;
+import org.yamcs.parameter.SystemParametersProducer;
+import org.yamcs.time.TimeService;
+
+/**
+ * Delivers the tuples of a stream to a subscriber on a dedicated thread, such that a slow subscriber does not block
+ * the thread emitting the tuples (and the other subscribers of the stream).
+ * <p>
+ * The tuples are passed to the delivery thread through a bounded queue; what happens when the queue is full is
+ * decided by the {@link OverflowPolicy}.
+ * <p>
+ * The queue size and the number of dropped tuples are available via the getters and, if the
+ * {@link SystemParametersCollector} is running, are published as system parameters.
+ * <p>
+ * Instances are created with {@link Stream#addAsyncSubscriber(StreamSubscriber, String, int, OverflowPolicy)}.
+ *
+ * @author nm
+ *
+ */
+public class AsyncStreamSubscriber implements StreamSubscriber, SystemParametersProducer {
+    public enum OverflowPolicy {
+        /**
+         * block the emitting thread until there is space in the queue
+         */
+        BLOCK,
+        /**
+         * remove the oldest tuple from the queue to make space for the new one
+         */
+        DROP_OLDEST,
+        /**
+         * discard the new tuple
+         */
+        DROP_NEWEST
+    }
+
+    /**
+     * how long to wait for the queued tuples to be delivered when unsubscribing or closing the stream
+     */
+    static final long CLOSE_TIMEOUT_MILLIS = 10000;
+    static final Tuple END_SIGNAL = new Tuple(new TupleDefinition(), new Object[0]);
+
+    final Stream stream;
+    final StreamSubscriber subscriber;
+    final String name;
+    final OverflowPolicy policy;
+    final ArrayBlockingQueue<Tuple> queue;
+    final Thread deliveryThread;
+    final Log log;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile long deliveredCount;
+    private volatile boolean quitting;
+    private volatile boolean streamClosed;
+
+    private SystemParametersCollector sysParamCollector;
+    private TimeService timeService;
+    private String spQueueSize, spDroppedCount;
+
+    AsyncStreamSubscriber(Stream stream, StreamSubscriber subscriber, String name, int queueSize,
+            OverflowPolicy policy) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("The queue size has to be at least 1");
+        }
+        this.stream = stream;
+        this.subscriber = subscriber;
+        this.name = name;
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.log = new Log(getClass(), stream.ydb.getName());
+        log.setContext(stream.getName() + "/" + name);
+
+        sysParamCollector = SystemParametersCollector.getInstance(stream.ydb.getName());
+        if (sysParamCollector != null) {
+            timeService = YamcsServer.getTimeService(stream.ydb.getName());
+            String prefix = sysParamCollector.getNamespace() + "/yarch/" + stream.getName() + "/" + name;
+            spQueueSize = prefix + "/queueSize";
+            spDroppedCount = prefix + "/droppedCount";
+            sysParamCollector.registerProducer(this);
+        }
+
+        deliveryThread = new Thread(this::deliver, "AsyncSubscriber-" + stream.getName() + "-" + name);
+        deliveryThread.setDaemon(true);
+        deliveryThread.start();
+    }
+
+    @Override
+    public void onTuple(Stream s, Tuple tuple) {
+        if (quitting) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        switch (policy) {
+        case BLOCK:
+            try {
+                queue.put(tuple);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                droppedCount.incrementAndGet();
+            }
+            break;
+        case DROP_NEWEST:
+            if (!queue.offer(tuple)) {
+                droppedCount.incrementAndGet();
+            }
+            break;
+        case DROP_OLDEST:
+            while (!queue.offer(tuple)) {
+                if (queue.poll() != null) {
+                    droppedCount.incrementAndGet();
+                }
+            }
+            break;
+        }
+    }
+
+    /**
+     * Called when the stream is closed; the subscriber is informed after all the queued tuples have been delivered.
+     * <p>
+     * Waits at most {@value #CLOSE_TIMEOUT_MILLIS} milliseconds for the delivery to finish.
+     */
+    @Override
+    public void streamClosed(Stream s) {
+        streamClosed = true;
+        quit();
+    }
+
+    /**
+     * Stops accepting new tuples and waits for the ones already in the queue to be delivered.
+     */
+    void quit() {
+        quitting = true;
+        // if the queue is full, the delivery thread will notice the quitting flag when polling next time
+        queue.offer(END_SIGNAL);
+
+        if (Thread.currentThread() == deliveryThread) {
+            return;
+        }
+        try {
+            deliveryThread.join(CLOSE_TIMEOUT_MILLIS);
+            if (deliveryThread.isAlive()) {
+                log.warn("The delivery of the queued tuples did not finish in {} ms", CLOSE_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deliver() {
+        try {
+            while (true) {
+                Tuple t = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (t == null) {
+                    if (quitting) {
+                        break;
+                    }
+                    continue;
+                }
+                if (t == END_SIGNAL) {
+                    if (queue.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                try {
+                    subscriber.onTuple(stream, t);
+                } catch (Exception e) {
+                    log.warn("Exception received when delivering tuple to subscriber {}", subscriber, e);
+                }
+                deliveredCount++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (sysParamCollector != null) {
+            sysParamCollector.unregisterProducer(this);
+        }
+        if (streamClosed) {
+            subscriber.streamClosed(stream);
+        }
+    }
+
+    /**
+     * @return the subscriber to which the tuples are delivered
+     */
+    public StreamSubscriber getSubscriber() {
+        return subscriber;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of tuples waiting in the queue
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of tuples which have been dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return the number of tuples delivered to the subscriber
+     */
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    @Override
+    public Collection<ParameterValue> getSystemParameters() {
+        long time = timeService.getMissionTime();
+        return Arrays.asList(SystemParametersCollector.getPV(spQueueSize, time, (long) getQueueSize()),
+                SystemParametersCollector.getPV(spDroppedCount, time, getDroppedCount()));
+    }
+
+    @Override
+    public String toString() {
+        return "async(" + subscriber + ")";
+    }
+}
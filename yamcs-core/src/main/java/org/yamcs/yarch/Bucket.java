@@ -1,6 +1,8 @@
 package org.yamcs.yarch;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
@@ -9,6 +11,10 @@ import org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectPropertiesOrBuilder;
 
 public interface Bucket {
+    /**
+     * maximum size of an object which can be read in memory
+     */
+    static final long MAX_OBJECT_SIZE = Integer.MAX_VALUE - 8;
 
     /**
      * get the bucket name
@@ -43,6 +49,28 @@ public interface Bucket {
 
     void putObject(String objectName, String contentType, Map<String, String> metadata, byte[] objectData)
             throws IOException;
+
+    /**
+     * Stores the content of the file as an object of the bucket. The file is not modified.
+     * <p>
+     * The default implementation reads the whole file in memory; the buckets which can copy the file directly should
+     * override this method.
+     *
+     * @param objectName
+     * @param contentType
+     * @param metadata
+     * @param file
+     * @throws IOException
+     *             if the file cannot be read or is too large to be stored in the bucket
+     */
+    default void putObject(String objectName, String contentType, Map<String, String> metadata, Path file)
+            throws IOException {
+        long size = Files.size(file);
+        if (size > MAX_OBJECT_SIZE) {
+            throw new IOException("File too large to be stored in the bucket " + getName() + ": " + size + " bytes");
+        }
+        putObject(objectName, contentType, metadata, Files.readAllBytes(file));
+    }
     
     /**
      * Retrieve object from the bucket. Returns null if object does not exist. 
@@ -0,0 +1,71 @@
+package org.yamcs.yarch;
+
+/**
+ * Resolves the positions of a fixed list of columns in the tuple definitions, such that the values can be retrieved
+ * with {@link Tuple#getColumn(int)} instead of looking up the column names for each tuple.
+ * <p>
+ * The tuples passing through a stream normally share the same definition object, so the indices are computed once
+ * for the last definition seen and reused as long as the tuples have the same definition and the definition has not
+ * been modified (columns added or renamed) in the meantime.
+ * <p>
+ * This class is used by the compiled StreamSQL expressions and must therefore stay public.
+ *
+ * @author nm
+ *
+ */
+public class ColumnIndexResolver {
+    private final String[] columnNames;
+    private volatile Resolution resolution;
+
+    public ColumnIndexResolver(String... columnNames) {
+        this.columnNames = columnNames;
+    }
+
+    /**
+     * Creates the resolver and resolves the columns against the definition of the stream to which the caller is
+     * bound.
+     */
+    public ColumnIndexResolver(TupleDefinition tdef, String... columnNames) {
+        this(columnNames);
+        resolution = new Resolution(tdef, columnNames);
+    }
+
+    /**
+     * Returns the indices of the columns in the given definition, in the order they have been passed to the
+     * constructor; an index is -1 if the definition does not contain the corresponding column.
+     * <p>
+     * The returned array is shared and must not be modified.
+     */
+    public int[] getIndices(TupleDefinition tdef) {
+        Resolution r = resolution;
+        if (r == null || r.tdef != tdef || r.modCount != tdef.modCount) {
+            r = new Resolution(tdef, columnNames);
+            resolution = r;
+        }
+        return r.indices;
+    }
+
+    /**
+     * Returns the value of the column at position k in the list passed to the constructor or null if the tuple does
+     * not have that column.
+     */
+    public Object getColumn(Tuple t, int k) {
+        int idx = getIndices(t.getDefinition())[k];
+        return idx == -1 ? null : t.getColumn(idx);
+    }
+
+    static final class Resolution {
+        final TupleDefinition tdef;
+        final int modCount;
+        final int[] indices;
+
+        Resolution(TupleDefinition tdef, String[] columnNames) {
+            this.tdef = tdef;
+            this.modCount = tdef.modCount;
+            indices = new int[columnNames.length];
+            for (int i = 0; i < columnNames.length; i++) {
+                indices[i] = tdef.getColumnIndex(columnNames[i]);
+            }
+        }
+    }
+}
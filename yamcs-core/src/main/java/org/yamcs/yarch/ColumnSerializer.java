@@ -1,8 +1,10 @@
 package org.yamcs.yarch;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Serializes column values to byte arrays (used as part of tables) and back
@@ -45,5 +47,38 @@ public interface ColumnSerializer<T> {
      * @throws IOException
      */
     public T fromByteArray(byte[] b, ColumnDefinition cd) throws IOException ;
-    
+
+    /**
+     * Writes the value into the byte buffer, using the same format as {@link #serialize(DataOutputStream, Object)}.
+     * <p>
+     * If there is not enough space left in the buffer, a {@link java.nio.BufferOverflowException} is thrown; the
+     * caller is expected to retry with a larger buffer.
+     * 
+     * @param bb
+     *            - heap byte buffer where the value is written at the current position
+     * @param v
+     * @throws IOException
+     */
+    default void serialize(ByteBuffer bb, T v) throws IOException {
+        bb.put(toByteArray(v));
+    }
+
+    /**
+     * Reads one column value from the byte buffer, advancing its position. The format is the same as for
+     * {@link #deserialize(DataInputStream, ColumnDefinition)}.
+     * 
+     * @param bb
+     *            - heap byte buffer from where the value is read starting at the current position
+     * @param cd
+     *            the column definition for the involved column
+     * @return the deserialized value
+     * @throws IOException
+     */
+    default T deserialize(ByteBuffer bb, ColumnDefinition cd) throws IOException {
+        ByteArrayInputStream bais = new ByteArrayInputStream(bb.array(), bb.arrayOffset() + bb.position(),
+                bb.remaining());
+        T v = deserialize(new DataInputStream(bais), cd);
+        bb.position(bb.limit() - bais.available());
+        return v;
+    }
 }
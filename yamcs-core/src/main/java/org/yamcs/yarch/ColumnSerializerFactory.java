@@ -1,13 +1,15 @@
 package org.yamcs.yarch;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UTFDataFormatException;
 import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,6 +20,7 @@ import org.yamcs.utils.ByteArrayUtils;
 import org.yamcs.yarch.DataType._type;
 
 import com.google.common.collect.BiMap;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.MessageLite.Builder;
@@ -128,8 +131,7 @@ public class ColumnSerializerFactory {
 
         @Override
         public T fromByteArray(byte[] b, ColumnDefinition cd) throws IOException {
-            DataInputStream dos = new DataInputStream(new ByteArrayInputStream(b));
-            return deserialize(dos, cd);
+            return deserialize(ByteBuffer.wrap(b), cd);
         }
 
         @Override
@@ -156,6 +158,16 @@ public class ColumnSerializerFactory {
             stream.writeBoolean((Boolean) v);
         }
 
+        @Override
+        public Boolean deserialize(ByteBuffer bb, ColumnDefinition cd) {
+            return bb.get() != 0;
+        }
+
+        @Override
+        public void serialize(ByteBuffer bb, Boolean v) {
+            bb.put((byte) (v ? 1 : 0));
+        }
+
         @Override
         public byte[] toByteArray(Boolean v) {
             boolean b = (Boolean) v;
@@ -179,6 +191,16 @@ public class ColumnSerializerFactory {
             stream.writeByte((Byte) v);
         }
 
+        @Override
+        public Byte deserialize(ByteBuffer bb, ColumnDefinition cd) {
+            return bb.get();
+        }
+
+        @Override
+        public void serialize(ByteBuffer bb, Byte v) {
+            bb.put(v);
+        }
+
         @Override
         public byte[] toByteArray(Byte v) {
             return new byte[] { v };
@@ -201,6 +223,16 @@ public class ColumnSerializerFactory {
             stream.writeShort((Short) v);
         }
 
+        @Override
+        public Short deserialize(ByteBuffer bb, ColumnDefinition cd) {
+            return bb.getShort();
+        }
+
+        @Override
+        public void serialize(ByteBuffer bb, Short v) {
+            bb.putShort(v);
+        }
+
         @Override
         public byte[] toByteArray(Short v) {
             short s = v;
@@ -224,6 +256,16 @@ public class ColumnSerializerFactory {
             stream.writeInt((Integer) v);
         }
 
+        @Override
+        public Integer deserialize(ByteBuffer bb, ColumnDefinition cd) {
+            return bb.getInt();
+        }
+
+        @Override
+        public void serialize(ByteBuffer bb, Integer v) {
+            bb.putInt(v);
+        }
+
         @Override
         public byte[] toByteArray(Integer v) {
             int x = v;
@@ -251,6 +293,16 @@ public class ColumnSerializerFactory {
         public void serialize(DataOutputStream stream, Double v) throws IOException {
             stream.writeDouble(v);
         }
+
+        @Override
+        public Double deserialize(ByteBuffer bb, ColumnDefinition cd) {
+            return bb.getDouble();
+        }
+
+        @Override
+        public void serialize(ByteBuffer bb, Double v) {
+            bb.putDouble(v);
+        }
     }
 
     static class LongColumnSerializer extends AbstractColumnSerializer<Long> {
@@ -267,7 +319,16 @@ public class ColumnSerializerFactory {
         public void serialize(DataOutputStream stream, Long v) throws IOException {
             stream.writeLong(v);
         }
-        
+
+        @Override
+        public Long deserialize(ByteBuffer bb, ColumnDefinition cd) {
+            return bb.getLong();
+        }
+
+        @Override
+        public void serialize(ByteBuffer bb, Long v) {
+            bb.putLong(v);
+        }
 
         @Override
         public byte[] toByteArray(Long v) {
@@ -294,6 +355,16 @@ public class ColumnSerializerFactory {
         public void serialize(DataOutputStream stream, String v) throws IOException {
             stream.writeUTF(v);
         }
+
+        @Override
+        public String deserialize(ByteBuffer bb, ColumnDefinition cd) throws IOException {
+            return readUTF(bb);
+        }
+
+        @Override
+        public void serialize(ByteBuffer bb, String v) throws IOException {
+            writeUTF(bb, v);
+        }
     }
 
     static class BinaryColumnSerializer implements ColumnSerializer<byte[]> {
@@ -316,6 +387,25 @@ public class ColumnSerializerFactory {
             stream.write(v);
         }
 
+        @Override
+        public byte[] deserialize(ByteBuffer bb, ColumnDefinition cd) {
+            int length = bb.getInt();
+            if (length > maxBinaryLength) {
+                log.warn("binary length greater than maxBinaryLenght (is the endianess wrong?): ?>?", length,
+                        maxBinaryLength);
+                return null;
+            }
+            byte[] bp = new byte[length];
+            bb.get(bp);
+            return bp;
+        }
+
+        @Override
+        public void serialize(ByteBuffer bb, byte[] v) {
+            bb.putInt(v.length);
+            bb.put(v);
+        }
+
         @Override
         public byte[] toByteArray(byte[] v) {
             byte[] r = new byte[4 + v.length];
@@ -361,6 +451,31 @@ public class ColumnSerializerFactory {
             stream.write(b);
         }
 
+        @Override
+        public MessageLite deserialize(ByteBuffer bb, ColumnDefinition cd) throws IOException {
+            int length = bb.getInt();
+            if (length > maxBinaryLength) {
+                log.warn("binary length greater than maxBinaryLenght (is the endianess wrong?): ?>?", length,
+                        maxBinaryLength);
+                throw new IOException("binary length greater than maxBinaryLength");
+            }
+            try {
+                Builder b = (Builder) newBuilderMethod.invoke(null);
+                b.mergeFrom(bb.array(), bb.arrayOffset() + bb.position(), length);
+                bb.position(bb.position() + length);
+                return b.build();
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void serialize(ByteBuffer bb, MessageLite v) throws IOException {
+            int size = v.getSerializedSize();
+            bb.putInt(size);
+            writeProtobufMessage(bb, v, size);
+        }
+
         private MessageLite readProtobufMessage(byte[] bp) throws InvalidProtocolBufferException {
             try {
                 Builder b = (Builder) newBuilderMethod.invoke(null);
@@ -401,6 +516,23 @@ public class ColumnSerializerFactory {
             stream.writeShort(v1);
         }
 
+        @Override
+        public String deserialize(ByteBuffer bb, ColumnDefinition cd) {
+            short x = bb.getShort();
+            return enumValues.inverse().get(x);
+        }
+
+        @Override
+        public void serialize(ByteBuffer bb, String v) throws IOException {
+            Short v1;
+            if ((enumValues == null) || (v1 = enumValues.get(v)) == null) {
+                tblDef.addEnumValue(this, v);
+                serialize(bb, v);
+                return;
+            }
+            bb.putShort(v1);
+        }
+
         void setEnumValues(BiMap<String, Short> enumValues) {
             this.enumValues = enumValues;
         }
@@ -409,4 +541,95 @@ public class ColumnSerializerFactory {
             return columnName;
         }
     }
+
+    /**
+     * Writes the string in the same modified UTF-8 format as {@link DataOutputStream#writeUTF(String)}
+     */
+    static void writeUTF(ByteBuffer bb, String s) throws UTFDataFormatException {
+        int strlen = s.length();
+        int utflen = 0;
+        for (int i = 0; i < strlen; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                utflen++;
+            } else if (c > 0x07FF) {
+                utflen += 3;
+            } else {
+                utflen += 2;
+            }
+        }
+        if (utflen > 65535) {
+            throw new UTFDataFormatException("encoded string too long: " + utflen + " bytes");
+        }
+        if (bb.remaining() < utflen + 2) {
+            throw new BufferOverflowException();
+        }
+        bb.putShort((short) utflen);
+        for (int i = 0; i < strlen; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                bb.put((byte) c);
+            } else if (c > 0x07FF) {
+                bb.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                bb.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                bb.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                bb.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                bb.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Reads a string written with {@link #writeUTF(ByteBuffer, String)} or {@link DataOutputStream#writeUTF(String)}
+     */
+    static String readUTF(ByteBuffer bb) throws UTFDataFormatException {
+        int utflen = bb.getShort() & 0xFFFF;
+        if (bb.remaining() < utflen) {
+            throw new UTFDataFormatException("malformed input: string length " + utflen + " exceeds the input");
+        }
+        char[] chars = new char[utflen];
+        int n = 0;
+        int end = bb.position() + utflen;
+        while (bb.position() < end) {
+            int c = bb.get() & 0xFF;
+            if (c < 0x80) {
+                chars[n++] = (char) c;
+            } else if ((c >> 5) == 0x06) {
+                int c2 = nextUTFByte(bb, end);
+                chars[n++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+            } else if ((c >> 4) == 0x0E) {
+                int c2 = nextUTFByte(bb, end);
+                int c3 = nextUTFByte(bb, end);
+                chars[n++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+            } else {
+                throw new UTFDataFormatException("malformed input around byte " + (bb.position() - 1));
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static int nextUTFByte(ByteBuffer bb, int end) throws UTFDataFormatException {
+        if (bb.position() >= end) {
+            throw new UTFDataFormatException("malformed input: partial character at end");
+        }
+        int c = bb.get();
+        if ((c & 0xC0) != 0x80) {
+            throw new UTFDataFormatException("malformed input around byte " + (bb.position() - 1));
+        }
+        return c;
+    }
+
+    /**
+     * Writes the protobuf message of the given size directly into the backing array of the byte buffer
+     */
+    static void writeProtobufMessage(ByteBuffer bb, MessageLite msg, int size) throws IOException {
+        if (bb.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        CodedOutputStream cos = CodedOutputStream.newInstance(bb.array(), bb.arrayOffset() + bb.position(), size);
+        msg.writeTo(cos);
+        cos.checkNoSpaceLeft();
+        bb.position(bb.position() + size);
+    }
 }
@@ -3,13 +3,15 @@ package org.yamcs.yarch;
 public class FieldReturnCompiledExpression implements CompiledExpression {
     final String field;
     final ColumnDefinition cdef;
+    final ColumnIndexResolver resolver;
     public FieldReturnCompiledExpression(String field, ColumnDefinition cdef) {
         this.field=field;
         this.cdef=cdef;
+        this.resolver = new ColumnIndexResolver(field);
     }
     @Override
     public Object getValue(Tuple tuple) {
-        return tuple.getColumn(field);
+        return resolver.getColumn(tuple, 0);
     }
     @Override
     public ColumnDefinition getDefinition() {
@@ -6,6 +6,7 @@ import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -81,6 +82,23 @@ public class FileSystemBucket implements Bucket {
         // MIME type from the filename extension.
 
         Path path = root.resolve(objectName);
+        checkLimits(path, objectData.length);
+        Files.write(path, objectData);
+    }
+
+    /**
+     * Copies the file into the bucket without reading it in memory.
+     */
+    @Override
+    public void putObject(String objectName, String contentType, Map<String, String> metadata, Path file)
+            throws IOException {
+        Path path = root.resolve(objectName);
+        checkLimits(path, Files.size(file));
+        Files.copy(file, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // verifies that the object can be written in the bucket and creates its parent directory
+    private void checkLimits(Path path, long objectSize) throws IOException {
         boolean fileExists = Files.isRegularFile(path);
 
         // Verify limits
@@ -96,7 +114,7 @@ public class FileSystemBucket implements Bucket {
             }
         });
 
-        long newSize = size.get() + objectData.length;
+        long newSize = size.get() + objectSize;
         if (newSize > FileSystemBucketDatabase.MAX_BUCKET_SIZE) {
             throw new IOException("Maximum bucket size " + FileSystemBucketDatabase.MAX_BUCKET_SIZE + " exceeded");
         }
@@ -110,7 +128,6 @@ public class FileSystemBucket implements Bucket {
         if (!Files.exists(path.getParent())) { // Check to avoid error when the parent is a symlink
             Files.createDirectories(path.getParent());
         }
-        Files.write(path, objectData);
     }
 
     @Override
@@ -102,6 +102,13 @@ public class HistogramSegment {
      *            delta time from segment start in milliseconds
      */
     public void merge(int dtime1) {
+        // the segment may be kept in memory and merged multiple times, reset the state from the previous merge
+        mergeLeft = mergeRight = false;
+        duplicate = leftUpdated = centerAdded = rightUpdated = rightDeleted = false;
+        leftIndex = rightIndex = -1;
+        left = right = null;
+        leftInterval = rightInterval = -1;
+
         this.dtime = dtime1;
         for (int i = 0; i < pps.size(); i++) {
             HistogramSegment.SegRecord r = pps.get(i);
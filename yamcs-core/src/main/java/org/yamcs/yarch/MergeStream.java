@@ -1,23 +1,31 @@
 package org.yamcs.yarch;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.yamcs.yarch.streamsql.StreamSqlException;
 
-public class MergeStream extends Stream implements StreamSubscriber, Runnable {
-    private Map<Stream, LinkedBlockingQueue<Tuple>> tupleQueues;
-    private PriorityQueue<TupleQueuePair> orderedQueue;
+/**
+ * Merges several streams ordered by a column into one stream ordered by the same column.
+ * <p>
+ * The tuples of each input stream are put in a bounded queue; a tuple is emitted when all the input streams not yet
+ * closed have at least one tuple in their queue, such that the smallest (or largest if descending) can be chosen. The
+ * merging is done by the thread of the input stream completing that condition so no thread is dedicated to the
+ * merge.
+ */
+public class MergeStream extends Stream implements StreamSubscriber {
+    static final int QUEUE_SIZE = 50;
+    private final Map<Stream, Input> inputs;
+    private final Comparator<Tuple> comparator;
     Stream[] streams;
-    private Tuple queueEndMark = new Tuple(new TupleDefinition(), new ArrayList<>());
     static AtomicInteger counter = new AtomicInteger();
     private final String mergeColumn;
+    private volatile boolean seeking;
 
     public MergeStream(YarchDatabaseInstance ydb, Stream[] streams, String mergeColumn, boolean ascending)
             throws StreamSqlException {
@@ -26,18 +34,15 @@ public class MergeStream extends Stream implements StreamSubscriber, Runnable {
         this.streams = streams;
         this.mergeColumn = mergeColumn;
 
-        if (ascending) {
-            orderedQueue = new PriorityQueue<>();
-        } else {
-            orderedQueue = new PriorityQueue<>(REVERSE_COMPARATOR);
-        }
+        Comparator<Tuple> c = (t1, t2) -> DataType.compare(t1.getColumn(mergeColumn), t2.getColumn(mergeColumn));
+        comparator = ascending ? c : c.reversed();
 
-        Map<Stream, LinkedBlockingQueue<Tuple>> t = new HashMap<>();
+        Map<Stream, Input> t = new HashMap<>();
 
         for (Stream s : streams) {
-            t.put(s, new LinkedBlockingQueue<Tuple>(50));
+            t.put(s, new Input());
         }
-        tupleQueues = Collections.unmodifiableMap(t);
+        inputs = Collections.unmodifiableMap(t);
 
         for (Stream s : streams) {
             s.addSubscriber(this);
@@ -55,12 +60,27 @@ public class MergeStream extends Stream implements StreamSubscriber, Runnable {
 
     @Override
     public void onTuple(Stream s, Tuple tuple) {
+        if (!tuple.hasColumn(mergeColumn)) {
+            log.warn("Ignoring tuple because it does not have column {}", mergeColumn);
+            return;
+        }
+        if (seeking) {
+            return;
+        }
+        ArrayBlockingQueue<Tuple> q = inputs.get(s).queue;
         try {
-            tupleQueues.get(s).put(tuple);
+            // if the queue is full, another input stream is late; the tuples will be merged when it catches up
+            while (!q.offer(tuple, 1, TimeUnit.SECONDS)) {
+                if (state == QUITTING || seeking) {
+                    return;
+                }
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             log.info("got InterruptedException when writing data to the queue");
+            return;
         }
+        merge();
     }
 
     @Override
@@ -69,88 +89,106 @@ public class MergeStream extends Stream implements StreamSubscriber, Runnable {
             return;
         }
         log.debug("Got stream closed for {}", s);
-        try {
-            tupleQueues.get(s).put(queueEndMark);
-        } catch (InterruptedException e) {
-            log.info("got InterruptedException when writing the end mark to the queue");
-            Thread.currentThread().interrupt();
+        inputs.get(s).closed = true;
+        merge();
+    }
+
+    /**
+     * emits the tuples as long as each input stream not yet closed has at least one tuple queued
+     */
+    private synchronized void merge() {
+        while (state != QUITTING && !seeking) {
+            ArrayBlockingQueue<Tuple> next = null;
+            for (Input in : inputs.values()) {
+                // read the flag before the queue: the tuples are queued before the stream is marked closed
+                boolean closed = in.closed;
+                Tuple t = in.queue.peek();
+                if (t == null) {
+                    if (closed) {
+                        continue;
+                    }
+                    // we have to wait for a tuple from this stream
+                    return;
+                }
+                if (next == null || comparator.compare(t, next.peek()) < 0) {
+                    next = in.queue;
+                }
+            }
+            if (next == null) {
+                // all the streams are closed and all the tuples have been emitted
+                close();
+                return;
+            }
+            emitTuple(next.poll());
         }
-        // tupleQueues.remove(s);
     }
 
+    /**
+     * The seek is passed to all the input streams; it fails if any of them has already been closed.
+     */
     @Override
-    public void start() {
-        log.info("Starting merge stream");
-        // first start all the substreams
+    public boolean prepareSeek(Object key) {
+        for (Input in : inputs.values()) {
+            if (in.closed) {
+                return false;
+            }
+        }
         for (Stream s : streams) {
-            s.start();
+            if (!s.prepareSeek(key)) {
+                return false;
+            }
+        }
+        seeking = true;
+        // the lock makes sure no tuple is being emitted after this
+        synchronized (this) {
+            for (Input in : inputs.values()) {
+                in.queue.clear();
+            }
         }
-        // now start the thread that collects data from the substreams
-        new Thread(this).start();
+        return true;
     }
 
     @Override
-    public void run() {
-        try {
-            // first wait for all the queues to have at least a tuple
-            log.debug("waiting for at least one tuple in each queue");
-            for (LinkedBlockingQueue<Tuple> q : tupleQueues.values()) {
-                Tuple t = q.take();
-                if (t == queueEndMark) {
-                    continue;// this queue is finished, ignore it
-                }
-                orderedQueue.add(new TupleQueuePair(q, t));
+    public boolean awaitSeek() {
+        for (Stream s : streams) {
+            if (!s.awaitSeek()) {
+                return false;
             }
-            log.debug("got one tuple from each stream, starting the business");
-
-            // now continue publishing the first element from the priority queue till it becomes empty
-            while (orderedQueue.size() > 0) {
-                TupleQueuePair tq = orderedQueue.poll();
-                if (state == QUITTING) {
-                    break;
-                }
-                emitTuple(tq.t);
-                // get a new tuple from the queue from which the previous one has been sent
-                Tuple t = tq.q.take();
-                if (t == queueEndMark) {
-                    continue;// this queue is finished, ignore it
-                }
-                if (!t.hasColumn(mergeColumn)) {
-                    log.warn("Ignoring tuple because it does not have column {}", mergeColumn);
-                }
+        }
+        return true;
+    }
 
-                orderedQueue.add(new TupleQueuePair(tq.q, t));
+    @Override
+    public void completeSeek() {
+        synchronized (this) {
+            // the inputs may have queued some tuples before noticing the seek
+            for (Input in : inputs.values()) {
+                in.queue.clear();
             }
-            close();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.info("Got interrupted exception, quitting");
-            return;
+            seeking = false;
+        }
+        for (Stream s : streams) {
+            s.completeSeek();
         }
     }
 
     @Override
-    protected void doClose() {
+    public void start() {
+        log.info("Starting merge stream");
         for (Stream s : streams) {
-            s.close();
+            s.start();
         }
     }
 
-    private static final Comparator<TupleQueuePair> REVERSE_COMPARATOR = (o1, o2) -> -o1.compareTo(o2);
-
-    class TupleQueuePair implements Comparable<TupleQueuePair> {
-
-        LinkedBlockingQueue<Tuple> q;
-        Tuple t;
-
-        TupleQueuePair(LinkedBlockingQueue<Tuple> q, Tuple t) {
-            this.q = q;
-            this.t = t;
+    @Override
+    protected void doClose() {
+        for (Stream s : streams) {
+            s.close();
         }
+    }
 
-        @Override
-        public int compareTo(TupleQueuePair o) {
-            return DataType.compare(t.getColumn(mergeColumn), o.t.getColumn(mergeColumn));
-        }
+    static class Input {
+        final ArrayBlockingQueue<Tuple> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        volatile boolean closed;
     }
 }
@@ -4,6 +4,7 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 import java.util.OptionalInt;
 
@@ -40,4 +41,24 @@ public class ParameterValueColumnSerializer extends AbstractColumnSerializer<Par
         stream.writeInt(size);
         gpv.writeTo(stream);
     }
+
+    @Override
+    public ParameterValue deserialize(ByteBuffer bb, ColumnDefinition cd) throws IOException {
+        int size = bb.getInt();
+        if (size > ColumnSerializerFactory.maxBinaryLength) {
+            throw new IOException("serialized size too big " + size + ">" + ColumnSerializerFactory.maxBinaryLength);
+        }
+        org.yamcs.protobuf.Pvalue.ParameterValue.Builder gpvb = org.yamcs.protobuf.Pvalue.ParameterValue.newBuilder();
+        gpvb.mergeFrom(bb.array(), bb.arrayOffset() + bb.position(), size);
+        bb.position(bb.position() + size);
+        return ParameterValue.fromGpb(cd.getName(), gpvb.build());
+    }
+
+    @Override
+    public void serialize(ByteBuffer bb, ParameterValue pv) throws IOException {
+        org.yamcs.protobuf.Pvalue.ParameterValue gpv = pv.toProtobufParameterValue(Optional.empty(), OptionalInt.empty(), false);
+        int size = gpv.getSerializedSize();
+        bb.putInt(size);
+        ColumnSerializerFactory.writeProtobufMessage(bb, gpv, size);
+    }
 }
@@ -66,6 +66,28 @@ public class SelectStream extends Stream implements StreamSubscriber {
         hasStars = hs;
     }
 
+    /**
+     * The seek is passed to the input stream; it is not supported when the select contains aggregations because the
+     * window would contain the data from before the seek.
+     */
+    @Override
+    public boolean prepareSeek(Object key) {
+        if (windowProc != null) {
+            return false;
+        }
+        return input.prepareSeek(key);
+    }
+
+    @Override
+    public boolean awaitSeek() {
+        return input.awaitSeek();
+    }
+
+    @Override
+    public void completeSeek() {
+        input.completeSeek();
+    }
+
     @Override
     public void onTuple(Stream stream, Tuple t) {
         if (whereExp != null) {
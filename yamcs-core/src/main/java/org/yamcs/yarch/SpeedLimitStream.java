@@ -1,18 +1,79 @@
 package org.yamcs.yarch;
 
-public class SpeedLimitStream extends Stream implements StreamSubscriber {
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-    Stream input;
-    volatile SpeedSpec speedSpec;
-    private long ltst = -1; // time when the last tuple has been sent
-    private long ltt = -1; // time of the last tuple sent
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * Stream limiting the speed at which the tuples are emitted.
+ * <p>
+ * The tuples received from the input stream are put in a bounded queue and the input thread returns straight away; it
+ * is only blocked when the queue is full. The queued tuples are released in batches: a release emits all the tuples
+ * which are due and then asks a timer shared by all the speed limit streams to start the next release when the next
+ * tuple is due. No thread waits on behalf of a stream in between, so many concurrent replays share a few threads.
+ * <p>
+ * The releases run in a thread pool shared by all the speed limit streams which creates threads as needed; a
+ * subscriber blocking on a slow client only holds the thread releasing its own stream and does not stall the others.
+ * <p>
+ * The due time of a tuple is computed from the due time of the previous tuple rather than from the moment it was
+ * actually released, so the scheduling jitter does not accumulate. If the release falls behind by more than
+ * {@value #MAX_LAG} milliseconds (for example because the subscribers are slow), the stream does not try to catch up
+ * and continues from the current time.
+ */
+public class SpeedLimitStream extends Stream implements StreamSubscriber {
     /**
      * maximum time to wait if SPEED is ORIGINAL meaning that if there is a gap in the data longer than this, we
      * continue)
      */
     public final static long MAX_WAIT_TIME = 60000;
 
+    /**
+     * if the release of the tuples is late by more than this number of milliseconds, the pacing restarts from the
+     * current time
+     */
+    static final long MAX_LAG = 1000;
+
+    /**
+     * maximum number of tuples waiting to be released; the input stream is blocked when the queue is full
+     */
+    static final int MAX_QUEUE_SIZE = 1024;
+
+    /**
+     * maximum number of tuples released in one go before giving the thread to the other streams
+     */
+    static final int MAX_BATCH_SIZE = 256;
+
+    // starts the releases when the next tuple is due; nothing is emitted from here
+    static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryBuilder().setNameFormat("SpeedLimitTimer-%d").setDaemon(true).build());
+    static {
+        timer.setRemoveOnCancelPolicy(true);
+    }
+    // runs the releases; the idle threads are removed after one minute
+    static final ExecutorService releaser = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("SpeedLimitRelease-%d").setDaemon(true).build());
+
+    Stream input;
+    volatile SpeedSpec speedSpec;
+
+    // all the fields below are guarded by this
+    private final ArrayDeque<Tuple> queue = new ArrayDeque<>();
+    private long ltst = -1; // time when the last tuple was due
+    private long ltt = -1; // time of the last tuple released
+    private boolean releasing; // a release is scheduled or running
+    private ScheduledFuture<?> delayedRelease; // the timer task waiting for the next tuple to be due
+    private boolean paused;
+    private boolean inputClosed;
+    private volatile boolean seeking; // the tuples received are discarded
+    private volatile int seekCount; // incremented by each seek, used to discard the tuples taken before the seek
+    // held while emitting a tuple such that a seek can wait for the tuple being emitted
+    private final Object emitLock = new Object();
+
     public SpeedLimitStream(YarchDatabaseInstance dict, String name, TupleDefinition definition, SpeedSpec speedSpec) {
         super(dict, name, definition);
         this.speedSpec = speedSpec;
@@ -29,51 +90,183 @@ public class SpeedLimitStream extends Stream implements StreamSubscriber {
 
     @Override
     public void onTuple(Stream s, Tuple t) {
-        long waitTime = 0;
-        try {
-            switch (speedSpec.getType()) {
-            case AFAP:
-                break;
-            case FIXED_DELAY:
-                long ctime = System.currentTimeMillis();
-                if (ltst != -1) {
-                    waitTime = (long) (speedSpec.getFixedDelay() - (ctime - ltst));
-                }
-                break;
-            case ORIGINAL:
-                long time = (Long) t.getColumn(speedSpec.column);
-                if (ltt != -1) {
-                    waitTime = (long) ((time - ltt) / speedSpec.getMultiplier());
+        synchronized (this) {
+            try {
+                while (queue.size() >= MAX_QUEUE_SIZE && state != QUITTING && !seeking) {
+                    wait();
                 }
-                if (waitTime > MAX_WAIT_TIME) {
-                    waitTime = MAX_WAIT_TIME;
-                }
-                ltt = time;
-                break;
-            case STEP_BY_STEP: // TODO ? Currently implemented at YarchReplay level
-                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.debug("Interrupt received ", e);
+                return;
             }
-            if (waitTime > 0) {
-                Thread.sleep(waitTime);
+            if (state == QUITTING || seeking) {
+                return;
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.debug("Interrupt received ", e);
+            queue.add(t);
+            scheduleRelease();
         }
-        ltst = System.currentTimeMillis();
-        emitTuple(t);
     }
 
     /**
-     * Called when the subcribed stream is closed we close this stream also.
+     * Called when the subcribed stream is closed; this stream is closed after all the queued tuples have been
+     * released.
      */
     @Override
     public void streamClosed(Stream stream) {
+        synchronized (this) {
+            inputClosed = true;
+            if (!queue.isEmpty() || releasing) {
+                return;
+            }
+        }
         close();
     }
 
+    // called with the lock held
+    private void scheduleRelease() {
+        if (releasing || paused || seeking) {
+            return;
+        }
+        releasing = true;
+        releaser.execute(this::release);
+    }
+
+    // called with the lock held; if a release is waiting for the next tuple to be due, it is started now
+    private void releaseNow() {
+        if (delayedRelease != null && delayedRelease.cancel(false)) {
+            delayedRelease = null;
+            releasing = false;
+        }
+        scheduleRelease();
+    }
+
+    private void release() {
+        for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+            Tuple t;
+            int sc;
+            synchronized (this) {
+                delayedRelease = null;
+                if (paused || seeking || state == QUITTING) {
+                    releasing = false;
+                    return;
+                }
+                t = queue.peek();
+                if (t == null) {
+                    releasing = false;
+                    if (inputClosed) {
+                        break;
+                    }
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                long due = dueTime(t, now);
+                if (due > now) {
+                    delayedRelease = timer.schedule(() -> releaser.execute(this::release), due - now,
+                            TimeUnit.MILLISECONDS);
+                    return;
+                }
+                queue.poll();
+                notifyAll();
+                sc = seekCount;
+                ltst = (now - due > MAX_LAG) ? now : due;
+            }
+            synchronized (emitLock) {
+                // the tuple is dropped if a seek started after it has been taken from the queue
+                if (seeking || sc != seekCount) {
+                    continue;
+                }
+                try {
+                    emitTuple(t);
+                } catch (Exception e) {
+                    // the exception has been logged by emitTuple
+                    close();
+                    return;
+                }
+            }
+        }
+        synchronized (this) {
+            if (releasing) {
+                // the batch is finished but there are more tuples to release; give the others a chance
+                releaser.execute(this::release);
+                return;
+            }
+        }
+        // the input is closed and all the tuples have been released
+        close();
+    }
+
+    /**
+     * Stops emitting tuples until {@link #resume()} is called.
+     * <p>
+     * If a tuple is being emitted while this method is called, it will still be emitted.
+     */
+    public synchronized void pause() {
+        paused = true;
+    }
+
+    /**
+     * Resumes the emission of the tuples after a {@link #pause()}. The first tuple is emitted immediately.
+     */
+    public synchronized void resume() {
+        if (!paused) {
+            return;
+        }
+        paused = false;
+        ltst = -1;
+        ltt = -1;
+        if (!queue.isEmpty()) {
+            releaseNow();
+        } else if (inputClosed && !releasing) {
+            releaser.execute(this::close);
+        }
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    // computes when the tuple has to be released, called with the lock held
+    private long dueTime(Tuple t, long now) {
+        if (ltst == -1) {
+            updateLastTupleTime(t);
+            return now;
+        }
+        long waitTime = 0;
+        switch (speedSpec.getType()) {
+        case AFAP:
+            break;
+        case FIXED_DELAY:
+            waitTime = speedSpec.getFixedDelay();
+            break;
+        case ORIGINAL:
+            long time = (Long) t.getColumn(speedSpec.column);
+            if (ltt != -1) {
+                waitTime = (long) ((time - ltt) / speedSpec.getMultiplier());
+            }
+            if (waitTime > MAX_WAIT_TIME) {
+                waitTime = MAX_WAIT_TIME;
+            }
+            break;
+        case STEP_BY_STEP: // TODO ? Currently implemented at YarchReplay level
+            break;
+        }
+        long due = ltst + Math.max(0, waitTime);
+        if (due <= now) {
+            updateLastTupleTime(t);
+        }
+        return due;
+    }
+
+    private void updateLastTupleTime(Tuple t) {
+        SpeedSpec ss = speedSpec;
+        if (ss.getType() == SpeedSpec.Type.ORIGINAL) {
+            ltt = (Long) t.getColumn(ss.column);
+        }
+    }
+
     public void setSpeedSpec(SpeedSpec speedSpec) {
-        this.speedSpec = speedSpec;
+        changeSpeed(speedSpec);
     }
 
     @Override
@@ -83,10 +276,75 @@ public class SpeedLimitStream extends Stream implements StreamSubscriber {
 
     @Override
     protected void doClose() {
+        synchronized (this) {
+            queue.clear();
+            if (delayedRelease != null) {
+                delayedRelease.cancel(false);
+            }
+            notifyAll();
+        }
         input.close(); // TODO replace with removeSubscriber
     }
 
+    /**
+     * Passes the seek to the input stream and discards the queued tuples.
+     */
+    @Override
+    public boolean prepareSeek(Object key) {
+        if (state == QUITTING) {
+            return false;
+        }
+        // the readers have to be asked to stop before the tuples are discarded, otherwise they may run to the end
+        if (!input.prepareSeek(key)) {
+            return false;
+        }
+        synchronized (this) {
+            seeking = true;
+            seekCount++;
+            queue.clear();
+            if (delayedRelease != null && delayedRelease.cancel(false)) {
+                delayedRelease = null;
+                releasing = false;
+            }
+            notifyAll();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitSeek() {
+        synchronized (emitLock) {
+            // wait for the tuple being emitted, if any
+        }
+        return input.awaitSeek();
+    }
+
+    /**
+     * Resumes the emission after a seek; the first tuple from the new position is emitted immediately.
+     */
+    @Override
+    public void completeSeek() {
+        synchronized (this) {
+            ltst = -1;
+            ltt = -1;
+            seeking = false;
+            if (!queue.isEmpty()) {
+                scheduleRelease();
+            }
+        }
+        input.completeSeek();
+    }
+
+    /**
+     * Changes the speed; the new speed applies starting with the next tuple released.
+     */
     public void changeSpeed(SpeedSpec speedSpec) {
-        this.speedSpec = speedSpec;
+        synchronized (this) {
+            this.speedSpec = speedSpec;
+            ltt = -1;
+            if (!queue.isEmpty()) {
+                releaseNow();
+            }
+        }
     }
 }
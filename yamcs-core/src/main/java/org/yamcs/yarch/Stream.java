@@ -7,6 +7,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.yamcs.logging.Log;
+import org.yamcs.yarch.AsyncStreamSubscriber.OverflowPolicy;
 
 /**
  * Streams are means to transport tuples.
@@ -78,9 +79,51 @@ public abstract class Stream {
         subscriberCount.incrementAndGet();
     }
 
+    /**
+     * Adds a subscriber which receives the tuples on a dedicated thread instead of the thread emitting them.
+     * <p>
+     * The tuples are passed through a queue of the given size and the policy specifies what happens if the
+     * subscriber is too slow and the queue fills up.
+     * <p>
+     * The subscription can be removed by passing either the original subscriber or the returned object to
+     * {@link #removeSubscriber(StreamSubscriber)}.
+     * 
+     * @param s
+     *            - the subscriber
+     * @param name
+     *            - name of the subscription, used for the delivery thread and the system parameters
+     * @param queueSize
+     *            - maximum number of tuples waiting to be delivered
+     * @param policy
+     *            - what to do when the queue is full
+     * @return the object wrapping the subscriber which can be used to monitor the queue
+     */
+    public AsyncStreamSubscriber addAsyncSubscriber(StreamSubscriber s, String name, int queueSize,
+            OverflowPolicy policy) {
+        AsyncStreamSubscriber as = new AsyncStreamSubscriber(this, s, name, queueSize, policy);
+        addSubscriber(as);
+        return as;
+    }
+
     public void removeSubscriber(StreamSubscriber s) {
-        subscribers.remove(s);
-        subscriberCount.decrementAndGet();
+        StreamSubscriber removed = null;
+        if (subscribers.remove(s)) {
+            removed = s;
+        } else {
+            for (StreamSubscriber s1 : subscribers) {
+                if (s1 instanceof AsyncStreamSubscriber && ((AsyncStreamSubscriber) s1).getSubscriber() == s
+                        && subscribers.remove(s1)) {
+                    removed = s1;
+                    break;
+                }
+            }
+        }
+        if (removed != null) {
+            subscriberCount.decrementAndGet();
+            if (removed instanceof AsyncStreamSubscriber) {
+                ((AsyncStreamSubscriber) removed).quit();
+            }
+        }
     }
 
     public ColumnDefinition getColumnDefinition(String colName) {
@@ -106,6 +149,40 @@ public abstract class Stream {
 
     protected abstract void doClose();
 
+    /**
+     * First step of repositioning the stream without closing and re-creating it: asks the reader(s) at the origin of
+     * the stream to stop and continue from the new key, and discards the tuples queued inside the stream.
+     * <p>
+     * The key is the new value of the first key column of the table(s) at the origin of the stream. This method does
+     * not wait for the readers to stop; the tuples emitted in the meantime should be ignored by the subscribers.
+     * <p>
+     * If false is returned, the stream cannot be repositioned and has to be closed.
+     * 
+     * @param key
+     * @return true if the stream can be repositioned
+     * @see #awaitSeek()
+     * @see #completeSeek()
+     */
+    public boolean prepareSeek(Object key) {
+        return false;
+    }
+
+    /**
+     * Second step of repositioning the stream: waits for the readers to stop. After this method returns true, the
+     * stream does not emit any tuple until {@link #completeSeek()} is called.
+     * 
+     * @return true if the readers have stopped; if false is returned, the stream has to be closed.
+     */
+    public boolean awaitSeek() {
+        return false;
+    }
+
+    /**
+     * Last step of repositioning the stream: resumes emitting the tuples from the new position.
+     */
+    public void completeSeek() {
+    }
+
     public int getState() {
         return state;
     }
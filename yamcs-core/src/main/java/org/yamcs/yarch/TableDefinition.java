@@ -1,12 +1,11 @@
 package org.yamcs.yarch;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +54,12 @@ public class TableDefinition {
      * To switch to the latest version, use the bin/yamcs archive upgrade command
      */
     public static final int CURRENT_FORMAT_VERSION = 2;
+
+    // the keys and values are serialized in a per thread buffer which is grown as required.
+    // Buffers bigger than this are not kept for the next serialization.
+    static final int MAX_CACHED_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> serializationBuffer = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocate(1024));
     private int formatVersion = CURRENT_FORMAT_VERSION;
 
     // used for rocksdb - IN_KEY means storing the partition in front of the key
@@ -101,6 +106,8 @@ public class TableDefinition {
     private List<String> histoColumns;
 
     private List<ColumnSerializer<?>> keySerializers = new ArrayList<ColumnSerializer<?>>();
+    // resolves the key columns in the tuples to be written, created on first use
+    private volatile ColumnIndexResolver keyColumns;
     private List<ColumnSerializer<?>> valueSerializers = new ArrayList<ColumnSerializer<?>>();
 
     // mapping from String to short for the columns of type enum
@@ -307,23 +314,56 @@ public class TableDefinition {
      * @return serialized key value
      */
     public byte[] serializeKey(Tuple t) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            DataOutputStream dos = new DataOutputStream(baos);
-            for (int i = 0; i < keyDef.size(); i++) {
-                ColumnSerializer cs = keySerializers.get(i);
-                String colName = keyDef.getColumn(i).getName();
-                Object v = t.getColumn(colName);
-                if (v == null) {
-                    throw new IllegalArgumentException("Tuple does not have mandatory column '" + colName + "'");
-                }
-                cs.serialize(dos, v);
+        ByteBuffer bb = getSerializationBuffer(0);
+        while (true) {
+            try {
+                writeKey(bb, t);
+                return Arrays.copyOf(bb.array(), bb.position());
+            } catch (BufferOverflowException e) {
+                bb = getSerializationBuffer(2 * bb.capacity());
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot serialize key from tuple " + t + ": ", e);
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void writeKey(ByteBuffer bb, Tuple t) throws IOException {
+        ColumnIndexResolver resolver = keyColumns;
+        if (resolver == null) {
+            String[] names = new String[keyDef.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = keyDef.getColumn(i).getName();
             }
-            return baos.toByteArray();
-        } catch (IOException e) {
-            throw new IllegalArgumentException("Cannot serialize key from tuple " + t + ": ", e);
+            keyColumns = resolver = new ColumnIndexResolver(names);
+        }
+        int[] idx = resolver.getIndices(t.getDefinition());
+        for (int i = 0; i < keyDef.size(); i++) {
+            ColumnSerializer cs = keySerializers.get(i);
+            Object v = idx[i] == -1 ? null : t.getColumn(idx[i]);
+            if (v == null) {
+                throw new IllegalArgumentException(
+                        "Tuple does not have mandatory column '" + keyDef.getColumn(i).getName() + "'");
+            }
+            cs.serialize(bb, v);
         }
     }
 
+    /**
+     * returns the serialization buffer of the current thread, cleared and with a capacity of at least minCapacity
+     */
+    private static ByteBuffer getSerializationBuffer(int minCapacity) {
+        ByteBuffer bb = serializationBuffer.get();
+        if (bb.capacity() < minCapacity) {
+            bb = ByteBuffer.allocate(minCapacity);
+            if (minCapacity <= MAX_CACHED_BUFFER_SIZE) {
+                serializationBuffer.set(bb);
+            }
+        }
+        bb.clear();
+        return bb;
+    }
+
     /**
      * adds all missing columns to the value part and serialises the table definition to
      * disk
@@ -470,67 +510,81 @@ public class TableDefinition {
      */
     public byte[] serializeValue(Tuple t) {
         TupleDefinition tdef = t.getDefinition();
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            DataOutputStream dos = new DataOutputStream(baos);
-            for (int i = 0; i < tdef.size(); i++) {
-                ColumnDefinition tupleCd = tdef.getColumn(i);
-                if (keyDef.hasColumn(tupleCd.getName())) {
-                    continue;
-                }
-                int cidx = valueDef.getColumnIndex(tupleCd.getName());
-                if (cidx == -1) { // call again this function after adding the
-                                  // missing columns to the table
-                    addMissingValueColumns(tdef);
-                    return serializeValue(t);
-                }
-                ColumnDefinition tableCd = valueDef.getColumn(cidx);
-                Object v = t.getColumn(i);
-                Object v1 = DataType.castAs(tupleCd.type, tableCd.type, v);
-                ColumnSerializer tcs = valueSerializers.get(cidx);
-                dos.writeInt(cidx);
-                tcs.serialize(dos, v1);
+        for (int i = 0; i < tdef.size(); i++) {
+            String colName = tdef.getColumn(i).getName();
+            if (!keyDef.hasColumn(colName) && !valueDef.hasColumn(colName)) {
+                addMissingValueColumns(tdef);
+                break;
+            }
+        }
+        ByteBuffer bb = getSerializationBuffer(0);
+        while (true) {
+            try {
+                writeValue(bb, t);
+                return Arrays.copyOf(bb.array(), bb.position());
+            } catch (BufferOverflowException e) {
+                bb = getSerializationBuffer(2 * bb.capacity());
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot serialize column tuple " + t + ": ", e);
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void writeValue(ByteBuffer bb, Tuple t) throws IOException {
+        TupleDefinition tdef = t.getDefinition();
+        TupleDefinition vdef = valueDef;
+        for (int i = 0; i < tdef.size(); i++) {
+            ColumnDefinition tupleCd = tdef.getColumn(i);
+            if (keyDef.hasColumn(tupleCd.getName())) {
+                continue;
             }
-            // add a final -1 eof marker
-            dos.writeInt(-1);
-            return baos.toByteArray();
-        } catch (IOException e) {
-            throw new IllegalArgumentException("Cannot serialize column tuple " + t + ": ", e);
+            int cidx = vdef.getColumnIndex(tupleCd.getName());
+            ColumnDefinition tableCd = vdef.getColumn(cidx);
+            Object v = t.getColumn(i);
+            Object v1 = DataType.castAs(tupleCd.type, tableCd.type, v);
+            ColumnSerializer tcs = valueSerializers.get(cidx);
+            bb.putInt(cidx);
+            tcs.serialize(bb, v1);
         }
+        // add a final -1 eof marker
+        bb.putInt(-1);
     }
 
     public Tuple deserialize(byte[] k, byte[] v) {
         TupleDefinition tdef = keyDef.copy();
         ArrayList<Object> cols = new ArrayList<>();
-        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(k));
         try {
             // deserialize the key
+            ByteBuffer bb = ByteBuffer.wrap(k);
             for (int i = 0; i < keyDef.size(); i++) {
                 ColumnDefinition cd = keyDef.getColumn(i);
-                ColumnSerializer cs = keySerializers.get(i);
-                Object o = cs.deserialize(dis, cd);
+                ColumnSerializer<?> cs = keySerializers.get(i);
+                Object o = cs.deserialize(bb, cd);
                 cols.add(o);
             }
 
             // deserialize the value
-            dis = new DataInputStream(new ByteArrayInputStream(v));
+            bb = ByteBuffer.wrap(v);
+            TupleDefinition vdef = valueDef;
             while (true) {
-                int cidx = dis.readInt(); // column index
+                int cidx = bb.getInt(); // column index
                 if (cidx == -1) {
                     break;
                 }
-                if (cidx >= valueDef.size()) {
+                if (cidx >= vdef.size()) {
                     throw new IllegalArgumentException(
                             "Reference to index " + cidx + " found but the table definition does not have this column");
                 }
 
-                ColumnDefinition cd = valueDef.getColumn(cidx);
-                ColumnSerializer cs = valueSerializers.get(cidx);
+                ColumnDefinition cd = vdef.getColumn(cidx);
+                ColumnSerializer<?> cs = valueSerializers.get(cidx);
 
-                Object o = cs.deserialize(dis, cd);
+                Object o = cs.deserialize(bb, cd);
                 tdef.addColumn(cd);
                 cols.add(o);
             }
-        } catch (IOException e) {
+        } catch (IOException | BufferUnderflowException e) {
             throw new DatabaseCorruptionException(
                     "cannot deserialize (" + StringConverter.byteBufferToHexString(ByteBuffer.wrap(k)) + ","
                             + StringConverter.byteBufferToHexString(ByteBuffer.wrap(v)) + ")",
@@ -38,6 +38,18 @@ public abstract class TableWriter implements StreamSubscriber {
         return tableDefinition;
     }
 
+    /**
+     * Subscribes the writer to the stream whose tuples have to be written into the table.
+     * <p>
+     * By default the tuples are written on the thread emitting them; the implementations can override this method to
+     * subscribe asynchronously.
+     * 
+     * @param stream
+     */
+    public void subscribeTo(Stream stream) {
+        stream.addSubscriber(this);
+    }
+
     /**
      * close histogram db and any open resources
      */
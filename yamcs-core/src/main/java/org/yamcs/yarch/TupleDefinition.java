@@ -9,6 +9,8 @@ public class TupleDefinition implements Serializable {
     private static final long serialVersionUID = 200805301445L;
     private ArrayList<ColumnDefinition> columnDefinitions = new ArrayList<ColumnDefinition>();
     private HashMap<String, Integer> columnNameIndex = new HashMap<String, Integer>();
+    // incremented each time the columns change, used to invalidate the indices cached by ColumnIndexResolver
+    transient int modCount;
     public static final int MAX_COLS = 32000;
 
     public List<ColumnDefinition> getColumnDefinitions() {
@@ -26,6 +28,7 @@ public class TupleDefinition implements Serializable {
         }
         columnDefinitions.add(c);
         columnNameIndex.put(c.getName(), columnDefinitions.size() - 1);
+        modCount++;
     }
 
     /**
@@ -79,6 +82,7 @@ public class TupleDefinition implements Serializable {
         ColumnDefinition newCd = new ColumnDefinition(newName, oldCd.type);
         columnDefinitions.set(idx, newCd);
         columnNameIndex.put(newName, idx);
+        modCount++;
     }
 
     /**
@@ -84,6 +84,7 @@ public class HistogramRebuilder {
         stream.addSubscriber(new StreamSubscriber() {
             @Override
             public void streamClosed(Stream stream) {
+                tw.close();
                 cf.complete(null);
             }
 
@@ -74,6 +74,14 @@ class MergingIterator implements DbIterator {
     }
     
 
+    /**
+     * 
+     * @return the sub-iterator positioned on the current record or null if there is no record left
+     */
+    DbIterator current() {
+        return priorityQueue.peek();
+    }
+
     @Override
     public byte[] key() {
         DbIterator it  = priorityQueue.peek();
@@ -0,0 +1,195 @@
+package org.yamcs.yarch.rocksdb;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * Iterator reading ahead the records of another iterator on an executor.
+ * <p>
+ * The records are read in batches; while the records of one batch are consumed, the next batch is read (and
+ * optionally decoded) by the executor. The size of the batches starts small such that the first records are available
+ * quickly and is doubled with each batch up to a maximum.
+ * <p>
+ * Each batch is read by a separate task which does not block, so the executor can be shared by any number of
+ * iterators without risk of deadlock.
+ * <p>
+ * The iterator can only be moved in one direction: the {@link #next()} and {@link #prev()} methods both advance to the
+ * next record in the direction given in the constructor.
+ *
+ * @author nm
+ *
+ */
+class PrefetchingIterator implements DbIterator {
+    static final int MIN_BATCH_SIZE = 16;
+    static final int MAX_BATCH_SIZE = 1024;
+    static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+
+    final DbIterator it;
+    final boolean ascending;
+    final ExecutorService executor;
+    final BiFunction<byte[], byte[], Object> decoder;
+
+    private int batchSize = MIN_BATCH_SIZE;
+    private Batch current;
+    private int pos;
+    private Future<Batch> nextBatch;
+    private boolean closed;
+
+    /**
+     *
+     * @param it
+     *            - the iterator to read from; it will be closed when this iterator is closed.
+     * @param ascending
+     *            - if true, the underlying iterator is moved with next(), otherwise with prev()
+     * @param executor
+     *            - the executor used to read the batches
+     * @param decoder
+     *            - if not null, it is called on the executor for each (key, value) and the result is made available
+     *            via {@link #decoded()}
+     */
+    PrefetchingIterator(DbIterator it, boolean ascending, ExecutorService executor,
+            BiFunction<byte[], byte[], Object> decoder) {
+        this.it = it;
+        this.ascending = ascending;
+        this.executor = executor;
+        this.decoder = decoder;
+        submitNext();
+    }
+
+    @Override
+    public boolean isValid() {
+        ensureCurrent();
+        return pos < current.size;
+    }
+
+    @Override
+    public void next() {
+        advance();
+    }
+
+    @Override
+    public void prev() {
+        advance();
+    }
+
+    private void advance() {
+        ensureCurrent();
+        pos++;
+        if (pos >= current.size && nextBatch != null) {
+            takeNext();
+        }
+    }
+
+    @Override
+    public byte[] key() {
+        return current.keys[pos];
+    }
+
+    @Override
+    public byte[] value() {
+        return current.values[pos];
+    }
+
+    /**
+     *
+     * @return the result of the decoder for the current record or null if no decoder has been specified
+     */
+    Object decoded() {
+        return current.decoded == null ? null : current.decoded[pos];
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // the underlying iterator may still be used by the prefetching task; wait for it to finish
+        if (nextBatch != null && !nextBatch.cancel(false)) {
+            try {
+                nextBatch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // ignore, we are closing anyway
+            }
+        }
+        nextBatch = null;
+        it.close();
+    }
+
+    private void ensureCurrent() {
+        if (current == null) {
+            takeNext();
+        }
+    }
+
+    private void takeNext() {
+        try {
+            current = nextBatch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading ahead", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        pos = 0;
+        if (current.last) {
+            nextBatch = null;
+        } else {
+            submitNext();
+        }
+    }
+
+    private void submitNext() {
+        int n = batchSize;
+        batchSize = Math.min(MAX_BATCH_SIZE, 2 * batchSize);
+        nextBatch = executor.submit(() -> readBatch(n));
+    }
+
+    // executed on the executor
+    private Batch readBatch(int n) {
+        Batch b = new Batch(n, decoder != null);
+        int bytes = 0;
+        while (b.size < n && bytes < MAX_BATCH_BYTES && it.isValid()) {
+            byte[] k = it.key();
+            byte[] v = it.value();
+            b.keys[b.size] = k;
+            b.values[b.size] = v;
+            if (decoder != null) {
+                b.decoded[b.size] = decoder.apply(k, v);
+            }
+            b.size++;
+            bytes += k.length + v.length;
+            if (ascending) {
+                it.next();
+            } else {
+                it.prev();
+            }
+        }
+        b.last = !it.isValid();
+        return b;
+    }
+
+    static final class Batch {
+        final byte[][] keys;
+        final byte[][] values;
+        final Object[] decoded;
+        int size;
+        boolean last;
+
+        Batch(int capacity, boolean withDecoded) {
+            keys = new byte[capacity][];
+            values = new byte[capacity][];
+            decoded = withDecoded ? new Object[capacity] : null;
+        }
+    }
+}
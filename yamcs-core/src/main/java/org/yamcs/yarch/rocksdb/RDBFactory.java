@@ -58,14 +58,30 @@ public class RDBFactory implements Runnable {
      * @throws IOException
      */
     public YRDB getRdb(String relativePath, boolean readonly) throws IOException {
-        return rdb(relativePath, readonly);
+        return rdb(relativePath, readonly, false);
+    }
+
+    /**
+     * Opens or create a database at a given relative path
+     * 
+     * @param relativePath
+     *            - relative path to the dataDir- should be a directory
+     * @param readonly
+     *            - open in readonly mode; if the database is open in readwrite mode, it will be returned like that
+     * @param historical
+     *            - if the database is not already open, open it with the historical block cache
+     * @return the database created or opened
+     * @throws IOException
+     */
+    public YRDB getRdb(String relativePath, boolean readonly, boolean historical) throws IOException {
+        return rdb(relativePath, readonly, historical);
     }
 
     /**
      * Opens or creates a database at the root dataDir
      */
     public YRDB getRdb(boolean readonly) throws IOException {
-        return rdb("", readonly);
+        return rdb("", readonly, false);
     }
 
     /**
@@ -86,7 +102,7 @@ public class RDBFactory implements Runnable {
         }
     }
 
-    private synchronized YRDB rdb(String relativePath, boolean readonly) throws IOException {
+    private synchronized YRDB rdb(String relativePath, boolean readonly, boolean historical) throws IOException {
         YRDB db = databases.get(relativePath);
         if (db == null) {
             if (databases.size() >= maxOpenDbs) { // close the db with the oldest timestamp
@@ -108,7 +124,7 @@ public class RDBFactory implements Runnable {
             String absolutePath = dataDir + "/" + relativePath;
             log.debug("Creating or opening RDB {}  total rdb open: {}", absolutePath, databases.size());
             try {
-                db = new YRDB(absolutePath, readonly);
+                db = new YRDB(absolutePath, readonly, historical);
                 log.debug("Opened {} with approximatively {} records", absolutePath, db.getApproxNumRecords());
             } catch (RocksDBException e) {
                 throw new IOException(e);
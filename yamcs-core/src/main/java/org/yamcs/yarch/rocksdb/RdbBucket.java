@@ -7,6 +7,8 @@ import static org.yamcs.yarch.rocksdb.RdbStorageEngine.TBS_INDEX_SIZE;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -121,6 +123,24 @@ public class RdbBucket implements Bucket {
         }
     }
 
+    /**
+     * Stores the content of the file as an object of the bucket.
+     * <p>
+     * The object is stored as a single value so the file is read in memory; the size is checked against the limits of
+     * the bucket before reading it.
+     */
+    @Override
+    public synchronized void putObject(String objectName, String contentType, Map<String, String> metadata, Path file)
+            throws IOException {
+        long size = Files.size(file);
+        ObjectProperties oldProps = findObject(objectName);
+        long bsize = bucketProps.getSize() + size - ((oldProps == null) ? 0 : oldProps.getSize());
+        if (bsize > bucketProps.getMaxSize()) {
+            throw new IOException("Maximum bucket size " + bucketProps.getMaxSize() + " exceeded");
+        }
+        Bucket.super.putObject(objectName, contentType, metadata, file);
+    }
+
     @Override
     public ObjectProperties findObject(String objectName) throws IOException {
         byte[] k = getKey(TYPE_OBJ_METADATA, objectName);
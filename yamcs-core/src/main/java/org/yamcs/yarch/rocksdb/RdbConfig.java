@@ -13,8 +13,12 @@ import org.rocksdb.DBOptions;
 import org.rocksdb.Env;
 import org.rocksdb.IndexType;
 import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
 import org.yamcs.ConfigurationException;
 import org.yamcs.YConfiguration;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.yarch.AsyncStreamSubscriber;
+import org.yamcs.yarch.AsyncStreamSubscriber.OverflowPolicy;
 
 /**
  * reads the rdbConfig from the yamcs.yaml and provides RocksDB Options when creating and opening databases
@@ -31,13 +35,31 @@ public class RdbConfig {
     public static final String KEY_OPTIONS = "options";
     public static final String KEY_TABLESPACE_NAME_PATTERN = "tablespaceNamePattern";
     public static final String KEY_TF_CONFIG = "tableFormatConfig";
+    public static final String KEY_TABLE_WRITER_CONFIG = "tableWriterConfig";
+    public static final String KEY_TABLE_NAME_PATTERN = "tableNamePattern";
+    public static final String KEY_SCAN_PREFETCH_THREADS = "scanPrefetchThreads";
+    public static final String KEY_SCAN_READAHEAD_SIZE = "scanReadaheadSize";
+    public static final String KEY_SCAN_FILL_CACHE = "scanFillCache";
+    public static final String KEY_HISTORICAL_BLOCK_CACHE_SIZE = "historicalBlockCacheSize";
+    public static final String KEY_HISTORICAL_PARTITION_AGE = "historicalPartitionAge";
     public static final int DEFAULT_MAX_OPEN_FILES = 1000;
 
     private List<TablespaceConfig> tblConfigList = new ArrayList<>();
+    private List<TableWriterConfig> twConfigList = new ArrayList<>();
     final Env env;
     final ColumnFamilyOptions defaultColumnFamilyOptions;
     final Options defaultOptions;
     final DBOptions defaultDBOptions;
+    // used for the partitions older than historicalPartitionAge; null if no historical block cache is configured
+    final ColumnFamilyOptions historicalColumnFamilyOptions;
+    final Options historicalOptions;
+    final ReadOptions scanReadOptions;
+
+    private int scanPrefetchThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private long scanReadaheadSize = 0;
+    private boolean scanFillCache = true;
+    private long historicalBlockCacheSize = 0;
+    private long historicalPartitionAge = 86400_000L;
 
     /**
      * 
@@ -63,31 +85,77 @@ public class RdbConfig {
                     tblConfigList.add(tblConf);
                 }
             }
+            if (rdbOptions.containsKey(KEY_TABLE_WRITER_CONFIG)) {
+                List<Object> twConfigs = YConfiguration.getList(rdbOptions, KEY_TABLE_WRITER_CONFIG);
+                for (Object o : twConfigs) {
+                    if (!(o instanceof Map)) {
+                        throw new ConfigurationException(
+                                "Error in rdbConfig -> tableWriterConfig in yamcs.yaml: the entries of tableWriterConfig have to be maps");
+                    }
+                    twConfigList.add(new TableWriterConfig((Map<String, Object>) o));
+                }
+            }
+            scanPrefetchThreads = YConfiguration.getInt(rdbOptions, KEY_SCAN_PREFETCH_THREADS, scanPrefetchThreads);
+            if (scanPrefetchThreads < 0) {
+                throw new ConfigurationException(
+                        "Error in rdbConfig in yamcs.yaml: " + KEY_SCAN_PREFETCH_THREADS + " cannot be negative");
+            }
+            scanReadaheadSize = 1024L * YConfiguration.getLong(rdbOptions, KEY_SCAN_READAHEAD_SIZE, 0);
+            scanFillCache = YConfiguration.getBoolean(rdbOptions, KEY_SCAN_FILL_CACHE, true);
+            historicalBlockCacheSize = 1024L * YConfiguration.getLong(rdbOptions, KEY_HISTORICAL_BLOCK_CACHE_SIZE, 0);
+            historicalPartitionAge = 1000L
+                    * YConfiguration.getLong(rdbOptions, KEY_HISTORICAL_PARTITION_AGE, historicalPartitionAge / 1000);
         }
 
         env = Env.getDefault();
         defaultColumnFamilyOptions = new ColumnFamilyOptions();
 
-        BlockBasedTableConfig tableFormatConfig = new BlockBasedTableConfig();
-        tableFormatConfig.setBlockSize(256l * 1024);// 256KB
-        tableFormatConfig.setBlockCacheSize(100l * 1024 * 1024);// 50MB
-        tableFormatConfig.setFilter(new BloomFilter());
-        tableFormatConfig.setIndexType(IndexType.kTwoLevelIndexSearch);
+        BlockBasedTableConfig tableFormatConfig = newTableFormatConfig(100l * 1024 * 1024);// 100MB
+        defaultOptions = newDefaultOptions(tableFormatConfig);
+        defaultColumnFamilyOptions.setTableFormatConfig(tableFormatConfig);
 
-        defaultOptions = new Options();
-        defaultOptions.setWriteBufferSize(50l * 1024 * 1024);// 50MB
-        defaultOptions.setEnv(env);
-        defaultOptions.setCreateIfMissing(true);
-        defaultOptions.setTableFormatConfig(tableFormatConfig);
-        defaultOptions.useFixedLengthPrefixExtractor(4);
+        if (historicalBlockCacheSize > 0) {
+            // the cache is created together with the table factory so these options do not share it with the default
+            BlockBasedTableConfig historicalTableFormatConfig = newTableFormatConfig(historicalBlockCacheSize);
+            historicalOptions = newDefaultOptions(historicalTableFormatConfig);
+            historicalColumnFamilyOptions = new ColumnFamilyOptions();
+            historicalColumnFamilyOptions.setTableFormatConfig(historicalTableFormatConfig);
+        } else {
+            historicalOptions = null;
+            historicalColumnFamilyOptions = null;
+        }
 
-        defaultColumnFamilyOptions.setTableFormatConfig(tableFormatConfig);
+        // the iterators copy the read options when they are created so the object can be shared
+        scanReadOptions = new ReadOptions();
+        scanReadOptions.setFillCache(scanFillCache);
+        if (scanReadaheadSize > 0) {
+            scanReadOptions.setReadaheadSize(scanReadaheadSize);
+        }
 
         defaultDBOptions = new DBOptions();
         defaultDBOptions.setCreateIfMissing(true);
 
     }
 
+    private static BlockBasedTableConfig newTableFormatConfig(long blockCacheSize) {
+        BlockBasedTableConfig tableFormatConfig = new BlockBasedTableConfig();
+        tableFormatConfig.setBlockSize(256l * 1024);// 256KB
+        tableFormatConfig.setBlockCacheSize(blockCacheSize);
+        tableFormatConfig.setFilter(new BloomFilter());
+        tableFormatConfig.setIndexType(IndexType.kTwoLevelIndexSearch);
+        return tableFormatConfig;
+    }
+
+    private Options newDefaultOptions(BlockBasedTableConfig tableFormatConfig) {
+        Options options = new Options();
+        options.setWriteBufferSize(50l * 1024 * 1024);// 50MB
+        options.setEnv(env);
+        options.setCreateIfMissing(true);
+        options.setTableFormatConfig(tableFormatConfig);
+        options.useFixedLengthPrefixExtractor(4);
+        return options;
+    }
+
     /**
      * default column family options if no table specific config has been configured.
      * 
@@ -118,6 +186,82 @@ public class RdbConfig {
         return defaultDBOptions;
     }
 
+    /**
+     * Number of threads used to read ahead the partitions of the table scans (and decode the records) while the
+     * previously read records are being emitted. 0 means that the scans read and decode the records on the stream
+     * thread.
+     * 
+     * @return the number of prefetching threads
+     */
+    public int getScanPrefetchThreads() {
+        return scanPrefetchThreads;
+    }
+
+    /**
+     * RocksDB readahead size (in bytes) used by the iterators of the non tailing table scans; 0 means the RocksDB
+     * default.
+     * 
+     * @return the readahead size in bytes
+     */
+    public long getScanReadaheadSize() {
+        return scanReadaheadSize;
+    }
+
+    /**
+     * If false, the blocks read by the non tailing table scans, the parameter archive retrievals and the tm index
+     * queries are not added to the block cache, such that a bulk scan (e.g. a replay over a long time interval) does
+     * not evict the blocks used by the realtime processing.
+     * 
+     * @return true if the scans fill the block cache
+     */
+    public boolean isScanFillCache() {
+        return scanFillCache;
+    }
+
+    /**
+     * Read options for the one-shot scans of the archive: they use the scanFillCache and scanReadaheadSize settings.
+     * <p>
+     * The object is shared and must not be modified or closed.
+     * 
+     * @return the read options to be used for archive scans
+     */
+    public ReadOptions getScanReadOptions() {
+        return scanReadOptions;
+    }
+
+    /**
+     * Decides if a time partition is old enough to be opened with the historical block cache.
+     * <p>
+     * If historicalBlockCacheSize is configured, the databases of the partitions ending more than
+     * historicalPartitionAge seconds ago are opened with a separate block cache of that size, such that reading the
+     * old data (replays, exports, retrievals) cannot evict from the main block cache the blocks of the recent
+     * partitions used by the realtime processing. Only the databases without a specific tablespaceConfig are concerned.
+     * 
+     * @param partitionEnd
+     *            - the end of the time partition
+     * @return true if the partition should use the historical block cache
+     */
+    public boolean isHistorical(long partitionEnd) {
+        return historicalOptions != null && partitionEnd < TimeEncoding.getWallclockTime() - historicalPartitionAge;
+    }
+
+    /**
+     * 
+     * @return the options used for the historical partitions or null if no historical block cache is configured
+     */
+    public Options getHistoricalOptions() {
+        return historicalOptions;
+    }
+
+    /**
+     * 
+     * @return the column family options used for the historical partitions or null if no historical block cache is
+     *         configured
+     */
+    public ColumnFamilyOptions getHistoricalColumnFamilyOptions() {
+        return historicalColumnFamilyOptions;
+    }
+
     /**
      * 
      * @param tableName
@@ -133,6 +277,132 @@ public class RdbConfig {
         return null;
     }
 
+    /**
+     * 
+     * @param tableName
+     * @return the first table writer config that matches the table name or null if no config matches
+     */
+    public TableWriterConfig getTableWriterConfig(String tableName) {
+        for (TableWriterConfig twc : twConfigList) {
+            if (twc.tableNamePattern.matcher(tableName).matches()) {
+                return twc;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Configuration of the batched (group commit) writing used by the {@link RdbTableWriter}.
+     * <p>
+     * The records are accumulated in a write batch per partition database and the batch is written when it contains
+     * batchSize records or when it is older than batchTimeout milliseconds, whichever comes first.
+     * <p>
+     * If disableWal is set, the batches are written without the RocksDB write ahead log; the data not yet flushed from
+     * the memtables is lost if the server crashes. It should be used only for tables whose content can be rebuilt
+     * (e.g. by replaying the raw dumps). A batchSize of 1 disables the batching.
+     * <p>
+     * If recentKeysCacheSize is greater than 0, the writer remembers that many of the keys it has written recently and
+     * answers from memory the duplicate checks of the INSERT and UPSERT modes for those keys. The records deleted from
+     * the table while the writer is running may still be considered existing if their key is in the cache.
+     * <p>
+     * If histogramFlushInterval is greater than 0, the histogram segments of the table are kept in memory and written
+     * to the database every histogramFlushInterval milliseconds instead of being read and written back for each
+     * record. The histograms read while the writer is running may miss the records of the last interval.
+     * <p>
+     * If asyncQueueSize is greater than 0, the writer is subscribed to its input stream with an
+     * {@link AsyncStreamSubscriber} such that the records are written on a dedicated thread and a write stall of the
+     * database does not block the thread emitting the tuples. The asyncOverflowPolicy (BLOCK, DROP_OLDEST or
+     * DROP_NEWEST) specifies what happens when the queue is full.
+     */
+    public static class TableWriterConfig {
+        final Pattern tableNamePattern;
+        final int batchSize;
+        final long batchTimeout;
+        final boolean disableWal;
+        final int recentKeysCacheSize;
+        final long histogramFlushInterval;
+        final int asyncQueueSize;
+        final OverflowPolicy asyncOverflowPolicy;
+
+        TableWriterConfig(Map<String, Object> m) throws ConfigurationException {
+            String s = YConfiguration.getString(m, KEY_TABLE_NAME_PATTERN);
+            try {
+                tableNamePattern = Pattern.compile(s);
+            } catch (PatternSyntaxException e) {
+                throw new ConfigurationException("Cannot parse regexp " + e);
+            }
+            batchSize = YConfiguration.getInt(m, "batchSize", 1000);
+            if (batchSize < 1) {
+                throw new ConfigurationException("Exception when reading table writer configuration for '"
+                        + tableNamePattern + "': batchSize has to be at least 1");
+            }
+            batchTimeout = YConfiguration.getLong(m, "batchTimeout", 1000);
+            disableWal = YConfiguration.getBoolean(m, "disableWal", false);
+            recentKeysCacheSize = YConfiguration.getInt(m, "recentKeysCacheSize", 0);
+            histogramFlushInterval = YConfiguration.getLong(m, "histogramFlushInterval", 0);
+            asyncQueueSize = YConfiguration.getInt(m, "asyncQueueSize", 0);
+            String policy = YConfiguration.getString(m, "asyncOverflowPolicy", OverflowPolicy.BLOCK.name());
+            try {
+                asyncOverflowPolicy = OverflowPolicy.valueOf(policy.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ConfigurationException("Exception when reading table writer configuration for '"
+                        + tableNamePattern + "': invalid asyncOverflowPolicy '" + policy + "'");
+            }
+        }
+
+        public TableWriterConfig(Pattern tableNamePattern, int batchSize, long batchTimeout, boolean disableWal,
+                int recentKeysCacheSize) {
+            this(tableNamePattern, batchSize, batchTimeout, disableWal, recentKeysCacheSize, 0);
+        }
+
+        public TableWriterConfig(Pattern tableNamePattern, int batchSize, long batchTimeout, boolean disableWal,
+                int recentKeysCacheSize, long histogramFlushInterval) {
+            this(tableNamePattern, batchSize, batchTimeout, disableWal, recentKeysCacheSize, histogramFlushInterval, 0,
+                    OverflowPolicy.BLOCK);
+        }
+
+        public TableWriterConfig(Pattern tableNamePattern, int batchSize, long batchTimeout, boolean disableWal,
+                int recentKeysCacheSize, long histogramFlushInterval, int asyncQueueSize,
+                OverflowPolicy asyncOverflowPolicy) {
+            this.tableNamePattern = tableNamePattern;
+            this.batchSize = batchSize;
+            this.batchTimeout = batchTimeout;
+            this.disableWal = disableWal;
+            this.recentKeysCacheSize = recentKeysCacheSize;
+            this.histogramFlushInterval = histogramFlushInterval;
+            this.asyncQueueSize = asyncQueueSize;
+            this.asyncOverflowPolicy = asyncOverflowPolicy;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public long getBatchTimeout() {
+            return batchTimeout;
+        }
+
+        public boolean isWalDisabled() {
+            return disableWal;
+        }
+
+        public int getRecentKeysCacheSize() {
+            return recentKeysCacheSize;
+        }
+
+        public long getHistogramFlushInterval() {
+            return histogramFlushInterval;
+        }
+
+        public int getAsyncQueueSize() {
+            return asyncQueueSize;
+        }
+
+        public OverflowPolicy getAsyncOverflowPolicy() {
+            return asyncOverflowPolicy;
+        }
+    }
+
     public static class TablespaceConfig {
         Pattern tableNamePattern;
         ColumnFamilyOptions cfOptions = new ColumnFamilyOptions();
@@ -196,6 +466,18 @@ public class RdbConfig {
                         tableFormatConfig.setNoBlockCache(YConfiguration.getBoolean(tfc, "noBlockCache"));
                     }
 
+                    // the prefix extractor covers only the partition index so the filter has to be on the whole key
+                    // to help the point lookups done by the table writers when checking for duplicates
+                    int bloomBitsPerKey = YConfiguration.getInt(tfc, "bloomFilterBitsPerKey", 10);
+                    if (bloomBitsPerKey > 0) {
+                        tableFormatConfig.setFilter(new BloomFilter(bloomBitsPerKey));
+                        tableFormatConfig.setWholeKeyFiltering(true);
+                    }
+                    if (tfc.containsKey("cacheIndexAndFilterBlocks")) {
+                        tableFormatConfig.setCacheIndexAndFilterBlocks(
+                                YConfiguration.getBoolean(tfc, "cacheIndexAndFilterBlocks"));
+                    }
+
                     boolean partitionedIndex = YConfiguration.getBoolean(tfc, "partitionedIndex", true);
                     tableFormatConfig
                             .setIndexType(partitionedIndex ? IndexType.kTwoLevelIndexSearch : IndexType.kBinarySearch);
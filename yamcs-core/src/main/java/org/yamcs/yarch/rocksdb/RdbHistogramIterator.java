@@ -82,7 +82,7 @@ public class RdbHistogramIterator implements HistogramIterator {
             readNextPartition();
             return;
         }
-        rdb = tablespace.getRdb(hist.partitionDir, false);
+        rdb = tablespace.getRdb(hist.partitionDir, intv.getEnd(), false);
 
         long segStart = interval.hasStart() ? segmentStart(interval.getStart()) : 0;
         byte[] dbKeyStart = histoDbKey(hist.tbsIndex, segStart, ZERO_BYTES);
@@ -205,7 +205,7 @@ public class RdbHistogramIterator implements HistogramIterator {
                 return;
             }
 
-            rdb = tablespace.getRdb(hist.partitionDir, false);
+            rdb = tablespace.getRdb(hist.partitionDir, intv.getEnd(), false);
 
             long segStart = segmentStart(time);
             byte[] dbKeyStart = histoDbKey(hist.tbsIndex, segStart, columnValue);
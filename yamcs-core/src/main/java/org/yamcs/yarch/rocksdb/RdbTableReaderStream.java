@@ -5,6 +5,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.rocksdb.ReadOptions;
@@ -19,8 +23,11 @@ import org.yamcs.yarch.Partition;
 import org.yamcs.yarch.PartitioningSpec;
 import org.yamcs.yarch.RawTuple;
 import org.yamcs.yarch.TableDefinition;
+import org.yamcs.yarch.Tuple;
 import org.yamcs.yarch.YarchDatabaseInstance;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * reader for tables with PartitionStorage.IN_KEY (the partition is prepended in front of the key)
  * @author nm
@@ -28,6 +35,7 @@ import org.yamcs.yarch.YarchDatabaseInstance;
  */
 public class RdbTableReaderStream extends AbstractTableReaderStream implements Runnable, DbReaderStream {
     static AtomicInteger count = new AtomicInteger(0);
+    static private ExecutorService prefetchExecutor;
     final PartitioningSpec partitioningSpec;
     private long numRecordsRead = 0;
     private final Tablespace tablespace;
@@ -42,6 +50,21 @@ public class RdbTableReaderStream extends AbstractTableReaderStream implements R
     }
 
 
+    /**
+     * 
+     * @return the executor shared by all the streams to read ahead the partitions or null if prefetching is disabled
+     */
+    static synchronized ExecutorService getPrefetchExecutor() {
+        int n = RdbConfig.getInstance().getScanPrefetchThreads();
+        if (prefetchExecutor == null && n > 0) {
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new ThreadFactoryBuilder().setNameFormat("RdbTableReaderPrefetch-%d").setDaemon(true).build());
+            tpe.allowCoreThreadTimeOut(true);
+            prefetchExecutor = tpe;
+        }
+        return prefetchExecutor;
+    }
+
     @Override 
     public void start() {
         (new Thread(this, "RdbTableReaderStream["+getName()+"]")).start();
@@ -90,17 +113,25 @@ public class RdbTableReaderStream extends AbstractTableReaderStream implements R
         log.debug("opening database {}", dbDir);
         YRDB rdb;
         try {
-            rdb = tablespace.getRdb(p1.dir, false);
+            rdb = tablespace.getRdb(p1.dir, p1.getEnd(), false);
         } catch (IOException e) {
             log.error("Failed to open database", e);
             return false;
         }
+        RdbConfig rdbConfig = RdbConfig.getInstance();
         ReadOptions readOptions = new ReadOptions();
         readOptions.setTailing(follow);
         Snapshot snapshot = null;
+        ExecutorService prefetchExecutor = null;
         if(!follow) {
             snapshot = rdb.getDb().getSnapshot();
             readOptions.setSnapshot(snapshot);
+            readOptions.setFillCache(rdbConfig.isScanFillCache());
+            if(rdbConfig.getScanReadaheadSize()>0) {
+                readOptions.setReadaheadSize(rdbConfig.getScanReadaheadSize());
+            }
+            // the tailing iterators may become valid again after reaching the end so they are not read ahead
+            prefetchExecutor = getPrefetchExecutor();
         }
         
         try {
@@ -113,6 +144,10 @@ public class RdbTableReaderStream extends AbstractTableReaderStream implements R
                 DbIterator it = getPartitionIterator(rocksIt, p1.tbsIndex,  ascending, rangeStart, strictStart, rangeEnd, strictEnd);
                 
                 if(it.isValid()) {
+                    if(prefetchExecutor!=null) {
+                        it = new PrefetchingIterator(it, ascending, prefetchExecutor,
+                                (k, v) -> dataToTuple(Arrays.copyOfRange(k, 4, k.length), v));
+                    }
                     itList.add(it);
                 } else {
                     it.close();
@@ -143,10 +178,10 @@ public class RdbTableReaderStream extends AbstractTableReaderStream implements R
     }
     
     boolean runAscending(DbIterator iterator, byte[] rangeEnd, boolean strictEnd) {
-        while(!quit && iterator.isValid()){
+        while(!quit && !isSeekPending() && iterator.isValid()){
             byte[] dbKey = iterator.key();
             byte[] key = Arrays.copyOfRange(dbKey, 4, dbKey.length);
-            if(!emitIfNotPastStop(key, iterator.value(), rangeEnd, strictEnd)) {
+            if(!emitIfNotPastStop(key, iterator.value(), prefetchedTuple(iterator), rangeEnd, strictEnd)) {
                 return true;
             }
             iterator.next();
@@ -155,16 +190,29 @@ public class RdbTableReaderStream extends AbstractTableReaderStream implements R
     }
     
     boolean runDescending(DbIterator iterator, byte[] rangeStart, boolean strictStart) {
-        while(!quit && iterator.isValid()){
+        while(!quit && !isSeekPending() && iterator.isValid()){
             byte[] dbKey = iterator.key();
             byte[] key = Arrays.copyOfRange(dbKey, 4, dbKey.length);
-            if(!emitIfNotPastStart(key, iterator.value(), rangeStart, strictStart)) {
+            if(!emitIfNotPastStart(key, iterator.value(), prefetchedTuple(iterator), rangeStart, strictStart)) {
                 return true;
             }
             iterator.prev();
         }
         return false;
     }
+    /*
+     * returns the tuple decoded by the prefetching iterator for the current record or null if the iterator does not prefetch
+     */
+    static Tuple prefetchedTuple(DbIterator iterator) {
+        if(iterator instanceof MergingIterator) {
+            iterator = ((MergingIterator) iterator).current();
+        }
+        if(iterator instanceof PrefetchingIterator) {
+            return (Tuple) ((PrefetchingIterator) iterator).decoded();
+        }
+        return null;
+    }
+
    /*
     * create a ranging iterator for the given partition
     * TODO: check usage of RocksDB prefix iterators
@@ -6,13 +6,22 @@ import static org.yamcs.yarch.HistogramSegment.segmentStart;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.YamcsServer;
 import org.yamcs.utils.ByteArrayUtils;
+import org.yamcs.utils.ByteArrayWrapper;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.ColumnSerializer;
@@ -25,35 +34,123 @@ import org.yamcs.yarch.TableWriter;
 import org.yamcs.yarch.Tuple;
 import org.yamcs.yarch.TupleDefinition;
 import org.yamcs.yarch.YarchDatabaseInstance;
+import org.yamcs.yarch.rocksdb.RdbConfig.TableWriterConfig;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import static org.yamcs.yarch.rocksdb.RdbStorageEngine.TBS_INDEX_SIZE;;
 
 /**
  * table writer that prepends the partition binary value in front of the key
+ * <p>
+ * If batching is configured for the table (see {@link TableWriterConfig}), the records are not written one by one but accumulated
+ * in a {@link WriteBatch} per partition database; the batch is written when it reaches the configured size or at the
+ * latest after the configured timeout. The records not yet written are visible to this writer (e.g. for the duplicate
+ * checks of the INSERT mode) but not to the table readers.
+ * <p>
+ * Similarly, if the histogram flush interval is configured, the histogram segments are kept in memory and written
+ * periodically to the database.
  * 
  * @author nm
  *
  */
 public class RdbTableWriter extends TableWriter {
+    static final ScheduledThreadPoolExecutor flushTimer = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryBuilder().setNameFormat("RdbTableWriter-flush").setDaemon(true).build());
+
     private final RdbPartitionManager partitionManager;
     private final PartitioningSpec partitioningSpec;
     Logger log = LoggerFactory.getLogger(this.getClass().getName());
     static final byte[] zerobytes = new byte[0];
     Tablespace tablespace;
 
+    // writer configuration; null if not configured
+    final TableWriterConfig twConfig;
+    // true if the records are written in batches
+    final boolean batching;
+    // keys recently inserted, used for the duplicate checks; null if not configured
+    final RecentKeysCache recentKeys;
+    private final Map<YRDB, PendingBatch> batches = new HashMap<>();
+    private WriteOptions writeOptions;
+    private ScheduledFuture<?> flushFuture;
+
+    static final int MAX_CACHED_HISTOGRAM_SEGMENTS = 10000;
+    // histogram segments kept in memory; null if the histograms are written directly
+    private final Map<ByteArrayWrapper, CachedHistogramSegment> histoCache;
+    // the most recent histogram segment start, the segments older than that are removed from the cache when flushing
+    private long lastHistoSstart = Long.MIN_VALUE;
+    private ScheduledFuture<?> histoFlushFuture;
+
     public RdbTableWriter(Tablespace tablespace, YarchDatabaseInstance ydb, TableDefinition tableDefinition,
             InsertMode mode, RdbPartitionManager pm) {
+        this(tablespace, ydb, tableDefinition, mode, pm,
+                RdbConfig.getInstance().getTableWriterConfig(tableDefinition.getName()));
+    }
+
+    public RdbTableWriter(Tablespace tablespace, YarchDatabaseInstance ydb, TableDefinition tableDefinition,
+            InsertMode mode, RdbPartitionManager pm, TableWriterConfig twConfig) {
         super(ydb, tableDefinition, mode);
         this.partitioningSpec = tableDefinition.getPartitioningSpec();
         this.partitionManager = pm;
         this.tablespace = tablespace;
+        this.twConfig = twConfig;
+        this.batching = twConfig != null && twConfig.getBatchSize() > 1;
+        this.recentKeys = (twConfig != null && twConfig.getRecentKeysCacheSize() > 0)
+                ? new RecentKeysCache(twConfig.getRecentKeysCacheSize())
+                : null;
+        boolean histoCaching = twConfig != null && twConfig.getHistogramFlushInterval() > 0
+                && tableDefinition.hasHistogram();
+        if (batching || histoCaching) {
+            writeOptions = new WriteOptions();
+            writeOptions.setDisableWAL(twConfig.isWalDisabled());
+        }
+        if (batching) {
+            flushFuture = flushTimer.scheduleAtFixedRate(this::flushAll, twConfig.getBatchTimeout(),
+                    twConfig.getBatchTimeout(), TimeUnit.MILLISECONDS);
+        }
+        if (histoCaching) {
+            histoCache = new HashMap<>();
+            histoFlushFuture = flushTimer.scheduleAtFixedRate(() -> flushHistograms(false),
+                    twConfig.getHistogramFlushInterval(), twConfig.getHistogramFlushInterval(), TimeUnit.MILLISECONDS);
+        } else {
+            histoCache = null;
+        }
+    }
+
+    @Override
+    public void subscribeTo(Stream stream) {
+        if (twConfig != null && twConfig.getAsyncQueueSize() > 0) {
+            stream.addAsyncSubscriber(this, "tableWriter-" + tableDefinition.getName(), twConfig.getAsyncQueueSize(),
+                    twConfig.getAsyncOverflowPolicy());
+        } else {
+            super.subscribeTo(stream);
+        }
     }
 
     @Override
     public void onTuple(Stream stream, Tuple t) {
+        if (!batching) {
+            writeTuple(t);
+        } else {
+            synchronized (this) {
+                writeTuple(t);
+            }
+        }
+    }
+
+    private void writeTuple(Tuple t) {
         try {
             RdbPartition partition = getDbPartition(t);
-            YRDB rdb = tablespace.getRdb(partition.dir, false);
+            YRDB rdb = tablespace.getRdb(partition.dir, partition.getEnd(), false);
+            PendingBatch pb = null;
+            if (batching) {
+                pb = batches.get(rdb);
+                if (pb == null) {
+                    // the batch keeps its own reference to the database until it is written
+                    pb = new PendingBatch(tablespace.getRdb(partition.dir, partition.getEnd(), false));
+                    batches.put(rdb, pb);
+                }
+            }
 
             boolean inserted = false;
             boolean updated = false;
@@ -83,6 +180,10 @@ public class RdbTableWriter extends TableWriter {
                 // TODO updateHistogram(t);
             }
             tablespace.dispose(rdb);
+            if (pb != null && ++pb.numRecords >= twConfig.getBatchSize()) {
+                batches.remove(rdb);
+                writeBatch(pb);
+            }
         } catch (IOException | RocksDBException e) {
             log.error("failed to insert a record: ", e);
             YamcsServer.getServer().getCrashHandler(ydb.getYamcsInstance()).handleCrash("Archive",
@@ -91,37 +192,98 @@ public class RdbTableWriter extends TableWriter {
 
     }
 
+    /**
+     * reads the value from the pending batch if any or from the database otherwise
+     */
+    private byte[] get(YRDB rdb, byte[] k) throws RocksDBException {
+        if (batching) {
+            PendingBatch pb = batches.get(rdb);
+            if (pb != null) {
+                byte[] v = pb.values.get(new ByteArrayWrapper(k));
+                if (v != null) {
+                    return v;
+                }
+            }
+        }
+        return rdb.get(k);
+    }
+
+    /**
+     * writes the value to the pending batch of the database if any or directly to the database otherwise
+     */
+    private void put(YRDB rdb, byte[] k, byte[] v) throws RocksDBException {
+        PendingBatch pb = batching ? batches.get(rdb) : null;
+        if (pb == null) {
+            rdb.put(k, v);
+        } else {
+            pb.writeBatch.put(k, v);
+            pb.values.put(new ByteArrayWrapper(k), v);
+        }
+    }
+
+    private void writeBatch(PendingBatch pb) throws RocksDBException {
+        try {
+            pb.rdb.write(writeOptions, pb.writeBatch);
+        } finally {
+            pb.writeBatch.close();
+            tablespace.dispose(pb.rdb);
+        }
+    }
+
+    /**
+     * Writes all the pending batches to the databases.
+     */
+    public synchronized void flushAll() {
+        Iterator<PendingBatch> it = batches.values().iterator();
+        while (it.hasNext()) {
+            PendingBatch pb = it.next();
+            it.remove();
+            try {
+                writeBatch(pb);
+            } catch (RocksDBException e) {
+                log.error("failed to write a batch of records: ", e);
+                YamcsServer.getServer().getCrashHandler(ydb.getYamcsInstance()).handleCrash("Archive",
+                        "failed to write a batch of records in " + tableDefinition.getName() + ": " + e);
+            }
+        }
+    }
+
     private boolean load(YRDB db, RdbPartition partition, Tuple t) throws RocksDBException {
         byte[] k = getPartitionKey(partition, tableDefinition.serializeKey(t));
         byte[] v = tableDefinition.serializeValue(t);
 
-        db.put(k, v);
+        put(db, k, v);
         return true;
     }
 
     private boolean insert(YRDB rdb, RdbPartition partition, Tuple t) throws RocksDBException {
         byte[] k = getPartitionKey(partition, tableDefinition.serializeKey(t));
+        if (recentKeys != null && recentKeys.contains(k)) {
+            return false;
+        }
         byte[] v = tableDefinition.serializeValue(t);
 
-        if (rdb.get(k) == null) {
-            rdb.put(k, v);
-            return true;
-        } else {
-            return false;
+        boolean inserted = false;
+        if (get(rdb, k) == null) {
+            put(rdb, k, v);
+            inserted = true;
         }
+        if (recentKeys != null) {
+            recentKeys.add(k);
+        }
+        return inserted;
     }
 
     private boolean upsert(YRDB rdb, RdbPartition partition, Tuple t) throws RocksDBException {
         byte[] k = getPartitionKey(partition, tableDefinition.serializeKey(t));
         byte[] v = tableDefinition.serializeValue(t);
 
-        if (rdb.get(k) == null) {
-            rdb.put(k, v);
-            return true;
-        } else {
-            rdb.put(k, v);
-            return false;
+        boolean exists = (recentKeys != null && recentKeys.contains(k)) || get(rdb, k) != null;
+        put(rdb, k, v);
+        if (recentKeys != null) {
+            recentKeys.add(k);
         }
+        return !exists;
     }
 
     /**
@@ -135,7 +297,7 @@ public class RdbTableWriter extends TableWriter {
         byte[] dbKey = getPartitionKey(partition, tableDefinition.serializeKey(t));
         rdb.lock(dbKey);
         try {
-            byte[] v = rdb.get(dbKey);
+            byte[] v = get(rdb, dbKey);
             boolean inserted = false;
             if (v != null) {// append to an existing row
                 Tuple oldt = tableDefinition.deserialize(dbKey, v);
@@ -155,12 +317,12 @@ public class RdbTableWriter extends TableWriter {
                 if (changed) {
                     oldt.setColumns(cols);
                     v = tableDefinition.serializeValue(oldt);
-                    rdb.put(dbKey, v);
+                    put(rdb, dbKey, v);
                 }
             } else {// new row
                 inserted = true;
                 v = tableDefinition.serializeValue(t);
-                rdb.put(dbKey, v);
+                put(rdb, dbKey, v);
             }
             return inserted;
         } finally {
@@ -172,7 +334,7 @@ public class RdbTableWriter extends TableWriter {
         byte[] dbKey = getPartitionKey(partition, tableDefinition.serializeKey(t));
         rdb.lock(dbKey);
         try {
-            byte[] v = rdb.get(dbKey);
+            byte[] v = get(rdb, dbKey);
             boolean inserted = false;
             if (v != null) {// append to an existing row
                 byte[] k = Arrays.copyOfRange(dbKey, TBS_INDEX_SIZE, dbKey.length);
@@ -198,12 +360,12 @@ public class RdbTableWriter extends TableWriter {
                 if (changed) {
                     oldt.setColumns(cols);
                     v = tableDefinition.serializeValue(oldt);
-                    rdb.put(dbKey, v);
+                    put(rdb, dbKey, v);
                 }
             } else {// new row
                 inserted = true;
                 v = tableDefinition.serializeValue(t);
-                rdb.put(dbKey, v);
+                put(rdb, dbKey, v);
             }
             return inserted;
         } finally {
@@ -244,14 +406,23 @@ public class RdbTableWriter extends TableWriter {
     }
 
     public void close() {
+        if (batching) {
+            flushFuture.cancel(false);
+            flushAll();
+        }
+        if (histoCache != null) {
+            histoFlushFuture.cancel(false);
+            flushHistograms(true);
+        }
     }
 
     @Override
     public void streamClosed(Stream stream) {
-
+        // the writer is not used anymore, the periodic flushes would keep it referenced forever
+        close();
     }
 
-    protected synchronized void addHistogram(YRDB rdb, Tuple t) throws IOException, RocksDBException {
+    protected void addHistogram(YRDB rdb, Tuple t) throws IOException, RocksDBException {
         List<String> histoColumns = tableDefinition.getHistogramColumns();
         for (String columnName : histoColumns) {
             if (!t.hasColumn(columnName)) {
@@ -261,7 +432,86 @@ public class RdbTableWriter extends TableWriter {
             RdbHistogramInfo histo = (RdbHistogramInfo) partitionManager.createAndGetHistogram(time, columnName);
             ColumnSerializer cs = tableDefinition.getColumnSerializer(columnName);
             byte[] v = cs.toByteArray(t.getColumn(columnName));
-            addHistogramForColumn(rdb, histo.tbsIndex, v, time);
+            if (histoCache != null) {
+                addCachedHistogramForColumn(histo, v, time);
+            } else {
+                synchronized (this) {
+                    addHistogramForColumn(rdb, histo.tbsIndex, v, time);
+                }
+            }
+        }
+    }
+
+    private void addCachedHistogramForColumn(RdbHistogramInfo histo, byte[] columnv, long time)
+            throws IOException, RocksDBException {
+        long sstart = segmentStart(time);
+        int dtime = (int) (time % HistogramSegment.GROUPING_FACTOR);
+        byte[] histoDbKey = histoDbKey(histo.tbsIndex, sstart, columnv);
+
+        synchronized (histoCache) {
+            ByteArrayWrapper w = new ByteArrayWrapper(histoDbKey);
+            CachedHistogramSegment chs = histoCache.get(w);
+            if (chs == null) {
+                // the cached segment keeps its own reference to the database until it is removed from the cache
+                YRDB hrdb = tablespace.getRdb(histo.partitionDir, false);
+                byte[] val = hrdb.get(histoDbKey);
+                HistogramSegment segment = (val == null) ? new HistogramSegment(columnv, sstart)
+                        : new HistogramSegment(columnv, sstart, val);
+                chs = new CachedHistogramSegment(hrdb, histoDbKey, sstart, segment);
+                histoCache.put(w, chs);
+                if (sstart > lastHistoSstart) {
+                    lastHistoSstart = sstart;
+                }
+            }
+            chs.segment.merge(dtime);
+            chs.dirty = true;
+            if (histoCache.size() > MAX_CACHED_HISTOGRAM_SEGMENTS) {
+                flushHistograms(true);
+            }
+        }
+    }
+
+    /**
+     * Writes the modified histogram segments to the databases and removes from the cache the segments of the past
+     * grouping windows.
+     * 
+     * @param all
+     *            if true, remove all the segments from the cache
+     */
+    void flushHistograms(boolean all) {
+        synchronized (histoCache) {
+            Map<YRDB, WriteBatch> wbs = new HashMap<>();
+            try {
+                for (CachedHistogramSegment chs : histoCache.values()) {
+                    if (chs.dirty) {
+                        wbs.computeIfAbsent(chs.rdb, r -> new WriteBatch()).put(chs.key, chs.segment.val());
+                    }
+                }
+                for (Map.Entry<YRDB, WriteBatch> me : wbs.entrySet()) {
+                    me.getKey().write(writeOptions, me.getValue());
+                }
+                for (CachedHistogramSegment chs : histoCache.values()) {
+                    chs.dirty = false;
+                }
+            } catch (RocksDBException e) {
+                log.error("failed to write the histograms: ", e);
+                YamcsServer.getServer().getCrashHandler(ydb.getYamcsInstance()).handleCrash("Archive",
+                        "failed to write the histograms of " + tableDefinition.getName() + ": " + e);
+                return;
+            } finally {
+                for (WriteBatch wb : wbs.values()) {
+                    wb.close();
+                }
+            }
+
+            Iterator<CachedHistogramSegment> it = histoCache.values().iterator();
+            while (it.hasNext()) {
+                CachedHistogramSegment chs = it.next();
+                if (all || chs.sstart < lastHistoSstart) {
+                    it.remove();
+                    tablespace.dispose(chs.rdb);
+                }
+            }
         }
     }
 
@@ -272,7 +522,7 @@ public class RdbTableWriter extends TableWriter {
 
         HistogramSegment segment;
         byte[] histoDbKey = histoDbKey(histoTbsIndex, sstart, columnv);
-        byte[] val = rdb.get(histoDbKey);
+        byte[] val = get(rdb, histoDbKey);
         if (val == null) {
             segment = new HistogramSegment(columnv, sstart);
         } else {
@@ -280,7 +530,33 @@ public class RdbTableWriter extends TableWriter {
         }
 
         segment.merge(dtime);
-        rdb.put(histoDbKey, segment.val());
+        put(rdb, histoDbKey, segment.val());
+    }
+
+    static class CachedHistogramSegment {
+        final YRDB rdb;
+        final byte[] key;
+        final long sstart;
+        final HistogramSegment segment;
+        boolean dirty;
+
+        CachedHistogramSegment(YRDB rdb, byte[] key, long sstart, HistogramSegment segment) {
+            this.rdb = rdb;
+            this.key = key;
+            this.sstart = sstart;
+            this.segment = segment;
+        }
+    }
+
+    static class PendingBatch {
+        final YRDB rdb;
+        final WriteBatch writeBatch = new WriteBatch();
+        // the values in the batch, used to answer the reads of the records not yet written
+        final Map<ByteArrayWrapper, byte[]> values = new HashMap<>();
+        int numRecords;
+
+        PendingBatch(YRDB rdb) {
+            this.rdb = rdb;
+        }
     }
-    
 }
@@ -0,0 +1,49 @@
+package org.yamcs.yarch.rocksdb;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.yamcs.utils.ByteArrayWrapper;
+
+/**
+ * Bounded set of the keys most recently written by a {@link RdbTableWriter}.
+ * <p>
+ * It is used to answer the existence checks of the INSERT and UPSERT modes without a database lookup when the same
+ * record is received again shortly after (e.g. retransmitted or overlapping dumps). The cache contains only keys known
+ * to be in the table, so a hit is exact; a miss means that the database has to be consulted.
+ * <p>
+ * thread safe
+ * 
+ * @author nm
+ *
+ */
+class RecentKeysCache {
+    private final LinkedHashMap<ByteArrayWrapper, Boolean> keys;
+
+    RecentKeysCache(int maxSize) {
+        keys = new LinkedHashMap<ByteArrayWrapper, Boolean>(2 * maxSize, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    synchronized boolean contains(byte[] key) {
+        return keys.get(new ByteArrayWrapper(key)) != null;
+    }
+
+    synchronized void add(byte[] key) {
+        keys.put(new ByteArrayWrapper(key), Boolean.TRUE);
+    }
+
+    synchronized void clear() {
+        keys.clear();
+    }
+
+    synchronized int size() {
+        return keys.size();
+    }
+}
@@ -250,6 +250,20 @@ public class Tablespace {
         }
     }
 
+    /**
+     * Same as {@link #getRdb(String, boolean)} but if the database of the time partition ending at partitionEnd is not
+     * yet open and the partition is old enough, it is opened with the historical block cache.
+     * 
+     * @see RdbConfig#isHistorical(long)
+     */
+    public YRDB getRdb(String partitionDir, long partitionEnd, boolean readOnly) throws IOException {
+        if (partitionDir == null) {
+            return db;
+        } else {
+            return rdbFactory.getRdb(partitionDir, readOnly, RdbConfig.getInstance().isHistorical(partitionEnd));
+        }
+    }
+
     public YRDB getRdb(String relativePath) throws IOException {
         return getRdb(relativePath, false);
     }
@@ -21,6 +21,8 @@ import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 import org.yamcs.utils.ByteArrayWrapper;
 import org.yamcs.utils.StringConverter;
 import org.yamcs.yarch.rocksdb.RdbConfig.TablespaceConfig;
@@ -46,6 +48,7 @@ public class YRDB {
     long lastAccessTime;
 
     private final DBOptions dbOptions;
+    private final boolean historical;
 
     // locks used for row locking
     static final int NUM_LOCKS = 1 << 4;
@@ -62,6 +65,21 @@ public class YRDB {
      * @throws IOException
      */
     YRDB(String dir, boolean readonly) throws RocksDBException, IOException {
+        this(dir, readonly, false);
+    }
+
+    /**
+     * Create or open a new RocksDb.
+     * 
+     * @param dir
+     *            if it exists, it has to be a directory
+     * @param historical
+     *            if true and no specific tablespace configuration exists, the database is opened with the historical
+     *            block cache (see {@link RdbConfig#isHistorical(long)})
+     * @throws RocksDBException
+     * @throws IOException
+     */
+    YRDB(String dir, boolean readonly, boolean historical) throws RocksDBException, IOException {
         File f = new File(dir);
         if (f.exists()) {
             if (!f.isDirectory()) {
@@ -78,8 +96,18 @@ public class YRDB {
         }
         RdbConfig rdbConfig = RdbConfig.getInstance();
         TablespaceConfig tc = rdbConfig.getTablespaceConfig(f.getName());
-        cfoptions = (tc == null) ? rdbConfig.getDefaultColumnFamilyOptions() : tc.getColumnFamilyOptions();
-        Options opt = (tc == null) ? rdbConfig.getDefaultOptions() : tc.getOptions();
+        Options opt;
+        this.historical = tc == null && historical && rdbConfig.getHistoricalOptions() != null;
+        if (tc != null) {
+            cfoptions = tc.getColumnFamilyOptions();
+            opt = tc.getOptions();
+        } else if (this.historical) {
+            cfoptions = rdbConfig.getHistoricalColumnFamilyOptions();
+            opt = rdbConfig.getHistoricalOptions();
+        } else {
+            cfoptions = rdbConfig.getDefaultColumnFamilyOptions();
+            opt = rdbConfig.getDefaultOptions();
+        }
         dbOptions = (tc == null) ? rdbConfig.getDefaultDBOptions() : tc.getDBOptions();
         this.path = dir;
         File current = new File(dir + File.separatorChar + "CURRENT");
@@ -122,6 +150,13 @@ public class YRDB {
         isClosed = true;
     }
 
+    /**
+     * @return true if the database has been opened with the historical block cache
+     */
+    public boolean isHistorical() {
+        return historical;
+    }
+
     /**
      * @return true if the database is open
      */
@@ -139,6 +174,10 @@ public class YRDB {
         return db.newIterator();
     }
 
+    public RocksIterator newIterator(ReadOptions readOptions) throws RocksDBException {
+        return db.newIterator(readOptions);
+    }
+
     public RocksIterator newIterator(ColumnFamilyHandle cfh) throws RocksDBException {
         return db.newIterator(cfh);
     }
@@ -191,6 +230,13 @@ public class YRDB {
         db.put(k, v);
     }
 
+    /**
+     * {@link RocksDB#write}
+     */
+    public void write(WriteOptions writeOpts, WriteBatch writeBatch) throws RocksDBException {
+        db.write(writeOpts, writeBatch);
+    }
+
     public List<byte[]> getColumnFamilies() {
         List<byte[]> l = new ArrayList<>();
         for (ByteArrayWrapper baw : columnFamilies.keySet()) {
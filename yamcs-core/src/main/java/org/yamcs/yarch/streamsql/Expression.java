@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.utils.StringConverter;
 import org.yamcs.yarch.ColumnDefinition;
+import org.yamcs.yarch.ColumnIndexResolver;
 import org.yamcs.yarch.CompiledExpression;
 import org.yamcs.yarch.DataType;
 import org.yamcs.yarch.DbReaderStream;
@@ -111,20 +112,32 @@ public abstract class Expression {
         }
     }
 
+    /**
+     * declares the field holding the {@link ColumnIndexResolver} used by
+     * {@link #fillCode_AllInputDefVars(StringBuilder)} to access the input columns by index
+     */
+    protected void fillCode_InputColumnsResolver(StringBuilder code) {
+        code.append("\tfinal ColumnIndexResolver inputColumns = new ColumnIndexResolver(new String[] {");
+        boolean first = true;
+        for (ColumnDefinition cd : inputDef.getColumnDefinitions()) {
+            if (!first) {
+                code.append(", ");
+            }
+            first = false;
+            code.append("\"" + cd.getName() + "\"");
+        }
+        code.append("});\n");
+    }
+
     protected void fillCode_AllInputDefVars(StringBuilder code) {
+        code.append("\t\tint[] inputIdx = inputColumns.getIndices(tuple.getDefinition());\n");
+        int i = 0;
         for (ColumnDefinition cd : inputDef.getColumnDefinitions()) {
-            // if (cd.getType().val != DataType._type.PROTOBUF) {
             String javaColIdentifier = "col" + cd.getName().replace("-", "_");
-            code.append("\t\t" + cd.getType().javaType() + " " + javaColIdentifier + " = null;\n")
-                    .append("\t\tif (tuple.hasColumn(\"" + cd.getName() + "\")) {\n")
-                    .append("\t\t\t" + javaColIdentifier + " = (" + cd.getType().javaType() + ")tuple.getColumn(\""
-                            + cd.getName() + "\");\n")
-                    .append("\t\t}\n");
-            /*
-             * } else {
-             * throw new UnsupportedOperationException(cd.getName()+ " not supported");
-             * }
-             */
+            String javaType = cd.getType().javaType();
+            code.append("\t\t" + javaType + " " + javaColIdentifier + " = inputIdx[" + i + "] == -1 ? null : ("
+                    + javaType + ")tuple.getColumn(inputIdx[" + i + "]);\n");
+            i++;
         }
     }
 
@@ -142,6 +155,9 @@ public abstract class Expression {
                 .append("public class " + className + " implements CompiledExpression {\n")
                 .append("\tColumnDefinition cdef;\n");
         fillCode_Declarations(source);
+        if (!isConstant()) {
+            fillCode_InputColumnsResolver(source);
+        }
 
         source.append("\tpublic " + className + "(ColumnDefinition cdef) {\n")
                 .append("\t\tthis.cdef=cdef;\n");
@@ -54,7 +54,7 @@ public class InsertStatement extends StreamSqlStatement {
                 // writing into a table
                 TableWriter tableWriter = ydb.getStorageEngine(outputTableDef).newTableWriter(ydb, outputTableDef,
                         insertMode);
-                inputStream.addSubscriber(tableWriter);
+                tableWriter.subscribeTo(inputStream);
                 
             } catch (YarchException e) {
                 log.warn("Got exception when creatin table", e);
@@ -20,6 +20,7 @@ public class SumExpression extends CompilableAggregateExpression {
     @Override
     protected void aggregateFillCode_Declarations(StringBuilder code) {
         code.append("\t" + getType().primitiveJavaType() + " sum;\n");
+        fillCode_InputColumnsResolver(code);
 
     }
 
@@ -2,6 +2,7 @@ package org.yamcs;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -210,6 +211,40 @@ public class ParameterArchiveIntegrationTest extends AbstractIntegrationTest {
         assertEquals(7200 + 3600, r0.getCount());
     }
 
+    @Test
+    public void testRestParallelRetrieval() throws Exception {
+        ParameterArchive parameterArchive = YamcsServer.getServer().getServices(yamcsInstance, ParameterArchive.class)
+                .get(0);
+        // enabled in yamcs.IntegrationTest.yaml
+        assertTrue(parameterArchive.isParallelRetrieval());
+
+        // the data spreads over three archive intervals, each one being retrieved as a separate chunk
+        generatePkt13AndPps("2020-01-01T01:00:00", 3 * 3600);
+        buildParameterArchive("2020-01-01T01:00:00", "2020-01-01T04:00:00");
+
+        for (String order : new String[] { "asc", "desc" }) {
+            byte[] resp = restClient.doRequest(
+                    "/archive/IntegrationTest/parameters/REFMDB/SUBSYS1/FloatPara1_1_2?start=2020-01-01T00:59:00&stop=2020-01-01T04:01:00&norealtime&limit=20000&order="
+                            + order,
+                    HttpMethod.GET).get();
+            ListParameterHistoryResponse pdata = ListParameterHistoryResponse.parseFrom(resp);
+            assertEquals(3 * 3600, pdata.getParameterCount());
+            long t = TimeEncoding.parse("asc".equals(order) ? "2020-01-01T01:00:00" : "2020-01-01T03:59:59");
+            long dt = "asc".equals(order) ? 1000 : -1000;
+            for (int i = 0; i < pdata.getParameterCount(); i++) {
+                assertEquals(t, pdata.getParameter(i).getGenerationTime());
+                t += dt;
+            }
+        }
+
+        byte[] resp = restClient.doRequest(
+                "/archive/IntegrationTest/parameters/REFMDB/SUBSYS1/FloatPara1_1_2/ranges?start=2020-01-01T00:59:00&stop=2020-01-01T04:01:00&norealtime",
+                HttpMethod.GET).get();
+        Ranges vals = Ranges.parseFrom(resp);
+        assertEquals(1, vals.getRangeCount());
+        assertEquals(3 * 3600, vals.getRange(0).getCount());
+    }
+
     @Test
     public void testRestRetrievalWithAgregateMembers() throws Exception {
         generatePkt7("2019-04-06T00:00:00", 2 * 3600);
@@ -0,0 +1,113 @@
+package org.yamcs.cfdp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.yamcs.cfdp.pdu.SegmentRequest;
+import org.yamcs.utils.FileUtils;
+
+public class DataFileTest {
+    Path dir;
+
+    @Before
+    public void before() throws IOException {
+        dir = Files.createTempDirectory("cfdp-test");
+    }
+
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteRecursivelyIfExists(dir);
+    }
+
+    static byte[] data(int offset, int length) {
+        byte[] b = new byte[length];
+        for (int i = 0; i < length; i++) {
+            b[i] = (byte) (offset + i);
+        }
+        return b;
+    }
+
+    static DataFileSegment segment(int offset, int length) {
+        return new DataFileSegment(offset, data(offset, length));
+    }
+
+    @Test
+    public void testInOrder() throws IOException {
+        try (DataFile df = new DataFile(300, dir)) {
+            assertNull(df.getPath());
+            for (int i = 0; i < 3; i++) {
+                df.addSegment(segment(i * 100, 100));
+            }
+            assertTrue(df.isComplete());
+            assertTrue(df.getMissingChunks().isEmpty());
+            assertEquals(300, df.getReceivedSize());
+            assertArrayEquals(data(0, 300), df.getData());
+            assertArrayEquals(data(0, 300), Files.readAllBytes(df.getPath()));
+        }
+    }
+
+    @Test
+    public void testGaps() throws IOException {
+        try (DataFile df = new DataFile(500, dir)) {
+            df.addSegment(segment(100, 100));
+            df.addSegment(segment(300, 100));
+            assertFalse(df.isComplete());
+            assertEquals(Arrays.asList(new SegmentRequest(0, 100), new SegmentRequest(200, 300),
+                    new SegmentRequest(400, 500)), df.getMissingChunks());
+            assertEquals(200, df.getReceivedSize());
+
+            df.addSegment(segment(400, 100));
+            df.addSegment(segment(0, 100));
+            df.addSegment(segment(200, 100));
+            assertTrue(df.isComplete());
+            assertArrayEquals(data(0, 500), df.getData());
+        }
+    }
+
+    @Test
+    public void testOverlap() throws IOException {
+        try (DataFile df = new DataFile(300, dir)) {
+            df.addSegment(segment(0, 100));
+            df.addSegment(segment(150, 50));
+            df.addSegment(segment(0, 100)); // duplicate
+            df.addSegment(segment(50, 200)); // covers the gap and both ends
+            assertEquals(250, df.getReceivedSize());
+            assertEquals(Arrays.asList(new SegmentRequest(250, 300)), df.getMissingChunks());
+
+            df.addSegment(segment(250, 50));
+            assertTrue(df.isComplete());
+            assertArrayEquals(data(0, 300), df.getData());
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        DataFile df = new DataFile(100, dir);
+        df.addSegment(segment(0, 10));
+        Path path = df.getPath();
+        assertTrue(Files.exists(path));
+        df.close();
+        assertFalse(Files.exists(path));
+        try {
+            df.getPath();
+            fail("the data of a closed file cannot be retrieved");
+        } catch (IOException e) {
+            // expected
+        }
+        // late segments are ignored
+        df.addSegment(segment(10, 10));
+        assertFalse(Files.exists(path));
+    }
+}
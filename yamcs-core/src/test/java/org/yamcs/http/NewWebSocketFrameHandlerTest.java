@@ -0,0 +1,113 @@
+package org.yamcs.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.yamcs.http.api.TimeApi;
+import org.yamcs.protobuf.ServerMessage;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+public class NewWebSocketFrameHandlerTest {
+    static final long FLUSH_INTERVAL = 50;
+
+    HttpServer httpServer;
+
+    @Before
+    public void before() {
+        httpServer = new HttpServer();
+        httpServer.addApi(new TimeApi()); // creates the JSON printers
+    }
+
+    EmbeddedChannel channel(WriteBufferWaterMark waterMark) {
+        NewWebSocketFrameHandler handler = new NewWebSocketFrameHandler(httpServer, null, null, 10, waterMark,
+                Collections.singleton("time"), FLUSH_INTERVAL);
+        return new EmbeddedChannel(handler);
+    }
+
+    static void write(EmbeddedChannel channel, String type, int seq) throws Exception {
+        ChannelHandlerContext ctx = channel.pipeline().firstContext();
+        NewWebSocketFrameHandler handler = (NewWebSocketFrameHandler) ctx.handler();
+        handler.writeMessage(ctx, ServerMessage.newBuilder().setType(type).setCall(1).setSeq(seq).build());
+    }
+
+    // reads the next flushed message
+    static JsonObject read(EmbeddedChannel channel) {
+        WebSocketFrame frame = channel.readOutbound();
+        if (frame == null) {
+            return null;
+        }
+        try {
+            return new JsonParser().parse(frame.content().toString(StandardCharsets.UTF_8)).getAsJsonObject();
+        } finally {
+            frame.release();
+        }
+    }
+
+    static void checkSeq(JsonObject msg, String type, int seq) {
+        assertEquals(type, msg.get("type").getAsString());
+        assertEquals(seq, msg.get("seq").getAsInt());
+    }
+
+    @Test
+    public void testFlushOnTick() throws Exception {
+        EmbeddedChannel channel = channel(WriteBufferWaterMark.DEFAULT);
+        write(channel, "time", 1);
+        write(channel, "time", 2);
+        channel.runPendingTasks();
+        assertNull(read(channel));
+
+        Thread.sleep(2 * FLUSH_INTERVAL);
+        channel.runScheduledPendingTasks();
+        checkSeq(read(channel), "time", 1);
+        checkSeq(read(channel), "time", 2);
+        assertNull(read(channel));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testFlushByUnbatchedMessage() throws Exception {
+        EmbeddedChannel channel = channel(WriteBufferWaterMark.DEFAULT);
+        write(channel, "time", 1);
+        write(channel, "time", 2);
+        assertNull(read(channel));
+
+        // the reply is not batched, it flushes the messages written before it
+        write(channel, "reply", 3);
+        checkSeq(read(channel), "time", 1);
+        checkSeq(read(channel), "time", 2);
+        checkSeq(read(channel), "reply", 3);
+        assertNull(read(channel));
+
+        // the tick finds nothing more to flush
+        Thread.sleep(2 * FLUSH_INTERVAL);
+        channel.runScheduledPendingTasks();
+        assertNull(read(channel));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testFlushOnHighWaterMark() throws Exception {
+        // a message is larger than the high water mark
+        EmbeddedChannel channel = channel(new WriteBufferWaterMark(4, 8));
+        assertTrue(channel.isWritable());
+        write(channel, "time", 1);
+        // flushed straight away, without waiting for the tick
+        checkSeq(read(channel), "time", 1);
+        assertTrue(channel.isWritable());
+        assertNull(read(channel));
+        channel.finishAndReleaseAll();
+    }
+}
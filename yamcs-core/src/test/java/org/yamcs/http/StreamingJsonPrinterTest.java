@@ -0,0 +1,192 @@
+package org.yamcs.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.yamcs.protobuf.Commanding.CommandAssignment;
+import org.yamcs.protobuf.Commanding.CommandHistoryAttribute;
+import org.yamcs.protobuf.Commanding.CommandHistoryEntry;
+import org.yamcs.protobuf.Commanding.CommandId;
+import org.yamcs.protobuf.Mdb.AlarmLevelType;
+import org.yamcs.protobuf.Mdb.AlarmRange;
+import org.yamcs.protobuf.ObjectInfo;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.protobuf.Pvalue.MonitoringResult;
+import org.yamcs.protobuf.Pvalue.ParameterData;
+import org.yamcs.protobuf.Pvalue.ParameterValue;
+import org.yamcs.protobuf.Pvalue.RangeCondition;
+import org.yamcs.protobuf.ServerMessage;
+import org.yamcs.protobuf.Yamcs.AggregateValue;
+import org.yamcs.protobuf.Yamcs.Event;
+import org.yamcs.protobuf.Yamcs.Event.EventSeverity;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+import org.yamcs.protobuf.Yamcs.TmPacketData;
+import org.yamcs.protobuf.Yamcs.Value;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.util.JsonFormat.TypeRegistry;
+import com.google.protobuf.util.Timestamps;
+
+public class StreamingJsonPrinterTest {
+    TypeRegistry registry = TypeRegistry.newBuilder().add(Event.getDescriptor()).build();
+    JsonFormat.Printer jsonFormat = JsonFormat.printer().usingTypeRegistry(registry);
+    StreamingJsonPrinter printer = new StreamingJsonPrinter(jsonFormat);
+
+    void check(Message msg) throws IOException {
+        JsonElement expected = new JsonParser().parse(jsonFormat.print(msg));
+        assertEquals(expected, new JsonParser().parse(printer.print(msg)));
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        printer.print(msg, bout);
+        assertEquals(expected, new JsonParser().parse(new String(bout.toByteArray(), StandardCharsets.UTF_8)));
+    }
+
+    static Value value() {
+        Value v1 = Value.newBuilder().setType(Type.UINT32).setUint32Value(0xFFFFFFFF).build();
+        Value v2 = Value.newBuilder().setType(Type.UINT64).setUint64Value(-1L).build();
+        Value v3 = Value.newBuilder().setType(Type.FLOAT).setFloatValue(0.1f).build();
+        Value v4 = Value.newBuilder().setType(Type.DOUBLE).setDoubleValue(Double.NaN).build();
+        Value v5 = Value.newBuilder().setType(Type.BINARY).setBinaryValue(ByteString.copyFrom(new byte[] { 1, 2, -3 }))
+                .build();
+        Value v6 = Value.newBuilder().setType(Type.STRING).setStringValue("a\"bé\n<").build();
+        Value v7 = Value.newBuilder().setType(Type.TIMESTAMP).setTimestampValue(1234567890123L).build();
+        Value v8 = Value.newBuilder().setType(Type.SINT64).setSint64Value(-5).build();
+        Value v9 = Value.newBuilder().setType(Type.SINT32).setSint32Value(-7).build();
+        Value v10 = Value.newBuilder().setType(Type.BOOLEAN).setBooleanValue(false).build();
+        Value v11 = Value.newBuilder().setType(Type.DOUBLE).setDoubleValue(Double.NEGATIVE_INFINITY).build();
+        Value v12 = Value.newBuilder().setType(Type.FLOAT).setFloatValue(1e20f).build();
+        Value array = Value.newBuilder().setType(Type.ARRAY).addArrayValue(v1).addArrayValue(v2).addArrayValue(v3)
+                .addArrayValue(v4).addArrayValue(v5).addArrayValue(v6).addArrayValue(v7).addArrayValue(v8)
+                .addArrayValue(v9).addArrayValue(v10).addArrayValue(v11).addArrayValue(v12).build();
+        return Value.newBuilder().setType(Type.AGGREGATE).setAggregateValue(AggregateValue.newBuilder()
+                .addName("x").addValue(array).addName("y").addValue(v6)).build();
+    }
+
+    static ParameterValue parameterValue(int i) {
+        return ParameterValue.newBuilder()
+                .setId(NamedObjectId.newBuilder().setName("p" + i).setNamespace("/ns"))
+                .setRawValue(Value.newBuilder().setType(Type.SINT32).setSint32Value(i))
+                .setEngValue(value())
+                .setAcquisitionTime(1000 + i).setGenerationTime(-1)
+                .setAcquisitionStatus(AcquisitionStatus.EXPIRED)
+                .setProcessingStatus(true)
+                .setMonitoringResult(MonitoringResult.CRITICAL)
+                .setRangeCondition(RangeCondition.HIGH)
+                .setAcquisitionTimeUTC("2020-01-01T00:00:00.000Z")
+                .setGenerationTimeUTC("2020-01-01T00:00:01.000Z")
+                .addAlarmRange(AlarmRange.newBuilder().setLevel(AlarmLevelType.WATCH).setMinInclusive(1.5)
+                        .setMaxExclusive(100))
+                .addAlarmRange(AlarmRange.newBuilder().setMaxInclusive(2).setMinExclusive(-1e300))
+                .setExpireMillis(5000)
+                .setNumericId(-2)
+                .build();
+    }
+
+    @Test
+    public void testParameterData() throws Exception {
+        check(ParameterData.newBuilder().addParameter(parameterValue(1)).addParameter(parameterValue(2))
+                .setGroup("g").setGenerationTime(3).setSeqNum(4).setSubscriptionId(5).build());
+        check(ParameterData.newBuilder().build());
+        check(ParameterValue.newBuilder().setNumericId(3).build());
+    }
+
+    @Test
+    public void testEvent() throws Exception {
+        check(Event.newBuilder().setSource("src").setGenerationTime(1).setReceptionTime(2).setSeqNumber(3)
+                .setType("t").setMessage("message  ").setSeverity(EventSeverity.SEVERE)
+                .setGenerationTimeUTC("a").setReceptionTimeUTC("b").setCreatedBy("me").build());
+        check(Event.newBuilder().setSource("src").setGenerationTime(1).setMessage("").build());
+    }
+
+    @Test
+    public void testEventExtension() throws Exception {
+        // extension declared the way a plugin would, in its own file
+        FileDescriptorProto fdp = FileDescriptorProto.newBuilder().setName("ext.proto").setPackage("plugin")
+                .addDependency(Event.getDescriptor().getFile().getName())
+                .addExtension(FieldDescriptorProto.newBuilder().setName("extra_info").setNumber(100)
+                        .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL)
+                        .setType(FieldDescriptorProto.Type.TYPE_STRING)
+                        .setExtendee("." + Event.getDescriptor().getFullName()))
+                .build();
+        FileDescriptor fd = FileDescriptor.buildFrom(fdp, new FileDescriptor[] { Event.getDescriptor().getFile() });
+        FieldDescriptor ext = fd.getExtensions().get(0);
+        ExtensionRegistry extensionRegistry = ExtensionRegistry.newInstance();
+        extensionRegistry.add(ext);
+
+        Event base = Event.newBuilder().setSource("src").setGenerationTime(1).setMessage("m").build();
+        byte[] b = DynamicMessage.newBuilder(Event.getDescriptor()).mergeFrom(base).setField(ext, "x").build()
+                .toByteArray();
+        Event event = Event.parseFrom(b, extensionRegistry);
+
+        assertEquals("x", event.getField(ext));
+        check(event);
+    }
+
+    @Test
+    public void testTmPacket() throws Exception {
+        check(TmPacketData.newBuilder().setPacket(ByteString.copyFrom(new byte[100])).setSequenceNumber(-1)
+                .setId(NamedObjectId.newBuilder().setName("/pkt"))
+                .setReceptionTime(Timestamps.fromMillis(1500000000123L))
+                .setGenerationTime(Timestamps.fromNanos(1500000000123456789L)).build());
+    }
+
+    @Test
+    public void testCommandHistory() throws Exception {
+        check(CommandHistoryEntry.newBuilder()
+                .setCommandId(CommandId.newBuilder().setGenerationTime(10).setOrigin("o").setSequenceNumber(2)
+                        .setCommandName("/cmd"))
+                .addAttr(CommandHistoryAttribute.newBuilder().setName("a").setValue(value()).setTime(4))
+                .addAttr(CommandHistoryAttribute.newBuilder().setName("b"))
+                .setGenerationTimeUTC("utc")
+                .addAssignment(CommandAssignment.newBuilder().setName("arg").setValue(value()).setUserInput(true))
+                .build());
+    }
+
+    @Test
+    public void testGeneric() throws Exception {
+        check(ObjectInfo.newBuilder().setName("obj").setSize(-1).putMetadata("k1", "v1").putMetadata("k2", "")
+                .build());
+        check(ObjectInfo.newBuilder().build());
+
+        // proto3 with default values and Any
+        Event event = Event.newBuilder().setSource("src").setGenerationTime(1).setMessage("m").build();
+        check(ServerMessage.newBuilder().setType("events").setSeq(0).setCall(3)
+                .setData(Any.pack(event, HttpServer.TYPE_URL_PREFIX)).build());
+        check(ServerMessage.newBuilder().build());
+    }
+
+    @Test
+    public void testPrintAny() throws Exception {
+        Event event = Event.newBuilder().setSource("src").setGenerationTime(1).setMessage("m").build();
+        ServerMessage msg = ServerMessage.newBuilder().setType("events").setCall(3).setSeq(7)
+                .setData(Any.pack(event, HttpServer.TYPE_URL_PREFIX)).build();
+        JsonElement expected = new JsonParser().parse(jsonFormat.print(msg));
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (JsonWriter out = StreamingJsonPrinter.newWriter(bout)) {
+            out.beginObject();
+            printer.printFields(msg.toBuilder().clearData(), out);
+            out.name("data");
+            printer.printAny(HttpServer.TYPE_URL_PREFIX, event, out);
+            out.endObject();
+        }
+        assertEquals(expected, new JsonParser().parse(new String(bout.toByteArray(), StandardCharsets.UTF_8)));
+    }
+}
@@ -53,6 +53,21 @@ public class DownsamplerTest {
         assertEquals(2, sample1.max, 1e-10);
     }
     
+    @Test
+    public void testAggregatedSampling() {
+        Downsampler sampler = new Downsampler(0, 10, 2);
+        sampler.process(1, 5);
+        sampler.process(2, 1, 9, 4, 3);
+
+        List<Sample> samples = sampler.collect();
+        assertEquals(1, samples.size());
+        Sample sample0 = samples.get(0);
+        assertEquals(4, sample0.n);
+        assertEquals((5 + 3 * 4) / 4., sample0.avg, 1e-10);
+        assertEquals(1, sample0.min, 1e-10);
+        assertEquals(9, sample0.max, 1e-10);
+    }
+
     @Test
     public void testSamplingTooMany() {
         Downsampler sampler = new Downsampler(1, 2, 3);
@@ -0,0 +1,86 @@
+package org.yamcs.http.websocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.ParameterValueWithId;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+
+public class ParameterConflationBufferTest {
+
+    static ParameterValueWithId pv(String name) {
+        return new ParameterValueWithId(new ParameterValue(name), NamedObjectId.newBuilder().setName(name).build());
+    }
+
+    @Test
+    public void testConflation() {
+        ParameterConflationBuffer buf = new ParameterConflationBuffer();
+        assertTrue(buf.isEmpty());
+        assertEquals(1, buf.getConflationRatio(), 1e-9);
+
+        ParameterValueWithId a1 = pv("/a");
+        ParameterValueWithId b1 = pv("/b");
+        ParameterValueWithId a2 = pv("/a");
+        ParameterValueWithId a3 = pv("/a");
+        buf.add(1, Arrays.asList(a1, b1));
+        buf.add(1, Arrays.asList(a2));
+        buf.add(1, Arrays.asList(a3));
+        buf.add(2, Arrays.asList(pv("/a")));
+
+        assertEquals(5, buf.getBufferedCount());
+        assertEquals(2, buf.getConflatedCount());
+        assertEquals(5.0 / 3, buf.getConflationRatio(), 1e-9);
+
+        List<Integer> ids = new ArrayList<>();
+        List<List<ParameterValueWithId>> sent = new ArrayList<>();
+        buf.drain((id, l) -> {
+            ids.add(id);
+            sent.add(l);
+            return true;
+        });
+        assertTrue(buf.isEmpty());
+        assertEquals(Arrays.asList(1, 2), ids);
+        assertEquals(2, sent.get(0).size());
+        assertSame(a3, sent.get(0).get(0));
+        assertSame(b1, sent.get(0).get(1));
+        assertEquals(1, sent.get(1).size());
+    }
+
+    @Test
+    public void testPartialDrain() {
+        ParameterConflationBuffer buf = new ParameterConflationBuffer();
+        buf.add(1, Arrays.asList(pv("/a")));
+        buf.add(2, Arrays.asList(pv("/b")));
+
+        List<Integer> ids = new ArrayList<>();
+        // the channel becomes unwritable after the first subscription has been sent
+        buf.drain((id, l) -> {
+            if (!ids.isEmpty()) {
+                return false;
+            }
+            ids.add(id);
+            return true;
+        });
+        assertEquals(Arrays.asList(1), ids);
+
+        ids.clear();
+        buf.drain((id, l) -> ids.add(id));
+        assertEquals(Arrays.asList(2), ids);
+        assertTrue(buf.isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        ParameterConflationBuffer buf = new ParameterConflationBuffer();
+        buf.add(1, Arrays.asList(pv("/a")));
+        buf.remove(1);
+        assertTrue(buf.isEmpty());
+    }
+}
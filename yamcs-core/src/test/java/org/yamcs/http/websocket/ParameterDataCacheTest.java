@@ -0,0 +1,176 @@
+package org.yamcs.http.websocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.ParameterValueWithId;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.protobuf.Pvalue.ParameterData;
+import org.yamcs.protobuf.WebSocketServerMessage;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+import org.yamcs.protobuf.Yamcs.ProtoDataType;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+public class ParameterDataCacheTest {
+    static final Map<NamedObjectId, Integer> NO_NUMERIC_IDS = Collections.emptyMap();
+
+    @BeforeClass
+    public static void beforeClass() {
+        TimeEncoding.setUp();
+    }
+
+    static NamedObjectId id(String name) {
+        return NamedObjectId.newBuilder().setName(name).build();
+    }
+
+    static ParameterValue pv(String name, int x) {
+        ParameterValue pv = new ParameterValue(name);
+        pv.setEngineeringValue(ValueUtility.getSint32Value(x));
+        pv.setGenerationTime(1000 + x);
+        pv.setAcquisitionTime(2000 + x);
+        return pv;
+    }
+
+    @Test
+    public void testIdentical() {
+        ParameterDataCache cache = new ParameterDataCache();
+        ParameterValue pva = pv("/a", 1);
+        ParameterValue pvb = pv("/b", 2);
+
+        // lists built separately for each client, as the request helper does
+        EncodedParameterData d1 = cache.get(Arrays.asList(new ParameterValueWithId(pva, id("/a")),
+                new ParameterValueWithId(pvb, id("/b"))), NO_NUMERIC_IDS);
+        EncodedParameterData d2 = cache.get(Arrays.asList(new ParameterValueWithId(pva, id("/a")),
+                new ParameterValueWithId(pvb, id("/b"))), NO_NUMERIC_IDS);
+        assertSame(d1, d2);
+
+        // different alias
+        EncodedParameterData d3 = cache.get(Arrays.asList(new ParameterValueWithId(pva, id("/x")),
+                new ParameterValueWithId(pvb, id("/b"))), NO_NUMERIC_IDS);
+        assertNotSame(d1, d3);
+
+        // equal but not the same value
+        EncodedParameterData d4 = cache.get(Arrays.asList(new ParameterValueWithId(pv("/a", 1), id("/a")),
+                new ParameterValueWithId(pvb, id("/b"))), NO_NUMERIC_IDS);
+        assertNotSame(d1, d4);
+
+        // numeric ids
+        EncodedParameterData d5 = cache.get(Arrays.asList(new ParameterValueWithId(pva, id("/a")),
+                new ParameterValueWithId(pvb, id("/b"))), Collections.singletonMap(id("/a"), 3));
+        assertNotSame(d1, d5);
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+        cache.clear();
+    }
+
+    @Test
+    public void testStatusChangedInPlace() {
+        ParameterDataCache cache = new ParameterDataCache();
+        ParameterValue pva = pv("/a", 1);
+        pva.setAcquisitionStatus(AcquisitionStatus.ACQUIRED);
+        EncodedParameterData d1 = cache.get(Arrays.asList(new ParameterValueWithId(pva, id("/a"))), NO_NUMERIC_IDS);
+        assertEquals(AcquisitionStatus.ACQUIRED, d1.getParameterData().getParameter(0).getAcquisitionStatus());
+
+        // the parameter cache marks the values as expired in place
+        pva.setAcquisitionStatus(AcquisitionStatus.EXPIRED);
+        EncodedParameterData d2 = cache.get(Arrays.asList(new ParameterValueWithId(pva, id("/a"))), NO_NUMERIC_IDS);
+        assertNotSame(d1, d2);
+        assertEquals(AcquisitionStatus.EXPIRED, d2.getParameterData().getParameter(0).getAcquisitionStatus());
+        cache.clear();
+    }
+
+    @Test
+    public void testEviction() {
+        ParameterDataCache cache = new ParameterDataCache(2);
+        ParameterValue pv = pv("/a", 1);
+        EncodedParameterData d1 = cache.get(Arrays.asList(new ParameterValueWithId(pv, id("/a"))), NO_NUMERIC_IDS);
+        ByteBuf b = d1.retainProtobuf();
+        cache.get(Arrays.asList(new ParameterValueWithId(pv("/b", 1), id("/b"))), NO_NUMERIC_IDS);
+        cache.get(Arrays.asList(new ParameterValueWithId(pv("/c", 1), id("/c"))), NO_NUMERIC_IDS);
+        assertEquals(2, cache.size());
+
+        // the buffer retained before the eviction is still valid
+        assertEquals(d1.getParameterData(), parseParameters(b));
+        b.release();
+
+        assertNotSame(d1, cache.get(Arrays.asList(new ParameterValueWithId(pv, id("/a"))), NO_NUMERIC_IDS));
+        ByteBuf b1 = d1.retainProtobuf();
+        assertEquals(1, b1.refCnt());
+        b1.release();
+        cache.clear();
+    }
+
+    static ParameterData parseParameters(ByteBuf buf) {
+        try {
+            return ParameterData.parseFrom(ByteBufUtil.getBytes(buf));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    List<ParameterValueWithId> values() {
+        return Arrays.asList(new ParameterValueWithId(pv("/a", 1), id("/a")),
+                new ParameterValueWithId(pv("/b", 2), id("/b")),
+                new ParameterValueWithId(pv("/c", 3), id("/c")));
+    }
+
+    @Test
+    public void testProtobuf() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ProtobufEncoder encoder = new ProtobufEncoder(channel.pipeline().firstContext());
+        List<ParameterValueWithId> values = values();
+        EncodedParameterData data = EncodedParameterData.of(values, Collections.singletonMap(id("/b"), 7));
+
+        ParameterData pd = data.getParameterData().toBuilder().setSubscriptionId(300).build();
+        WebSocketFrame expected = encoder.encodeData(123456, ProtoDataType.PARAMETER, pd);
+        WebSocketFrame frame = encoder.encodeParameterData(123456, 300, data);
+        assertEquals(WebSocketServerMessage.parseFrom(ByteBufUtil.getBytes(expected.content())),
+                WebSocketServerMessage.parseFrom(ByteBufUtil.getBytes(frame.content())));
+        assertEquals(7, pd.getParameter(1).getNumericId());
+        expected.release();
+        frame.release();
+        data.release();
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        JsonEncoder encoder = new JsonEncoder();
+        EncodedParameterData data = EncodedParameterData.of(values(), NO_NUMERIC_IDS);
+
+        ParameterData pd = data.getParameterData().toBuilder().setSubscriptionId(5).build();
+        WebSocketFrame expected = encoder.encodeData(1, ProtoDataType.PARAMETER, pd);
+        for (int i = 0; i < 2; i++) { // the second time from the shared buffer
+            WebSocketFrame frame = encoder.encodeParameterData(1, 5, data);
+            assertEquals(parse(expected), parse(frame));
+            frame.release();
+        }
+        expected.release();
+        data.release();
+    }
+
+    static JsonElement parse(WebSocketFrame frame) {
+        return new JsonParser().parse(frame.content().toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,69 @@
+package org.yamcs.parameter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.XtceDb;
+import org.yamcs.xtceproc.XtceDbFactory;
+
+public class LastValueCacheTest {
+    static XtceDb xtcedb;
+
+    @BeforeClass
+    public static void beforeClass() {
+        YConfiguration.setupTest("refmdb");
+        XtceDbFactory.reset();
+        xtcedb = XtceDbFactory.createInstanceByConfig("refmdb");
+    }
+
+    @Test
+    public void testIndices() {
+        Set<Integer> indices = new HashSet<>();
+        for (Parameter p : xtcedb.getParameters()) {
+            int idx = p.getIndex();
+            assertTrue(idx >= 0 && idx < xtcedb.getParameterIndexSize());
+            assertTrue(indices.add(idx));
+        }
+        int n = xtcedb.getParameterIndexSize();
+        Parameter p = xtcedb.createSystemParameter(XtceDb.YAMCS_SPACESYSTEM_NAME + "/lvctest/p1");
+        assertEquals(n, p.getIndex());
+        assertEquals(n + 1, xtcedb.getParameterIndexSize());
+    }
+
+    @Test
+    public void testCache() {
+        LastValueCache lvc = new LastValueCache();
+        Parameter p1 = xtcedb.getParameter("/REFMDB/SUBSYS1/IntegerPara1_6_1");
+        Parameter p2 = xtcedb.createSystemParameter(XtceDb.YAMCS_SPACESYSTEM_NAME + "/lvctest/p2");
+        Parameter p3 = new Parameter("p3");
+        assertEquals(-1, p3.getIndex());
+
+        assertNull(lvc.getValue(p1));
+        ParameterValue pv1 = new ParameterValue(p1);
+        ParameterValue pv2 = new ParameterValue(p2);
+        ParameterValue pv3 = new ParameterValue(p3);
+        assertNull(lvc.put(p1, pv1));
+        assertNull(lvc.put(p2, pv2));
+        assertNull(lvc.put(p3, pv3));
+        assertEquals(3, lvc.size());
+        assertSame(pv1, lvc.getValue(p1));
+        assertSame(pv2, lvc.getValue(p2));
+        assertSame(pv3, lvc.getValue(p3));
+
+        ParameterValue pv1b = new ParameterValue(p1);
+        assertSame(pv1, lvc.put(p1, pv1b));
+        assertEquals(3, lvc.size());
+        assertSame(pv1b, lvc.getValue(p1));
+        assertEquals(3, lvc.getValues().size());
+        assertTrue(lvc.getValues().contains(pv1b));
+    }
+}
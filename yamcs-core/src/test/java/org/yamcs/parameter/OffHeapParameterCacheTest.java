@@ -0,0 +1,159 @@
+package org.yamcs.parameter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.parameterarchive.TestUtils;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.Parameter;
+
+public class OffHeapParameterCacheTest {
+    Parameter p1 = new Parameter("p1");
+    Parameter p2 = new Parameter("p2");
+
+    @BeforeClass
+    public static void before() {
+        TimeEncoding.setUp();
+    }
+
+    @Test
+    public void testMixedTypes() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 1000, 4096, true);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+        assertNull(pcache.getLastValue(p1));
+
+        ParameterValue p1v1 = getStringParameterValue(p1, 10);
+        ParameterValue p2v1 = getFloatParameterValue(p2, 10);
+        p2v1.setRawValue(ValueUtility.getUint32Value(-3));
+        p2v1.setAcquisitionStatus(AcquisitionStatus.INVALID);
+        pcache.update(Arrays.asList(p1v1, p2v1));
+
+        TestUtils.checkEquals(p1v1, pcache.getLastValue(p1));
+        TestUtils.checkEquals(p2v1, pcache.getLastValue(p2));
+
+        ParameterValue p2v2 = getFloatParameterValue(p2, 20);
+        p2v2.setRawValue(ValueUtility.getUint32Value(5));
+        pcache.update(Arrays.asList(p2v2));
+
+        List<ParameterValue> pvlist = pcache.getValues(Arrays.asList(p2, p1));
+        assertEquals(2, pvlist.size());
+        TestUtils.checkEquals(p2v2, pvlist.get(0));
+        TestUtils.checkEquals(p1v1, pvlist.get(1));
+
+        // the type changes from float to string
+        ParameterValue p2v3 = getStringParameterValue(p2, 30);
+        pcache.update(Arrays.asList(p2v3));
+        TestUtils.checkEquals(p2v3, pcache.getLastValue(p2));
+        pvlist = pcache.getAllValues(p2);
+        assertEquals(3, pvlist.size());
+        TestUtils.checkEquals(p2v3, pvlist.get(0));
+        TestUtils.checkEquals(p2v2, pvlist.get(1));
+        TestUtils.checkEquals(p2v1, pvlist.get(2));
+    }
+
+    @Test
+    public void testNoCacheAll() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, false, 1000, 4096, true);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+        pcache.update(Arrays.asList(getUint64ParameterValue(p1, 0)));
+        assertNull(pcache.getLastValue(p1));
+
+        ParameterValue p1v1 = getUint64ParameterValue(p1, 10);
+        pcache.update(Arrays.asList(p1v1));
+        TestUtils.checkEquals(p1v1, pcache.getLastValue(p1));
+    }
+
+    @Test
+    public void testCircularity() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 1000, 4096, true);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+        List<ParameterValue> expectedPVlist = new ArrayList<>();
+        for (int i = 0; i < 17; i++) {
+            ParameterValue pv = getUint64ParameterValue(p1, i * 100L);
+            expectedPVlist.add(pv);
+            pcache.update(Arrays.asList(pv));
+        }
+        // the buffer covers the whole duration with 16 entries so it does not grow
+        List<ParameterValue> pvlist = pcache.getAllValues(p1);
+        assertEquals(16, pvlist.size());
+        for (int i = 0; i < 16; i++) {
+            TestUtils.checkEquals(expectedPVlist.get(16 - i), pvlist.get(i));
+        }
+
+        pvlist = pcache.getAllValues(p1, 1000, 1200);
+        assertEquals(2, pvlist.size());
+        TestUtils.checkEquals(expectedPVlist.get(12), pvlist.get(0));
+        TestUtils.checkEquals(expectedPVlist.get(11), pvlist.get(1));
+    }
+
+    @Test
+    public void testMaxSize() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 2000, 128, true);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+        List<ParameterValue> expectedPVlist = new ArrayList<>();
+        for (int i = 0; i < 258; i++) {
+            ParameterValue pv = getUint64ParameterValue(p1, i * 10L);
+            expectedPVlist.add(pv);
+            pcache.update(Arrays.asList(pv));
+        }
+
+        List<ParameterValue> pvlist = pcache.getAllValues(p1);
+        assertEquals(128, pvlist.size());
+        for (int i = 0; i < 128; i++) {
+            TestUtils.checkEquals(expectedPVlist.get(257 - i), pvlist.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 1000, 64, true);
+        OffHeapParameterCache pcache = new OffHeapParameterCache("test", pcc);
+        int n = 100000;
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < n; i++) {
+                pcache.update(Arrays.asList(getUint64ParameterValue(p1, i)));
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            ParameterValue pv = pcache.getLastValue(p1);
+            if (pv != null) {
+                // the values are written atomically with their timestamps
+                assertEquals(pv.getGenerationTime(), pv.getEngValue().getUint64Value());
+                assertEquals(pv.getGenerationTime() + 5, pv.getAcquisitionTime());
+            }
+        }
+        writer.join();
+        assertEquals(n - 1, pcache.getLastValue(p1).getGenerationTime());
+    }
+
+    ParameterValue getUint64ParameterValue(Parameter p, long t) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(t);
+        pv.setAcquisitionTime(t + 5);
+        pv.setEngineeringValue(ValueUtility.getUint64Value(t));
+        return pv;
+    }
+
+    ParameterValue getFloatParameterValue(Parameter p, long t) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(t);
+        pv.setEngineeringValue(ValueUtility.getFloatValue((float) t));
+        return pv;
+    }
+
+    ParameterValue getStringParameterValue(Parameter p, long timestamp) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(timestamp);
+        pv.setEngineeringValue(ValueUtility.getStringValue(p.getName() + "_" + timestamp));
+        return pv;
+    }
+}
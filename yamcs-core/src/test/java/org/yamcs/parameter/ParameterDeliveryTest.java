@@ -0,0 +1,55 @@
+package org.yamcs.parameter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.yamcs.xtce.Parameter;
+
+public class ParameterDeliveryTest {
+
+    @Test
+    public void test() {
+        ParameterDelivery delivery = new ParameterDelivery();
+        ParameterValue pv1 = new ParameterValue(new Parameter("p1"));
+        ParameterValue pv2 = new ParameterValue(new Parameter("p2"));
+
+        // enough subscriptions to trigger the growth of the arrays and of the index
+        int n = 1000;
+        for (int i = 0; i < n; i++) {
+            delivery.add(i * 7, pv1);
+        }
+        for (int i = 0; i < n; i += 2) {
+            delivery.add(i * 7, pv2);
+        }
+        assertEquals(n, delivery.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(i * 7, delivery.getSubscriptionId(i));
+            List<ParameterValue> l = delivery.get(i * 7);
+            assertSame(l, delivery.getValues(i));
+            if (i % 2 == 0) {
+                assertEquals(Arrays.asList(pv1, pv2), l);
+            } else {
+                assertEquals(Arrays.asList(pv1), l);
+            }
+        }
+        assertNull(delivery.get(3));
+        assertNull(delivery.getAllValues());
+
+        List<ParameterValue> l = delivery.get(0);
+        delivery.clear();
+        assertEquals(0, delivery.size());
+        assertNull(delivery.get(0));
+        // the lists already handed over are not reused
+        assertEquals(2, l.size());
+
+        delivery.addToAll(Arrays.asList(pv1, pv2));
+        delivery.add(5, pv2);
+        assertEquals(Arrays.asList(pv1, pv2), delivery.getAllValues());
+        assertEquals(Arrays.asList(pv2), delivery.get(5));
+    }
+}
@@ -91,6 +91,7 @@ public class ParameterArchiveTest {
         }
         rse.createTablespace(instance);
         Map<String, Object> conf = new HashMap<>();
+        conf.put("retrievalThreads", 4);
 
         if (partitioningSchema != null) {
             conf.put("partitioningSchema", partitioningSchema);
@@ -271,6 +272,124 @@ public class ParameterArchiveTest {
 
     }
 
+    @Test
+    public void testRollups() throws Exception {
+        int p1id = pidMap.createAndGet(p1.getQualifiedName(), Type.DOUBLE);
+        int pg1id = pgidMap.createAndGet(IntArray.wrap(p1id));
+        PGSegment pgSegment1 = new PGSegment(pg1id, 0, IntArray.wrap(p1id));
+        for (int i = 0; i < 200; i++) {
+            ParameterValue pv = new ParameterValue(p1);
+            pv.setGenerationTime(100 * i);
+            pv.setEngineeringValue(ValueUtility.getDoubleValue(i));
+            pgSegment1.addRecord(100 * i, Arrays.asList(pv));
+        }
+        parchive.writeToArchive(pgSegment1);
+
+        List<RollupSegment> l0 = retrieveRollups(0, TimeEncoding.MAX_INSTANT, 0);
+        assertEquals(1, l0.size());
+        RollupSegment rs0 = l0.get(0);
+        assertEquals(20, rs0.size());
+        assertEquals(1000, rs0.getBucketStart(1));
+        assertEquals(10, rs0.getCount(1));
+        assertEquals(10, rs0.getMin(1), 1e-10);
+        assertEquals(19, rs0.getMax(1), 1e-10);
+        assertEquals(145, rs0.getSum(1), 1e-10);
+        assertEquals(19900, rs0.getLastTime());
+
+        List<RollupSegment> l1 = retrieveRollups(0, TimeEncoding.MAX_INSTANT, 1);
+        assertEquals(1, l1.get(0).size());
+        assertEquals(200, l1.get(0).getCount(0));
+        assertEquals(199, l1.get(0).getMax(0), 1e-10);
+
+        // the segment crosses the interval limits, the rollup is computed from the values
+        List<RollupSegment> l2 = retrieveRollups(150, 1250, 0);
+        RollupSegment rs2 = l2.get(0);
+        assertEquals(2, rs2.size());
+        assertEquals(8, rs2.getCount(0));
+        assertEquals(2, rs2.getMin(0), 1e-10);
+        assertEquals(3, rs2.getCount(1));
+        assertEquals(12, rs2.getMax(1), 1e-10);
+        assertEquals(1200, rs2.getLastTime());
+
+        // second segment, both are read from their stored rollups
+        PGSegment pgSegment2 = new PGSegment(pg1id, 20000, IntArray.wrap(p1id));
+        for (int i = 0; i < 10; i++) {
+            ParameterValue pv = new ParameterValue(p1);
+            pv.setGenerationTime(20000 + 100 * i);
+            pv.setEngineeringValue(ValueUtility.getDoubleValue(1000 + i));
+            pgSegment2.addRecord(20000 + 100 * i, Arrays.asList(pv));
+        }
+        parchive.writeToArchive(pgSegment2);
+        List<RollupSegment> l3 = retrieveRollups(0, TimeEncoding.MAX_INSTANT, 0);
+        assertEquals(2, l3.size());
+        assertEquals(20, l3.get(0).size());
+        assertEquals(1, l3.get(1).size());
+        assertEquals(10, l3.get(1).getCount(0));
+        assertEquals(1009, l3.get(1).getMax(0), 1e-10);
+    }
+
+    @Test
+    public void testParallelRetrieval() throws Exception {
+        int p1id = pidMap.createAndGet(p1.getQualifiedName(), Type.SINT32);
+        int p2id = pidMap.createAndGet(p2.getQualifiedName(), Type.SINT32);
+        int pg1id = pgidMap.createAndGet(IntArray.wrap(p1id, p2id));
+        int pg2id = pgidMap.createAndGet(IntArray.wrap(p1id));
+
+        // data spread over a few intervals crossing a year boundary, in two groups
+        long t0 = TimeEncoding.parse("2016-12-31T20:00:00");
+        long dt = 997_000;
+        for (int k = 0; k < 40; k++) {
+            long t = t0 + k * dt;
+            int pgid = (k % 3 == 0) ? pg2id : pg1id;
+            IntArray pids = (pgid == pg1id) ? IntArray.wrap(p1id, p2id) : IntArray.wrap(p1id);
+            PGSegment pgs = new PGSegment(pgid, t, pids);
+            for (int i = 0; i < 3; i++) {
+                ParameterValue pv1 = new ParameterValue(p1);
+                pv1.setGenerationTime(t + i);
+                pv1.setEngineeringValue(ValueUtility.getSint32Value(k * 10 + i));
+                ParameterValue pv2 = new ParameterValue(p2);
+                pv2.setGenerationTime(t + i);
+                pv2.setEngineeringValue(ValueUtility.getSint32Value(-k * 10 - i));
+                pgs.addRecord(t + i, pgid == pg1id ? Arrays.asList(pv1, pv2) : Arrays.asList(pv1));
+            }
+            parchive.writeToArchive(pgs);
+        }
+        long start = t0 + 5 * dt + 1;
+        long stop = t0 + 35 * dt;
+        int[] pids = new int[] { p1id, p2id, p1id };
+        int[] pgids = new int[] { pg1id, pg1id, pg2id };
+        for (boolean ascending : new boolean[] { true, false }) {
+            for (int limit : new int[] { -1, 17 }) {
+                List<ParameterIdValueList> l1 = retrieveMultipleParameters(start, stop, pids, pgids, ascending, limit,
+                        false);
+                List<ParameterIdValueList> l2 = retrieveMultipleParameters(start, stop, pids, pgids, ascending, limit,
+                        true);
+                assertEquals(limit < 0 ? 89 : limit, l1.size());
+                assertEquals(l1.toString(), l2.toString());
+            }
+
+            ParameterRequest req = new ParameterRequest(start, stop, ascending, true, false, true);
+            SingleValueConsumer c1 = new SingleValueConsumer();
+            new SingleParameterArchiveRetrieval(parchive, p1.getQualifiedName(), req).retrieve(c1);
+            req.setParallel(true);
+            SingleValueConsumer c2 = new SingleValueConsumer();
+            new SingleParameterArchiveRetrieval(parchive, p1.getQualifiedName(), req).retrieve(c2);
+            assertEquals(c1.list.size(), c2.list.size());
+            for (int i = 0; i < c1.list.size(); i++) {
+                assertTrue(Arrays.equals(c1.list.get(i).timestamps, c2.list.get(i).timestamps));
+                assertTrue(Arrays.equals(c1.list.get(i).engValues.getIntArray(),
+                        c2.list.get(i).engValues.getIntArray()));
+            }
+        }
+    }
+
+    List<RollupSegment> retrieveRollups(long start, long stop, int level) throws Exception {
+        List<RollupSegment> l = new ArrayList<>();
+        RollupRetrieval rr = new RollupRetrieval(parchive, p1.getQualifiedName(), start, stop, level);
+        rr.retrieve(l::add);
+        return l;
+    }
+
     List<ParameterValueArray> retrieveSingleParamSingleGroup(long start, long stop, int parameterId,
             int parameterGroupId, boolean ascending, boolean retrieveEngValues, boolean retrieveRawValues,
             boolean retriveParamStatus) throws Exception {
@@ -617,6 +736,11 @@ public class ParameterArchiveTest {
 
     List<ParameterIdValueList> retrieveMultipleParameters(long start, long stop, int[] parameterIds,
             int[] parameterGroupIds, boolean ascending, int limit) throws Exception {
+        return retrieveMultipleParameters(start, stop, parameterIds, parameterGroupIds, ascending, limit, false);
+    }
+
+    List<ParameterIdValueList> retrieveMultipleParameters(long start, long stop, int[] parameterIds,
+            int[] parameterGroupIds, boolean ascending, int limit, boolean parallel) throws Exception {
         String[] parameterNames = new String[parameterIds.length];
         for (int i = 0; i < parameterIds.length; i++) {
             parameterNames[i] = "p" + parameterIds[i];
@@ -627,6 +751,7 @@ public class ParameterArchiveTest {
         MultipleParameterValueRequest mpvr = new MultipleParameterValueRequest(start, stop, parameterNames,
                 parameterIds, parameterGroupIds, retrieveRawValues, ascending);
         mpvr.setLimit(limit);
+        mpvr.setParallel(parallel);
 
         MultiParameterDataRetrieval mpdr = new MultiParameterDataRetrieval(parchive, mpvr);
         MultiValueConsumer c = new MultiValueConsumer();
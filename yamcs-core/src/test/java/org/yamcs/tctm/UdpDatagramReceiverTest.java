@@ -0,0 +1,115 @@
+package org.yamcs.tctm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.yamcs.logging.Log;
+import org.yamcs.tctm.UdpDatagramReceiver.Datagram;
+import org.yamcs.utils.ByteArrayUtils;
+
+public class UdpDatagramReceiverTest {
+    int port;
+    DatagramSocket sender;
+    UdpDatagramReceiver receiver;
+
+    @Before
+    public void before() throws IOException {
+        try (DatagramSocket s = new DatagramSocket()) {
+            port = s.getLocalPort();
+        }
+        sender = new DatagramSocket();
+    }
+
+    @After
+    public void after() {
+        sender.close();
+        if (receiver != null) {
+            receiver.close();
+        }
+    }
+
+    void send(int n, int length) throws IOException {
+        for (int i = 0; i < n; i++) {
+            byte[] b = new byte[length];
+            ByteArrayUtils.encodeInt(i, b, 0);
+            sender.send(new DatagramPacket(b, length, InetAddress.getLoopbackAddress(), port));
+        }
+    }
+
+    void check(int generation, int n, int length) throws InterruptedException {
+        for (int i = 0; i < n; i++) {
+            Datagram d = receiver.take(generation);
+            assertEquals(length, d.getLength());
+            assertEquals(i, d.getData().getInt());
+            receiver.release(d);
+        }
+    }
+
+    @Test
+    public void testReceive() throws Exception {
+        receiver = new UdpDatagramReceiver(port, 100, 16, 1024 * 1024, System::currentTimeMillis,
+                new Log(UdpDatagramReceiverTest.class));
+        int g = receiver.start();
+        // more datagrams than buffers in the ring; the rest waits in the socket buffer
+        send(200, 50);
+        check(g, 200, 50);
+        assertEquals(200, receiver.getDatagramCount());
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        receiver = new UdpDatagramReceiver(port, 10, 4, 1024 * 1024, System::currentTimeMillis,
+                new Log(UdpDatagramReceiverTest.class));
+        int g = receiver.start();
+        send(3, 20);
+        check(g, 3, 10);
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        receiver = new UdpDatagramReceiver(port, 100, 4, 1024 * 1024, System::currentTimeMillis,
+                new Log(UdpDatagramReceiverTest.class));
+        int g1 = receiver.start();
+        send(2, 8);
+        check(g1, 2, 8);
+        receiver.close();
+        assertNull(receiver.take(g1));
+
+        int g2 = receiver.start();
+        // a consumer of the previous start does not get the datagrams of the new one
+        assertNull(receiver.take(g1));
+        send(10, 8);
+        check(g2, 10, 8);
+    }
+
+    @Test
+    public void testRestartWhileTaking() throws Exception {
+        receiver = new UdpDatagramReceiver(port, 100, 4, 1024 * 1024, System::currentTimeMillis,
+                new Log(UdpDatagramReceiverTest.class));
+        int g1 = receiver.start();
+        CompletableFuture<Datagram> old = CompletableFuture.supplyAsync(() -> {
+            try {
+                return receiver.take(g1);
+            } catch (InterruptedException e) {
+                throw new CompletionException(e);
+            }
+        });
+        Thread.sleep(100);
+        receiver.close();
+        int g2 = receiver.start();
+        send(10, 8);
+        check(g2, 10, 8);
+        assertNull(old.get(5, TimeUnit.SECONDS));
+    }
+}
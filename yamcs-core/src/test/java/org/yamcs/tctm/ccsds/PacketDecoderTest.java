@@ -6,6 +6,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Before;
@@ -124,4 +125,55 @@ public class PacketDecoderTest {
         assertFalse(pd.hasIncompletePacket());
         
     }
+
+    @Test
+    public void testSlices() throws TcTmException {
+        List<int[]> slices = new ArrayList<>();
+        List<byte[]> buffers = new ArrayList<>();
+        List<byte[]> plist = new ArrayList<>();
+        PacketDecoder pd1 = new PacketDecoder(1000, (buf, offset, length) -> {
+            buffers.add(buf);
+            slices.add(new int[] { offset, length });
+            // the buffer is only valid during the call
+            plist.add(Arrays.copyOfRange(buf, offset, offset + length));
+        });
+        pd1.skipIdlePackets(false);
+        // two contained packets and the beginning of a third one
+        byte[] data = new byte[] { (byte) 0xE1, 3, 1, (byte) 0xE0, (byte) 0xE1, 4, 2 };
+        pd1.process(data, 0, data.length);
+        assertEquals(2, slices.size());
+        assertTrue(data == buffers.get(0));
+        assertArrayEquals(new int[] { 0, 3 }, slices.get(0));
+        assertTrue(data == buffers.get(1));
+        assertArrayEquals(new int[] { 3, 1 }, slices.get(1));
+        assertTrue(pd1.hasIncompletePacket());
+
+        // the third packet is assembled in the decoder buffer
+        pd1.process(new byte[] { 3, (byte) 0xE1, 3 }, 0, 3);
+        assertEquals(3, slices.size());
+        byte[] assembled = buffers.get(2);
+        assertTrue(assembled != data);
+        assertArrayEquals(new int[] { 0, 4 }, slices.get(2));
+        assertArrayEquals(new byte[] { (byte) 0xE1, 4, 2, 3 }, plist.get(2));
+
+        // the buffer is reused for the next spanning packet
+        pd1.process(new byte[] { 5 }, 0, 1);
+        assertEquals(4, slices.size());
+        assertTrue(assembled == buffers.get(3));
+        assertArrayEquals(new byte[] { (byte) 0xE1, 3, 5 }, plist.get(3));
+    }
+
+    @Test
+    public void testSlicesStripped() throws TcTmException {
+        List<byte[]> plist = new ArrayList<>();
+        PacketDecoder pd1 = new PacketDecoder(1000,
+                (buf, offset, length) -> plist.add(Arrays.copyOfRange(buf, offset, offset + length)));
+        pd1.stripEncapsulationHeader(true);
+        byte[] data = new byte[] { (byte) 0xE5, 3, 1, (byte) 0xE5, 4, 2, 3 };
+        pd1.process(data, 0, 5);
+        pd1.process(data, 5, 2);
+        assertEquals(2, plist.size());
+        assertArrayEquals(new byte[] { 1 }, plist.get(0));
+        assertArrayEquals(new byte[] { 2, 3 }, plist.get(1));
+    }
 }
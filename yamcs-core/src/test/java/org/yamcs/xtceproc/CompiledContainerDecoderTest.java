@@ -0,0 +1,108 @@
+package org.yamcs.xtceproc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.RefMdbPacketGenerator;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ContainerParameterValue;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.ParameterValueList;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.xtce.SequenceContainer;
+import org.yamcs.xtce.XtceDb;
+import org.yamcs.xtceproc.SubscriptionSnapshot.ContainerSubscription;
+
+/**
+ * Checks that the compiled container decoders produce the same results as the XTCE model walk.
+ */
+public class CompiledContainerDecoderTest {
+    private static XtceDb xtcedb;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        YConfiguration.setupTest("refmdb");
+        XtceDbFactory.reset();
+        xtcedb = XtceDbFactory.createInstanceByConfig("refmdb");
+    }
+
+    private XtceTmExtractor getExtractor(boolean compile) {
+        ProcessorConfig pconfig = new ProcessorConfig();
+        pconfig.getContainerProcessingOptions().setCompileContainers(compile);
+        return new XtceTmExtractor(xtcedb, new ProcessorData(null, "XTCEPROC", xtcedb, pconfig));
+    }
+
+    private List<byte[]> getPackets() {
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+        return Arrays.asList(tmGenerator.generate_PKT1_1(), tmGenerator.generate_PKT1_2(),
+                tmGenerator.generate_PKT1_3(), tmGenerator.generate_PKT14(), tmGenerator.generate_PKT1_5(),
+                tmGenerator.generate_PKT1_6(3, 4), tmGenerator.generate_PKT1_7(),
+                tmGenerator.generate_PKT1_8(1, 2), tmGenerator.generate_PKT1_9(),
+                tmGenerator.generate_PKT1_10(1, 2, 3.14f), tmGenerator.generate_PKT1_11(),
+                tmGenerator.generate_PKT1_12(), tmGenerator.generate_PKT4(), tmGenerator.generate_PKT5(),
+                tmGenerator.generate_PKT7(), tmGenerator.generate_PKT8());
+    }
+
+    @Test
+    public void testProvideAll() {
+        XtceTmExtractor interpreted = getExtractor(false);
+        interpreted.provideAll();
+        XtceTmExtractor compiled = getExtractor(true);
+        compiled.provideAll();
+
+        for (byte[] b : getPackets()) {
+            long t = TimeEncoding.getWallclockTime();
+            interpreted.processPacket(b, t, t);
+            compiled.processPacket(b, t, t);
+            assertSameResult(interpreted.getParameterResult(), compiled.getParameterResult());
+            assertEquals(interpreted.getPacketName(), compiled.getPacketName());
+        }
+
+        boolean found = false;
+        SubscriptionSnapshot snapshot = compiled.getSubscriptionSnapshot();
+        for (SequenceContainer sc : compiled.getSubscription().getContainers()) {
+            ContainerSubscription csubscr = snapshot.get(sc);
+            if (csubscr != null && csubscr.getCompiledDecoder() != null) {
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void testSingleParameter() {
+        XtceTmExtractor interpreted = getExtractor(false);
+        interpreted.startProviding(xtcedb.getParameter("/REFMDB/SUBSYS1/IntegerPara1_1_6"));
+        XtceTmExtractor compiled = getExtractor(true);
+        compiled.startProviding(xtcedb.getParameter("/REFMDB/SUBSYS1/IntegerPara1_1_6"));
+
+        for (byte[] b : getPackets()) {
+            long t = TimeEncoding.getWallclockTime();
+            interpreted.processPacket(b, t, t);
+            compiled.processPacket(b, t, t);
+            assertSameResult(interpreted.getParameterResult(), compiled.getParameterResult());
+        }
+    }
+
+    private void assertSameResult(ParameterValueList expected, ParameterValueList actual) {
+        assertEquals(expected.size(), actual.size());
+        Iterator<ParameterValue> ait = actual.iterator();
+        for (ParameterValue pv : expected) {
+            ContainerParameterValue e = (ContainerParameterValue) pv;
+            ContainerParameterValue a = (ContainerParameterValue) ait.next();
+            assertEquals(e.getParameter(), a.getParameter());
+            assertEquals(String.valueOf(e.getRawValue()), String.valueOf(a.getRawValue()));
+            assertEquals(String.valueOf(e.getEngValue()), String.valueOf(a.getEngValue()));
+            assertEquals(e.getAcquisitionStatus(), a.getAcquisitionStatus());
+            assertEquals(e.getAbsoluteBitOffset(), a.getAbsoluteBitOffset());
+            assertEquals(e.getBitSize(), a.getBitSize());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.yamcs.xtceproc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.RefMdbPacketGenerator;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.XtceDb;
+
+public class TmDecodingPipelineTest {
+    private static XtceDb xtcedb;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        YConfiguration.setupTest("refmdb");
+        XtceDbFactory.reset();
+        xtcedb = XtceDbFactory.createInstanceByConfig("refmdb");
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        ProcessorConfig pconfig = new ProcessorConfig();
+        pconfig.getContainerProcessingOptions().setDecodingThreads(4);
+        pconfig.getContainerProcessingOptions().setDecodingQueueSize(16);
+        XtceTmProcessor tmProcessor = new XtceTmProcessor(xtcedb, pconfig);
+
+        Parameter p = xtcedb.getParameter("/REFMDB/SUBSYS1/IntegerPara1_6_1");
+        List<Long> received = new ArrayList<>();
+        tmProcessor.setParameterListener(params -> {
+            for (ParameterValue pv : params) {
+                if (pv.getParameter() == p) {
+                    received.add(pv.getEngValue().getUint32Value() & 0xFFFFFFFFL);
+                }
+            }
+        });
+        tmProcessor.startProviding(p);
+        tmProcessor.startAsync().awaitRunning();
+
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+        int n = 1000;
+        for (int i = 0; i < n; i++) {
+            long t = TimeEncoding.getWallclockTime();
+            tmProcessor.processPacket(new TmPacket(t, t, i, tmGenerator.generate_PKT1_6(i, 0)),
+                    xtcedb.getRootSequenceContainer());
+        }
+        tmProcessor.finished();
+        tmProcessor.awaitTerminated(10, TimeUnit.SECONDS);
+
+        assertEquals(n, received.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, received.get(i).longValue());
+        }
+    }
+}
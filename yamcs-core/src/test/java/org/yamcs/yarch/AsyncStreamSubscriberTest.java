@@ -0,0 +1,153 @@
+package org.yamcs.yarch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.yamcs.yarch.AsyncStreamSubscriber.OverflowPolicy;
+
+public class AsyncStreamSubscriberTest extends YarchTestCase {
+
+    Stream createStream(String name) throws Exception {
+        ydb.execute("create stream " + name + "(x int)");
+        return ydb.getStream(name);
+    }
+
+    Tuple tuple(Stream s, int x) {
+        return new Tuple(s.getDefinition(), new Object[] { x });
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        Stream s = createStream("async_block");
+        SlowSubscriber sub = new SlowSubscriber();
+        AsyncStreamSubscriber as = s.addAsyncSubscriber(sub, "test", 2, OverflowPolicy.BLOCK);
+        for (int i = 0; i < 10; i++) {
+            s.emitTuple(tuple(s, i));
+            if (i == 0) {
+                sub.started.await(10, TimeUnit.SECONDS);
+            }
+            if (i == 2) {
+                // the queue is full and the first tuple is held by the subscriber
+                sub.release.countDown();
+            }
+        }
+        s.close();
+        assertTrue(sub.closed);
+        assertEquals(10, sub.received.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, sub.received.get(i).intValue());
+        }
+        assertEquals(0, as.getDroppedCount());
+        assertEquals(10, as.getDeliveredCount());
+    }
+
+    @Test
+    public void testDropNewest() throws Exception {
+        Stream s = createStream("async_drop_newest");
+        SlowSubscriber sub = new SlowSubscriber();
+        AsyncStreamSubscriber as = s.addAsyncSubscriber(sub, "test", 3, OverflowPolicy.DROP_NEWEST);
+        s.emitTuple(tuple(s, 0));
+        sub.started.await(10, TimeUnit.SECONDS);
+        for (int i = 1; i < 10; i++) {
+            s.emitTuple(tuple(s, i));
+        }
+        assertEquals(3, as.getQueueSize());
+        assertEquals(6, as.getDroppedCount());
+        sub.release.countDown();
+        s.close();
+        assertEquals(4, sub.received.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, sub.received.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        Stream s = createStream("async_drop_oldest");
+        SlowSubscriber sub = new SlowSubscriber();
+        AsyncStreamSubscriber as = s.addAsyncSubscriber(sub, "test", 3, OverflowPolicy.DROP_OLDEST);
+        s.emitTuple(tuple(s, 0));
+        sub.started.await(10, TimeUnit.SECONDS);
+        for (int i = 1; i < 10; i++) {
+            s.emitTuple(tuple(s, i));
+        }
+        assertEquals(6, as.getDroppedCount());
+        sub.release.countDown();
+        s.close();
+        assertEquals(4, sub.received.size());
+        assertEquals(0, sub.received.get(0).intValue());
+        for (int i = 1; i < 4; i++) {
+            assertEquals(6 + i, sub.received.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testRemoveSubscriber() throws Exception {
+        Stream s = createStream("async_remove");
+        SlowSubscriber sub = new SlowSubscriber();
+        sub.release.countDown();
+        s.addAsyncSubscriber(sub, "test", 10, OverflowPolicy.BLOCK);
+        assertEquals(1, s.getSubscriberCount());
+        s.emitTuple(tuple(s, 1));
+
+        s.removeSubscriber(sub);
+        assertEquals(0, s.getSubscriberCount());
+        // the tuples emitted before the removal are still delivered
+        assertEquals(1, sub.received.size());
+
+        s.emitTuple(tuple(s, 2));
+        assertEquals(1, sub.received.size());
+    }
+
+    @Test
+    public void testAsyncTableWriter() throws Exception {
+        ydb.execute("create table async_table(x int, primary key(x))");
+        ydb.execute("create stream async_table_in(x int)");
+        ydb.execute("insert into async_table select * from async_table_in");
+        Stream s = ydb.getStream("async_table_in");
+        assertTrue(s.getSubscribers().iterator().next() instanceof AsyncStreamSubscriber);
+
+        for (int i = 0; i < 1000; i++) {
+            s.emitTuple(tuple(s, i));
+        }
+        s.close();
+
+        ydb.execute("create stream async_table_out as select * from async_table");
+        List<Tuple> tlist = fetchAll("async_table_out");
+        assertEquals(1000, tlist.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, ((Integer) tlist.get(i).getColumn("x")).intValue());
+        }
+    }
+
+    static class SlowSubscriber implements StreamSubscriber {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> received = new ArrayList<>();
+        volatile boolean closed;
+
+        @Override
+        public void onTuple(Stream stream, Tuple tuple) {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (received) {
+                received.add((Integer) tuple.getColumn("x"));
+            }
+        }
+
+        @Override
+        public void streamClosed(Stream stream) {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.yamcs.yarch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ColumnIndexResolverTest {
+
+    @Test
+    public void testResolve() {
+        TupleDefinition tdef = new TupleDefinition();
+        tdef.addColumn("a", DataType.INT);
+        tdef.addColumn("b", DataType.STRING);
+
+        ColumnIndexResolver resolver = new ColumnIndexResolver(tdef, "b", "c", "a");
+        assertArrayEquals(new int[] { 1, -1, 0 }, resolver.getIndices(tdef));
+
+        Tuple t = new Tuple(tdef, new Object[] { 3, "x" });
+        assertEquals("x", resolver.getColumn(t, 0));
+        assertNull(resolver.getColumn(t, 1));
+        assertEquals(3, resolver.getColumn(t, 2));
+
+        // a tuple with a different definition
+        TupleDefinition tdef2 = new TupleDefinition();
+        tdef2.addColumn("c", DataType.INT);
+        tdef2.addColumn("a", DataType.INT);
+        Tuple t2 = new Tuple(tdef2, new Object[] { 5, 6 });
+        assertNull(resolver.getColumn(t2, 0));
+        assertEquals(5, resolver.getColumn(t2, 1));
+        assertEquals(6, resolver.getColumn(t2, 2));
+    }
+
+    @Test
+    public void testDefinitionChange() {
+        TupleDefinition tdef = new TupleDefinition();
+        tdef.addColumn("a", DataType.INT);
+
+        ColumnIndexResolver resolver = new ColumnIndexResolver("a", "b");
+        assertArrayEquals(new int[] { 0, -1 }, resolver.getIndices(tdef));
+
+        tdef.addColumn("b", DataType.INT);
+        assertArrayEquals(new int[] { 0, 1 }, resolver.getIndices(tdef));
+
+        tdef.renameColumn("a", "x");
+        assertArrayEquals(new int[] { -1, 1 }, resolver.getIndices(tdef));
+    }
+}
@@ -0,0 +1,134 @@
+package org.yamcs.yarch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.protobuf.Yamcs.Event;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.Parameter;
+
+public class ColumnSerializerTest extends YarchTestCase {
+
+    @Test
+    public void testBasicTypes() throws IOException {
+        checkSameFormat(DataType.BOOLEAN, true);
+        checkSameFormat(DataType.BYTE, (byte) -3);
+        checkSameFormat(DataType.SHORT, (short) -1000);
+        checkSameFormat(DataType.INT, -100000);
+        checkSameFormat(DataType.LONG, Long.MIN_VALUE + 7);
+        checkSameFormat(DataType.TIMESTAMP, 1234567890123L);
+        checkSameFormat(DataType.DOUBLE, -3.14);
+        checkSameFormat(DataType.BINARY, new byte[] { 1, 2, 3 });
+    }
+
+    @Test
+    public void testStrings() throws IOException {
+        checkSameFormat(DataType.STRING, "");
+        checkSameFormat(DataType.STRING, "abc");
+        // null character, 2 and 3 bytes characters and a surrogate pair
+        checkSameFormat(DataType.STRING, "a\u0000béc€d😀");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append((char) i);
+        }
+        checkSameFormat(DataType.STRING, sb.toString());
+    }
+
+    @Test
+    public void testProtobufAndParameterValue() throws IOException {
+        Event e = Event.newBuilder().setSource("test").setGenerationTime(0)
+                .setReceptionTime(0).setSeqNumber(1).setMessage("blab lab").build();
+        checkSameFormat(DataType.protobuf(Event.class.getName()), e);
+
+        ParameterValue pv = new ParameterValue(new Parameter("p1"));
+        pv.setEngineeringValue(ValueUtility.getDoubleValue(3.14));
+        pv.setGenerationTime(1000);
+        ColumnSerializer<ParameterValue> cs = getSerializer(DataType.PARAMETER_VALUE);
+        byte[] b = serialize(cs, pv);
+        ByteBuffer bb = ByteBuffer.wrap(b);
+        ParameterValue pv1 = cs.deserialize(bb, new ColumnDefinition("/p1", DataType.PARAMETER_VALUE));
+        assertEquals(b.length, bb.position());
+        assertEquals(pv.getEngValue(), pv1.getEngValue());
+        assertEquals(1000, pv1.getGenerationTime());
+    }
+
+    @Test
+    public void testTableRoundTrip() throws Exception {
+        ydb.execute("create table test_rt(k1 timestamp, k2 string, v1 int, v2 binary, v3 enum, v4 double, "
+                + "primary key(k1, k2))");
+        TableDefinition td = ydb.getTable("test_rt");
+
+        TupleDefinition tdef = new TupleDefinition();
+        tdef.addColumn("k1", DataType.TIMESTAMP);
+        tdef.addColumn("k2", DataType.STRING);
+        tdef.addColumn("v1", DataType.INT);
+        tdef.addColumn("v2", DataType.BINARY);
+        tdef.addColumn("v3", DataType.ENUM);
+        tdef.addColumn("v4", DataType.DOUBLE);
+        tdef.addColumn("v5", DataType.SHORT);
+
+        // a big value to force the growth of the serialization buffer
+        byte[] big = new byte[100000];
+        big[99999] = 7;
+        Tuple t = new Tuple(tdef, new Object[] { 1000L, "abc€", 3, big, "enum1", 2.5, (short) 4 });
+        byte[] k = td.serializeKey(t);
+        byte[] v = td.serializeValue(t);
+        Tuple t1 = td.deserialize(k, v);
+
+        assertEquals(1000L, t1.getColumn("k1"));
+        assertEquals("abc€", t1.getColumn("k2"));
+        assertEquals(3, t1.getColumn("v1"));
+        assertArrayEquals(big, (byte[]) t1.getColumn("v2"));
+        assertEquals("enum1", t1.getColumn("v3"));
+        assertEquals(2.5, t1.getColumn("v4"));
+        assertEquals((short) 4, t1.getColumn("v5"));
+
+        // a small tuple after the big one uses a fresh buffer content
+        Tuple t2 = new Tuple(tdef, new Object[] { 1001L, "x", 4, new byte[0], "enum2", 1.0, (short) 5 });
+        Tuple t3 = td.deserialize(td.serializeKey(t2), td.serializeValue(t2));
+        assertEquals("x", t3.getColumn("k2"));
+        assertEquals(0, ((byte[]) t3.getColumn("v2")).length);
+        assertEquals("enum2", t3.getColumn("v3"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ColumnSerializer<T> getSerializer(DataType type) {
+        return (ColumnSerializer<T>) ColumnSerializerFactory.getColumnSerializer(null, new ColumnDefinition("x", type));
+    }
+
+    private static <T> byte[] serialize(ColumnSerializer<T> cs, T v) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(100000);
+        cs.serialize(bb, v);
+        byte[] b = new byte[bb.position()];
+        bb.flip();
+        bb.get(b);
+        return b;
+    }
+
+    // checks that the byte buffer and the data stream serialization produce the same result
+    private <T> void checkSameFormat(DataType type, T v) throws IOException {
+        ColumnSerializer<T> cs = getSerializer(type);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        cs.serialize(new DataOutputStream(baos), v);
+        byte[] expected = baos.toByteArray();
+
+        byte[] b = serialize(cs, v);
+        assertArrayEquals(expected, b);
+
+        ByteBuffer bb = ByteBuffer.wrap(b);
+        Object v1 = cs.deserialize(bb, new ColumnDefinition("x", type));
+        assertEquals(b.length, bb.position());
+        if (v instanceof byte[]) {
+            assertArrayEquals((byte[]) v, (byte[]) v1);
+        } else {
+            assertEquals(v, v1);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.yamcs.yarch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpeedLimitStreamTest extends YarchTestCase {
+
+    @Before
+    public void populate() throws Exception {
+        ydb.execute("create table speed_a(t timestamp, x int, primary key(t))");
+        ydb.execute("create table speed_b(t timestamp, x int, primary key(t))");
+        ydb.execute("create stream speed_in(t timestamp, x int, odd int)");
+        ydb.execute("insert into speed_a select t, x from speed_in where odd = 0");
+        ydb.execute("insert into speed_b select t, x from speed_in where odd = 1");
+        Stream s = ydb.getStream("speed_in");
+        for (int i = 0; i < 20; i++) {
+            s.emitTuple(new Tuple(s.getDefinition(), new Object[] { 1000L + 20 * i, i, i % 2 }));
+        }
+        s.close();
+    }
+
+    void checkOrder(List<Tuple> tlist, int n, boolean ascending) {
+        checkOrder(tlist, n, 1, ascending);
+    }
+
+    void checkOrder(List<Tuple> tlist, int n, int step, boolean ascending) {
+        assertEquals(n, tlist.size());
+        for (int i = 0; i < n; i++) {
+            int x = ascending ? i : n - 1 - i;
+            assertEquals(x * step, tlist.get(i).getColumn("x"));
+        }
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        ydb.execute("create stream speed_m1 as merge (select * from speed_a), (select * from speed_b) using t");
+        checkOrder(fetchAll("speed_m1"), 20, true);
+
+        ydb.execute("create stream speed_m2 as merge (select * from speed_a order desc), "
+                + "(select * from speed_b order desc) using t order desc");
+        checkOrder(fetchAll("speed_m2"), 20, false);
+    }
+
+    @Test
+    public void testFixedDelay() throws Exception {
+        ydb.execute("create stream speed_fd as select * from speed_a speed fixed_delay 20");
+        long t0 = System.currentTimeMillis();
+        List<Tuple> tlist = fetchAll("speed_fd");
+        long d = System.currentTimeMillis() - t0;
+        assertEquals(10, tlist.size());
+        assertTrue("too fast: " + d, d >= 9 * 20);
+    }
+
+    @Test
+    public void testOriginal() throws Exception {
+        // the tuples are 20ms apart, at double speed 10ms
+        ydb.execute("create stream speed_orig as merge (select * from speed_a), (select * from speed_b) using t "
+                + "speed original t,2");
+        assertTrue(ydb.getStream("speed_orig") instanceof SpeedLimitStream);
+        long t0 = System.currentTimeMillis();
+        List<Tuple> tlist = fetchAll("speed_orig");
+        long d = System.currentTimeMillis() - t0;
+        checkOrder(tlist, 20, true);
+        assertTrue("too fast: " + d, d >= 19 * 10);
+    }
+
+    @Test
+    public void testPause() throws Exception {
+        ydb.execute("create stream speed_p as select * from speed_a speed fixed_delay 10");
+        SpeedLimitStream sls = (SpeedLimitStream) ydb.getStream("speed_p");
+        List<Tuple> tlist = new ArrayList<>();
+        CountDownLatch closed = new CountDownLatch(1);
+        sls.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void onTuple(Stream s, Tuple t) {
+                assertTrue(Thread.currentThread().getName().startsWith("SpeedLimitRelease"));
+                synchronized (tlist) {
+                    tlist.add(t);
+                    if (tlist.size() == 2) {
+                        sls.pause();
+                    }
+                }
+            }
+
+            @Override
+            public void streamClosed(Stream s) {
+                closed.countDown();
+            }
+        });
+        sls.start();
+        Thread.sleep(300);
+        synchronized (tlist) {
+            assertEquals(2, tlist.size());
+        }
+        sls.resume();
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        checkOrder(tlist, 10, 2, true);
+    }
+
+    @Test
+    public void testChangeSpeed() throws Exception {
+        ydb.execute("create stream speed_cs as select * from speed_a speed fixed_delay 100000");
+        SpeedLimitStream sls = (SpeedLimitStream) ydb.getStream("speed_cs");
+        List<Tuple> tlist = new ArrayList<>();
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        sls.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void onTuple(Stream s, Tuple t) {
+                tlist.add(t);
+                first.countDown();
+            }
+
+            @Override
+            public void streamClosed(Stream s) {
+                closed.countDown();
+            }
+        });
+        sls.start();
+        assertTrue(first.await(10, TimeUnit.SECONDS));
+        // the second tuple is due in 100 seconds; changing the speed has to bring it forward
+        sls.changeSpeed(new SpeedSpec(SpeedSpec.Type.AFAP));
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        checkOrder(tlist, 10, 2, true);
+    }
+
+    @Test
+    public void testNoWaitingThread() throws Exception {
+        int n = 30;
+        CountDownLatch first = new CountDownLatch(n);
+        List<Stream> streams = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            ydb.execute("create stream speed_w" + i + " as select * from speed_a speed fixed_delay 100000");
+            Stream s = ydb.getStream("speed_w" + i);
+            s.addSubscriber(new StreamSubscriber() {
+                boolean received;
+
+                @Override
+                public void onTuple(Stream s, Tuple t) {
+                    if (!received) {
+                        received = true;
+                        first.countDown();
+                    }
+                }
+
+                @Override
+                public void streamClosed(Stream s) {
+                }
+            });
+            streams.add(s);
+        }
+        try {
+            streams.forEach(Stream::start);
+            assertTrue(first.await(10, TimeUnit.SECONDS));
+            // the next tuples are due in 100 seconds; no thread waits for them
+            long deadline = System.currentTimeMillis() + 5000;
+            while (countSpeedLimitThreads() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, countSpeedLimitThreads());
+        } finally {
+            streams.forEach(Stream::close);
+        }
+    }
+
+    // counts the threads executing the code of a speed limit stream
+    static long countSpeedLimitThreads() {
+        String cn = SpeedLimitStream.class.getName();
+        return Thread.getAllStackTraces().values().stream()
+                .filter(st -> Arrays.stream(st).anyMatch(e -> e.getClassName().equals(cn)))
+                .count();
+    }
+
+    @Test
+    public void testBlockingSubscriber() throws Exception {
+        ydb.execute("create stream speed_blocked as select * from speed_a speed fixed_delay 1");
+        ydb.execute("create stream speed_free as select * from speed_a speed fixed_delay 1");
+        Stream blocked = ydb.getStream("speed_blocked");
+        CountDownLatch unblock = new CountDownLatch(1);
+        blocked.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void onTuple(Stream s, Tuple t) {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void streamClosed(Stream s) {
+            }
+        });
+        blocked.start();
+        try {
+            // a subscriber blocking one replay must not stall the others
+            checkOrder(fetchAll("speed_free"), 10, 2, true);
+        } finally {
+            unblock.countDown();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.yamcs.yarch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamSeekTest extends YarchTestCase {
+    // more than the speed limit stream queue, such that the table readers are still running when seeking
+    static final int N = 6000;
+
+    @Before
+    public void populate() throws Exception {
+        ydb.execute("create table seek_a(t timestamp, x int, primary key(t))");
+        ydb.execute("create table seek_b(t timestamp, x int, primary key(t))");
+        ydb.execute("create stream seek_in(t timestamp, x int, odd int)");
+        ydb.execute("insert into seek_a select t, x from seek_in where odd = 0");
+        ydb.execute("insert into seek_b select t, x from seek_in where odd = 1");
+        Stream s = ydb.getStream("seek_in");
+        for (int i = 0; i < N; i++) {
+            s.emitTuple(new Tuple(s.getDefinition(), new Object[] { 1000L + 20 * i, i, i % 2 }));
+        }
+        s.close();
+    }
+
+    static long time(int x) {
+        return 1000L + 20 * x;
+    }
+
+    /**
+     * starts the stream and after receiving n tuples, seeks to the time corresponding to seekx
+     *
+     * @return the values of x received after the seek
+     */
+    List<Integer> seekAfter(String streamName, int n, int seekx) throws Exception {
+        Stream s = ydb.getStream(streamName);
+        List<Integer> received = new ArrayList<>();
+        CountDownLatch first = new CountDownLatch(n);
+        CountDownLatch closed = new CountDownLatch(1);
+        s.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void onTuple(Stream stream, Tuple t) {
+                synchronized (received) {
+                    received.add((Integer) t.getColumn("x"));
+                }
+                first.countDown();
+            }
+
+            @Override
+            public void streamClosed(Stream stream) {
+                closed.countDown();
+            }
+        });
+        s.start();
+        assertTrue(first.await(10, TimeUnit.SECONDS));
+        assertTrue(s.prepareSeek(time(seekx)));
+        assertTrue(s.awaitSeek());
+        int k;
+        synchronized (received) {
+            k = received.size();
+            assertTrue(k < 100);
+        }
+        s.completeSeek();
+        if (s instanceof SpeedLimitStream) {
+            ((SpeedLimitStream) s).changeSpeed(new SpeedSpec(SpeedSpec.Type.AFAP));
+        }
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        synchronized (received) {
+            return new ArrayList<>(received.subList(k, received.size()));
+        }
+    }
+
+    void checkRange(List<Integer> l, int from, int to, int step) {
+        assertEquals(l.toString(), (to - from) / step + 1, l.size());
+        for (int i = 0; i < l.size(); i++) {
+            assertEquals(from + i * step, l.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testSeekForward() throws Exception {
+        ydb.execute("create stream seek_s1 as select * from seek_a speed fixed_delay 10");
+        checkRange(seekAfter("seek_s1", 2, 5980), 5980, 5998, 2);
+    }
+
+    @Test
+    public void testSeekBackward() throws Exception {
+        ydb.execute("create stream seek_s2 as select * from seek_a where t >= " + time(3000)
+                + " speed fixed_delay 10");
+        checkRange(seekAfter("seek_s2", 2, 2000), 2000, 5998, 2);
+    }
+
+    @Test
+    public void testSeekKeepsEnd() throws Exception {
+        ydb.execute("create stream seek_s3 as select * from seek_a where t < " + time(5000) + " speed fixed_delay 10");
+        checkRange(seekAfter("seek_s3", 1, 4000), 4000, 4998, 2);
+    }
+
+    @Test
+    public void testSeekMerge() throws Exception {
+        ydb.execute("create stream seek_m as merge (select * from seek_a), (select * from seek_b) using t "
+                + "speed fixed_delay 10");
+        checkRange(seekAfter("seek_m", 3, 5001), 5001, 5999, 1);
+    }
+
+    @Test
+    public void testSeekBeforeStart() throws Exception {
+        ydb.execute("create stream seek_s4 as select * from seek_b");
+        Stream s = ydb.getStream("seek_s4");
+        assertTrue(s.prepareSeek(time(5991)));
+        assertTrue(s.awaitSeek());
+        s.completeSeek();
+        List<Tuple> tlist = fetchAll("seek_s4");
+        assertEquals(5, tlist.size());
+        assertEquals(5991, tlist.get(0).getColumn("x"));
+    }
+
+    @Test
+    public void testSeekAggregate() throws Exception {
+        ydb.execute("create stream seek_agg as select aggregatelist(*) from seek_a[SIZE 10 ADVANCE 10 ON t]");
+        Stream s = ydb.getStream("seek_agg");
+        assertFalse(s.prepareSeek(time(4)));
+        s.close();
+    }
+}
@@ -138,4 +138,94 @@ public class WriterTest extends YarchTestCase {
 
         ydb.execute("drop table tbl_upsert_append");
     }
+
+    @Test
+    public void TestBatchedInsert() throws Exception {
+        // the batching is configured for the tables batched_.* in the test yamcs.yaml
+        ydb.execute("create table batched_insert"
+                + "(gentime timestamp, seqNum int, name string, primary key(gentime, seqNum)) histogram(name)");
+        ydb.execute("create stream batched_insert_in(gentime timestamp, seqNum int, name string)");
+        ydb.execute("insert into batched_insert select * from batched_insert_in");
+
+        Stream s = ydb.getStream("batched_insert_in");
+        TupleDefinition td = s.getDefinition();
+        int m = 250;
+        for (int i = 0; i < m; i++) {
+            s.emitTuple(new Tuple(td, new Object[] { 1000L * i, i, "n" + (i % 2) }));
+            // duplicate in the same batch, has to be ignored
+            s.emitTuple(new Tuple(td, new Object[] { 1000L * i, i, "dup" }));
+        }
+        execute("close stream batched_insert_in");
+
+        List<Tuple> tuples = fetchAllFromTable("batched_insert");
+        assertEquals(m, tuples.size());
+        for (int i = 0; i < m; i++) {
+            assertEquals("n" + (i % 2), tuples.get(i).getColumn("name"));
+        }
+
+        ydb.execute("create stream batched_insert_histo as select * from batched_insert histogram(name)");
+        List<Tuple> histo = fetchAll("batched_insert_histo");
+        int count = 0;
+        for (Tuple t : histo) {
+            assertTrue(((String) t.getColumn(0)).startsWith("n"));
+            count += (Integer) t.getColumn(3);
+        }
+        assertEquals(m, count);
+
+        ydb.execute("drop table batched_insert");
+    }
+
+    @Test
+    public void TestBatchedFlushTimeout() throws Exception {
+        ydb.execute("create table batched_timeout"
+                + "(gentime timestamp, seqNum int, primary key(gentime, seqNum))");
+        ydb.execute("create stream batched_timeout_in(gentime timestamp, seqNum int)");
+        ydb.execute("insert into batched_timeout select * from batched_timeout_in");
+
+        Stream s = ydb.getStream("batched_timeout_in");
+        TupleDefinition td = s.getDefinition();
+        for (int i = 0; i < 5; i++) {
+            s.emitTuple(new Tuple(td, new Object[] { 1000L * i, i }));
+        }
+        // the stream is not closed, the records have to be written by the timer
+        Thread.sleep(1000);
+        assertEquals(5, fetchAllFromTable("batched_timeout").size());
+
+        execute("close stream batched_timeout_in");
+        ydb.execute("drop table batched_timeout");
+    }
+
+    @Test
+    public void TestInsertRecentKeys() throws Exception {
+        ydb.execute("create table recentkeys_insert"
+                + "(gentime timestamp, seqNum int, name string, primary key(gentime, seqNum)) histogram(name)");
+        ydb.execute("create stream recentkeys_insert_in(gentime timestamp, seqNum int, name string)");
+        ydb.execute("insert into recentkeys_insert select * from recentkeys_insert_in");
+
+        Stream s = ydb.getStream("recentkeys_insert_in");
+        TupleDefinition td = s.getDefinition();
+        int m = 300;
+        for (int i = 0; i < m; i++) {
+            s.emitTuple(new Tuple(td, new Object[] { 1000L * i, i, "n" }));
+            // recent duplicate, found in the cache
+            s.emitTuple(new Tuple(td, new Object[] { 1000L * i, i, "dup" }));
+        }
+        // old duplicates, evicted from the cache and found in the database
+        for (int i = 0; i < m; i++) {
+            s.emitTuple(new Tuple(td, new Object[] { 1000L * i, i, "dup" }));
+        }
+        execute("close stream recentkeys_insert_in");
+
+        List<Tuple> tuples = fetchAllFromTable("recentkeys_insert");
+        assertEquals(m, tuples.size());
+        for (Tuple t : tuples) {
+            assertEquals("n", t.getColumn("name"));
+        }
+        ydb.execute("create stream recentkeys_insert_histo as select * from recentkeys_insert histogram(name)");
+        List<Tuple> histo = fetchAll("recentkeys_insert_histo");
+        assertEquals(1, histo.size());
+        assertEquals(m, (int) (Integer) histo.get(0).getColumn(3));
+
+        ydb.execute("drop table recentkeys_insert");
+    }
 }
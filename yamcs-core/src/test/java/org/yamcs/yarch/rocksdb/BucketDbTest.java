@@ -5,7 +5,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
@@ -176,6 +181,30 @@ public class BucketDbTest {
         b.putObject("newobj", null, null, new byte[1024 * 1024]);
     }
 
+    @Test
+    public void testPutFile() throws Exception {
+        RdbBucketDatabase bucketDb = createDb(5);
+        Bucket b = bucketDb.createBucket("bucket1");
+        Path file = Paths.get(testDir, "file");
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+        Files.write(file, data);
+        b.putObject("obj1", null, null, file);
+        assertArrayEquals(data, b.getObject("obj1"));
+
+        // the file is not read if it does not fit in the bucket
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(RdbBucketDatabase.MAX_BUCKET_SIZE + 1);
+        }
+        try {
+            b.putObject("obj2", null, null, file);
+            fail("the file is too large for the bucket");
+        } catch (IOException e) {
+            // expected
+        }
+        assertNull(b.findObject("obj2"));
+    }
+
     private RdbBucketDatabase createDb(int n) throws Exception {
         String dir = testDir + "/tablespace" + n;
         Tablespace tablespace = new Tablespace("tablespace" + n);
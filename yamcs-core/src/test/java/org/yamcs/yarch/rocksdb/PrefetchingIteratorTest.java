@@ -0,0 +1,180 @@
+package org.yamcs.yarch.rocksdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.yamcs.utils.ByteArrayUtils;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.YarchTestCase;
+
+public class PrefetchingIteratorTest extends YarchTestCase {
+    static ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterClass
+    public static void shutdown() {
+        executor.shutdown();
+    }
+
+    static byte[] key(int partition, int k) {
+        byte[] b = new byte[8];
+        ByteArrayUtils.encodeInt(partition, b, 0);
+        ByteArrayUtils.encodeInt(k, b, 4);
+        return b;
+    }
+
+    static ListIterator listIterator(int partition, int n, int step) {
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            keys.add(key(partition, i * step + partition));
+        }
+        return new ListIterator(keys);
+    }
+
+    @Test
+    public void testAscending() {
+        ListIterator lit = listIterator(0, 5000, 1);
+        PrefetchingIterator pit = new PrefetchingIterator(lit, true, executor,
+                (k, v) -> ByteArrayUtils.decodeInt(k, 4));
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(pit.isValid());
+            assertArrayEquals(key(0, i), pit.key());
+            assertEquals(i, pit.decoded());
+            pit.next();
+        }
+        assertFalse(pit.isValid());
+        pit.close();
+        assertTrue(lit.closed);
+    }
+
+    @Test
+    public void testDescending() {
+        ListIterator lit = listIterator(0, 100, 1);
+        lit.pos = 99;
+        PrefetchingIterator pit = new PrefetchingIterator(lit, false, executor, null);
+        for (int i = 99; i >= 0; i--) {
+            assertTrue(pit.isValid());
+            assertArrayEquals(key(0, i), pit.key());
+            pit.prev();
+        }
+        assertFalse(pit.isValid());
+        pit.close();
+    }
+
+    @Test
+    public void testEmpty() {
+        ListIterator lit = new ListIterator(new ArrayList<>());
+        PrefetchingIterator pit = new PrefetchingIterator(lit, true, executor, null);
+        assertFalse(pit.isValid());
+        pit.close();
+        assertTrue(lit.closed);
+    }
+
+    @Test
+    public void testCloseEarly() {
+        ListIterator lit = listIterator(0, 100000, 1);
+        PrefetchingIterator pit = new PrefetchingIterator(lit, true, executor, null);
+        for (int i = 0; i < 20; i++) {
+            pit.next();
+        }
+        pit.close();
+        assertTrue(lit.closed);
+        assertTrue(lit.pos < 100000);
+    }
+
+    @Test
+    public void testMerging() {
+        List<DbIterator> itList = new ArrayList<>();
+        for (int p = 0; p < 5; p++) {
+            itList.add(new PrefetchingIterator(listIterator(p, 1000, 5), true, executor,
+                    (k, v) -> ByteArrayUtils.decodeInt(k, 4)));
+        }
+        MergingIterator mit = new MergingIterator(itList, new RdbTableReaderStream.SuffixAscendingComparator(4));
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(mit.isValid());
+            assertEquals(i, ((PrefetchingIterator) mit.current()).decoded());
+            mit.next();
+        }
+        assertFalse(mit.isValid());
+        mit.close();
+    }
+
+    @Test
+    public void testTableScan() throws Exception {
+        ydb.execute("create table prefetch_test(x int, p int, primary key(x)) engine rocksdb2 "
+                + "partition by value(p)");
+        ydb.execute("create stream prefetch_test_in(x int, p int)");
+        ydb.execute("insert into prefetch_test select * from prefetch_test_in");
+        Stream s = ydb.getStream("prefetch_test_in");
+        for (int i = 0; i < 3000; i++) {
+            s.emitTuple(new Tuple(s.getDefinition(), new Object[] { i, i % 7 }));
+        }
+        s.close();
+
+        ydb.execute("create stream prefetch_test_out1 as select * from prefetch_test");
+        List<Tuple> tlist = fetchAll("prefetch_test_out1");
+        assertEquals(3000, tlist.size());
+        for (int i = 0; i < 3000; i++) {
+            Tuple t = tlist.get(i);
+            assertEquals(i, t.getColumn("x"));
+            assertEquals(i % 7, t.getColumn("p"));
+        }
+
+        ydb.execute("create stream prefetch_test_out2 as select * from prefetch_test where x >= 2000 order desc");
+        tlist = fetchAll("prefetch_test_out2");
+        assertEquals(1000, tlist.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(2999 - i, tlist.get(i).getColumn("x"));
+        }
+    }
+
+    static class ListIterator implements DbIterator {
+        final List<byte[]> keys;
+        int pos = 0;
+        boolean closed;
+
+        ListIterator(List<byte[]> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public boolean isValid() {
+            return pos >= 0 && pos < keys.size();
+        }
+
+        @Override
+        public void next() {
+            pos++;
+        }
+
+        @Override
+        public void prev() {
+            pos--;
+        }
+
+        @Override
+        public byte[] key() {
+            return keys.get(pos);
+        }
+
+        @Override
+        public byte[] value() {
+            return Arrays.copyOf(keys.get(pos), 2);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
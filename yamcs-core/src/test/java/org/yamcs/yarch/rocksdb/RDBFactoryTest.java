@@ -17,6 +17,7 @@ import org.junit.Test;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDB;
 import org.yamcs.utils.FileUtils;
+import org.yamcs.utils.TimeEncoding;
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.DataType;
 import org.yamcs.yarch.PartitioningSpec;
@@ -46,6 +47,32 @@ public class RDBFactoryTest {
         return tblDef;
     }
 
+    @Test
+    public void testHistorical() throws Exception {
+        TimeEncoding.setUp();
+        RdbConfig rdbConfig = RdbConfig.getInstance();
+        assertTrue(rdbConfig.isHistorical(TimeEncoding.parse("2001-01-01T00:00:00")));
+        assertFalse(rdbConfig.isHistorical(TimeEncoding.getWallclockTime()));
+
+        String dir = "/tmp/rdbfactorytest_historical";
+        FileUtils.deleteRecursivelyIfExists(Paths.get(dir));
+        RDBFactory rdbf = new RDBFactory(dir);
+        YRDB db1 = rdbf.getRdb("old", false, true);
+        YRDB db2 = rdbf.getRdb("recent", false, false);
+        assertTrue(db1.isHistorical());
+        assertFalse(db2.isHistorical());
+
+        // the options are decided when the database is opened
+        YRDB db3 = rdbf.getRdb("old", false, false);
+        assertTrue(db1 == db3);
+        assertTrue(db3.isHistorical());
+
+        rdbf.dispose(db1);
+        rdbf.dispose(db2);
+        rdbf.dispose(db3);
+        rdbf.shutdown();
+    }
+
     @Test
     public void testDispose() throws Exception {
         YRDB[] dbs = new YRDB[RDBFactory.maxOpenDbs * 2];
@@ -17,7 +17,25 @@ public class RdbHistogramIteratorTest  extends YarchTestCase {
     
     @Test
     public void test1() throws Exception {
-        TableDefinition tblDef = populate();
+        TableDefinition tblDef = populate("table1");
+        checkHistogram(tblDef);
+    }
+
+    @Test
+    public void testCachedHistograms() throws Exception {
+        // the histograms of this table are kept in memory until the writer is closed
+        TableDefinition tblDef = createTable("histocache_table1");
+        TableWriter tw = write(tblDef);
+        RdbStorageEngine rse = RdbStorageEngine.getInstance();
+        HistogramIterator iter = rse.getHistogramIterator(ydb, tblDef, "name", new TimeInterval());
+        assertFalse(iter.hasNext());
+        iter.close();
+
+        tw.close();
+        checkHistogram(tblDef);
+    }
+
+    private void checkHistogram(TableDefinition tblDef) throws Exception {
         RdbStorageEngine rse =  RdbStorageEngine.getInstance();
         TimeInterval interval = new TimeInterval();
 
@@ -40,13 +58,20 @@ public class RdbHistogramIteratorTest  extends YarchTestCase {
         
     }
     
-    public TableDefinition populate() throws Exception {
-        String query="create table table1(gentime timestamp, seqNum int, name string, primary key(gentime, seqNum)) histogram(name) "
+    public TableDefinition populate(String tableName) throws Exception {
+        TableDefinition tblDef = createTable(tableName);
+        write(tblDef).close();
+        return tblDef;
+    }
+
+    private TableDefinition createTable(String tableName) throws Exception {
+        String query="create table "+tableName+"(gentime timestamp, seqNum int, name string, primary key(gentime, seqNum)) histogram(name) "
                 + "partition by time(gentime) table_format=compressed engine rocksdb2";
         ydb.execute(query);
-        
+        return ydb.getTable(tableName);
+    }
 
-        TableDefinition tblDef= ydb.getTable("table1");
+    private TableWriter write(TableDefinition tblDef) throws Exception {
         RdbStorageEngine    rse = (RdbStorageEngine) ydb.getStorageEngine(tblDef);
         TableWriter tw = rse.newTableWriter(ydb, tblDef, InsertMode.INSERT);
         tw.onTuple(null, new Tuple(tblDef.getTupleDefinition(), new Object[]{t0+1000L, 1, "p1"}));
@@ -54,8 +79,6 @@ public class RdbHistogramIteratorTest  extends YarchTestCase {
         tw.onTuple(null, new Tuple(tblDef.getTupleDefinition(), new Object[]{t0+40000L, 3, "p1"}));
         tw.onTuple(null, new Tuple(tblDef.getTupleDefinition(), new Object[]{t0+40001L, 4, "p1"}));
         tw.onTuple(null, new Tuple(tblDef.getTupleDefinition(), new Object[]{t1, 4, "p1"}));
-        
-        tw.close();
-        return tblDef;
+        return tw;
     }
 }